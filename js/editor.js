@@ -27223,6 +27223,158 @@
       });
   }
 
+  function serializeBlock(node) {
+      return markdownSerializer.serialize(Fragment.from(node));
+  }
+
+  function replaceRange(array, from, count, items) {
+      if (items.length === count) {
+          for (let i = 0; i < count; i++) array[from + i] = items[i];
+          return array;
+      }
+      return array.slice(0, from).concat(items, array.slice(from + count));
+  }
+
+  /**
+   * Передаёт в Java изменения текста заметки вместо полной сериализации документа.
+   *
+   * Сериализатор пишет блоки верхнего уровня независимо друг от друга, поэтому текст заметки -
+   * это заголовок front matter и склеенные тексты блоков. Узлы ProseMirror неизменяемы, и
+   * нетронутые блоки нового документа - те же объекты, что и в старом: после транзакции заново
+   * сериализуются только блоки между общим началом и общим концом документов.
+   */
+  class ChangeTracker {
+      constructor(editor) {
+          this.editor = editor;
+          this.blocks = [];
+          this.texts = [];
+          this.header = "";
+          this.version = 0;
+          this.paused = false;
+      }
+
+      /**
+       * Полностью пересчитывает текст и отправляет его в Java.
+       * clean - текст совпадает с сохранённым (заметка только что загружена)
+       */
+      reset(doc, clean) {
+          this.blocks = [];
+          this.texts = [];
+          doc.forEach(node => {
+              this.blocks.push(node);
+              this.texts.push(serializeBlock(node));
+          });
+          this.header = this.editor.getFrontMatterHeader();
+
+          const bridge = window.editorBridge;
+          if (bridge && bridge.onNoteReset) {
+              bridge.onNoteReset(this.header + this.texts.join(""), clean);
+          }
+      }
+
+      /**
+       * Выполняет действие без отправки промежуточных изменений
+       */
+      pause(action) {
+          this.paused = true;
+          try {
+              action();
+          } finally {
+              this.paused = false;
+          }
+      }
+
+      sync(doc) {
+          if (this.paused) return;
+
+          try {
+              const header = this.editor.getFrontMatterHeader();
+              if (header !== this.header) {
+                  const oldLength = this.header.length;
+                  this.header = header;
+                  this.emit(0, oldLength, header);
+              }
+              if (doc) this.syncBlocks(doc);
+          } catch (error) {
+              console.error('Change tracking failed, resending note:', error);
+              if (doc) this.reset(doc, false);
+          }
+      }
+
+      syncBlocks(doc) {
+          const oldCount = this.blocks.length;
+          const newCount = doc.childCount;
+
+          let prefix = 0;
+          while (prefix < oldCount && prefix < newCount && this.blocks[prefix] === doc.child(prefix)) {
+              prefix++;
+          }
+          let suffix = 0;
+          while (suffix < oldCount - prefix && suffix < newCount - prefix
+              && this.blocks[oldCount - 1 - suffix] === doc.child(newCount - 1 - suffix)) {
+              suffix++;
+          }
+          if (prefix === oldCount && prefix === newCount) return;
+
+          let start = this.header.length;
+          for (let i = 0; i < prefix; i++) start += this.texts[i].length;
+
+          const removed = oldCount - suffix - prefix;
+          const oldText = this.texts.slice(prefix, prefix + removed).join("");
+
+          const nodes = [];
+          const texts = [];
+          for (let i = prefix; i < newCount - suffix; i++) {
+              const node = doc.child(i);
+              nodes.push(node);
+              texts.push(serializeBlock(node));
+          }
+          const newText = texts.join("");
+
+          this.blocks = replaceRange(this.blocks, prefix, removed, nodes);
+          this.texts = replaceRange(this.texts, prefix, removed, texts);
+
+          // внутри изменившихся блоков отправляем только отличающийся участок
+          let head = 0;
+          const maxHead = Math.min(oldText.length, newText.length);
+          while (head < maxHead && oldText.charCodeAt(head) === newText.charCodeAt(head)) head++;
+          let tail = 0;
+          const maxTail = maxHead - head;
+          while (tail < maxTail
+              && oldText.charCodeAt(oldText.length - 1 - tail) === newText.charCodeAt(newText.length - 1 - tail)) {
+              tail++;
+          }
+          if (head === oldText.length && head === newText.length) return;
+
+          this.emit(start + head, start + oldText.length - tail, newText.substring(head, newText.length - tail));
+      }
+
+      emit(start, end, text) {
+          this.version++;
+
+          const bridge = window.editorBridge;
+          if (bridge && bridge.onNoteChanged) {
+              bridge.onNoteChanged(this.version, start, end, text);
+          }
+      }
+  }
+
+  function changeTrackerPlugin(tracker) {
+      return new Plugin({
+          view(editorView) {
+              tracker.reset(editorView.state.doc, true);
+
+              return {
+                  update(view, prevState) {
+                      if (view.state.doc !== prevState.doc) {
+                          tracker.sync(view.state.doc);
+                      }
+                  }
+              };
+          }
+      });
+  }
+
   /*! js-yaml 4.1.0 https://github.com/nodeca/js-yaml @license MIT */
   function isNothing(subject) {
     return (typeof subject === 'undefined') || (subject === null);
@@ -31076,6 +31228,7 @@
           if (!target) throw new Error('Target element required');
 
           this.mode = mode;
+          this.changeTracker = new ChangeTracker(this);
 
           const docContent = this.parseDoc(content);
 
@@ -31185,6 +31338,7 @@
               hideSpecPlugin(),
               doubleClickPlugin(),
               wordCounterPlugin(),
+              changeTrackerPlugin(this.changeTracker),
           ];
       }
 
@@ -31595,7 +31749,7 @@
           const currentMarkdown = this.getMarkdown();
 
           const newContent = this.getNoteContent(currentMarkdown);
-          this.setNoteContent(newContent);
+          this.replaceNoteContent(newContent);
       }
 
       find(query, caseSensitive = false) {
@@ -31751,6 +31905,14 @@
       }
 
       setNoteContent(content) {
+          // загруженный текст - новая точка отсчёта для изменений, а не правка
+          this.changeTracker.pause(() => this.replaceNoteContent(content));
+          if (this.view) {
+              this.changeTracker.reset(this.view.state.doc, true);
+          }
+      }
+
+      replaceNoteContent(content) {
           const docContent = this.parseDoc(content);
           if (this.mode == 'note' || this.mode == 'template') {
               this.frontMatter = docContent.frontMatter;
@@ -31775,6 +31937,7 @@
       setFrontMatter(yamlString) {
           this.frontMatter = this.parseYAML(yamlString);
           this.updateFrontMatterTable();
+          this.changeTracker.sync(null);
       }
 
       insertSnippet(snippetContent) {
@@ -32287,9 +32450,13 @@
           return this.view.state.doc.toJSON();
       }
 
+      getFrontMatterHeader() {
+          if (!this.frontMatter || Object.keys(this.frontMatter).length === 0) return "";
+          return "---\n" + this.getFrontMatterYAML() + "---\n\n";
+      }
+
       getNoteContent() {
-          const frontMatter = this.getFrontMatterYAML() !== "" ? "---\n" + this.getFrontMatterYAML() + "---\n\n" : "";
-          return frontMatter + this.getMarkdown();
+          return this.getFrontMatterHeader() + this.getMarkdown();
       }
 
       getCursorInfo() {
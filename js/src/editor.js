@@ -19,6 +19,7 @@ import { doubleClickPlugin } from "./plugins/double-click.js"
 import { searchPlugin, searchCommands } from "./plugins/search.js"
 import { clipboardPlugin } from "./plugins/clipboard.js"
 import { wordCounterPlugin } from "./plugins/word-counter.js"
+import { ChangeTracker, changeTrackerPlugin } from "./plugins/change-tracker.js"
 import jsYAML from 'js-yaml';
 
 export class Editor {
@@ -26,6 +27,7 @@ export class Editor {
         if (!target) throw new Error('Target element required');
 
         this.mode = mode;
+        this.changeTracker = new ChangeTracker(this);
 
         const docContent = this.parseDoc(content);
 
@@ -135,6 +137,7 @@ export class Editor {
             hideSpecPlugin(),
             doubleClickPlugin(),
             wordCounterPlugin(),
+            changeTrackerPlugin(this.changeTracker),
         ];
     }
 
@@ -545,7 +548,7 @@ export class Editor {
         const currentMarkdown = this.getMarkdown();
 
         const newContent = this.getNoteContent(currentMarkdown);
-        this.setNoteContent(newContent);
+        this.replaceNoteContent(newContent);
     }
 
     find(query, caseSensitive = false) {
@@ -701,6 +704,14 @@ export class Editor {
     }
 
     setNoteContent(content) {
+        // загруженный текст - новая точка отсчёта для изменений, а не правка
+        this.changeTracker.pause(() => this.replaceNoteContent(content));
+        if (this.view) {
+            this.changeTracker.reset(this.view.state.doc, true);
+        }
+    }
+
+    replaceNoteContent(content) {
         const docContent = this.parseDoc(content);
         if (this.mode == 'note' || this.mode == 'template') {
             this.frontMatter = docContent.frontMatter;
@@ -725,6 +736,7 @@ export class Editor {
     setFrontMatter(yamlString) {
         this.frontMatter = this.parseYAML(yamlString);
         this.updateFrontMatterTable();
+        this.changeTracker.sync(null);
     }
 
     insertSnippet(snippetContent) {
@@ -1237,9 +1249,13 @@ export class Editor {
         return this.view.state.doc.toJSON();
     }
 
+    getFrontMatterHeader() {
+        if (!this.frontMatter || Object.keys(this.frontMatter).length === 0) return "";
+        return "---\n" + this.getFrontMatterYAML() + "---\n\n";
+    }
+
     getNoteContent() {
-        const frontMatter = this.getFrontMatterYAML() !== "" ? "---\n" + this.getFrontMatterYAML() + "---\n\n" : "";
-        return frontMatter + this.getMarkdown();
+        return this.getFrontMatterHeader() + this.getMarkdown();
     }
 
     getCursorInfo() {
@@ -0,0 +1,155 @@
+import { Plugin } from 'prosemirror-state';
+import { Fragment } from 'prosemirror-model';
+import { markdownSerializer } from '../serializer/markdown-serializer.js';
+
+function serializeBlock(node) {
+    return markdownSerializer.serialize(Fragment.from(node));
+}
+
+function replaceRange(array, from, count, items) {
+    if (items.length === count) {
+        for (let i = 0; i < count; i++) array[from + i] = items[i];
+        return array;
+    }
+    return array.slice(0, from).concat(items, array.slice(from + count));
+}
+
+/**
+ * Передаёт в Java изменения текста заметки вместо полной сериализации документа.
+ *
+ * Сериализатор пишет блоки верхнего уровня независимо друг от друга, поэтому текст заметки -
+ * это заголовок front matter и склеенные тексты блоков. Узлы ProseMirror неизменяемы, и
+ * нетронутые блоки нового документа - те же объекты, что и в старом: после транзакции заново
+ * сериализуются только блоки между общим началом и общим концом документов.
+ */
+export class ChangeTracker {
+    constructor(editor) {
+        this.editor = editor;
+        this.blocks = [];
+        this.texts = [];
+        this.header = "";
+        this.version = 0;
+        this.paused = false;
+    }
+
+    /**
+     * Полностью пересчитывает текст и отправляет его в Java.
+     * clean - текст совпадает с сохранённым (заметка только что загружена)
+     */
+    reset(doc, clean) {
+        this.blocks = [];
+        this.texts = [];
+        doc.forEach(node => {
+            this.blocks.push(node);
+            this.texts.push(serializeBlock(node));
+        });
+        this.header = this.editor.getFrontMatterHeader();
+
+        const bridge = window.editorBridge;
+        if (bridge && bridge.onNoteReset) {
+            bridge.onNoteReset(this.header + this.texts.join(""), clean);
+        }
+    }
+
+    /**
+     * Выполняет действие без отправки промежуточных изменений
+     */
+    pause(action) {
+        this.paused = true;
+        try {
+            action();
+        } finally {
+            this.paused = false;
+        }
+    }
+
+    sync(doc) {
+        if (this.paused) return;
+
+        try {
+            const header = this.editor.getFrontMatterHeader();
+            if (header !== this.header) {
+                const oldLength = this.header.length;
+                this.header = header;
+                this.emit(0, oldLength, header);
+            }
+            if (doc) this.syncBlocks(doc);
+        } catch (error) {
+            console.error('Change tracking failed, resending note:', error);
+            if (doc) this.reset(doc, false);
+        }
+    }
+
+    syncBlocks(doc) {
+        const oldCount = this.blocks.length;
+        const newCount = doc.childCount;
+
+        let prefix = 0;
+        while (prefix < oldCount && prefix < newCount && this.blocks[prefix] === doc.child(prefix)) {
+            prefix++;
+        }
+        let suffix = 0;
+        while (suffix < oldCount - prefix && suffix < newCount - prefix
+            && this.blocks[oldCount - 1 - suffix] === doc.child(newCount - 1 - suffix)) {
+            suffix++;
+        }
+        if (prefix === oldCount && prefix === newCount) return;
+
+        let start = this.header.length;
+        for (let i = 0; i < prefix; i++) start += this.texts[i].length;
+
+        const removed = oldCount - suffix - prefix;
+        const oldText = this.texts.slice(prefix, prefix + removed).join("");
+
+        const nodes = [];
+        const texts = [];
+        for (let i = prefix; i < newCount - suffix; i++) {
+            const node = doc.child(i);
+            nodes.push(node);
+            texts.push(serializeBlock(node));
+        }
+        const newText = texts.join("");
+
+        this.blocks = replaceRange(this.blocks, prefix, removed, nodes);
+        this.texts = replaceRange(this.texts, prefix, removed, texts);
+
+        // внутри изменившихся блоков отправляем только отличающийся участок
+        let head = 0;
+        const maxHead = Math.min(oldText.length, newText.length);
+        while (head < maxHead && oldText.charCodeAt(head) === newText.charCodeAt(head)) head++;
+        let tail = 0;
+        const maxTail = maxHead - head;
+        while (tail < maxTail
+            && oldText.charCodeAt(oldText.length - 1 - tail) === newText.charCodeAt(newText.length - 1 - tail)) {
+            tail++;
+        }
+        if (head === oldText.length && head === newText.length) return;
+
+        this.emit(start + head, start + oldText.length - tail, newText.substring(head, newText.length - tail));
+    }
+
+    emit(start, end, text) {
+        this.version++;
+
+        const bridge = window.editorBridge;
+        if (bridge && bridge.onNoteChanged) {
+            bridge.onNoteChanged(this.version, start, end, text);
+        }
+    }
+}
+
+export function changeTrackerPlugin(tracker) {
+    return new Plugin({
+        view(editorView) {
+            tracker.reset(editorView.state.doc, true);
+
+            return {
+                update(view, prevState) {
+                    if (view.state.doc !== prevState.doc) {
+                        tracker.sync(view.state.doc);
+                    }
+                }
+            };
+        }
+    });
+}
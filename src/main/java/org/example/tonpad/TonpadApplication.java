@@ -1,13 +1,20 @@
 package org.example.tonpad;
 
 import javafx.application.Application;
+import javafx.application.Platform;
 import javafx.stage.Stage;
 import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.exceptions.handler.GlobalExceptionHandler;
+import org.example.tonpad.core.files.TrashService;
+import org.example.tonpad.core.files.VaultWatchService;
+import org.example.tonpad.core.service.FileNameIndexService;
+import org.example.tonpad.core.service.LinkGraphService;
+import org.example.tonpad.core.service.SearchIndexService;
 import org.example.tonpad.ui.controllers.tree.FileTreeController;
 import org.example.tonpad.ui.controllers.core.MainController;
 import org.example.tonpad.ui.controllers.dialog.QuickStartDialogController;
 import org.example.tonpad.ui.controllers.core.TabController;
+import org.example.tonpad.ui.controllers.settings.SettingsController;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
@@ -39,6 +46,24 @@ public class TonpadApplication extends Application {
     @Autowired
     private TabController tabController;
 
+    @Autowired
+    private SearchIndexService searchIndexService;
+
+    @Autowired
+    private LinkGraphService linkGraphService;
+
+    @Autowired
+    private VaultWatchService vaultWatchService;
+
+    @Autowired
+    private FileNameIndexService fileNameIndexService;
+
+    @Autowired
+    private TrashService trashService;
+
+    @Autowired
+    private SettingsController settingsController;
+
     private boolean initialized = false;
 
     @Override
@@ -65,9 +90,17 @@ public class TonpadApplication extends Application {
             }
 
             fileTreeController.refreshTree();
+            vaultWatchService.watch(vaultPathsContainer.getNotesPath());
+            fileNameIndexService.open();
+            trashService.purge();
+            searchIndexService.open();
+            linkGraphService.open();
 
             tabController.refreshRtConfig();
             tabController.restoreRecentTabs();
+
+            // окно хранилища уже показано - спрашиваем поверх него
+            Platform.runLater(settingsController::checkInterruptedRun);
         });
     }
 
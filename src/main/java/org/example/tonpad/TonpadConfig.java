@@ -1,5 +1,6 @@
 package org.example.tonpad;
 
+import org.example.tonpad.core.files.WriteDurability;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 import java.nio.file.Path;
@@ -10,8 +11,27 @@ public record TonpadConfig(
         ReservedDirNames reservedNames,
         String jsFunctionsDirectory,
         String changelogPath,
-        String validateDbSchemaPath
+        String validateDbSchemaPath,
+        Sqlite sqlite,
+        FileWrites fileWrites,
+        Trash trash
 ) {
 
     public record ReservedDirNames(String templatesDir, String notesDir) {}
+
+    public record Sqlite(
+            String journalMode,
+            String synchronous,
+            long mmapSize,
+            int cacheSize,
+            int busyTimeoutMs,
+            int readerPoolSize
+    ) {}
+
+    public record FileWrites(
+            WriteDurability durability,
+            long syncIntervalMs
+    ) {}
+
+    public record Trash(long retentionHours) {}
 }
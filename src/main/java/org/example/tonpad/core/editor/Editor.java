@@ -6,6 +6,7 @@ import org.example.tonpad.core.editor.enums.FormatType;
 import org.example.tonpad.core.editor.enums.LinkType;
 import org.example.tonpad.core.editor.enums.ParagraphType;
 import org.example.tonpad.core.editor.listener.FrontMatterChangeListener;
+import org.example.tonpad.core.editor.listener.NoteChangeListener;
 
 import java.net.URL;
 import java.util.Map;
@@ -74,4 +75,8 @@ public interface Editor {
     void addFrontMatterChangeListener(FrontMatterChangeListener listener);
 
     void removeFrontMatterChangeListener(FrontMatterChangeListener listener);
+
+    void addNoteChangeListener(NoteChangeListener listener);
+
+    void removeNoteChangeListener(NoteChangeListener listener);
 }
\ No newline at end of file
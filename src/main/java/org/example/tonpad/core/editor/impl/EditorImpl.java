@@ -6,6 +6,7 @@ import javafx.scene.input.Clipboard;
 import javafx.scene.input.ClipboardContent;
 import javafx.scene.web.WebEngine;
 import lombok.Getter;
+import netscape.javascript.JSException;
 import netscape.javascript.JSObject;
 import org.example.tonpad.core.editor.Editor;
 import org.example.tonpad.core.editor.dto.SearchResult;
@@ -16,6 +17,7 @@ import org.example.tonpad.core.editor.enums.LinkType;
 import org.example.tonpad.core.editor.enums.ParagraphType;
 import org.example.tonpad.core.editor.event.FrontMatterChangeEvent;
 import org.example.tonpad.core.editor.listener.FrontMatterChangeListener;
+import org.example.tonpad.core.editor.listener.NoteChangeListener;
 import org.yaml.snakeyaml.Yaml;
 
 import java.net.URL;
@@ -23,17 +25,35 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Реализация сервиса EditorApi
  */
 public class EditorImpl implements Editor {
 
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    // массив на стороне JS, через который передаются аргументы команд, - без экранирования в литерал скрипта
+    private static final String ARGS_MEMBER = "javaBridgeArgs";
+
     private final WebEngine webEngine;
 
+    // команды, накопленные до ближайшего такта FX; уходят в JS одним executeScript
+    private final Queue<Command> commands = new ConcurrentLinkedQueue<>();
+
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+    // доступен только из потока FX
+    private JSObject bridgeArgs;
+
     private final List<FrontMatterChangeListener> frontMatterListeners = new ArrayList<>();
 
+    private final List<NoteChangeListener> noteChangeListeners = new ArrayList<>();
+
     private volatile boolean isLoaded = false;
 
     private final Yaml yaml = new Yaml();
@@ -42,19 +62,23 @@ public class EditorImpl implements Editor {
         this.webEngine = webEngine;
 
         if (mode == EditorMode.NOTE) {
-            executeJs("createEditor('note');");
+            call("createEditor", "note");
         } else if (mode == EditorMode.SNIPPET) {
-            executeJs("createEditor('snippet');");
+            call("createEditor", "snippet");
         } else {
-            executeJs("createEditor('template');");
+            call("createEditor", "template");
         }
 
         this.webEngine.getLoadWorker().stateProperty().addListener((obs, old, newState) -> {
             if (newState == Worker.State.SUCCEEDED) {
-                isLoaded = true;
-
                 JSObject window = (JSObject) this.webEngine.executeScript("window");
                 window.setMember("editorBridge", this);
+                bridgeArgs = (JSObject) this.webEngine.executeScript("window." + ARGS_MEMBER + " = []");
+
+                isLoaded = true;
+                flushCommands();
+            } else if (newState == Worker.State.FAILED || newState == Worker.State.CANCELLED) {
+                failCommands(new RuntimeException("Page failed to load"));
             }
         });
 
@@ -72,150 +96,133 @@ public class EditorImpl implements Editor {
                 }
             });
             this.webEngine.setOnError(e -> System.err.println("\u001B[31mJS ERROR: " + e.getMessage() + "\u001B[0m"));
-            executeJs("debugAlerts.enable();");
+            call("debugAlerts.enable");
         }
 
         this.webEngine.load(getEditorHtmlSource().toExternalForm());
     }
 
     public void setNoteContent(String noteContent) {
-        String jsCode = String.format("editor.setNoteContent(%s);",
-                toJsString(noteContent));
-
-        executeJs(jsCode);
+        call("editor.setNoteContent", noteContent);
     }
 
     public void setFrontMatter(Map<String, String> frontMatter) {
         String yamlContent = yaml.dump(frontMatter);
 
-        String jsCode = String.format("editor.setFrontMatter(%s);",
-                toJsString(yamlContent));
-
-        executeJs(jsCode);
+        call("editor.setFrontMatter", yamlContent);
     }
 
     public void insertSnippet(String snippetContent) {
-        String jsCode = String.format("editor.insertSnippet(%s);",
-                toJsString(snippetContent));
-
-        executeJs(jsCode);
+        call("editor.insertSnippet", snippetContent);
     }
 
     public CompletableFuture<SearchResult> find(String query) {
-        String jsCode = String.format("editor.find(%s);",
-                toJsString(query));
-
-        return executeJs(jsCode).thenApply(this::parseSearchResult);
+        return call("editor.find", query).thenApply(this::parseSearchResult);
     }
 
     public CompletableFuture<SearchResult> findNext() {
-        return executeJs("editor.findNext();").thenApply(this::parseSearchResult);
+        return call("editor.findNext").thenApply(this::parseSearchResult);
     }
 
     public CompletableFuture<SearchResult> findPrevious() {
-        return executeJs("editor.findPrevious();").thenApply(this::parseSearchResult);
+        return call("editor.findPrevious").thenApply(this::parseSearchResult);
     }
 
     public CompletableFuture<SearchResult> clearSearch() {
-        return executeJs("editor.clearSearch();").thenApply(this::parseSearchResult);
+        return call("editor.clearSearch").thenApply(this::parseSearchResult);
     }
 
     public CompletableFuture<SearchResult> goTo(int number) {
-        String jsCode = String.format("editor.goTo(%d);", number);
-        return executeJs(jsCode).thenApply(this::parseSearchResult);
+        return call("editor.goTo", number).thenApply(this::parseSearchResult);
     }
 
     public CompletableFuture<String> getNoteContent() {
-        return executeJs("editor.getNoteContent();");
+        return call("editor.getNoteContent");
     }
 
     public CompletableFuture<String> getFrontMatter(boolean jsonFormat) {
-        String jsCode = jsonFormat ? "editor.getFrontMatterJSON();" : "editor.getFrontMatterYAML();";
-        return executeJs(jsCode);
+        return call(jsonFormat ? "editor.getFrontMatterJSON" : "editor.getFrontMatterYAML");
     }
 
     public CompletableFuture<String> getDoc() {
-        return executeJs("editor.getDoc();");
+        return call("editor.getDoc");
     }
 
     public CompletableFuture<String> getHtml() {
-        return executeJs("editor.getHTML();");
+        return call("editor.getHTML");
     }
 
     public CompletableFuture<String> getMarkdown() {
-        return executeJs("editor.getMarkdown();");
+        return call("editor.getMarkdown");
     }
 
     public void format(FormatType format) {
         switch (format) {
-            case BOLD -> executeJs("editor.format('bold');");
-            case ITALIC -> executeJs("editor.format('italic');");
-            case STRIKETHROUGH -> executeJs("editor.format('strikethrough');");
-            case HIGHLIGHT -> executeJs("editor.format('highlight');");
-            case UNDERLINE -> executeJs("editor.format('underline');");
-            case COMMENT -> executeJs("editor.format('comment');");
-            case CODE -> executeJs("editor.format('code');");
-            case MATH -> executeJs("editor.format('math');");
-            case CLEAR -> executeJs("editor.format('clear');");
+            case BOLD -> call("editor.format", "bold");
+            case ITALIC -> call("editor.format", "italic");
+            case STRIKETHROUGH -> call("editor.format", "strikethrough");
+            case HIGHLIGHT -> call("editor.format", "highlight");
+            case UNDERLINE -> call("editor.format", "underline");
+            case COMMENT -> call("editor.format", "comment");
+            case CODE -> call("editor.format", "code");
+            case MATH -> call("editor.format", "math");
+            case CLEAR -> call("editor.format", "clear");
         }
     }
 
     public void paragraph(ParagraphType paragraph) {
         switch (paragraph) {
-            case BULLET_LIST -> executeJs("editor.paragraph('bullet-list');");
-            case ORDERED_LIST -> executeJs("editor.paragraph('ordered-list');");
-            case HEADING_1 -> executeJs("editor.paragraph('heading1');");
-            case HEADING_2 -> executeJs("editor.paragraph('heading2');");
-            case HEADING_3 -> executeJs("editor.paragraph('heading3');");
-            case HEADING_4 -> executeJs("editor.paragraph('heading4');");
-            case HEADING_5 -> executeJs("editor.paragraph('heading5');");
-            case HEADING_6 -> executeJs("editor.paragraph('heading6');");
-            case QUOTE -> executeJs("editor.paragraph('quote');");
-            case BODY -> executeJs("editor.paragraph('body');");
+            case BULLET_LIST -> call("editor.paragraph", "bullet-list");
+            case ORDERED_LIST -> call("editor.paragraph", "ordered-list");
+            case HEADING_1 -> call("editor.paragraph", "heading1");
+            case HEADING_2 -> call("editor.paragraph", "heading2");
+            case HEADING_3 -> call("editor.paragraph", "heading3");
+            case HEADING_4 -> call("editor.paragraph", "heading4");
+            case HEADING_5 -> call("editor.paragraph", "heading5");
+            case HEADING_6 -> call("editor.paragraph", "heading6");
+            case QUOTE -> call("editor.paragraph", "quote");
+            case BODY -> call("editor.paragraph", "body");
         }
     }
 
     public void link(LinkType link) {
         switch (link) {
-            case NOTE_LINK -> executeJs("editor.link('note');");
-            case EXTERNAL_LINK -> executeJs("editor.link('external');");
+            case NOTE_LINK -> call("editor.link", "note");
+            case EXTERNAL_LINK -> call("editor.link", "external");
         }
     }
 
     public void insert(String content) {
-        String jsCode = String.format("editor.insert(%s);",
-                toJsString(content));
-
-        executeJs(jsCode);
+        call("editor.insert", content);
     }
 
     public CompletableFuture<Boolean> canCreateLinks() {
-        return executeJs("editor.canCreateLinks()")
+        return call("editor.canCreateLinks")
                 .thenApply("true"::equals);
     }
 
     public void copy() {
-        executeJs("editor.copy();");
+        call("editor.copy");
     }
 
     public void cut() {
-        executeJs("editor.cut();");
+        call("editor.cut");
     }
 
     public void paste() {
-        executeJs("editor.paste();");
+        call("editor.paste");
     }
 
     public void selectAll() {
-        executeJs("editor.selectAll();");
+        call("editor.selectAll");
     }
 
     public void focus() {
-        executeJs("editor.focus();");
+        call("editor.focus");
     }
 
     public void destroy() {
-        executeJs("editor.destroy();");
+        call("editor.destroy");
     }
 
     public URL getEditorHtmlSource() {
@@ -251,44 +258,94 @@ public class EditorImpl implements Editor {
         }
     }
 
-    private String toJsString(String input) {
-        if (input == null) return "null";
-        return "'" + escapeForJsString(input) + "'";
+    public void addNoteChangeListener(NoteChangeListener listener) {
+        noteChangeListeners.add(listener);
+    }
+
+    public void removeNoteChangeListener(NoteChangeListener listener) {
+        noteChangeListeners.remove(listener);
     }
 
-    private CompletableFuture<String> executeJs(String jsCode) {
+    // вызываются из JS в потоке FX; изменения маленькие, поэтому передаются слушателям сразу, без runLater
+    public void onNoteReset(String content, boolean clean) {
+        for (NoteChangeListener listener : noteChangeListeners) {
+            listener.onNoteReset(content, clean);
+        }
+    }
+
+    public void onNoteChanged(int version, int start, int end, String text) {
+        for (NoteChangeListener listener : noteChangeListeners) {
+            listener.onNoteChanged(version, start, end, text);
+        }
+    }
+
+    /**
+     * Ставит вызов функции JS в очередь; все вызовы, сделанные до ближайшего такта FX, выполняются одним скриптом
+     */
+    private CompletableFuture<String> call(String function, Object... args) {
         CompletableFuture<String> future = new CompletableFuture<>();
+        commands.add(new Command(function, args, future));
 
-        Platform.runLater(() -> {
-            try {
-                if (!isLoaded) {
-                    webEngine.getLoadWorker().stateProperty().addListener((obs, old, newState) -> {
-                        if (newState == Worker.State.SUCCEEDED) {
-                            executeJavaScriptSafely(jsCode, future);
-                        } else if (newState == Worker.State.FAILED || newState == Worker.State.CANCELLED) {
-                            future.completeExceptionally(new RuntimeException("Page failed to load"));
-                        }
-                    });
+        if (flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(this::flushCommands);
+        }
+        return future;
+    }
+
+    private void flushCommands() {
+        flushScheduled.set(false);
+        // до загрузки страницы команды ждут в очереди, их отправит обработчик загрузки
+        if (!isLoaded) return;
+
+        List<Command> batch = new ArrayList<>();
+        for (Command command; (command = commands.poll()) != null; ) {
+            batch.add(command);
+        }
+        if (batch.isEmpty()) return;
+
+        try {
+            JSObject result = (JSObject) webEngine.executeScript(buildBatchScript(batch));
+            JSObject values = (JSObject) result.getSlot(0);
+            JSObject errors = (JSObject) result.getSlot(1);
+
+            for (int i = 0; i < batch.size(); i++) {
+                Object value = values.getSlot(i);
+                if (Boolean.TRUE.equals(errors.getSlot(i))) {
+                    batch.get(i).future().completeExceptionally(new JSException(String.valueOf(value)));
                 } else {
-                    executeJavaScriptSafely(jsCode, future);
+                    batch.get(i).future().complete(value != null ? value.toString() : null);
                 }
-            } catch (Exception e) {
-                future.completeExceptionally(e);
             }
-        });
-
-        return future;
+        } catch (Exception e) {
+            batch.forEach(command -> command.future().completeExceptionally(e));
+        }
     }
 
-    private void executeJavaScriptSafely(String jsCode, CompletableFuture<String> future) {
-        Platform.runLater(() -> {
-            try {
-                Object result = webEngine.executeScript(jsCode);
-                future.complete(result != null ? result.toString() : null);
-            } catch (Exception e) {
-                future.completeExceptionally(e);
+    /**
+     * Аргументы кладутся в массив {@link #ARGS_MEMBER}, скрипт ссылается на них по индексу.
+     * Ошибка одной команды не прерывает остальные.
+     */
+    private String buildBatchScript(List<Command> batch) {
+        StringBuilder script = new StringBuilder("(function (a) { var r = [], e = [];");
+        int arg = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Command command = batch.get(i);
+            script.append(" try { r[").append(i).append("] = ").append(command.function()).append('(');
+            for (int j = 0; j < command.args().length; j++) {
+                if (j > 0) script.append(", ");
+                bridgeArgs.setSlot(arg, command.args()[j]);
+                script.append("a[").append(arg++).append(']');
             }
-        });
+            script.append("); } catch (x) { r[").append(i).append("] = String(x); e[").append(i).append("] = true; }");
+        }
+        script.append(" a.length = 0; return [r, e]; })(window.").append(ARGS_MEMBER).append(')');
+        return script.toString();
+    }
+
+    private void failCommands(Exception e) {
+        for (Command command; (command = commands.poll()) != null; ) {
+            command.future().completeExceptionally(e);
+        }
     }
 
     private SearchResult parseSearchResult(String json) {
@@ -296,8 +353,7 @@ public class EditorImpl implements Editor {
             return null;
         }
         try {
-            ObjectMapper mapper = new ObjectMapper();
-            return mapper.readValue(json, SearchResult.class);
+            return MAPPER.readValue(json, SearchResult.class);
         } catch (Exception e) {
             throw new RuntimeException("Failed to parse search result", e);
         }
@@ -317,12 +373,6 @@ public class EditorImpl implements Editor {
         return clipboard.hasString() ? clipboard.getString() : "";
     }
 
-    private String escapeForJsString(String input) {
-        return input
-                .replace("\\", "\\\\")
-                .replace("'", "\\'")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+    private record Command(String function, Object[] args, CompletableFuture<String> future) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,17 @@
+package org.example.tonpad.core.editor.listener;
+
+/**
+ * Изменения текста заметки в редакторе; вызывается в потоке FX в порядке изменений
+ */
+public interface NoteChangeListener {
+
+    /**
+     * Редактор прислал текст целиком; clean - текст совпадает с только что загруженным
+     */
+    void onNoteReset(String content, boolean clean);
+
+    /**
+     * Фрагмент [start, end) текста заменён на text
+     */
+    void onNoteChanged(int version, int start, int end, String text);
+}
@@ -1,9 +1,30 @@
 package org.example.tonpad.core.files;
 
 import java.nio.file.Path;
+import java.util.Optional;
 
 public interface CryptoFileService {
+
+    enum Operation { REENCRYPT, DECRYPT, ENCRYPT }
+
+    /**
+     * Массовая операция, после которой в хранилище остался журнал
+     *
+     * @param processedFiles сколько файлов она успела обработать
+     */
+    record InterruptedRun(Operation operation, long processedFiles) {}
+
     void reEncryptFiles(byte[] oldKey, byte[] newKey, Path root);
+    void reEncryptFiles(byte[] oldKey, byte[] newKey, Path root, CryptoProgressListener listener);
     void decryptFiles(byte[] oldKey, Path root);
+    void decryptFiles(byte[] oldKey, Path root, CryptoProgressListener listener);
     void encryptFiles(byte[] newKey, Path root);
+    void encryptFiles(byte[] newKey, Path root, CryptoProgressListener listener);
+
+    /**
+     * Повторный запуск той же операции с тем же ключом продолжит её с места остановки
+     */
+    Optional<InterruptedRun> findInterruptedRun(Path root);
+
+    void discardInterruptedRun(Path root);
 }
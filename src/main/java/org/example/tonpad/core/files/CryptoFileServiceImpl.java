@@ -1,9 +1,28 @@
 package org.example.tonpad.core.files;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Stream;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 
 import org.example.tonpad.core.exceptions.CustomIOException;
 import org.example.tonpad.core.service.crypto.Encryptor;
@@ -21,58 +40,23 @@ import lombok.extern.slf4j.Slf4j;
 @Slf4j
 @RequiredArgsConstructor
 public class CryptoFileServiceImpl implements CryptoFileService {
-    private final FileSystemService fileSystemService;
+    private final VaultScanner vaultScanner;
     private final VaultSession vaultSession;
     private final EncryptorFactory encryptorFactory;
 
-    private static final Set<String> NAME_SKIP = Set.of(
-        ".DS_Store", "Thumbs.db", "desktop.ini"
-    );
+    private static final String JOURNAL_NAME = ".crypto-journal";
 
-    private static final Set<String> DIR_SKIP = Set.of(
-        ".git", ".idea", "node_modules"
-    );
+    private static final String JOURNAL_ERROR = "Crypto journal error";
 
-    private static boolean looksBackupOrTemp(String name) {
-        return name.endsWith("~") || name.startsWith("~$") || name.startsWith(".$");
-    }
-
-    // Разрешен ли файл к обработке по пути и расширению
-    private boolean shouldProcess(Path file) {
-        try {
-            if (!Files.isRegularFile(file) || Files.isSymbolicLink(file)) return false;
-
-            // пропускаем скрытые/служебные
-            String base = file.getFileName().toString();
-            if (base.startsWith(".")) return false;
-            try {
-                if (Files.isHidden(file)) return false;
-            } catch (IOException ignore) { }
-            if (NAME_SKIP.contains(base)) return false;
-            if (looksBackupOrTemp(base)) return false;
-
-            if (!fileSystemService.isMarkdownFile(base))
-                return false;
-
-            // исключаем каталоги по имени в пути
-            for (Path p : file) {
-                String seg = p.toString();
-                if (DIR_SKIP.contains(seg)) return false;
-            }
-            return true;
-        } catch (Exception e) {
-            log.debug("skip {} due to filter error: {}", file, e.toString());
-            return false;
-        }
-    }
+    private static final int WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
 
-    // Наш формат шифрования определяется заголовком
-    private static boolean looksEncrypted(String data) {
-        return data != null && data.startsWith(AesGcmEncryptor.HEADER);
+    @Override
+    public void reEncryptFiles(byte[] oldKeyOrNull, byte[] newKey, Path root) {
+        reEncryptFiles(oldKeyOrNull, newKey, root, CryptoProgressListener.NONE);
     }
 
     @Override
-    public void reEncryptFiles(byte[] oldKeyOrNull, byte[] newKey, Path root) {
+    public void reEncryptFiles(byte[] oldKeyOrNull, byte[] newKey, Path root, CryptoProgressListener listener) {
         final boolean noPwdMode = vaultSession.isOpendWithNoPassword();
         final boolean withKeyMode = vaultSession.isProtectionEnabled();
 
@@ -82,53 +66,31 @@ public class CryptoFileServiceImpl implements CryptoFileService {
         Encryptor decryptor = (oldKeyOrNull != null) ? encryptorFactory.encryptorForKey(oldKeyOrNull) : null;
         Encryptor encryptor = encryptorFactory.encryptorForKey(newKey);
 
-        long total = 0, filteredOut = 0, skipped = 0, changed = 0, errors = 0;
-
-        try (Stream<Path> files = Files.walk(root)) {
-            for (Path file : (Iterable<Path>) files::iterator) {
-                total++;
-                if (!shouldProcess(file)) { filteredOut++; continue; }
-
-                try {
-                    String data = fileSystemService.readFile(file);
-                    boolean isEnc = looksEncrypted(data);
-
-                    if (noPwdMode) {
-                        // Шифруем только открытые .md, поверх
-                        if (isEnc) { skipped++; continue; }
-                        String encrypted = encryptor.encrypt(data == null ? "" : data, null);
-                        fileSystemService.writeFile(file, encrypted);
-                        changed++;
-                    } else {
-                        // Перешифрование только наших .md, уже зашифрованных
-                        if (!isEnc) { skipped++; continue; }
-                        if (decryptor == null) { skipped++; continue; }
-                        String plain = decryptor.decrypt(data, null);
-                        String reenc = encryptor.encrypt(plain == null ? "" : plain, null);
-                        fileSystemService.writeFile(file, reenc);
-                        changed++;
-                    }
-                } catch (DecryptionException e) {
-                    // «Чужие» зашифрованные — пропускаем
-                    skipped++;
-                } catch (EncryptionException e) {
-                    errors++;
-                    log.info("[REENCRYPT] encrypt error {}: {}", file, e.toString());
-                } catch (Exception e) {
-                    errors++;
-                    log.info("[REENCRYPT] io error {}: {}", file, e.toString());
+        if (noPwdMode) {
+            // Шифруем только открытые .md, поверх
+            runBulk(Operation.REENCRYPT, root, newKey, listener, isEnc -> !isEnc, (in, out) -> {
+                try (OutputStream enc = encryptor.encryptingStream(out, null)) {
+                    in.transferTo(enc);
                 }
-            }
-        } catch (IOException e) {
-            throw new CustomIOException(e.getMessage());
+            });
+        } else {
+            // Перешифрование только наших .md, уже зашифрованных
+            runBulk(Operation.REENCRYPT, root, newKey, listener, isEnc -> isEnc && decryptor != null, (in, out) -> {
+                try (InputStream plain = decryptor.decryptingStream(in, null);
+                     OutputStream enc = encryptor.encryptingStream(out, null)) {
+                    plain.transferTo(enc);
+                }
+            });
         }
-
-        log.info("[REENCRYPT] done: total={}, filteredOut={}, changed={}, skipped={}, errors={}",
-                total, filteredOut, changed, skipped, errors);
     }
 
     @Override
     public void decryptFiles(byte[] oldKey, Path root) {
+        decryptFiles(oldKey, root, CryptoProgressListener.NONE);
+    }
+
+    @Override
+    public void decryptFiles(byte[] oldKey, Path root, CryptoProgressListener listener) {
         log.info("[DECRYPT] start: root='{}', keyLen={}", root, oldKey == null ? 0 : oldKey.length);
         if (oldKey == null) {
             log.info("[DECRYPT] no key -> nothing to decrypt");
@@ -136,63 +98,237 @@ public class CryptoFileServiceImpl implements CryptoFileService {
         }
         Encryptor decryptor = encryptorFactory.encryptorForKey(oldKey);
 
-        long total = 0, filteredOut = 0, changed = 0, skipped = 0, errors = 0;
-        try (Stream<Path> files = Files.walk(root)) {
-            for (Path file : (Iterable<Path>) files::iterator) {
-                total++;
-                if (!shouldProcess(file)) { filteredOut++; continue; }
-
-                try {
-                    String data = fileSystemService.readFile(file);
-                    if (!looksEncrypted(data)) { skipped++; continue; }
-
-                    String decrypted = decryptor.decrypt(data, null);
-                    fileSystemService.writeFile(file, decrypted);
-                    changed++;
-                } catch (DecryptionException e) {
-                    skipped++;
-                } catch (Exception e) {
-                    errors++;
-                    log.info("[DECRYPT] error {}: {}", file, e.toString());
-                }
+        runBulk(Operation.DECRYPT, root, oldKey, listener, isEnc -> isEnc, (in, out) -> {
+            try (InputStream plain = decryptor.decryptingStream(in, null)) {
+                plain.transferTo(out);
             }
-        } catch (IOException e) {
-            throw new CustomIOException(e.getMessage());
-        }
-        log.info("[DECRYPT] done: total={}, filteredOut={}, changed={}, skipped={}, errors={}",
-                total, filteredOut, changed, skipped, errors);
+        });
     }
 
     @Override
     public void encryptFiles(byte[] newKey, Path root) {
+        encryptFiles(newKey, root, CryptoProgressListener.NONE);
+    }
+
+    @Override
+    public void encryptFiles(byte[] newKey, Path root, CryptoProgressListener listener) {
         log.info("[ENCRYPT] start: root='{}', keyLen={}", root, newKey == null ? 0 : newKey.length);
         Encryptor encryptor = encryptorFactory.encryptorForKey(newKey);
 
-        long total = 0, filteredOut = 0, changed = 0, skipped = 0, errors = 0;
-        try (Stream<Path> files = Files.walk(root)) {
-            for (Path file : (Iterable<Path>) files::iterator) {
-                total++;
-                if (!shouldProcess(file)) { filteredOut++; continue; }
-
-                try {
-                    String data = fileSystemService.readFile(file);
-                    if (looksEncrypted(data)) { skipped++; continue; }
-
-                    String encrypted = encryptor.encrypt(data == null ? "" : data, null);
-                    fileSystemService.writeFile(file, encrypted);
-                    changed++;
-                } catch (EncryptionException e) {
-                    errors++;
-                    log.info("[ENCRYPT] encrypt error {}: {}", file, e.toString());
-                } catch (Exception e) {
-                    errors++;
-                    log.info("[ENCRYPT] error {}: {}", file, e.toString());
-                }
+        runBulk(Operation.ENCRYPT, root, newKey, listener, isEnc -> !isEnc, (in, out) -> {
+            try (OutputStream enc = encryptor.encryptingStream(out, null)) {
+                in.transferTo(enc);
+            }
+        });
+    }
+
+    /**
+     * Потоковое преобразование содержимого файла во временный файл
+     */
+    @FunctionalInterface
+    private interface FileTransform {
+        void apply(InputStream in, OutputStream out) throws IOException;
+    }
+
+    @Override
+    public Optional<InterruptedRun> findInterruptedRun(Path root) {
+        Path path = root.resolve(JOURNAL_NAME);
+        if (!Files.exists(path)) return Optional.empty();
+
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            int colon = header == null ? -1 : header.indexOf(':');
+            if (colon < 0) return Optional.empty();
+
+            Operation operation;
+            try {
+                operation = Operation.valueOf(header.substring(0, colon));
+            } catch (IllegalArgumentException e) {
+                return Optional.empty();
+            }
+
+            long processed = 0;
+            while (reader.readLine() != null) processed++;
+            return Optional.of(new InterruptedRun(operation, processed));
+        } catch (IOException e) {
+            throw new CustomIOException(JOURNAL_ERROR, e);
+        }
+    }
+
+    @Override
+    public void discardInterruptedRun(Path root) {
+        try {
+            Files.deleteIfExists(root.resolve(JOURNAL_NAME));
+        } catch (IOException e) {
+            throw new CustomIOException(JOURNAL_ERROR, e);
+        }
+    }
+
+    private void runBulk(Operation operation, Path root, byte[] key, CryptoProgressListener listener,
+                         Predicate<Boolean> accepts, FileTransform transform) {
+        String tag = operation.name();
+        VaultSnapshot snapshot = vaultScanner.scan(root);
+        List<Path> files = snapshot.notes().stream().map(ScannedEntry::path).toList();
+        long total = snapshot.entries().size();
+        long filteredOut = total - files.size();
+
+        AtomicLong changed = new AtomicLong();
+        AtomicLong skipped = new AtomicLong();
+        AtomicLong errors = new AtomicLong();
+        AtomicLong processed = new AtomicLong();
+        long resumed;
+
+        try (Journal journal = Journal.open(root, tag + ":" + fingerprint(key))) {
+            List<Path> pending = new ArrayList<>(files.size());
+            for (Path file : files) {
+                if (!journal.isDone(relative(root, file))) pending.add(file);
+            }
+            resumed = files.size() - pending.size();
+            if (resumed > 0) log.info("[{}] resuming interrupted run: {} files already done", tag, resumed);
+
+            long toProcess = pending.size();
+            List<Callable<Void>> tasks = new ArrayList<>(pending.size());
+            for (Path file : pending) {
+                tasks.add(() -> {
+                    try {
+                        if (transformAtomically(file, accepts, transform)) {
+                            changed.incrementAndGet();
+                        } else {
+                            skipped.incrementAndGet();
+                        }
+                        journal.markDone(relative(root, file));
+                    } catch (DecryptionException e) {
+                        // «Чужие» зашифрованные — пропускаем
+                        skipped.incrementAndGet();
+                        journal.markDone(relative(root, file));
+                    } catch (EncryptionException e) {
+                        errors.incrementAndGet();
+                        log.info("[{}] encrypt error {}: {}", tag, file, e.toString());
+                    } catch (Exception e) {
+                        errors.incrementAndGet();
+                        log.info("[{}] io error {}: {}", tag, file, e.toString());
+                    }
+                    listener.onProgress(processed.incrementAndGet(), toProcess);
+                    return null;
+                });
+            }
+
+            ExecutorService pool = Executors.newFixedThreadPool(WORKERS, r -> {
+                Thread thread = new Thread(r, "crypto-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try {
+                pool.invokeAll(tasks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                log.info("[{}] interrupted, journal kept for resume", tag);
+                return;
+            } finally {
+                pool.shutdownNow();
             }
+
+            if (errors.get() == 0) journal.complete();
         } catch (IOException e) {
-            throw new CustomIOException(e.getMessage());
+            throw new CustomIOException(JOURNAL_ERROR, e);
+        }
+
+        log.info("[{}] done: total={}, filteredOut={}, resumed={}, changed={}, skipped={}, errors={}",
+                tag, total, filteredOut, resumed, changed.get(), skipped.get(), errors.get());
+    }
+
+    // Формат определяется по первым байтам; результат пишется во временный файл и атомарно подменяет исходный
+    private static boolean transformAtomically(Path file, Predicate<Boolean> accepts, FileTransform transform)
+            throws IOException {
+        Path tmp = file.resolveSibling("." + file.getFileName() + ".tmp");
+        try {
+            try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+                in.mark(AesGcmEncryptor.PREFIX_LENGTH);
+                byte[] prefix = in.readNBytes(AesGcmEncryptor.PREFIX_LENGTH);
+                in.reset();
+                if (!accepts.test(AesGcmEncryptor.looksEncrypted(prefix))) return false;
+
+                try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                    transform.apply(in, out);
+                }
+            }
+            try {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return true;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    private static String relative(Path root, Path file) {
+        return root.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static String fingerprint(byte[] key) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(key));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Журнал массовой операции в корне хранилища: первая строка - операция и отпечаток ключа,
+     * далее - относительные пути уже обработанных файлов. Удаляется после успешного завершения.
+     */
+    private static final class Journal implements Closeable {
+        private final Path path;
+        private final Set<String> done;
+        private final BufferedWriter writer;
+        private boolean completed = false;
+
+        private Journal(Path path, Set<String> done, BufferedWriter writer) {
+            this.path = path;
+            this.done = done;
+            this.writer = writer;
+        }
+
+        static Journal open(Path root, String id) throws IOException {
+            Path path = root.resolve(JOURNAL_NAME);
+            Set<String> done = new HashSet<>();
+
+            if (Files.exists(path)) {
+                List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+                if (!lines.isEmpty() && lines.get(0).equals(id)) {
+                    done.addAll(lines.subList(1, lines.size()));
+                    return new Journal(path, done, Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                            StandardOpenOption.APPEND));
+                }
+            }
+
+            BufferedWriter writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+            writer.write(id);
+            writer.newLine();
+            writer.flush();
+            return new Journal(path, done, writer);
+        }
+
+        boolean isDone(String relative) {
+            return done.contains(relative);
+        }
+
+        synchronized void markDone(String relative) throws IOException {
+            writer.write(relative);
+            writer.newLine();
+            writer.flush();
+        }
+
+        void complete() {
+            completed = true;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            writer.close();
+            if (completed) Files.deleteIfExists(path);
         }
-        log.info("[ENCRYPT] done: total={}, filteredOut={}, changed={}, skipped={}, errors={}",
-                total, filteredOut, changed, skipped, errors);
     }
 }
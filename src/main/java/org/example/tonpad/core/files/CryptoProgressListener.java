@@ -0,0 +1,15 @@
+package org.example.tonpad.core.files;
+
+/**
+ * Прогресс массового шифрования/расшифрования файлов хранилища
+ *
+ * <p>Вызывается из рабочих потоков после обработки каждого файла, поэтому реализация должна быть потокобезопасной
+ * и не должна обращаться к JavaFX напрямую.</p>
+ */
+@FunctionalInterface
+public interface CryptoProgressListener {
+
+    CryptoProgressListener NONE = (processed, total) -> { };
+
+    void onProgress(long processed, long total);
+}
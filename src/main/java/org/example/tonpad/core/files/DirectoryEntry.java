@@ -0,0 +1,9 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Элемент содержимого одного каталога
+ */
+public record DirectoryEntry(Path path, boolean directory) {
+}
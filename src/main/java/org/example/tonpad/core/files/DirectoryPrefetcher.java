@@ -0,0 +1,91 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.sort.SortOptions;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Заранее читает содержимое каталогов, которые пользователь, скорее всего, раскроет следующими
+ *
+ * <p>Прочитанный список отдаётся один раз: следующий запрос того же каталога снова читает диск.
+ * Списки, прочитанные до изменения каталога ({@link #invalidate}), не сохраняются.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DirectoryPrefetcher {
+
+    private static final int MAX_LISTINGS = 512;
+
+    private final FileSystemService fileSystemService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "tree-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Map<Path, Listing> listings = new ConcurrentHashMap<>();
+
+    // меняется при каждой инвалидации: список, начатый до неё, выбрасывается
+    private final AtomicLong version = new AtomicLong();
+
+    public List<DirectoryEntry> list(Path directory, SortOptions options) {
+        Listing listing = listings.remove(directory);
+        if (listing != null && listing.options().equals(options)) return listing.entries();
+        return fileSystemService.listDirectory(directory, options);
+    }
+
+    public void prefetch(Collection<Path> directories, SortOptions options) {
+        for (Path directory : directories) {
+            if (listings.size() >= MAX_LISTINGS) return;
+            try {
+                executor.execute(() -> load(directory, options));
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    public void invalidate(Path directory) {
+        version.incrementAndGet();
+        listings.remove(directory);
+    }
+
+    public void clear() {
+        version.incrementAndGet();
+        listings.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void load(Path directory, SortOptions options) {
+        if (listings.containsKey(directory) || listings.size() >= MAX_LISTINGS) return;
+
+        long started = version.get();
+        try {
+            List<DirectoryEntry> entries = fileSystemService.listDirectory(directory, options);
+            if (version.get() == started) listings.put(directory, new Listing(options, entries));
+        } catch (RuntimeException e) {
+            log.debug("skip prefetch of {}: {}", directory, e.toString());
+        }
+    }
+
+    private record Listing(SortOptions options, List<DirectoryEntry> entries) {
+    }
+}
@@ -1,8 +1,10 @@
 package org.example.tonpad.core.files;
 
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
+import java.util.function.Predicate;
 
 import org.example.tonpad.core.sort.SortOptions;
 
@@ -18,6 +20,8 @@ public interface FileSystemService {
 
     List<Path> findByNameContains(String rootDir, String substring);
 
+    List<Path> findByName(Path rootDir, Predicate<String> namePredicate);
+
     List<String> getAllFilesInDir(String directory);
 
     List<String> getAllFilesInDir(Path directory);
@@ -34,10 +38,24 @@ public interface FileSystemService {
 
     String readFile(Path path);
 
+    byte[] readBytes(Path path);
+
     void writeFile(String path, String content);
 
+    void writeBytes(Path path, byte[] content);
+
     void writeFile(Path path, String content);
 
+    /**
+     * Пишет текст в UTF-8 во временный файл по частям и атомарно подменяет им path
+     */
+    void writeFile(Path path, CharSequence content, WriteDurability durability);
+
+    /**
+     * Пишет оставшиеся байты буфера во временный файл и атомарно подменяет им path
+     */
+    void writeBytes(Path path, ByteBuffer content, WriteDurability durability);
+
     Path rename(String oldPath, String newPath);
 
     Path rename(Path oldPath, Path newPath);
@@ -54,6 +72,11 @@ public interface FileSystemService {
 
     FileTree getFileTreeSorted(Path path, SortOptions opt);
 
+    /**
+     * Содержимое одного каталога без обхода вложенных, отсортированное по opt
+     */
+    List<DirectoryEntry> listDirectory(Path directory, SortOptions opt);
+
     void copyFile(String path);
 
     void copyFile(Path path);
@@ -62,9 +85,14 @@ public interface FileSystemService {
 
     void cutFile(Path path);
 
-    void pasteFile(String path);
+    FileTransfer pasteFile(String path);
+
+    FileTransfer pasteFile(Path path);
 
-    void pasteFile(Path path);
+    /**
+     * Копирует или перемещает содержимое буфера в фоне
+     */
+    FileTransfer pasteFile(Path path, TransferProgressListener listener);
 
     boolean isMarkdownFile(String path);
 
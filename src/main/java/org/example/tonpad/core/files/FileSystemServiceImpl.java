@@ -1,27 +1,46 @@
 package org.example.tonpad.core.files;
 
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.TonpadConfig;
 import org.example.tonpad.core.exceptions.CustomIOException;
 import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.example.tonpad.core.repository.NotePathCache;
+import org.example.tonpad.core.service.FileNameIndexService;
 import org.example.tonpad.core.service.crypto.EncryptorFactory;
 import org.example.tonpad.core.session.VaultSession;
 import org.example.tonpad.core.sort.SortOptions;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 
-import org.springframework.util.FileSystemUtils;
-
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 @Service
@@ -45,9 +64,9 @@ public class FileSystemServiceImpl implements FileSystemService {
 
     private final static String FILE_WRITE_ERROR = "File write error";
 
-    private final static String FILE_SEARCH_ERROR = "File search error";
+    private static final int WRITE_CHUNK_CHARS = 8192;
 
-    private final static String FILE_COPY_ERROR = "File copy error";
+    private static final long DEFAULT_SYNC_INTERVAL_MS = 1000;
 
     private final static String RENAME_ERROR = "Rename error";
 
@@ -65,6 +84,34 @@ public class FileSystemServiceImpl implements FileSystemService {
 
     private final EncryptorFactory encryptorFactory;
 
+    private final NotePathCache notePathCache;
+
+    // сервис содержимого заметок сам пишет через этот сервис, поэтому берётся лениво
+    private final ObjectProvider<NoteContentService> noteContentService;
+
+    private final TonpadConfig config;
+
+    private final FileNameIndexService fileNameIndexService;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final VaultScanner vaultScanner;
+
+    private final FileTransferService fileTransferService;
+
+    private final TrashService trashService;
+
+    // каталоги, в которых в режиме PERIODIC подменялись файлы, а запись о подмене ещё не сброшена на диск
+    private final Set<Path> unsyncedDirs = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean syncScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "file-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public FileTree getFileTree(String path) {
         return getFileTree(Path.of(path));
     }
@@ -75,12 +122,23 @@ public class FileSystemServiceImpl implements FileSystemService {
     }
 
     public Optional<Path> findFileInDir(Path rootDir, String fileName) {
-        try (Stream<Path> elems = Files.walk(rootDir)) {
-            return elems.filter(el -> el.getFileName().toString().equals(fileName)).findFirst();
-        } catch (IOException e) {
-            log.warn(FILE_SEARCH_ERROR, e);
-            throw new CustomIOException(FILE_SEARCH_ERROR, e);
+        Path notesPath = vaultPathsContainer.getNotesPath();
+        if (notesPath != null && rootDir.startsWith(notesPath)) {
+            Path relativeRoot = notesPath.relativize(rootDir);
+            Optional<List<Path>> indexed = fileNameIndexService.findByName(fileName);
+            if (indexed.isPresent()) {
+                return indexed.get().stream()
+                        .filter(path -> path.startsWith(relativeRoot))
+                        .findFirst()
+                        .map(notesPath::resolve);
+            }
         }
+
+        if (rootDir.getFileName() != null && rootDir.getFileName().toString().equals(fileName)) return Optional.of(rootDir);
+        return vaultScanner.scan(rootDir).entries().stream()
+                .map(ScannedEntry::path)
+                .filter(path -> path.getFileName().toString().equals(fileName))
+                .findFirst();
     }
 
     public List<Path> findByNameContains(String rootDir, String substring)
@@ -91,13 +149,14 @@ public class FileSystemServiceImpl implements FileSystemService {
     public List<Path> findByNameContains(Path rootDir, String substring) {
         if (substring == null || substring.isBlank()) return List.of();
 
-        try (Stream<Path> elems = Files.walk(rootDir))
-        {
-            return elems.filter(p -> !p.equals(rootDir)).map(rootDir::relativize).filter(path -> path.getFileName().toString().contains(substring)).toList();
-        } catch (IOException e) {
-            log.warn(FILE_SEARCH_ERROR, e);
-            throw new CustomIOException(FILE_SEARCH_ERROR, e);
-        }
+        return findByName(rootDir, name -> name.contains(substring));
+    }
+
+    public List<Path> findByName(Path rootDir, Predicate<String> namePredicate) {
+        return vaultScanner.scan(rootDir).entries().stream()
+                .map(entry -> rootDir.relativize(entry.path()))
+                .filter(path -> namePredicate.test(path.getFileName().toString()))
+                .toList();
     }
 
     public List<String> getAllFilesInDir(String directory) {
@@ -160,17 +219,55 @@ public class FileSystemServiceImpl implements FileSystemService {
         }
     }
 
+    public byte[] readBytes(Path path) {
+        try {
+            return Files.readAllBytes(path);
+        } catch (IOException e) {
+            log.warn(FILE_READ_ERROR, e);
+            throw new CustomIOException(FILE_READ_ERROR, e);
+        }
+    }
+
     public void writeFile(String path, String content) {
         writeFile(Path.of(path), content);
     }
 
     public void writeFile(Path path, String content) {
-        try {
-            Files.writeString(path, content);
-        } catch (IOException e) {
-            log.warn(FILE_WRITE_ERROR, e);
-            throw new CustomIOException(FILE_WRITE_ERROR, e);
-        }
+        writeFile(path, content, defaultDurability());
+    }
+
+    public void writeBytes(Path path, byte[] content) {
+        writeBytes(path, ByteBuffer.wrap(content), defaultDurability());
+    }
+
+    public void writeFile(Path path, CharSequence content, WriteDurability durability) {
+        writeAtomically(path, durability, channel -> {
+            CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            ByteBuffer out = ByteBuffer.allocate((int) (WRITE_CHUNK_CHARS * encoder.maxBytesPerChar()));
+
+            // кодируем частями, не собирая весь текст в массив байт
+            int length = content.length();
+            int pos = 0;
+            while (pos < length) {
+                int end = Math.min(pos + WRITE_CHUNK_CHARS, length);
+                if (end < length && Character.isHighSurrogate(content.charAt(end - 1))) end--;
+
+                encoder.encode(CharBuffer.wrap(content.subSequence(pos, end)), out, end == length);
+                writeFully(channel, out);
+                pos = end;
+            }
+            encoder.encode(CharBuffer.allocate(0), out, true);
+            encoder.flush(out);
+            writeFully(channel, out);
+        });
+    }
+
+    public void writeBytes(Path path, ByteBuffer content, WriteDurability durability) {
+        writeAtomically(path, durability, channel -> {
+            while (content.hasRemaining()) channel.write(content);
+        });
     }
 
     public Path rename(String oldPath, String newPath) {
@@ -181,6 +278,8 @@ public class FileSystemServiceImpl implements FileSystemService {
         if (!oldPath.toFile().renameTo(newPath.toFile())) {
             throw new CustomIOException(RENAME_ERROR);
         }
+        evict(oldPath);
+        evict(newPath);
         
         return newPath;
     }
@@ -191,13 +290,25 @@ public class FileSystemServiceImpl implements FileSystemService {
 
     public void delete(Path path) {
         try {
+            // из дерева элемент пропадает сразу, а из .trash удаляется в фоне по истечении срока хранения
+            if (trashService.moveToTrash(path)) {
+                trashService.purge();
+                return;
+            }
             Files.walkFileTree(path, visitor);
         } catch (IOException e) {
             log.warn(DELETE_ERROR, e);
             throw new CustomIOException(DELETE_ERROR, e);
+        } finally {
+            evict(path);
         }
     }
 
+    private void evict(Path path) {
+        notePathCache.evict(path);
+        noteContentService.ifAvailable(service -> service.evict(path));
+    }
+
     public boolean exists(String path) {
         return exists(Path.of(path));
     }
@@ -211,28 +322,37 @@ public class FileSystemServiceImpl implements FileSystemService {
     }
 
     public FileTree getFileTreeSorted(Path path, SortOptions opt) {
-        try (Stream<Path> stream = Files.list(path)) {
-            List<Path> children = stream.filter(p -> !p.equals(path)).filter(p -> {
-                if(!opt.relevantOnly()) return true;
-                if(Files.isDirectory(p)) return true;
-                String name = p.getFileName() == null ? "" : p.getFileName().toString().toLowerCase();
-                return name.endsWith(".md");
-            }).toList();
-
-            Comparator<Path> cmp = makeComparator(opt);
-
-            List<FileTree> subtrees = new ArrayList<>(children.size());
-            children.stream().sorted(cmp).forEach(p -> {
-                if(Files.isDirectory(p)) subtrees.add(getFileTreeSorted(p, opt));
-                else subtrees.add(new FileTree(path.resolve(p.getFileName()), null));
-            });
-
-            return new FileTree(path, subtrees);
+        List<DirectoryEntry> entries = listDirectory(path, opt);
+
+        List<FileTree> subtrees = new ArrayList<>(entries.size());
+        for (DirectoryEntry entry : entries) {
+            if (entry.directory()) subtrees.add(getFileTreeSorted(entry.path(), opt));
+            else subtrees.add(new FileTree(entry.path(), null));
+        }
+        return new FileTree(path, subtrees);
+    }
+
+    public List<DirectoryEntry> listDirectory(Path directory, SortOptions opt) {
+        List<SortEntry> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path p : stream) {
+                SortEntry entry = readSortEntry(p);
+                if (opt.relevantOnly() && !entry.directory() && !entry.name().toLowerCase().endsWith(".md")) continue;
+                entries.add(entry);
+            }
         }
         catch (IOException e) {
             log.warn(DIR_READING_ERROR);
             throw new CustomIOException(DIR_READING_ERROR, e);
         }
+
+        entries.sort(makeComparator(opt));
+
+        List<DirectoryEntry> result = new ArrayList<>(entries.size());
+        for (SortEntry entry : entries) {
+            result.add(new DirectoryEntry(entry.path(), entry.directory()));
+        }
+        return result;
     }
 
     public void copyFile(Path path) {
@@ -252,33 +372,19 @@ public class FileSystemServiceImpl implements FileSystemService {
         cutFile(Path.of(path));
     }
 
-    public void pasteFile(String targetDir) {
-        pasteFile(Path.of(targetDir));
+    public FileTransfer pasteFile(String targetDir) {
+        return pasteFile(Path.of(targetDir));
     }
 
-    public void pasteFile(Path targetDir) {
+    public FileTransfer pasteFile(Path targetDir) {
+        return pasteFile(targetDir, TransferProgressListener.NONE);
+    }
 
-        for(Path filePath: buffer.getCopyBuffer()) {
-            if (!buffer.isCutMode()) {
-                Path dst = uniqueDest(targetDir, filePath);
-                try {
-                    FileSystemUtils.copyRecursively(filePath, dst);
-                } catch (IOException e) {
-                    log.warn(FILE_COPY_ERROR);
-                    throw new CustomIOException(FILE_COPY_ERROR, e);
-                }
-            } else {
-                try {
-                    Path dst = targetDir.resolve(filePath.getFileName());
-
-                    if (!Files.exists(dst))
-                        Files.move(filePath, dst);
-                } catch (IOException e) {
-                    log.warn(FILE_COPY_ERROR);
-                    throw new CustomIOException(FILE_COPY_ERROR, e);
-                }
-            }
-        }
+    public FileTransfer pasteFile(Path targetDir, TransferProgressListener listener) {
+        List<Path> sources = List.copyOf(buffer.getCopyBuffer());
+        return buffer.isCutMode()
+                ? fileTransferService.move(sources, targetDir, listener)
+                : fileTransferService.copy(sources, targetDir, listener);
     }
 
     public boolean isMarkdownFile(String path) {
@@ -292,12 +398,7 @@ public class FileSystemServiceImpl implements FileSystemService {
             return false;
         }
 
-        String fileName = path.getFileName().toString().toLowerCase();
-        return fileName.endsWith(".md") ||
-                fileName.endsWith(".markdown") ||
-                fileName.endsWith(".mdown") ||
-                fileName.endsWith(".mkd") ||
-                fileName.endsWith(".mdx");
+        return VaultScanner.isMarkdownName(path.getFileName().toString());
     }
 
 
@@ -364,57 +465,31 @@ public class FileSystemServiceImpl implements FileSystemService {
         showFileInExplorer(Path.of(path));
     }
 
-    private static Path uniqueDest(Path targetDir, Path src) {
-        String name = src.getFileName().toString();
-
-        String base;
-        String ext = "";
-        if (!Files.isDirectory(src)) {
-            int dot = name.lastIndexOf('.');
-            if (dot > 0 && dot < name.length() - 1) {
-                base = name.substring(0, dot);
-                ext  = name.substring(dot);
-            } else {
-                base = name;
-            }
-        } else {
-            base = name;
-        }
-
-        Path candidate = targetDir.resolve(name);
-        if (!Files.exists(candidate)) return candidate;
+    /**
+     * Атрибуты элемента директории, прочитанные один раз до сортировки
+     */
+    private record SortEntry(Path path, String name, boolean directory, long created) {
+    }
 
-        int n = 1;
-        while (true) {
-            String suffix = (n == 1) ? " copy" : " copy " + n;
-            String newName = base + suffix + ext;
-            candidate = targetDir.resolve(newName);
-            if (!Files.exists(candidate)) return candidate;
-            n++;
+    private SortEntry readSortEntry(Path p) {
+        Path fn = p.getFileName();
+        String name = fn == null ? p.toString() : fn.toString();
+        try {
+            BasicFileAttributes attr = Files.readAttributes(p, BasicFileAttributes.class);
+            FileTime time = attr.creationTime();
+            long created = time != null ? time.toMillis() : attr.lastModifiedTime().toMillis();
+            return new SortEntry(p, name, attr.isDirectory(), created);
+        } catch (IOException ex) {
+            // битая ссылка или файл удалён во время обхода
+            return new SortEntry(p, name, false, 0L);
         }
     }
 
-    private Comparator<Path> makeComparator(SortOptions opt) {
-        Comparator<Path> byName = Comparator.comparing(
-            (Path p) -> {
-                Path fn = p.getFileName();
-                return (fn == null ? p.toString() : fn.toString());
-            },
-            String.CASE_INSENSITIVE_ORDER
-        );
-
-        var byCreated = java.util.Comparator.comparingLong((Path p) -> {
-            try {
-                BasicFileAttributes attr = Files.readAttributes(p, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
-                FileTime time = attr.creationTime();
-                if (time != null) return time.toMillis();
-                return attr.lastModifiedTime().toMillis();
-            } catch (IOException ex) {
-                return 0L;
-            }
-        });
+    private Comparator<SortEntry> makeComparator(SortOptions opt) {
+        Comparator<SortEntry> byName = Comparator.comparing(SortEntry::name, String.CASE_INSENSITIVE_ORDER);
+        Comparator<SortEntry> byCreated = Comparator.comparingLong(SortEntry::created);
 
-        Comparator<Path> base = switch (opt.key()) {
+        Comparator<SortEntry> base = switch (opt.key()) {
             case NAME_ASC -> byName;
             case NAME_DESC -> byName.reversed();
             case CREATED_NEWEST -> byCreated.reversed().thenComparing(byName);
@@ -422,7 +497,7 @@ public class FileSystemServiceImpl implements FileSystemService {
         };
 
         if(opt.foldersFirst()) {
-            Comparator<Path> byIsDirDesc = Comparator.<Path, Integer>comparing(p -> Files.isDirectory(p) ? 1 : 0).reversed();
+            Comparator<SortEntry> byIsDirDesc = Comparator.comparing(SortEntry::directory).reversed();
             base = byIsDirDesc.thenComparing(base);
         }
         return base;
@@ -448,6 +523,90 @@ public class FileSystemServiceImpl implements FileSystemService {
         throw new CustomIOException(FILE_OPENING_IN_NOTEPAD_ERROR);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        syncExecutor.shutdown();
+        syncPending();
+    }
+
+    // содержимое пишется во временный файл рядом и атомарно подменяет исходный: при сбое остаётся старая версия
+    private void writeAtomically(Path path, WriteDurability durability, ChannelWriter writer) {
+        Path tmp = null;
+        try {
+            // у каждой записи свой временный файл: параллельные записи одного файла не пишут друг другу в середину
+            tmp = Files.createTempFile(path.toAbsolutePath().getParent(), "." + path.getFileName(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                writer.write(channel);
+                // без сброса до подмены после отключения питания на месте файла может оказаться пустой
+                if (durability != WriteDurability.NONE) channel.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            if (durability == WriteDurability.ON_CLOSE) syncDirectory(path.toAbsolutePath().getParent());
+            else if (durability == WriteDurability.PERIODIC) scheduleSync(path.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            log.warn(FILE_WRITE_ERROR, e);
+            throw new CustomIOException(FILE_WRITE_ERROR, e);
+        } finally {
+            try {
+                if (tmp != null) Files.deleteIfExists(tmp);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+
+    private WriteDurability defaultDurability() {
+        TonpadConfig.FileWrites fileWrites = config.fileWrites();
+        return fileWrites == null || fileWrites.durability() == null ? WriteDurability.ON_CLOSE : fileWrites.durability();
+    }
+
+    private void scheduleSync(Path dir) {
+        if (dir == null) return;
+        unsyncedDirs.add(dir);
+        if (!syncScheduled.compareAndSet(false, true)) return;
+
+        long interval = config.fileWrites() == null ? DEFAULT_SYNC_INTERVAL_MS : config.fileWrites().syncIntervalMs();
+        try {
+            syncExecutor.schedule(() -> {
+                syncScheduled.set(false);
+                syncPending();
+            }, interval, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // приложение завершается - оставшееся сбросит shutdown
+            syncScheduled.set(false);
+        }
+    }
+
+    private void syncPending() {
+        for (Iterator<Path> it = unsyncedDirs.iterator(); it.hasNext(); ) {
+            Path dir = it.next();
+            it.remove();
+            syncDirectory(dir);
+        }
+    }
+
+    // запись о переименовании хранится в каталоге; открыть каталог можно не на всех ОС - тогда полагаемся на ФС
+    private static void syncDirectory(Path dir) {
+        if (dir == null) return;
+        try (FileChannel channel = FileChannel.open(dir, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException ignored) {}
+    }
+
+    @FunctionalInterface
+    private interface ChannelWriter {
+        void write(FileChannel channel) throws IOException;
+    }
+
     private static class RecursiveDeleteFileVisitor implements FileVisitor<Path> {
         @Override
         public @NotNull FileVisitResult preVisitDirectory(Path dir, @NotNull BasicFileAttributes attrs) {
@@ -0,0 +1,39 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Запущенное в фоне копирование или перемещение
+ */
+public final class FileTransfer {
+
+    private final CompletableFuture<List<Path>> result = new CompletableFuture<>();
+
+    private volatile boolean cancelled;
+
+    /**
+     * @return пути созданных или перемещённых элементов в целевом каталоге.
+     * При отмене завершается {@link java.util.concurrent.CancellationException}
+     */
+    public CompletableFuture<List<Path>> result() {
+        return result;
+    }
+
+    /**
+     * Останавливает копирование между кусками файлов, уже скопированное удаляется.
+     * Готовые переименования не откатываются
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isDone() {
+        return result.isDone();
+    }
+}
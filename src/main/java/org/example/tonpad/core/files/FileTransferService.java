@@ -0,0 +1,21 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Фоновое копирование и перемещение файлов и каталогов
+ */
+public interface FileTransferService {
+
+    /**
+     * Копирует элементы в {@code targetDir}, при совпадении имени добавляет " copy", " copy 2", ...
+     */
+    FileTransfer copy(List<Path> sources, Path targetDir, TransferProgressListener listener);
+
+    /**
+     * Перемещает элементы в {@code targetDir}, элементы с занятым именем пропускаются.
+     * В пределах одной файловой системы перемещение - одно переименование
+     */
+    FileTransfer move(List<Path> sources, Path targetDir, TransferProgressListener listener);
+}
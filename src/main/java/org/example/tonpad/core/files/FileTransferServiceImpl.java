@@ -0,0 +1,328 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.CustomIOException;
+import org.example.tonpad.core.repository.NotePathCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Структура каталогов создаётся последовательно, а содержимое файлов копируется параллельно
+ * через {@link FileChannel#transferTo}, кусками, между которыми проверяется отмена
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileTransferServiceImpl implements FileTransferService {
+
+    private final static String FILE_COPY_ERROR = "File copy error";
+
+    private final static String FILE_MOVE_ERROR = "File move error";
+
+    private final static String COPY_INTO_ITSELF_ERROR = "Cannot copy or move a folder into itself";
+
+    private static final int COPY_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static final long CHUNK_SIZE = 8L << 20;
+
+    private final NotePathCache notePathCache;
+
+    private final ObjectProvider<NoteContentService> noteContentService;
+
+    private final ExecutorService transferExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-transfer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger copyThreadNumber = new AtomicInteger();
+
+    private final ExecutorService copyExecutor = Executors.newFixedThreadPool(COPY_THREADS, r -> {
+        Thread thread = new Thread(r, "file-copy-" + copyThreadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public FileTransfer copy(List<Path> sources, Path targetDir, TransferProgressListener listener) {
+        return submit(sources, targetDir, false, listener);
+    }
+
+    @Override
+    public FileTransfer move(List<Path> sources, Path targetDir, TransferProgressListener listener) {
+        return submit(sources, targetDir, true, listener);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transferExecutor.shutdownNow();
+        copyExecutor.shutdownNow();
+    }
+
+    private FileTransfer submit(List<Path> sources, Path targetDir, boolean move, TransferProgressListener listener) {
+        FileTransfer transfer = new FileTransfer();
+        List<Path> items = List.copyOf(sources);
+        try {
+            transferExecutor.execute(() -> run(transfer, items, targetDir, move, listener));
+        } catch (RejectedExecutionException e) {
+            transfer.result().completeExceptionally(new CancellationException());
+        }
+        return transfer;
+    }
+
+    private void run(FileTransfer transfer, List<Path> sources, Path targetDir, boolean move, TransferProgressListener listener) {
+        List<Path> result = new ArrayList<>();
+        // корни копий: при ошибке или отмене до удаления исходников их удаляем
+        List<Path> copies = new ArrayList<>();
+        // перемещения между файловыми системами: исходник удаляется после копирования
+        List<Path> movedByCopy = new ArrayList<>();
+        boolean copied = false;
+        try {
+            Path target = targetDir.toAbsolutePath().normalize();
+            Set<String> taken = move ? Set.of() : listNames(target);
+            List<CopyJob> jobs = new ArrayList<>();
+
+            for (Path source : sources) {
+                checkCancelled(transfer);
+                if (target.startsWith(source.toAbsolutePath().normalize())) {
+                    throw new CustomIOException(COPY_INTO_ITSELF_ERROR + ": " + source);
+                }
+
+                Path dst;
+                if (move) {
+                    dst = target.resolve(source.getFileName());
+                    if (Files.exists(dst)) continue;
+                    if (rename(source, dst)) {
+                        result.add(dst);
+                        continue;
+                    }
+                    movedByCopy.add(source);
+                } else {
+                    dst = target.resolve(uniqueName(source, taken));
+                }
+                copies.add(dst);
+                result.add(dst);
+                plan(source, dst, jobs);
+            }
+
+            copyAll(jobs, transfer, listener);
+            copied = true;
+
+            for (int i = 0; i < movedByCopy.size(); i++) {
+                Path source = movedByCopy.get(i);
+                deleteTree(source);
+                evict(source);
+                evict(copies.get(i));
+            }
+            transfer.result().complete(result);
+        } catch (CancellationException e) {
+            if (!copied) discard(copies);
+            transfer.result().completeExceptionally(e);
+        } catch (IOException e) {
+            if (!copied) discard(copies);
+            String message = move ? FILE_MOVE_ERROR : FILE_COPY_ERROR;
+            log.warn(message, e);
+            transfer.result().completeExceptionally(new CustomIOException(message, e));
+        } catch (RuntimeException e) {
+            if (!copied) discard(copies);
+            log.warn(FILE_COPY_ERROR, e);
+            transfer.result().completeExceptionally(e);
+        }
+    }
+
+    /**
+     * @return false, если источник и цель на разных файловых системах
+     */
+    private boolean rename(Path source, Path dst) throws IOException {
+        try {
+            Files.move(source, dst, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        }
+        evict(source);
+        evict(dst);
+        return true;
+    }
+
+    private void evict(Path path) {
+        notePathCache.evict(path);
+        noteContentService.ifAvailable(service -> service.evict(path));
+    }
+
+    /**
+     * Создаёт каталоги копии и собирает файлы, которые нужно скопировать
+     */
+    private static void plan(Path source, Path dst, List<CopyJob> jobs) throws IOException {
+        Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public @NotNull FileVisitResult preVisitDirectory(@NotNull Path dir, @NotNull BasicFileAttributes attrs) throws IOException {
+                Files.createDirectory(dst.resolve(source.relativize(dir)));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) {
+                jobs.add(new CopyJob(file, dst.resolve(source.relativize(file)), attrs.size()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void copyAll(List<CopyJob> jobs, FileTransfer transfer, TransferProgressListener listener) throws IOException {
+        long total = 0;
+        for (CopyJob job : jobs) total += job.size();
+        long totalBytes = total;
+        AtomicLong processed = new AtomicLong();
+        listener.onProgress(0, totalBytes);
+
+        // первая ошибка останавливает остальные копирования так же, как отмена
+        FileTransfer failFast = new FileTransfer();
+        List<Future<?>> futures = new ArrayList<>(jobs.size());
+        for (CopyJob job : jobs) {
+            futures.add(copyExecutor.submit(() -> {
+                try {
+                    copyFile(job, transfer, failFast, n -> listener.onProgress(processed.addAndGet(n), totalBytes));
+                } catch (IOException | RuntimeException e) {
+                    failFast.cancel();
+                    throw e;
+                }
+                return null;
+            }));
+        }
+
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (failure == null || failure instanceof CancellationException) failure = e.getCause();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                transfer.cancel();
+                failure = new CancellationException();
+            }
+        }
+
+        if (failure instanceof IOException io) throw io;
+        if (failure instanceof RuntimeException runtime) throw runtime;
+        checkCancelled(transfer);
+    }
+
+    private static void copyFile(CopyJob job, FileTransfer transfer, FileTransfer failFast, LongConsumer progress) throws IOException {
+        try (FileChannel in = FileChannel.open(job.source(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(job.target(), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            long position = 0;
+            long n;
+            do {
+                if (transfer.isCancelled() || failFast.isCancelled()) throw new CancellationException();
+                n = in.transferTo(position, CHUNK_SIZE, out);
+                position += n;
+                if (n > 0) progress.accept(n);
+            } while (n > 0);
+        }
+    }
+
+    /**
+     * Имена каталога читаются один раз, дальше свободное имя подбирается в памяти
+     */
+    private static Set<String> listNames(Path dir) throws IOException {
+        Set<String> names = new HashSet<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                names.add(child.getFileName().toString().toLowerCase(Locale.ROOT));
+            }
+        }
+        return names;
+    }
+
+    private static String uniqueName(Path src, Set<String> taken) {
+        String name = src.getFileName().toString();
+
+        String base = name;
+        String ext = "";
+        if (!Files.isDirectory(src)) {
+            int dot = name.lastIndexOf('.');
+            if (dot > 0 && dot < name.length() - 1) {
+                base = name.substring(0, dot);
+                ext = name.substring(dot);
+            }
+        }
+
+        String candidate = name;
+        // среди taken.size() + 2 вариантов хотя бы один свободен
+        for (int n = 1; taken.contains(candidate.toLowerCase(Locale.ROOT)) && n <= taken.size() + 1; n++) {
+            candidate = base + (n == 1 ? " copy" : " copy " + n) + ext;
+        }
+        taken.add(candidate.toLowerCase(Locale.ROOT));
+        return candidate;
+    }
+
+    private static void checkCancelled(FileTransfer transfer) {
+        if (transfer.isCancelled() || Thread.currentThread().isInterrupted()) {
+            throw new CancellationException();
+        }
+    }
+
+    private static void discard(List<Path> copies) {
+        for (Path copy : copies) {
+            try {
+                deleteTree(copy);
+            } catch (IOException e) {
+                log.warn("Unable to remove incomplete copy {}", copy, e);
+            }
+        }
+    }
+
+    private static void deleteTree(Path root) throws IOException {
+        if (!Files.exists(root, LinkOption.NOFOLLOW_LINKS)) return;
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public @NotNull FileVisitResult visitFile(@NotNull Path file, @NotNull BasicFileAttributes attrs) throws IOException {
+                Files.delete(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public @NotNull FileVisitResult postVisitDirectory(@NotNull Path dir, @Nullable IOException exc) throws IOException {
+                if (exc != null) throw exc;
+                Files.delete(dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private record CopyJob(Path source, Path target, long size) {}
+}
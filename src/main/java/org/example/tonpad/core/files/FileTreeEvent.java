@@ -0,0 +1,29 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Изменение в дереве файлов хранилища
+ *
+ * <p>{@code path} - новый путь, {@code oldPath} - прежний путь для {@link Kind#MOVED}, иначе null</p>
+ */
+public record FileTreeEvent(Kind kind, Path path, Path oldPath, boolean directory) {
+
+    public enum Kind { CREATED, DELETED, MOVED, MODIFIED }
+
+    public static FileTreeEvent created(Path path, boolean directory) {
+        return new FileTreeEvent(Kind.CREATED, path, null, directory);
+    }
+
+    public static FileTreeEvent deleted(Path path, boolean directory) {
+        return new FileTreeEvent(Kind.DELETED, path, null, directory);
+    }
+
+    public static FileTreeEvent moved(Path oldPath, Path path, boolean directory) {
+        return new FileTreeEvent(Kind.MOVED, path, oldPath, directory);
+    }
+
+    public static FileTreeEvent modified(Path path) {
+        return new FileTreeEvent(Kind.MODIFIED, path, null, false);
+    }
+}
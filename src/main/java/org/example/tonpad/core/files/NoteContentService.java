@@ -0,0 +1,25 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Чтение и запись заметок с учётом режима сессии хранилища (гостевой режим, ключ)
+ *
+ * <p>Расшифрованное содержимое кешируется по пути, времени изменения, размеру файла и отпечатку ключа сессии;
+ * кеш ограничен по объёму и обнуляется при блокировке хранилища.</p>
+ */
+public interface NoteContentService {
+
+    String read(Path path);
+
+    void write(Path path, String content, boolean encrypt);
+
+    void invalidate(Path path);
+
+    /**
+     * Удаляет записи для файла или каталога (со всем содержимым) - после переименования, перемещения или удаления
+     */
+    void evict(Path path);
+
+    void clear();
+}
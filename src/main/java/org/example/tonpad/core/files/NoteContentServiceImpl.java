@@ -0,0 +1,181 @@
+package org.example.tonpad.core.files;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.DecryptionException;
+import org.example.tonpad.core.exceptions.EncryptionException;
+import org.example.tonpad.core.service.crypto.EncryptorFactory;
+import org.example.tonpad.core.session.VaultSession;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+@Slf4j
+@Service
+public class NoteContentServiceImpl implements NoteContentService {
+
+    private final static String INVALID_PASSWORD_ERROR = "Invalid password";
+
+    private final static String VAULT_LOCKED_ERROR = "Vault is locked";
+
+    private static final long MAX_CACHE_BYTES = 64L * 1024 * 1024;
+
+    private final FileSystemService fileSystemService;
+
+    private final VaultSession vaultSession;
+
+    private final EncryptorFactory encryptorFactory;
+
+    // порядок доступа: первым идёт давно не использованный элемент
+    private final LinkedHashMap<Path, CachedNote> cache = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long cachedBytes = 0;
+
+    public NoteContentServiceImpl(FileSystemService fileSystemService, VaultSession vaultSession,
+                                  EncryptorFactory encryptorFactory) {
+        this.fileSystemService = fileSystemService;
+        this.vaultSession = vaultSession;
+        this.encryptorFactory = encryptorFactory;
+        vaultSession.addLockListener(this::clear);
+    }
+
+    @Override
+    public String read(Path path) {
+        BasicFileAttributes attrs = attributes(path);
+        String fingerPrint = vaultSession.getFingerPrint();
+
+        if (attrs != null) {
+            synchronized (this) {
+                CachedNote hit = cache.get(path);
+                if (hit != null && hit.matches(attrs, fingerPrint)) {
+                    return new String(hit.content, StandardCharsets.UTF_8);
+                }
+            }
+        }
+
+        // атрибуты прочитаны до содержимого: если файл успеет измениться, запись просто не совпадёт при следующем чтении
+        String content = decode(path);
+        if (attrs != null) store(path, new CachedNote(attrs, fingerPrint, content.getBytes(StandardCharsets.UTF_8)));
+        return content;
+    }
+
+    @Override
+    public void write(Path path, String content, boolean encrypt) {
+        byte[] plain = content.getBytes(StandardCharsets.UTF_8);
+
+        if (encrypt && !vaultSession.isOpendWithNoPassword()) {
+            byte[] key = vaultSession.getKeyIfPresent().map(Key::getEncoded)
+                    .orElseThrow(() -> new EncryptionException(VAULT_LOCKED_ERROR));
+            fileSystemService.writeBytes(path, encryptorFactory.encryptorForKey(key).encrypt(plain, null));
+        } else {
+            fileSystemService.writeBytes(path, plain);
+        }
+
+        BasicFileAttributes attrs = attributes(path);
+        if (attrs != null) store(path, new CachedNote(attrs, vaultSession.getFingerPrint(), plain));
+        else invalidate(path);
+    }
+
+    @Override
+    public synchronized void invalidate(Path path) {
+        CachedNote removed = cache.remove(path);
+        if (removed != null) release(removed);
+    }
+
+    @Override
+    public synchronized void evict(Path path) {
+        Path target = path.toAbsolutePath().normalize();
+        Iterator<Map.Entry<Path, CachedNote>> it = cache.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Path, CachedNote> entry = it.next();
+            if (entry.getKey().toAbsolutePath().normalize().startsWith(target)) {
+                it.remove();
+                release(entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        cache.values().forEach(this::release);
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    private String decode(Path path) {
+        if (vaultSession.isOpendWithNoPassword()) {
+            if (!encryptorFactory.encryptorForKey().isActionWithNoPasswordAllowed(path)) {
+                throw new DecryptionException(INVALID_PASSWORD_ERROR);
+            }
+            return fileSystemService.readFile(path);
+        }
+
+        byte[] key = vaultSession.getKeyIfPresent().map(Key::getEncoded).orElse(null);
+        if (key == null) return fileSystemService.readFile(path);
+
+        try {
+            byte[] plain = encryptorFactory.encryptorForKey(key).decrypt(fileSystemService.readBytes(path), null);
+            return new String(plain, StandardCharsets.UTF_8);
+        } catch (DecryptionException e) {
+            throw new DecryptionException(INVALID_PASSWORD_ERROR, e);
+        }
+    }
+
+    private synchronized void store(Path path, CachedNote note) {
+        if (note.content.length > MAX_CACHE_BYTES) {
+            invalidate(path);
+            return;
+        }
+
+        CachedNote previous = cache.put(path, note);
+        if (previous != null) release(previous);
+        cachedBytes += note.content.length;
+
+        Iterator<Map.Entry<Path, CachedNote>> it = cache.entrySet().iterator();
+        while (cachedBytes > MAX_CACHE_BYTES && it.hasNext()) {
+            CachedNote eldest = it.next().getValue();
+            it.remove();
+            release(eldest);
+        }
+    }
+
+    private void release(CachedNote note) {
+        cachedBytes -= note.content.length;
+        Arrays.fill(note.content, (byte) 0);
+    }
+
+    private static BasicFileAttributes attributes(Path path) {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static final class CachedNote {
+        private final long modified;
+        private final long size;
+        private final String fingerPrint;
+        private final byte[] content;
+
+        private CachedNote(BasicFileAttributes attrs, String fingerPrint, byte[] content) {
+            this.modified = attrs.lastModifiedTime().toMillis();
+            this.size = attrs.size();
+            this.fingerPrint = fingerPrint;
+            this.content = content;
+        }
+
+        private boolean matches(BasicFileAttributes attrs, String fingerPrint) {
+            return modified == attrs.lastModifiedTime().toMillis() && size == attrs.size()
+                    && this.fingerPrint.equals(fingerPrint);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.example.tonpad.core.files;
+
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.editor.listener.NoteChangeListener;
+import org.example.tonpad.core.service.SearchService;
+
+import java.nio.file.Path;
+
+/**
+ * Текст открытой заметки на стороне Java, собранный из изменений, присланных редактором
+ *
+ * <p>Каждое изменение получает номер; сохранение берёт снимок текста с номером последнего изменения,
+ * и заметка снова чиста, только если после снимка ничего не менялось. Изменения параллельно пишутся
+ * в журнал для восстановления после сбоя.</p>
+ */
+@Slf4j
+public class NoteDocument implements NoteChangeListener {
+
+    private final NoteJournalService.Journal journal;
+
+    private Path path;
+
+    private PieceTable text;
+
+    private long change;
+
+    private long savedChange;
+
+    private int lastVersion;
+
+    // длина и хэш текста, который сейчас лежит в файле
+    private int fileLength;
+
+    private int fileHash;
+
+    // содержимое восстановлено из журнала и ещё не сохранено в файл
+    private boolean recovered;
+
+    // правка не легла на текст: до следующего сохранения текст берётся из редактора целиком
+    private boolean diverged;
+
+    public NoteDocument(Path path, NoteJournalService.Journal journal, String fileContent) {
+        this.path = path;
+        this.journal = journal;
+        this.fileLength = fileContent.length();
+        this.fileHash = fileContent.hashCode();
+    }
+
+    public record Snapshot(String content, long change) {
+    }
+
+    public synchronized void markRecovered() {
+        recovered = true;
+    }
+
+    @Override
+    public synchronized void onNoteReset(String content, boolean clean) {
+        change++;
+        lastVersion = 0;
+        diverged = false;
+        if (text == null) text = new PieceTable(content);
+        else text.reset(content);
+
+        if (clean && !recovered) savedChange = change;
+        recovered = false;
+
+        boolean sameAsFile = content.length() == fileLength && content.hashCode() == fileHash;
+        journal.start(fileLength, fileHash, change, sameAsFile ? null : content);
+    }
+
+    @Override
+    public synchronized void onNoteChanged(int version, int start, int end, String text) {
+        change++;
+        if (this.text == null || diverged) {
+            diverged = true;
+            return;
+        }
+
+        try {
+            if (lastVersion != 0 && version != lastVersion + 1) {
+                throw new IllegalStateException("Missed change " + (lastVersion + 1));
+            }
+            this.text.replace(start, end, text);
+            lastVersion = version;
+            journal.append(change, start, end, text);
+        } catch (RuntimeException e) {
+            log.warn("Note change out of sync, falling back to full content", e);
+            diverged = true;
+        }
+    }
+
+    public synchronized boolean isDirty() {
+        return change != savedChange;
+    }
+
+    /**
+     * @return текст для сохранения или null, если сохранять нечего. Если текст разошёлся с редактором,
+     * content снимка - null, и его нужно запросить у редактора
+     */
+    public synchronized Snapshot snapshot() {
+        if (!isDirty()) return null;
+        return new Snapshot(diverged ? null : text.toString(), change);
+    }
+
+    /**
+     * Снимок записан в файл
+     */
+    public synchronized void markSaved(Snapshot snapshot) {
+        String content = snapshot.content();
+        fileLength = content.length();
+        fileHash = content.hashCode();
+        savedChange = Math.max(savedChange, snapshot.change());
+        journal.saved(fileLength, fileHash, snapshot.change());
+
+        // после снимка правок не было - сжимаем накопленные куски до одной строки
+        if (change == snapshot.change()) {
+            if (text == null) text = new PieceTable(content);
+            else text.reset(content);
+            diverged = false;
+            lastVersion = 0;
+        }
+    }
+
+    /**
+     * @return текущий текст с номером последнего изменения редактора или null, если текст разошёлся с редактором
+     */
+    public synchronized SearchService.Text searchText() {
+        if (text == null || diverged) return null;
+        return new SearchService.Text(text.toString(), lastVersion);
+    }
+
+    public synchronized Path getPath() {
+        return path;
+    }
+
+    public synchronized void moveTo(Path note) {
+        path = note;
+        journal.moveTo(note);
+    }
+
+    public synchronized void close() {
+        journal.close(!isDirty());
+    }
+}
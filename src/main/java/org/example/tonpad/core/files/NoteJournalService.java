@@ -0,0 +1,45 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Журнал правок открытых заметок для восстановления после сбоя между полными сохранениями
+ *
+ * <p>Журнал заметки начинается с заголовка, описывающего, к какому состоянию файла применяются правки,
+ * и дополняется записями о правках. После каждого сохранения заметки журнал начинается заново.
+ * Записи шифруются так же, как сама заметка. Все операции с журналом выполняются в фоновом потоке
+ * в порядке вызова.</p>
+ */
+public interface NoteJournalService {
+
+    interface Journal {
+
+        /**
+         * Начинает журнал заново. Текст, к которому применяются правки, - содержимое файла
+         * (длина и хэш fileLength/fileHash) или, если base не null, сам base
+         */
+        void start(int fileLength, int fileHash, long change, String base);
+
+        void append(long change, int start, int end, String text);
+
+        /**
+         * Файл перезаписан текстом со всеми правками до change включительно
+         */
+        void saved(int fileLength, int fileHash, long change);
+
+        void moveTo(Path note);
+
+        /**
+         * Закрывает журнал; если discard, удаляет его файл. Оставленный журнал восстанавливается
+         * при следующем открытии заметки, если файл с тех пор не менялся
+         */
+        void close(boolean discard);
+    }
+
+    Journal open(Path note, boolean encrypt);
+
+    /**
+     * @return текст заметки с применёнными правками из журнала или null, если восстанавливать нечего
+     */
+    String recover(Path note, String fileContent, boolean encrypt);
+}
@@ -0,0 +1,417 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.service.crypto.EncryptorFactory;
+import org.example.tonpad.core.session.VaultSession;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NoteJournalServiceImpl implements NoteJournalService {
+
+    private final static String JOURNAL_WRITE_ERROR = "Note journal write error";
+
+    private final static String JOURNAL_READ_ERROR = "Note journal read error";
+
+    private final static String VAULT_LOCKED_ERROR = "Vault is locked";
+
+    private final static String JOURNAL_DIR_NAME = ".journal";
+
+    private final static String JOURNAL_EXTENSION = ".journal";
+
+    private final static byte HEADER_RECORD = 0;
+
+    private final static byte EDIT_RECORD = 1;
+
+    // записи сбрасываются на диск пачкой, а не после каждого нажатия клавиши
+    private static final long FORCE_DELAY_MS = 500;
+
+    private static final Journal NO_JOURNAL = new Journal() {
+        @Override
+        public void start(int fileLength, int fileHash, long change, String base) {
+        }
+
+        @Override
+        public void append(long change, int start, int end, String text) {
+        }
+
+        @Override
+        public void saved(int fileLength, int fileHash, long change) {
+        }
+
+        @Override
+        public void moveTo(Path note) {
+        }
+
+        @Override
+        public void close(boolean discard) {
+        }
+    };
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final VaultSession vaultSession;
+
+    private final EncryptorFactory encryptorFactory;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "note-journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public Journal open(Path note, boolean encrypt) {
+        Path file = journalFile(note);
+        if (file == null) return NO_JOURNAL;
+        return new FileJournal(file, encrypt);
+    }
+
+    @Override
+    public String recover(Path note, String fileContent, boolean encrypt) {
+        Path file = journalFile(note);
+        if (file == null || !Files.exists(file)) return null;
+
+        try {
+            byte[] key = key(encrypt);
+            if (encrypt && key == null && !vaultSession.isOpendWithNoPassword()) return null;
+
+            String recovered = replay(Files.readAllBytes(file), fileContent, key);
+            if (recovered == null || recovered.equals(fileContent)) {
+                Files.deleteIfExists(file);
+                return null;
+            }
+            log.info("Recovered unsaved changes of {} from journal", note);
+            return recovered;
+        } catch (IOException | RuntimeException e) {
+            log.warn(JOURNAL_READ_ERROR, e);
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Применяет записи журнала к тексту; читает до первой повреждённой или неполной записи
+     *
+     * @return восстановленный текст или null, если журнал относится к другому содержимому файла
+     */
+    private String replay(byte[] journal, String fileContent, byte[] key) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(journal);
+
+        byte[] header = nextRecord(buffer, key);
+        if (header == null) return null;
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(header));
+        if (in.readByte() != HEADER_RECORD) return null;
+        int fileLength = in.readInt();
+        int fileHash = in.readInt();
+        long baseChange = in.readLong();
+        boolean hasBase = in.readBoolean();
+        if (fileLength != fileContent.length() || fileHash != fileContent.hashCode()) return null;
+
+        PieceTable text = new PieceTable(hasBase ? readText(in) : fileContent);
+
+        byte[] payload;
+        while ((payload = nextRecord(buffer, key)) != null) {
+            in = new DataInputStream(new ByteArrayInputStream(payload));
+            if (in.readByte() != EDIT_RECORD) break;
+            long change = in.readLong();
+            int start = in.readInt();
+            int end = in.readInt();
+            String inserted = readText(in);
+
+            if (change <= baseChange) continue;
+            if (start < 0 || start > end || end > text.length()) break;
+            text.replace(start, end, inserted);
+        }
+        return text.toString();
+    }
+
+    private byte[] nextRecord(ByteBuffer buffer, byte[] key) {
+        if (buffer.remaining() < Integer.BYTES) return null;
+        int length = buffer.getInt();
+        if (length < 0 || buffer.remaining() < length + Integer.BYTES) return null;
+
+        byte[] stored = new byte[length];
+        buffer.get(stored);
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+        if ((int) crc.getValue() != buffer.getInt()) return null;
+
+        if (key == null) return stored;
+        try {
+            return encryptorFactory.encryptorForKey(key).decrypt(stored, null);
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String readText(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeText(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private byte[] key(boolean encrypt) {
+        if (!encrypt || vaultSession.isOpendWithNoPassword()) return null;
+        return vaultSession.getKeyIfPresent().map(Key::getEncoded).orElse(null);
+    }
+
+    private Path journalFile(Path note) {
+        Path vault = vaultPathsContainer.getVaultPath();
+        if (vault == null || note == null) return null;
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(note.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+            return vault.resolve(JOURNAL_DIR_NAME).resolve(HexFormat.of().formatHex(hash) + JOURNAL_EXTENSION);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Edit(long change, int start, int end, String text) {
+    }
+
+    /**
+     * Журнал одной заметки. Состояние меняется только в потоке журнала
+     */
+    private final class FileJournal implements Journal {
+
+        private final boolean encrypt;
+
+        private Path file;
+
+        private FileChannel channel;
+
+        // правки после заголовка: переносятся в новый журнал, если сохранение их не включает
+        private final List<Edit> tail = new ArrayList<>();
+
+        private long baseChange;
+
+        private boolean started;
+
+        private boolean forceScheduled;
+
+        private FileJournal(Path file, boolean encrypt) {
+            this.file = file;
+            this.encrypt = encrypt;
+        }
+
+        @Override
+        public void start(int fileLength, int fileHash, long change, String base) {
+            executor.execute(() -> {
+                tail.clear();
+                baseChange = change;
+                started = true;
+                rewrite(fileLength, fileHash, base);
+            });
+        }
+
+        @Override
+        public void append(long change, int start, int end, String text) {
+            executor.execute(() -> {
+                if (!started || change <= baseChange) return;
+
+                Edit edit = new Edit(change, start, end, text);
+                tail.add(edit);
+                if (channel == null) return;
+
+                try {
+                    write(channel, edit);
+                    scheduleForce();
+                } catch (IOException | RuntimeException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        @Override
+        public void saved(int fileLength, int fileHash, long change) {
+            executor.execute(() -> {
+                if (!started) return;
+
+                tail.removeIf(edit -> edit.change() <= change);
+                baseChange = change;
+                rewrite(fileLength, fileHash, null);
+            });
+        }
+
+        @Override
+        public void moveTo(Path note) {
+            Path target = journalFile(note);
+            executor.execute(() -> {
+                closeChannel();
+                try {
+                    if (target == null) {
+                        Files.deleteIfExists(file);
+                        started = false;
+                        return;
+                    }
+                    if (Files.exists(file)) {
+                        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                    file = target;
+                    if (Files.exists(file)) channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+                } catch (IOException e) {
+                    fail(e);
+                }
+            });
+        }
+
+        @Override
+        public void close(boolean discard) {
+            executor.execute(() -> {
+                closeChannel();
+                started = false;
+                tail.clear();
+                if (!discard) return;
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn(JOURNAL_WRITE_ERROR, e);
+                }
+            });
+        }
+
+        /**
+         * Записывает новый журнал рядом и атомарно подменяет им старый
+         */
+        private void rewrite(int fileLength, int fileHash, String base) {
+            closeChannel();
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            try {
+                Files.createDirectories(file.getParent());
+                try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING)) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream data = new DataOutputStream(bytes);
+                    data.writeByte(HEADER_RECORD);
+                    data.writeInt(fileLength);
+                    data.writeInt(fileHash);
+                    data.writeLong(baseChange);
+                    data.writeBoolean(base != null);
+                    if (base != null) writeText(data, base);
+                    writeRecord(out, bytes.toByteArray());
+
+                    for (Edit edit : tail) write(out, edit);
+                    out.force(false);
+                }
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException | RuntimeException e) {
+                fail(e);
+            }
+        }
+
+        private void write(FileChannel out, Edit edit) throws IOException {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(edit.text().length() + 32);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeByte(EDIT_RECORD);
+            data.writeLong(edit.change());
+            data.writeInt(edit.start());
+            data.writeInt(edit.end());
+            writeText(data, edit.text());
+            writeRecord(out, bytes.toByteArray());
+        }
+
+        private void writeRecord(FileChannel out, byte[] payload) throws IOException {
+            byte[] key = key(encrypt);
+            // без ключа журнал зашифрованной заметки не пишется
+            if (key == null && encrypt && !vaultSession.isOpendWithNoPassword()) throw new IllegalStateException(VAULT_LOCKED_ERROR);
+            byte[] stored = key == null ? payload : encryptorFactory.encryptorForKey(key).encrypt(payload, null);
+
+            CRC32 crc = new CRC32();
+            crc.update(stored);
+
+            ByteBuffer record = ByteBuffer.allocate(stored.length + 2 * Integer.BYTES);
+            record.putInt(stored.length).put(stored).putInt((int) crc.getValue()).flip();
+            while (record.hasRemaining()) out.write(record);
+        }
+
+        private void scheduleForce() {
+            if (forceScheduled) return;
+            forceScheduled = true;
+            try {
+                executor.schedule(() -> {
+                    forceScheduled = false;
+                    force();
+                }, FORCE_DELAY_MS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                // приложение закрывается: правки, ещё стоящие в очереди, сбрасываются сразу
+                forceScheduled = false;
+                force();
+            }
+        }
+
+        private void force() {
+            if (channel == null) return;
+            try {
+                channel.force(false);
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        /**
+         * Журнал перестаёт писаться до следующего сохранения; правки остаются в памяти
+         */
+        private void fail(Exception e) {
+            log.warn(JOURNAL_WRITE_ERROR, e);
+            closeChannel();
+        }
+
+        private void closeChannel() {
+            if (channel == null) return;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn(JOURNAL_WRITE_ERROR, e);
+            }
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package org.example.tonpad.core.files;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Фоновое сохранение открытых заметок
+ *
+ * <p>Сохранения выполняются по одному в отдельном потоке: снимок текста шифруется и атомарно записывается
+ * по текущему пути заметки. Пока сохранение заметки ждёт очереди, новые запросы для неё не добавляют
+ * работы и получают тот же результат.</p>
+ */
+public interface NoteSaveService {
+
+    /**
+     * @param fullContent текст заметки из редактора - нужен, если изменения разошлись с редактором
+     * @return записанный снимок или null, если сохранять было нечего
+     */
+    CompletableFuture<NoteDocument.Snapshot> save(NoteDocument document, boolean encrypt,
+                                                  Supplier<CompletableFuture<String>> fullContent);
+}
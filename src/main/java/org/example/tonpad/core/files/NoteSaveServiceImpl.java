@@ -0,0 +1,106 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.springframework.stereotype.Service;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class NoteSaveServiceImpl implements NoteSaveService {
+
+    private final static String EDITOR_NOT_RESPONDS_ERROR = "Editor not responds";
+
+    private final static String NOTE_SAVE_ERROR = "Note save error";
+
+    private static final long EDITOR_TIMEOUT_SECONDS = 3;
+
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    private final NoteContentService noteContentService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "note-saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // заметки, сохранение которых ещё не началось
+    private final Map<NoteDocument, PendingSave> pending = new IdentityHashMap<>();
+
+    @Override
+    public CompletableFuture<NoteDocument.Snapshot> save(NoteDocument document, boolean encrypt,
+                                                         Supplier<CompletableFuture<String>> fullContent) {
+        synchronized (pending) {
+            PendingSave queued = pending.get(document);
+            if (queued != null) return queued.future();
+
+            PendingSave save = new PendingSave(encrypt, fullContent, new CompletableFuture<>());
+            pending.put(document, save);
+            executor.execute(() -> run(document));
+            return save.future();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                log.warn("Note saves not finished in {} s", SHUTDOWN_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(NoteDocument document) {
+        PendingSave save;
+        synchronized (pending) {
+            save = pending.remove(document);
+        }
+        if (save == null) return;
+
+        try {
+            save.future().complete(write(document, save));
+        } catch (Exception e) {
+            log.warn(NOTE_SAVE_ERROR, e);
+            save.future().completeExceptionally(e);
+        }
+    }
+
+    private NoteDocument.Snapshot write(NoteDocument document, PendingSave save) throws Exception {
+        NoteDocument.Snapshot snapshot = document.snapshot();
+        if (snapshot == null) return null;
+
+        String content = snapshot.content();
+        if (content == null) {
+            // текст разошёлся с редактором - один раз сериализуем документ целиком
+            try {
+                content = save.fullContent().get().get(EDITOR_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (TimeoutException e) {
+                throw new TonpadBaseException(EDITOR_NOT_RESPONDS_ERROR, e);
+            }
+        }
+
+        noteContentService.write(document.getPath(), content, save.encrypt());
+        NoteDocument.Snapshot saved = new NoteDocument.Snapshot(content, snapshot.change());
+        document.markSaved(saved);
+        return saved;
+    }
+
+    private record PendingSave(boolean encrypt, Supplier<CompletableFuture<String>> fullContent,
+                               CompletableFuture<NoteDocument.Snapshot> future) {
+    }
+}
@@ -0,0 +1,134 @@
+package org.example.tonpad.core.files;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Изменяемый текст в виде таблицы кусков: исходная строка не копируется, вставленный текст
+ * дописывается в отдельный буфер, а документ - это список ссылок на участки двух буферов
+ *
+ * <p>Замена стоит O(число кусков) и не зависит от длины текста. Подряд набранные символы
+ * сливаются в один кусок. Не потокобезопасен.</p>
+ */
+public final class PieceTable implements CharSequence {
+
+    private String original;
+
+    private final StringBuilder added = new StringBuilder();
+
+    private final List<Piece> pieces = new ArrayList<>();
+
+    private int length;
+
+    public PieceTable(String text) {
+        reset(text);
+    }
+
+    /**
+     * Заменяет весь текст, освобождая накопленные куски
+     */
+    public void reset(String text) {
+        original = text;
+        added.setLength(0);
+        added.trimToSize();
+        pieces.clear();
+        if (!text.isEmpty()) pieces.add(new Piece(false, 0, text.length()));
+        length = text.length();
+    }
+
+    public void replace(int start, int end, CharSequence text) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of [0, " + length + ")");
+        }
+
+        int first = split(start);
+        int last = split(end);
+        pieces.subList(first, last).clear();
+
+        int inserted = text.length();
+        if (inserted > 0) {
+            Piece previous = first > 0 ? pieces.get(first - 1) : null;
+            if (previous != null && previous.added && previous.start + previous.length == added.length()) {
+                // продолжение набора в конце буфера - расширяем предыдущий кусок
+                pieces.set(first - 1, new Piece(true, previous.start, previous.length + inserted));
+            } else {
+                pieces.add(first, new Piece(true, added.length(), inserted));
+            }
+            added.append(text);
+        }
+        length += inserted - (end - start);
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(index);
+
+        int pos = 0;
+        for (Piece piece : pieces) {
+            if (index < pos + piece.length) {
+                int offset = piece.start + index - pos;
+                return piece.added ? added.charAt(offset) : original.charAt(offset);
+            }
+            pos += piece.length;
+        }
+        throw new IllegalStateException();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || start > end || end > length) throw new IndexOutOfBoundsException();
+
+        StringBuilder out = new StringBuilder(end - start);
+        int pos = 0;
+        for (Piece piece : pieces) {
+            int from = Math.max(start, pos);
+            int to = Math.min(end, pos + piece.length);
+            if (from < to) {
+                int offset = piece.start + from - pos;
+                out.append(piece.added ? added : original, offset, offset + to - from);
+            }
+            pos += piece.length;
+            if (pos >= end) break;
+        }
+        return out.toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder out = new StringBuilder(length);
+        for (Piece piece : pieces) {
+            out.append(piece.added ? added : original, piece.start, piece.start + piece.length);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Разрезает кусок на позиции offset
+     *
+     * @return индекс первого куска, начинающегося с offset
+     */
+    private int split(int offset) {
+        int pos = 0;
+        for (int i = 0; i < pieces.size(); i++) {
+            if (offset == pos) return i;
+
+            Piece piece = pieces.get(i);
+            if (offset < pos + piece.length) {
+                int head = offset - pos;
+                pieces.set(i, new Piece(piece.added, piece.start, head));
+                pieces.add(i + 1, new Piece(piece.added, piece.start + head, piece.length - head));
+                return i + 1;
+            }
+            pos += piece.length;
+        }
+        return pieces.size();
+    }
+
+    private record Piece(boolean added, int start, int length) {
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Элемент хранилища, найденный {@link VaultScanner}, с атрибутами, прочитанными при обходе (ссылки не разыменовываются)
+ *
+ * <p>{@code note} - файл проходит общие правила отбора заметок: обычный markdown-файл, не скрытый,
+ * не служебный и не временный, вне каталогов вроде {@code .git} и {@code node_modules}.</p>
+ */
+public record ScannedEntry(Path path, boolean directory, boolean regularFile, boolean symbolicLink, boolean hidden,
+                           long lastModified, long size, boolean note) {
+}
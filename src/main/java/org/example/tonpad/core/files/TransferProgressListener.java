@@ -0,0 +1,15 @@
+package org.example.tonpad.core.files;
+
+/**
+ * Прогресс копирования/перемещения файлов в байтах
+ *
+ * <p>Вызывается из потоков копирования, поэтому реализация должна быть потокобезопасной
+ * и не должна обращаться к JavaFX напрямую.</p>
+ */
+@FunctionalInterface
+public interface TransferProgressListener {
+
+    TransferProgressListener NONE = (processed, total) -> { };
+
+    void onProgress(long processed, long total);
+}
@@ -0,0 +1,26 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+
+/**
+ * Удаление через каталог {@code .trash} в корне хранилища
+ *
+ * <p>Элемент переносится в {@code .trash} одним переименованием и сразу пропадает из дерева. Там он
+ * хранится под исходным именем с префиксом времени удаления, пока не истечёт срок хранения
+ * ({@code app.trash.retention-hours}), и до этого его можно вернуть, перенеся обратно. Просроченное
+ * удаляется в фоне; если приложение закрылось до конца очистки, остаток удалится при следующем открытии хранилища.</p>
+ */
+public interface TrashService {
+
+    /**
+     * @return false, если перенести нельзя (элемент вне хранилища, на другой файловой системе или занят) -
+     * тогда его нужно удалять сразу
+     */
+    boolean moveToTrash(Path path);
+
+    /**
+     * Запускает фоновую очистку {@code .trash} от элементов с истёкшим сроком хранения; неудавшиеся удаления
+     * повторяются с паузой, остальные элементы удаляются, когда истечёт и их срок
+     */
+    void purge();
+}
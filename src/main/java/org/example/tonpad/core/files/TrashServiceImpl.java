@@ -0,0 +1,263 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.TonpadConfig;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Файлы удаляются параллельно пачками, каталоги - после них, начиная с самых глубоких.
+ * То, что удалить не получилось (файл занят антивирусом или индексатором), ждёт следующей попытки.
+ * Время удаления берётся из префикса имени в {@code .trash}; элементы с чужими именами не трогаются
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TrashServiceImpl implements TrashService {
+
+    private final static String TRASH_DIR_NAME = ".trash";
+
+    private final static String TRASH_PURGE_ERROR = "Trash purge error";
+
+    private static final int DELETE_THREADS = 4;
+
+    private static final int FILES_PER_TASK = 256;
+
+    private static final long[] RETRY_DELAYS_MS = {1_000, 5_000, 30_000};
+
+    private static final long DEFAULT_RETENTION_HOURS = 168;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final TonpadConfig config;
+
+    private final VaultScanner vaultScanner;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final AtomicBoolean purgeScheduled = new AtomicBoolean();
+
+    private final ScheduledExecutorService purgeExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "trash-purge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // очистка к ближайшему истечению срока; меняется только в потоке очистки
+    private ScheduledFuture<?> expiryPurge;
+
+    private final AtomicInteger deleteThreadNumber = new AtomicInteger();
+
+    private final ExecutorService deleteExecutor = Executors.newFixedThreadPool(DELETE_THREADS, r -> {
+        Thread thread = new Thread(r, "trash-delete-" + deleteThreadNumber.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Override
+    public boolean moveToTrash(Path path) {
+        Path vault = vaultPathsContainer.getVaultPath();
+        if (vault == null) return false;
+
+        Path root = vault.toAbsolutePath().normalize();
+        Path trash = root.resolve(TRASH_DIR_NAME);
+        Path source = path.toAbsolutePath().normalize();
+        if (source.equals(root) || !source.startsWith(root) || source.startsWith(trash)) return false;
+
+        // префикс сохраняет исходное имя и не даёт столкнуться одинаковым именам из разных каталогов
+        String stagedName = System.currentTimeMillis() + "-" + sequence.incrementAndGet() + "-" + source.getFileName();
+        try {
+            Files.createDirectories(trash);
+            Files.move(source, trash.resolve(stagedName), StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException e) {
+            log.debug("cannot move {} to trash: {}", source, e.toString());
+            return false;
+        }
+    }
+
+    @Override
+    public void purge() {
+        if (!purgeScheduled.compareAndSet(false, true)) return;
+        try {
+            purgeExecutor.execute(() -> {
+                purgeScheduled.set(false);
+                purgeNow(0);
+            });
+        } catch (RejectedExecutionException e) {
+            // приложение завершается - остаток удалится при следующем открытии
+            purgeScheduled.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        purgeExecutor.shutdownNow();
+        deleteExecutor.shutdownNow();
+    }
+
+    private void purgeNow(int attempt) {
+        Path vault = vaultPathsContainer.getVaultPath();
+        if (vault == null) return;
+        Path trash = vault.resolve(TRASH_DIR_NAME);
+        if (!Files.isDirectory(trash, LinkOption.NOFOLLOW_LINKS)) return;
+
+        long now = System.currentTimeMillis();
+        long expiredBefore = now - retentionMs();
+        long nextExpiry = Long.MAX_VALUE;
+        int failed = 0;
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(trash)) {
+            for (Path staged : stream) {
+                if (Thread.currentThread().isInterrupted()) return;
+
+                long deletedAt = deletedAt(staged);
+                if (deletedAt < 0) continue;
+                if (deletedAt >= expiredBefore) {
+                    nextExpiry = Math.min(nextExpiry, deletedAt + retentionMs());
+                    continue;
+                }
+                failed += purgeEntry(staged);
+            }
+        } catch (IOException e) {
+            log.warn(TRASH_PURGE_ERROR, e);
+            failed++;
+        }
+
+        // остальное удалится, когда истечёт его срок, если приложение к тому времени ещё открыто
+        if (nextExpiry != Long.MAX_VALUE) schedulePurge(nextExpiry - now);
+
+        if (failed == 0) return;
+        if (attempt >= RETRY_DELAYS_MS.length) {
+            log.warn("{}: {} items left in {}", TRASH_PURGE_ERROR, failed, trash);
+            return;
+        }
+        try {
+            purgeExecutor.schedule(() -> purgeNow(attempt + 1), RETRY_DELAYS_MS[attempt], TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    private void schedulePurge(long delayMs) {
+        if (expiryPurge != null) expiryPurge.cancel(false);
+        try {
+            expiryPurge = purgeExecutor.schedule(this::purge, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ignored) {
+        }
+    }
+
+    private long retentionMs() {
+        TonpadConfig.Trash trash = config.trash();
+        long hours = trash == null ? DEFAULT_RETENTION_HOURS : trash.retentionHours();
+        return TimeUnit.HOURS.toMillis(Math.max(0, hours));
+    }
+
+    /**
+     * @return время удаления из префикса имени, -1 - элемент положен в {@code .trash} не этим сервисом
+     */
+    static long deletedAt(Path staged) {
+        String name = staged.getFileName().toString();
+        int dash = name.indexOf('-');
+        if (dash <= 0) return -1;
+        try {
+            return Long.parseLong(name.substring(0, dash));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return сколько элементов удалить не удалось
+     */
+    private int purgeEntry(Path staged) {
+        if (!Files.isDirectory(staged, LinkOption.NOFOLLOW_LINKS)) {
+            return deleteQuietly(staged) ? 0 : 1;
+        }
+
+        List<Path> files = new ArrayList<>();
+        List<Path> dirs = new ArrayList<>();
+        try {
+            for (ScannedEntry entry : vaultScanner.scan(staged).entries()) {
+                (entry.directory() ? dirs : files).add(entry.path());
+            }
+        } catch (RuntimeException e) {
+            log.warn(TRASH_PURGE_ERROR, e);
+            return 1;
+        }
+
+        int failed = 0;
+        List<Future<Integer>> batches = new ArrayList<>();
+        for (int from = 0; from < files.size(); from += FILES_PER_TASK) {
+            List<Path> batch = files.subList(from, Math.min(files.size(), from + FILES_PER_TASK));
+            batches.add(deleteExecutor.submit(() -> deleteAll(batch)));
+        }
+        for (Future<Integer> batch : batches) {
+            try {
+                failed += batch.get();
+            } catch (ExecutionException e) {
+                log.warn(TRASH_PURGE_ERROR, e.getCause());
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failed + 1;
+            }
+        }
+
+        dirs.sort(Comparator.comparingInt(Path::getNameCount).reversed());
+        dirs.add(staged);
+        for (Path dir : dirs) {
+            if (!deleteQuietly(dir)) failed++;
+        }
+        return failed;
+    }
+
+    private static int deleteAll(List<Path> files) {
+        int failed = 0;
+        for (Path file : files) {
+            if (Thread.currentThread().isInterrupted()) return failed + 1;
+            if (!deleteQuietly(file)) failed++;
+        }
+        return failed;
+    }
+
+    private static boolean deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (AccessDeniedException e) {
+            // на Windows файл с атрибутом "только чтение" не удаляется, пока атрибут не снят
+            try {
+                Files.setAttribute(path, "dos:readonly", false, LinkOption.NOFOLLOW_LINKS);
+                Files.deleteIfExists(path);
+                return true;
+            } catch (IOException | UnsupportedOperationException | IllegalArgumentException ignored) {
+            }
+        } catch (IOException e) {
+            log.debug("cannot delete {}: {}", path, e.toString());
+        }
+        return false;
+    }
+}
@@ -0,0 +1,27 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Параллельный обход дерева каталогов хранилища
+ *
+ * <p>Атрибуты каждого элемента читаются один раз при обходе, по ним же применяются правила отбора заметок
+ * (см. {@link ScannedEntry#note()}). Недоступные подкаталоги пропускаются.</p>
+ */
+public interface VaultScanner {
+
+    /**
+     * @throws org.example.tonpad.core.exceptions.CustomIOException если {@code root} не каталог или не читается
+     */
+    VaultSnapshot scan(Path root);
+
+    static boolean isMarkdownName(String fileName) {
+        String name = fileName.toLowerCase(Locale.ROOT);
+        return name.endsWith(".md") ||
+                name.endsWith(".markdown") ||
+                name.endsWith(".mdown") ||
+                name.endsWith(".mkd") ||
+                name.endsWith(".mdx");
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.tonpad.core.files;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.CustomIOException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.DosFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Каждый каталог - отдельная задача ForkJoin, большие каталоги дополнительно делятся на части:
+ * на сетевых дисках обход упирается в последовательные stat-вызовы, а не в процессор
+ */
+@Slf4j
+@Service
+public class VaultScannerImpl implements VaultScanner {
+
+    private final static String SCAN_ERROR = "Vault scan error";
+
+    // потоки в основном ждут файловую систему, поэтому их больше, чем ядер
+    private static final int PARALLELISM = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+
+    private static final int CHILDREN_PER_TASK = 64;
+
+    private static final Set<String> NAME_SKIP = Set.of(
+        ".DS_Store", "Thumbs.db", "desktop.ini"
+    );
+
+    private static final Set<String> DIR_SKIP = Set.of(
+        ".git", ".idea", "node_modules", ".trash"
+    );
+
+    private final ForkJoinPool pool = new ForkJoinPool(PARALLELISM, p -> {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+        thread.setName("vault-scan-" + thread.getPoolIndex());
+        thread.setDaemon(true);
+        return thread;
+    }, null, false);
+
+    @Override
+    public VaultSnapshot scan(Path root) {
+        if (!Files.isDirectory(root)) {
+            throw new CustomIOException(SCAN_ERROR + ": " + root);
+        }
+
+        // скрытость на Windows - атрибут, его читаем тем же вызовом, что и остальные атрибуты.
+        // На Linux dos-атрибуты эмулируются через xattr - это лишний вызов на каждый файл
+        Set<String> views = root.getFileSystem().supportedFileAttributeViews();
+        boolean dos = views.contains("dos") && !views.contains("posix");
+        List<Path> children;
+        try {
+            children = list(root);
+        } catch (IOException e) {
+            log.warn(SCAN_ERROR, e);
+            throw new CustomIOException(SCAN_ERROR, e);
+        }
+
+        List<ScannedEntry> entries = new ArrayList<>(pool.invoke(new ChildrenTask(children, 0, children.size(), false, dos)));
+        entries.sort(Comparator.comparing(ScannedEntry::path));
+        return new VaultSnapshot(root, entries);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private static List<Path> list(Path directory) throws IOException {
+        List<Path> children = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        }
+        return children;
+    }
+
+    private static ScannedEntry read(Path path, boolean inSkippedDir, boolean dos) throws IOException {
+        BasicFileAttributes attrs = dos
+                ? Files.readAttributes(path, DosFileAttributes.class, LinkOption.NOFOLLOW_LINKS)
+                : Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+
+        String name = path.getFileName().toString();
+        boolean hidden = name.startsWith(".") || (attrs instanceof DosFileAttributes dosAttrs && dosAttrs.isHidden());
+        boolean note = attrs.isRegularFile()
+                && !inSkippedDir
+                && !hidden
+                && !NAME_SKIP.contains(name)
+                && !looksBackupOrTemp(name)
+                && VaultScanner.isMarkdownName(name);
+
+        return new ScannedEntry(path, attrs.isDirectory(), attrs.isRegularFile(), attrs.isSymbolicLink(), hidden,
+                attrs.lastModifiedTime().toMillis(), attrs.size(), note);
+    }
+
+    private static boolean looksBackupOrTemp(String name) {
+        return name.endsWith("~") || name.startsWith("~$") || name.startsWith(".$");
+    }
+
+    /**
+     * Элементы одного каталога с from по to и всё, что под ними
+     */
+    private static final class ChildrenTask extends RecursiveTask<List<ScannedEntry>> {
+        private final List<Path> children;
+        private final int from;
+        private final int to;
+        private final boolean inSkippedDir;
+        private final boolean dos;
+
+        private ChildrenTask(List<Path> children, int from, int to, boolean inSkippedDir, boolean dos) {
+            this.children = children;
+            this.from = from;
+            this.to = to;
+            this.inSkippedDir = inSkippedDir;
+            this.dos = dos;
+        }
+
+        @Override
+        protected List<ScannedEntry> compute() {
+            if (to - from > CHILDREN_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                ChildrenTask right = new ChildrenTask(children, middle, to, inSkippedDir, dos);
+                right.fork();
+                List<ScannedEntry> result = new ArrayList<>(new ChildrenTask(children, from, middle, inSkippedDir, dos).compute());
+                result.addAll(right.join());
+                return result;
+            }
+
+            List<ScannedEntry> result = new ArrayList<>(to - from);
+            List<ForkJoinTask<List<ScannedEntry>>> subdirectories = new ArrayList<>();
+            for (int i = from; i < to; i++) {
+                Path child = children.get(i);
+                ScannedEntry entry;
+                try {
+                    entry = read(child, inSkippedDir, dos);
+                } catch (IOException e) {
+                    log.debug("skip {} in vault scan: {}", child, e.toString());
+                    continue;
+                }
+                result.add(entry);
+
+                if (entry.directory()) {
+                    boolean skipped = inSkippedDir || DIR_SKIP.contains(child.getFileName().toString());
+                    subdirectories.add(new DirectoryTask(child, skipped, dos).fork());
+                }
+            }
+            for (ForkJoinTask<List<ScannedEntry>> subdirectory : subdirectories) {
+                result.addAll(subdirectory.join());
+            }
+            return result;
+        }
+    }
+
+    private static final class DirectoryTask extends RecursiveTask<List<ScannedEntry>> {
+        private final Path directory;
+        private final boolean inSkippedDir;
+        private final boolean dos;
+
+        private DirectoryTask(Path directory, boolean inSkippedDir, boolean dos) {
+            this.directory = directory;
+            this.inSkippedDir = inSkippedDir;
+            this.dos = dos;
+        }
+
+        @Override
+        protected List<ScannedEntry> compute() {
+            List<Path> children;
+            try {
+                children = list(directory);
+            } catch (IOException e) {
+                log.debug("skip {} in vault scan: {}", directory, e.toString());
+                return List.of();
+            }
+            return new ChildrenTask(children, 0, children.size(), inSkippedDir, dos).compute();
+        }
+    }
+}
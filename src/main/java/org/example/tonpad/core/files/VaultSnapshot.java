@@ -0,0 +1,27 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * Неизменяемый результат одного обхода хранилища: все элементы под {@code root} (без него самого), отсортированные по пути
+ */
+public record VaultSnapshot(Path root, List<ScannedEntry> entries) {
+
+    public VaultSnapshot {
+        entries = List.copyOf(entries);
+    }
+
+    public List<ScannedEntry> notes() {
+        return entries.stream().filter(ScannedEntry::note).toList();
+    }
+
+    /**
+     * Обычные markdown-файлы без остальных правил отбора заметок
+     */
+    public List<ScannedEntry> markdownFiles() {
+        return entries.stream()
+                .filter(entry -> entry.regularFile() && VaultScanner.isMarkdownName(entry.path().getFileName().toString()))
+                .toList();
+    }
+}
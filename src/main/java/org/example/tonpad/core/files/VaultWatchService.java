@@ -0,0 +1,27 @@
+package org.example.tonpad.core.files;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Модель дерева файлов хранилища, поддерживаемая в актуальном состоянии через {@link java.nio.file.WatchService}
+ * (или периодический опрос, если он недоступен)
+ *
+ * <p>Слушатели получают пачки {@link FileTreeEvent} на потоке, который обнаружил изменение.
+ * {@link #rescan(Collection)} позволяет сразу применить изменения, сделанные самим приложением,
+ * не дожидаясь уведомления от файловой системы; повторных событий при этом не будет.</p>
+ */
+public interface VaultWatchService {
+
+    void watch(Path root);
+
+    void stop();
+
+    void rescan(Collection<Path> dirs);
+
+    void addListener(Consumer<List<FileTreeEvent>> listener);
+
+    void removeListener(Consumer<List<FileTreeEvent>> listener);
+}
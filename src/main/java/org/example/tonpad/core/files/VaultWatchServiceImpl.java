@@ -0,0 +1,418 @@
+package org.example.tonpad.core.files;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+@Slf4j
+@Service
+public class VaultWatchServiceImpl implements VaultWatchService {
+
+    private final static String WATCH_START_ERROR = "File watcher is unavailable, falling back to polling";
+
+    private final static String WATCH_REGISTER_ERROR = "Directory watch registration error";
+
+    private final static String LISTENER_ERROR = "File tree listener error";
+
+    private static final long BATCH_WINDOW_MS = 50;
+
+    private static final long POLL_INTERVAL_MS = 2_000;
+
+    private final Object modelLock = new Object();
+
+    private final List<Consumer<List<FileTreeEvent>>> listeners = new CopyOnWriteArrayList<>();
+
+    // директория -> (имя -> запись)
+    private final Map<Path, Map<String, Entry>> dirs = new HashMap<>();
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    private final Map<Path, WatchKey> keysByDir = new HashMap<>();
+
+    private WatchService watcher;
+
+    private ScheduledExecutorService poller;
+
+    private Path root;
+
+    private int generation = 0;
+
+    private boolean initialScanDone = false;
+
+    // запросы пересканирования, пришедшие до окончания начального обхода
+    private final Set<Path> pendingRescans = new LinkedHashSet<>();
+
+    @Override
+    public void watch(Path root) {
+        int gen;
+        WatchService ws;
+        synchronized (modelLock) {
+            stopLocked();
+            gen = ++generation;
+            this.root = root;
+            initialScanDone = false;
+            try {
+                ws = root.getFileSystem().newWatchService();
+            } catch (IOException | UnsupportedOperationException e) {
+                log.warn(WATCH_START_ERROR, e);
+                ws = null;
+            }
+            watcher = ws;
+        }
+
+        WatchService service = ws;
+        Thread thread = new Thread(() -> runWatchLoop(service, gen), "vault-watch");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void stop() {
+        synchronized (modelLock) {
+            stopLocked();
+        }
+    }
+
+    @Override
+    public void rescan(Collection<Path> changedDirs) {
+        List<FileTreeEvent> events;
+        synchronized (modelLock) {
+            if (root == null) return;
+            if (!initialScanDone) {
+                pendingRescans.addAll(changedDirs);
+                return;
+            }
+            events = rescanLocked(changedDirs, List.of());
+        }
+        notifyListeners(events);
+    }
+
+    @Override
+    public void addListener(Consumer<List<FileTreeEvent>> listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeListener(Consumer<List<FileTreeEvent>> listener) {
+        listeners.remove(listener);
+    }
+
+    private void stopLocked() {
+        generation++;
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException ignored) {
+            }
+            watcher = null;
+        }
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        dirs.clear();
+        keys.clear();
+        keysByDir.clear();
+        pendingRescans.clear();
+        initialScanDone = false;
+        root = null;
+    }
+
+    private void runWatchLoop(WatchService ws, int gen) {
+        List<FileTreeEvent> replayed;
+        synchronized (modelLock) {
+            if (gen != generation) return;
+            addSubtree(root);
+            if (ws == null) startPollingLocked();
+
+            // изменения, о которых сообщили до обхода, могли пройти мимо ещё не зарегистрированных ключей
+            initialScanDone = true;
+            replayed = rescanLocked(new ArrayList<>(pendingRescans), List.of());
+            pendingRescans.clear();
+        }
+        notifyListeners(replayed);
+        if (ws == null) return;
+
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                Set<Path> modified = new LinkedHashSet<>();
+                boolean overflow = false;
+
+                // собираем пачку событий, пока файловая система продолжает их присылать
+                do {
+                    synchronized (modelLock) {
+                        if (gen != generation) return;
+                        Path dir = keys.get(key);
+                        for (WatchEvent<?> event : key.pollEvents()) {
+                            if (dir == null) continue;
+                            if (event.kind() == OVERFLOW) {
+                                overflow = true;
+                            } else if (event.kind() == ENTRY_MODIFY) {
+                                String name = event.context().toString();
+                                Map<String, Entry> known = dirs.get(dir);
+                                Entry entry = known == null ? null : known.get(name);
+                                if (entry != null && !entry.directory()) {
+                                    modified.add(dir.resolve(name));
+                                }
+                            } else {
+                                changed.add(dir);
+                            }
+                        }
+                        if (!key.reset()) {
+                            keys.remove(key);
+                            if (dir != null) keysByDir.remove(dir);
+                        }
+                    }
+                    key = ws.poll(BATCH_WINDOW_MS, TimeUnit.MILLISECONDS);
+                } while (key != null);
+
+                List<FileTreeEvent> events;
+                synchronized (modelLock) {
+                    if (gen != generation) return;
+                    Collection<Path> toRescan = overflow ? new ArrayList<>(dirs.keySet()) : changed;
+                    events = rescanLocked(toRescan, modified);
+                }
+                notifyListeners(events);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException ignored) {
+        }
+    }
+
+    private void startPollingLocked() {
+        if (poller != null) return;
+
+        int gen = generation;
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "vault-poll");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            List<FileTreeEvent> events;
+            synchronized (modelLock) {
+                if (gen != generation) return;
+                events = rescanLocked(new ArrayList<>(dirs.keySet()), List.of());
+            }
+            notifyListeners(events);
+        }, POLL_INTERVAL_MS, POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private List<FileTreeEvent> rescanLocked(Collection<Path> changedDirs, Collection<Path> modified) {
+        List<Change> deleted = new ArrayList<>();
+        List<Change> created = new ArrayList<>();
+        for (Path dir : changedDirs) {
+            rescanDir(dir, deleted, created);
+        }
+
+        List<FileTreeEvent> events = pairMoves(deleted, created);
+        for (Path path : modified) {
+            refreshEntry(path);
+            events.add(FileTreeEvent.modified(path));
+        }
+        return events;
+    }
+
+    // размер и время изменения нужны, чтобы опознать файл, если его потом переместят
+    private void refreshEntry(Path file) {
+        Map<String, Entry> known = dirs.get(file.getParent());
+        if (known == null || !known.containsKey(file.getFileName().toString())) return;
+        try {
+            known.put(file.getFileName().toString(), Entry.of(file));
+        } catch (IOException e) {
+            log.debug("skip refresh of {}: {}", file, e.toString());
+        }
+    }
+
+    private void rescanDir(Path dir, List<Change> deleted, List<Change> created) {
+        Map<String, Entry> known = dirs.get(dir);
+        if (known == null) return;
+
+        Map<String, Entry> actual;
+        try {
+            actual = list(dir);
+        } catch (NoSuchFileException e) {
+            // директорию удалили - это обработает пересканирование родителя
+            return;
+        } catch (IOException e) {
+            log.debug("skip rescan of {}: {}", dir, e.toString());
+            return;
+        }
+
+        for (Map.Entry<String, Entry> entry : known.entrySet()) {
+            Entry now = actual.get(entry.getKey());
+            if (now != null && now.directory() == entry.getValue().directory()) continue;
+
+            Path child = dir.resolve(entry.getKey());
+            boolean directory = entry.getValue().directory();
+            if (directory) removeSubtree(child);
+            deleted.add(new Change(FileTreeEvent.deleted(child, directory), entry.getValue()));
+        }
+
+        for (Map.Entry<String, Entry> entry : actual.entrySet()) {
+            Entry before = known.get(entry.getKey());
+            if (before != null && before.directory() == entry.getValue().directory()) continue;
+
+            Path child = dir.resolve(entry.getKey());
+            boolean directory = entry.getValue().directory();
+            if (directory) addSubtree(child);
+            created.add(new Change(FileTreeEvent.created(child, directory), entry.getValue()));
+        }
+
+        dirs.put(dir, actual);
+    }
+
+    /**
+     * Исчезнувшее и появившееся имя склеиваются в перемещение, только если это заведомо один и тот же файл:
+     * совпадает ключ файла (inode), если ФС его даёт, а у файлов ещё и размер и время изменения. Иначе - удаление и создание
+     */
+    private List<FileTreeEvent> pairMoves(List<Change> deleted, List<Change> created) {
+        List<FileTreeEvent> result = new ArrayList<>();
+        boolean[] usedCreated = new boolean[created.size()];
+
+        for (Change del : deleted) {
+            int match = -1;
+            for (int i = 0; i < created.size() && match < 0; i++) {
+                if (!usedCreated[i] && del.entry().sameFile(created.get(i).entry())) match = i;
+            }
+
+            FileTreeEvent event = del.event();
+            if (match >= 0) {
+                usedCreated[match] = true;
+                result.add(FileTreeEvent.moved(event.path(), created.get(match).event().path(), event.directory()));
+            } else {
+                result.add(event);
+            }
+        }
+
+        for (int i = 0; i < created.size(); i++) {
+            if (!usedCreated[i]) result.add(created.get(i).event());
+        }
+        return result;
+    }
+
+    private void addSubtree(Path dir) {
+        Map<String, Entry> children;
+        try {
+            children = list(dir);
+        } catch (IOException e) {
+            log.debug("skip watch of {}: {}", dir, e.toString());
+            return;
+        }
+        register(dir);
+        dirs.put(dir, children);
+
+        for (Map.Entry<String, Entry> entry : children.entrySet()) {
+            if (entry.getValue().directory()) addSubtree(dir.resolve(entry.getKey()));
+        }
+    }
+
+    private void removeSubtree(Path dir) {
+        Map<String, Entry> children = dirs.remove(dir);
+        WatchKey key = keysByDir.remove(dir);
+        if (key != null) {
+            key.cancel();
+            keys.remove(key);
+        }
+        if (children == null) return;
+
+        for (Map.Entry<String, Entry> entry : children.entrySet()) {
+            if (entry.getValue().directory()) removeSubtree(dir.resolve(entry.getKey()));
+        }
+    }
+
+    private void register(Path dir) {
+        if (watcher == null) return;
+        try {
+            WatchKey key = dir.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            keys.put(key, dir);
+            keysByDir.put(dir, key);
+        } catch (IOException e) {
+            // например, исчерпан лимит inotify - дальше следим опросом
+            log.warn(WATCH_REGISTER_ERROR, e);
+            startPollingLocked();
+        }
+    }
+
+    private static Map<String, Entry> list(Path dir) throws IOException {
+        Map<String, Entry> children = new HashMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                String name = child.getFileName().toString();
+                // временные файлы атомарной записи живут доли секунды - в дереве им не место
+                if (name.startsWith(".") && name.endsWith(".tmp")) continue;
+                try {
+                    children.put(name, Entry.of(child));
+                } catch (NoSuchFileException e) {
+                    // удалён между чтением каталога и чтением атрибутов
+                }
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Что известно о файле, чтобы узнать его после перемещения; fileKey - null, если ФС его не даёт
+     */
+    private record Entry(boolean directory, Object fileKey, long size, long lastModified) {
+
+        static Entry of(Path path) throws IOException {
+            BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return new Entry(attrs.isDirectory(), attrs.fileKey(), attrs.size(), attrs.lastModifiedTime().toMillis());
+        }
+
+        // inode освободившегося файла ФС может тут же отдать новому, поэтому у файлов сверяются и атрибуты
+        boolean sameFile(Entry other) {
+            if (directory != other.directory) return false;
+            if (fileKey != null && other.fileKey != null && !fileKey.equals(other.fileKey)) return false;
+            if (directory && fileKey != null && other.fileKey != null) return true;
+            return size == other.size && lastModified == other.lastModified;
+        }
+    }
+
+    private record Change(FileTreeEvent event, Entry entry) {}
+
+    private void notifyListeners(List<FileTreeEvent> events) {
+        if (events.isEmpty()) return;
+
+        List<FileTreeEvent> batch = List.copyOf(events);
+        for (Consumer<List<FileTreeEvent>> listener : listeners) {
+            try {
+                listener.accept(batch);
+            } catch (RuntimeException e) {
+                log.warn(LISTENER_ERROR, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.example.tonpad.core.files;
+
+/**
+ * Когда записанные файлы сбрасываются на диск (fsync)
+ *
+ * <p>Запись всегда идёт во временный файл с атомарной подменой, поэтому при падении приложения файл
+ * остаётся целым в любом режиме; режим определяет только, переживёт ли запись отключение питания.</p>
+ */
+public enum WriteDurability {
+
+    /**
+     * Не сбрасывать: данные попадут на диск, когда это решит ОС
+     */
+    NONE,
+
+    /**
+     * Сбрасывать временный файл перед подменой и каталог после неё - запись надёжна сразу после возврата
+     */
+    ON_CLOSE,
+
+    /**
+     * Сбрасывать временный файл перед подменой, а каталоги с подменёнными файлами - пачкой в фоне:
+     * после отключения питания файл может оказаться в прежней версии, но не пустым или оборванным
+     */
+    PERIODIC
+}
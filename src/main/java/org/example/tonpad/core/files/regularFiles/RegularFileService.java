@@ -10,6 +10,10 @@ public interface RegularFileService {
 
     void writeFile(Path path, String content);
 
+    byte[] readBytes(Path path);
+
+    void writeBytes(Path path, byte[] content);
+
     Path renameFile(Path path, String name);
 
     void deleteFile(Path path);
@@ -30,6 +30,14 @@ public class RegularFileServiceImpl implements RegularFileService {
         fileSystem.writeFile(path, content);
     }
 
+    public byte[] readBytes(Path path) {
+        return fileSystem.readBytes(path);
+    }
+
+    public void writeBytes(Path path, byte[] content) {
+        fileSystem.writeBytes(path, content);
+    }
+
     public Path renameFile(Path path, String name) {
         if (!Files.isRegularFile(path)) {
             throw new IllegalInputException("Cannot rename file");
@@ -0,0 +1,102 @@
+package org.example.tonpad.core.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Ограниченный кэш соответствия путь заметки - id для таблицы notes
+ *
+ * <p>Пути - относительно каталога notes, с разделителем '/'. Давно не использованные записи вытесняются.
+ * При смене хранилища кэш очищается.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class NotePathCache {
+
+    private static final int CAPACITY = 4096;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final Map<Integer, String> pathById = new HashMap<>();
+
+    private final LinkedHashMap<String, Integer> idByPath = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            if (size() <= CAPACITY) return false;
+            pathById.remove(eldest.getValue());
+            return true;
+        }
+    };
+
+    private Path vault;
+
+    public synchronized Integer getId(String path) {
+        checkVault();
+        return idByPath.get(path);
+    }
+
+    public synchronized String getPath(int id) {
+        checkVault();
+        String path = pathById.get(id);
+        // обновляем позицию записи в очереди вытеснения
+        if (path != null) idByPath.get(path);
+        return path;
+    }
+
+    public synchronized void put(String path, int id) {
+        checkVault();
+        String oldPath = pathById.put(id, path);
+        if (oldPath != null && !oldPath.equals(path)) idByPath.remove(oldPath);
+
+        Integer oldId = idByPath.put(path, id);
+        if (oldId != null && oldId != id) pathById.remove(oldId);
+    }
+
+    public synchronized void evictId(int id) {
+        checkVault();
+        String path = pathById.remove(id);
+        if (path != null) idByPath.remove(path);
+    }
+
+    /**
+     * Удаляет записи для файла или каталога заметок (со всем содержимым)
+     */
+    public synchronized void evict(Path file) {
+        checkVault();
+        Path notes = vaultPathsContainer.getNotesPath();
+        if (notes == null || file == null || !file.startsWith(notes)) return;
+
+        if (file.equals(notes)) {
+            clear();
+            return;
+        }
+
+        String rel = notes.relativize(file).toString().replace('\\', '/');
+        String prefix = rel + "/";
+        idByPath.entrySet().removeIf(e -> {
+            boolean affected = e.getKey().equals(rel) || e.getKey().startsWith(prefix);
+            if (affected) pathById.remove(e.getValue());
+            return affected;
+        });
+    }
+
+    public synchronized void clear() {
+        idByPath.clear();
+        pathById.clear();
+    }
+
+    private void checkVault() {
+        Path current = vaultPathsContainer.getVaultPath();
+        if (Objects.equals(vault, current)) return;
+
+        clear();
+        vault = current;
+    }
+}
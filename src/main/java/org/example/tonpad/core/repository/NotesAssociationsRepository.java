@@ -2,6 +2,7 @@ package org.example.tonpad.core.repository;
 
 import org.example.tonpad.core.models.NotesAssociationsRecord;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,7 +18,23 @@ public interface NotesAssociationsRepository {
 
     void save(NotesAssociationsRecord record);
 
+    void saveAll(int srcId, Collection<Integer> dstIds);
+
+    /**
+     * Добавляет связь, если её ещё нет
+     */
+    void saveIfAbsent(int srcId, int dstId);
+
     void delete(int id);
 
     void delete(int srcId, int dstId);
+
+    void deleteAll(int srcId, Collection<Integer> dstIds);
+
+    void deleteBySrcId(int srcId);
+
+    /**
+     * Переносит входящие связи с одной заметки на другую; дубликаты отбрасываются
+     */
+    void moveDst(int fromDstId, int toDstId);
 }
@@ -2,7 +2,9 @@ package org.example.tonpad.core.repository;
 
 import org.example.tonpad.core.models.NoteRecord;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface NotesRepository {
@@ -11,6 +13,23 @@ public interface NotesRepository {
 
     Optional<NoteRecord> getById(int id);
 
+    Optional<NoteRecord> getByPath(String path);
+
+    /**
+     * @return id заметок по путям; путей, которых нет в таблице, в результате нет
+     */
+    Map<String, Integer> getIdsByPaths(Collection<String> paths);
+
+    /**
+     * @return пути заметок по id; id, которых нет в таблице, в результате нет
+     */
+    Map<Integer, String> getPathsByIds(Collection<Integer> ids);
+
+    /**
+     * @return заметка с путём path и все заметки в каталоге path
+     */
+    List<NoteRecord> getByPathPrefix(String path);
+
     void save(NoteRecord note);
 
     void delete(int id);
@@ -17,5 +17,12 @@ public interface NotesToTemplatesRepository {
 
     void save(NotesToTemplatesRecord record);
 
+    /**
+     * Привязывает шаблон к заметке, если он ещё не привязан
+     */
+    void saveIfAbsent(int noteId, int templateId);
+
     void delete(int id);
+
+    void delete(int noteId, int templateId);
 }
@@ -2,7 +2,9 @@ package org.example.tonpad.core.repository;
 
 import org.example.tonpad.core.models.TemplateFieldRecord;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public interface TemplateFieldsRepository {
@@ -13,9 +15,15 @@ public interface TemplateFieldsRepository {
 
     List<String> getByTemplateId(int templateId);
 
+    Map<Integer, List<String>> getAllGroupedByTemplateId();
+
     void save(TemplateFieldRecord field);
 
+    void saveAll(List<TemplateFieldRecord> fields);
+
     void delete(int id);
 
     void deleteByTemplateId(int templateId);
+
+    void deleteByTemplateIds(Collection<Integer> templateIds);
 }
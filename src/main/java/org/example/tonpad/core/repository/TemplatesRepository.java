@@ -2,6 +2,7 @@ package org.example.tonpad.core.repository;
 
 import org.example.tonpad.core.models.TemplateRecord;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,5 +16,9 @@ public interface TemplatesRepository {
 
     void save(TemplateRecord template);
 
+    void saveAll(List<TemplateRecord> templates);
+
     void delete(int id);
+
+    void deleteAll(Collection<Integer> ids);
 }
@@ -4,12 +4,14 @@ import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.models.NotesAssociationsRecord;
 import org.example.tonpad.core.repository.NotesAssociationsRepository;
 import org.example.tonpad.core.service.db.ConnectionProviderService;
+import org.jooq.BatchBindStep;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -27,7 +29,7 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
 
     @Override
     public List<NotesAssociationsRecord> getAll() {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(ASSOCIATIONS_TABLE)
@@ -36,7 +38,7 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
 
     @Override
     public Optional<NotesAssociationsRecord> getById(int id) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(ASSOCIATIONS_TABLE)
@@ -46,7 +48,7 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
 
     @Override
     public List<NotesAssociationsRecord> getBySrcId(int srcId) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(ASSOCIATIONS_TABLE)
@@ -56,7 +58,7 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
 
     @Override
     public List<NotesAssociationsRecord> getByDstId(int dstId) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(ASSOCIATIONS_TABLE)
@@ -84,6 +86,31 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
         }
     }
 
+    @Override
+    public void saveAll(int srcId, Collection<Integer> dstIds) {
+        if (dstIds.isEmpty()) return;
+
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        BatchBindStep inserts = ctx.batch(ctx.insertInto(ASSOCIATIONS_TABLE, SRC_ID_FIELD, DST_ID_FIELD)
+                .values((Integer) null, (Integer) null));
+        for (Integer dstId : dstIds) {
+            inserts.bind(srcId, dstId);
+        }
+        inserts.execute();
+    }
+
+    @Override
+    public void saveIfAbsent(int srcId, int dstId) {
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.insertInto(ASSOCIATIONS_TABLE)
+                .set(SRC_ID_FIELD, srcId)
+                .set(DST_ID_FIELD, dstId)
+                .onConflictDoNothing()
+                .execute();
+    }
+
     @Override
     public void delete(int id) {
         DSLContext ctx = connectionProviderService.getDSLContext();
@@ -101,4 +128,35 @@ public class NotesAssociationsRepositoryImpl implements NotesAssociationsReposit
                 .where(SRC_ID_FIELD.eq(srcId), DST_ID_FIELD.eq(dstId))
                 .execute();
     }
+
+    @Override
+    public void deleteAll(int srcId, Collection<Integer> dstIds) {
+        if (dstIds.isEmpty()) return;
+
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.delete(ASSOCIATIONS_TABLE)
+                .where(SRC_ID_FIELD.eq(srcId), DST_ID_FIELD.in(dstIds))
+                .execute();
+    }
+
+    @Override
+    public void deleteBySrcId(int srcId) {
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.delete(ASSOCIATIONS_TABLE)
+                .where(SRC_ID_FIELD.eq(srcId))
+                .execute();
+    }
+
+    @Override
+    public void moveDst(int fromDstId, int toDstId) {
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        // связь, которая уже есть у новой заметки, нарушила бы unique (src_id, dst_id)
+        ctx.execute("update or ignore notes_associations set dst_id = ? where dst_id = ?", toDstId, fromDstId);
+        ctx.delete(ASSOCIATIONS_TABLE)
+                .where(DST_ID_FIELD.eq(fromDstId))
+                .execute();
+    }
 }
@@ -2,6 +2,7 @@ package org.example.tonpad.core.repository.impl;
 
 import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.models.NoteRecord;
+import org.example.tonpad.core.repository.NotePathCache;
 import org.example.tonpad.core.repository.NotesRepository;
 import org.example.tonpad.core.service.db.ConnectionProviderService;
 import org.jooq.DSLContext;
@@ -10,7 +11,11 @@ import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -20,13 +25,18 @@ public class NotesRepositoryImpl implements NotesRepository {
     public static final Table<?> NOTES_TABLE = DSL.table("notes");
 
     public static final Field<Integer> ID_FIELD = DSL.field("id", Integer.class);
-    public static final Field<String> NAME_FIELD = DSL.field("name", String.class);
+    public static final Field<String> PATH_FIELD = DSL.field("path", String.class);
+
+    // с запасом ниже лимита SQLite на число параметров запроса
+    private static final int PATHS_CHUNK_SIZE = 500;
 
     private final ConnectionProviderService connectionProviderService;
 
+    private final NotePathCache cache;
+
     @Override
     public List<NoteRecord> getAll() {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(NOTES_TABLE)
@@ -35,12 +45,99 @@ public class NotesRepositoryImpl implements NotesRepository {
 
     @Override
     public Optional<NoteRecord> getById(int id) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        String cached = cache.getPath(id);
+        if (cached != null) return Optional.of(new NoteRecord(id, cached));
 
-        return ctx.select()
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        Optional<NoteRecord> note = ctx.select()
                 .from(NOTES_TABLE)
                 .where(ID_FIELD.eq(id))
                 .fetchOptionalInto(NoteRecord.class);
+        note.ifPresent(n -> cache.put(n.getPath(), n.getId()));
+        return note;
+    }
+
+    @Override
+    public Optional<NoteRecord> getByPath(String path) {
+        Integer cached = cache.getId(path);
+        if (cached != null) return Optional.of(new NoteRecord(cached, path));
+
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        Optional<NoteRecord> note = ctx.select()
+                .from(NOTES_TABLE)
+                .where(PATH_FIELD.eq(path))
+                .fetchOptionalInto(NoteRecord.class);
+        note.ifPresent(n -> cache.put(n.getPath(), n.getId()));
+        return note;
+    }
+
+    @Override
+    public Map<String, Integer> getIdsByPaths(Collection<String> paths) {
+        Map<String, Integer> ids = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String path : paths) {
+            Integer cached = cache.getId(path);
+            if (cached != null) ids.put(path, cached);
+            else missing.add(path);
+        }
+        if (missing.isEmpty()) return ids;
+
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        for (int from = 0; from < missing.size(); from += PATHS_CHUNK_SIZE) {
+            List<String> chunk = missing.subList(from, Math.min(from + PATHS_CHUNK_SIZE, missing.size()));
+            ctx.select(ID_FIELD, PATH_FIELD)
+                    .from(NOTES_TABLE)
+                    .where(PATH_FIELD.in(chunk))
+                    .fetch()
+                    .forEach(r -> {
+                        ids.put(r.value2(), r.value1());
+                        cache.put(r.value2(), r.value1());
+                    });
+        }
+        return ids;
+    }
+
+    @Override
+    public Map<Integer, String> getPathsByIds(Collection<Integer> ids) {
+        Map<Integer, String> paths = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : ids) {
+            String cached = cache.getPath(id);
+            if (cached != null) paths.put(id, cached);
+            else missing.add(id);
+        }
+        if (missing.isEmpty()) return paths;
+
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        for (int from = 0; from < missing.size(); from += PATHS_CHUNK_SIZE) {
+            List<Integer> chunk = missing.subList(from, Math.min(from + PATHS_CHUNK_SIZE, missing.size()));
+            ctx.select(ID_FIELD, PATH_FIELD)
+                    .from(NOTES_TABLE)
+                    .where(ID_FIELD.in(chunk))
+                    .fetch()
+                    .forEach(r -> {
+                        paths.put(r.value1(), r.value2());
+                        cache.put(r.value2(), r.value1());
+                    });
+        }
+        return paths;
+    }
+
+    @Override
+    public List<NoteRecord> getByPathPrefix(String path) {
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        // пути каталога лежат в диапазоне ["path/", "path0"): '0' следует сразу за '/', так что работает индекс по path
+        List<NoteRecord> notes = ctx.select()
+                .from(NOTES_TABLE)
+                .where(PATH_FIELD.eq(path).or(PATH_FIELD.ge(path + "/").and(PATH_FIELD.lt(path + "0"))))
+                .fetchInto(NoteRecord.class);
+        notes.forEach(n -> cache.put(n.getPath(), n.getId()));
+        return notes;
     }
 
     @Override
@@ -49,15 +146,17 @@ public class NotesRepositoryImpl implements NotesRepository {
 
         if (note.getId() == null) {
             Integer id = ctx.insertInto(NOTES_TABLE)
-                    .set(NAME_FIELD, note.getName())
+                    .set(PATH_FIELD, note.getPath())
                     .returningResult(ID_FIELD)
                     .fetchOneInto(Integer.class);
             note.setId(id);
         } else {
             ctx.update(NOTES_TABLE)
-                    .set(NAME_FIELD, note.getName())
+                    .set(PATH_FIELD, note.getPath())
                     .where(ID_FIELD.eq(note.getId()))
                     .execute();
+            // транзакция может откатиться, поэтому запись не обновляем, а выбрасываем
+            cache.evictId(note.getId());
         }
     }
 
@@ -68,5 +167,6 @@ public class NotesRepositoryImpl implements NotesRepository {
         ctx.deleteFrom(NOTES_TABLE)
                 .where(ID_FIELD.eq(id))
                 .execute();
+        cache.evictId(id);
     }
 }
@@ -27,7 +27,7 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
 
     @Override
     public List<NotesToTemplatesRecord> getAll() {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(NOTES_TO_TEMPLATES_TABLE)
@@ -36,7 +36,7 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
 
     @Override
     public Optional<NotesToTemplatesRecord> getById(int id) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(NOTES_TO_TEMPLATES_TABLE)
@@ -46,7 +46,7 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
 
     @Override
     public List<NotesToTemplatesRecord> getByNoteId(int noteId) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(NOTES_TO_TEMPLATES_TABLE)
@@ -56,7 +56,7 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
 
     @Override
     public List<NotesToTemplatesRecord> getByTemplateId(int templateId) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(NOTES_TO_TEMPLATES_TABLE)
@@ -84,6 +84,17 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
         }
     }
 
+    @Override
+    public void saveIfAbsent(int noteId, int templateId) {
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.insertInto(NOTES_TO_TEMPLATES_TABLE)
+                .set(NOTE_ID_FIELD, noteId)
+                .set(TEMPLATE_ID_FIELD, templateId)
+                .onConflictDoNothing()
+                .execute();
+    }
+
     @Override
     public void delete(int id) {
         DSLContext ctx = connectionProviderService.getDSLContext();
@@ -92,4 +103,13 @@ public class NotesToTemplatesRepositoryImpl implements NotesToTemplatesRepositor
                 .where(ID_FIELD.eq(id))
                 .execute();
     }
+
+    @Override
+    public void delete(int noteId, int templateId) {
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.delete(NOTES_TO_TEMPLATES_TABLE)
+                .where(NOTE_ID_FIELD.eq(noteId), TEMPLATE_ID_FIELD.eq(templateId))
+                .execute();
+    }
 }
@@ -4,13 +4,18 @@ import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.models.TemplateFieldRecord;
 import org.example.tonpad.core.repository.TemplateFieldsRepository;
 import org.example.tonpad.core.service.db.ConnectionProviderService;
+import org.jooq.BatchBindStep;
 import org.jooq.DSLContext;
 import org.jooq.Field;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Repository
@@ -27,7 +32,7 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
 
     @Override
     public List<TemplateFieldRecord> getAll() {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx
                 .select()
@@ -37,7 +42,7 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
 
     @Override
     public Optional<TemplateFieldRecord> getById(int id) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx
                 .select()
@@ -47,7 +52,7 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
     }
 
     public List<String> getByTemplateId(int templateId) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select(FIELD_FIELD)
                 .from(TEMPLATE_FIELDS_TABLE)
@@ -55,12 +60,25 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
                 .fetchInto(String.class);
     }
 
+    @Override
+    public Map<Integer, List<String>> getAllGroupedByTemplateId() {
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
+
+        Map<Integer, List<String>> result = new HashMap<>();
+        ctx.select(TEMPLATE_ID_FIELD, FIELD_FIELD)
+                .from(TEMPLATE_FIELDS_TABLE)
+                .orderBy(ID_FIELD)
+                .forEach(r -> result.computeIfAbsent(r.value1(), k -> new ArrayList<>()).add(r.value2()));
+        return result;
+    }
+
     @Override
     public void save(TemplateFieldRecord field) {
         DSLContext ctx = connectionProviderService.getDSLContext();
 
         if (field.getId() == null) {
             Integer id = ctx.insertInto(TEMPLATE_FIELDS_TABLE)
+                    .set(TEMPLATE_ID_FIELD, field.getTemplateId())
                     .set(FIELD_FIELD, field.getField())
                     .returningResult(ID_FIELD)
                     .fetchOneInto(Integer.class);
@@ -74,6 +92,37 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
         }
     }
 
+    @Override
+    public void saveAll(List<TemplateFieldRecord> fields) {
+        if (fields.isEmpty()) return;
+
+        connectionProviderService.transaction(() -> {
+            DSLContext ctx = connectionProviderService.getDSLContext();
+
+            List<TemplateFieldRecord> updated = new ArrayList<>();
+            BatchBindStep inserts = ctx.batch(ctx.insertInto(TEMPLATE_FIELDS_TABLE, TEMPLATE_ID_FIELD, FIELD_FIELD)
+                    .values((Integer) null, (String) null));
+            for (TemplateFieldRecord field : fields) {
+                if (field.getId() == null) {
+                    inserts.bind(field.getTemplateId(), field.getField());
+                } else {
+                    updated.add(field);
+                }
+            }
+            if (inserts.size() > 0) inserts.execute();
+
+            if (!updated.isEmpty()) {
+                BatchBindStep updates = ctx.batch(ctx.update(TEMPLATE_FIELDS_TABLE)
+                        .set(FIELD_FIELD, (String) null)
+                        .where(ID_FIELD.eq((Integer) null)));
+                for (TemplateFieldRecord field : updated) {
+                    updates.bind(field.getField(), field.getId());
+                }
+                updates.execute();
+            }
+        });
+    }
+
     @Override
     public void delete(int id) {
         DSLContext ctx = connectionProviderService.getDSLContext();
@@ -90,4 +139,15 @@ public class TemplateFieldsRepositoryImpl implements TemplateFieldsRepository {
                 .where(TEMPLATE_ID_FIELD.eq(templateId))
                 .execute();
     }
+
+    @Override
+    public void deleteByTemplateIds(Collection<Integer> templateIds) {
+        if (templateIds.isEmpty()) return;
+
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.deleteFrom(TEMPLATE_FIELDS_TABLE)
+                .where(TEMPLATE_ID_FIELD.in(templateIds))
+                .execute();
+    }
 }
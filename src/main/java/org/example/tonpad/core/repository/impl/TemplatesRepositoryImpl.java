@@ -6,10 +6,13 @@ import org.example.tonpad.core.repository.TemplatesRepository;
 import org.example.tonpad.core.service.db.ConnectionProviderService;
 import org.jooq.DSLContext;
 import org.jooq.Field;
+import org.jooq.Query;
 import org.jooq.Table;
 import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,7 +29,7 @@ public class TemplatesRepositoryImpl implements TemplatesRepository {
 
     @Override
     public List<TemplateRecord> getAll() {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(TEMPLATES_TABLE)
@@ -35,7 +38,7 @@ public class TemplatesRepositoryImpl implements TemplatesRepository {
 
     @Override
     public Optional<TemplateRecord> getById(int id) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(TEMPLATES_TABLE)
@@ -45,7 +48,7 @@ public class TemplatesRepositoryImpl implements TemplatesRepository {
 
     @Override
     public Optional<TemplateRecord> getByName(String name) {
-        DSLContext ctx = connectionProviderService.getDSLContext();
+        DSLContext ctx = connectionProviderService.getReadDSLContext();
 
         return ctx.select()
                 .from(TEMPLATES_TABLE)
@@ -71,6 +74,28 @@ public class TemplatesRepositoryImpl implements TemplatesRepository {
         }
     }
 
+    @Override
+    public void saveAll(List<TemplateRecord> templates) {
+        if (templates.isEmpty()) return;
+
+        connectionProviderService.transaction(() -> {
+            DSLContext ctx = connectionProviderService.getDSLContext();
+
+            // новым шаблонам нужен сгенерированный id, а порядок строк RETURNING в многострочной вставке не гарантирован
+            List<Query> updates = new ArrayList<>();
+            for (TemplateRecord template : templates) {
+                if (template.getId() == null) {
+                    save(template);
+                } else {
+                    updates.add(ctx.update(TEMPLATES_TABLE)
+                            .set(NAME_FIELD, template.getName())
+                            .where(ID_FIELD.eq(template.getId())));
+                }
+            }
+            if (!updates.isEmpty()) ctx.batch(updates).execute();
+        });
+    }
+
     @Override
     public void delete(int id) {
         DSLContext ctx = connectionProviderService.getDSLContext();
@@ -79,4 +104,15 @@ public class TemplatesRepositoryImpl implements TemplatesRepository {
                 .where(ID_FIELD.eq(id))
                 .execute();
     }
+
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+
+        DSLContext ctx = connectionProviderService.getDSLContext();
+
+        ctx.deleteFrom(TEMPLATES_TABLE)
+                .where(ID_FIELD.in(ids))
+                .execute();
+    }
 }
@@ -0,0 +1,40 @@
+package org.example.tonpad.core.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Индекс имён файлов и каталогов хранилища в памяти (триграммы имён + нечёткий поиск по путям)
+ *
+ * <p>Строится при открытии хранилища и дальше обновляется по событиям {@link org.example.tonpad.core.files.VaultWatchService}.
+ * Все пути - относительно каталога заметок. Пока индекс не готов, методы возвращают {@code Optional.empty()},
+ * и вызывающий код должен обойти диск сам.</p>
+ */
+public interface FileNameIndexService {
+
+    /**
+     * @param positions индексы совпавших символов в {@code path.toString()} с разделителем '/'
+     */
+    record Match(Path path, boolean directory, int score, int[] positions) {}
+
+    void open();
+
+    /**
+     * @return надмножество путей, имя которых содержит {@code fragment} без учёта регистра
+     */
+    Optional<List<Path>> findCandidates(String fragment);
+
+    /**
+     * @return пути с точно таким именем
+     */
+    Optional<List<Path>> findByName(String fileName);
+
+    /**
+     * Поиск как в палитре быстрого открытия: символы запроса должны встречаться в пути по порядку,
+     * выше ранжируются совпадения в имени, подряд идущие и в начале слов
+     *
+     * @return не больше {@code limit} лучших совпадений, по убыванию score
+     */
+    Optional<List<Match>> findFuzzy(String query, int limit);
+}
@@ -0,0 +1,37 @@
+package org.example.tonpad.core.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Граф ссылок между заметками ({@code [[заметка]]}, {@code [[заметка|текст]]}, {@code ![[заметка]]})
+ *
+ * <p>Связи хранятся в notes_associations и обновляются инкрементально при сохранении заметки.
+ * Ссылки на ещё не существующие заметки ведут на заглушки, которые переходят к заметке, когда она
+ * создаётся, перемещается или переименовывается.
+ * Запросы обслуживаются из снимка смежности в памяти, который после изменений лениво перестраивается
+ * из таблицы, поэтому обратные ссылки заметки находятся за время, пропорциональное их числу.
+ * Все пути - абсолютные пути файлов заметок.</p>
+ */
+public interface LinkGraphService {
+
+    /**
+     * Один раз для хранилища в фоне читает все заметки и заполняет граф их ссылками.
+     * Дальше граф обновляется сохранениями из приложения и событиями создания и перемещения файлов;
+     * ссылки, изменённые в заметке в обход приложения, учитываются при её следующем сохранении
+     */
+    void open();
+
+    void update(Path note, String content);
+
+    void remove(Path note);
+
+    void rename(Path oldPath, Path newPath);
+
+    List<Path> getBacklinks(Path note);
+
+    List<Path> getOutlinks(Path note);
+
+    Set<Path> getNeighborhood(Path note, int hops);
+}
@@ -0,0 +1,79 @@
+package org.example.tonpad.core.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Компилирует поисковый запрос один раз и затем ищет его в тексте за один проход
+ *
+ * <p>Несколько литеральных термов ищутся одним автоматом Ахо-Корасик, в режиме regex термы
+ * объединяются в одно выражение. Совпадения не пересекаются: из перекрывающихся литеральных выбирается
+ * самое левое, при равенстве - самое длинное (regex - по правилам {@link java.util.regex.Matcher#find()}).
+ * Позиции совпадений - индексы в исходном тексте.</p>
+ */
+public interface SearchEngine {
+
+    record Options(boolean caseSensitive, boolean wholeWord, boolean regex) {
+        public static final Options DEFAULT = new Options(false, false, false);
+    }
+
+    @FunctionalInterface
+    interface HitConsumer {
+        /**
+         * @return false, чтобы остановить поиск
+         */
+        boolean accept(int start, int end);
+    }
+
+    interface CompiledQuery {
+
+        boolean isEmpty();
+
+        void scan(CharSequence text, int from, int to, HitConsumer consumer);
+
+        default void scan(CharSequence text, HitConsumer consumer) {
+            scan(text, 0, text.length(), consumer);
+        }
+
+        default List<SearchService.Hit> findAll(CharSequence text, int from, int to) {
+            List<SearchService.Hit> hits = new ArrayList<>();
+            scan(text, from, to, (start, end) -> hits.add(new SearchService.Hit(start, end)));
+            return hits;
+        }
+
+        default List<SearchService.Hit> findAll(CharSequence text) {
+            return findAll(text, 0, text.length());
+        }
+
+        default int count(CharSequence text) {
+            int[] count = {0};
+            scan(text, (start, end) -> {
+                count[0]++;
+                return true;
+            });
+            return count[0];
+        }
+
+        default boolean matches(CharSequence text) {
+            boolean[] found = {false};
+            scan(text, (start, end) -> {
+                found[0] = true;
+                return false;
+            });
+            return found[0];
+        }
+    }
+
+    /**
+     * @throws java.util.regex.PatternSyntaxException если в режиме regex запрос некорректен
+     */
+    CompiledQuery compile(List<String> terms, Options options);
+
+    default CompiledQuery compile(String query, Options options) {
+        return compile(query == null ? List.of() : List.of(query), options);
+    }
+
+    default CompiledQuery compile(String query) {
+        return compile(query, Options.DEFAULT);
+    }
+}
@@ -0,0 +1,30 @@
+package org.example.tonpad.core.service;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Персистентный инвертированный индекс заметок хранилища (токен -> заметки)
+ *
+ * <p>Индекс хранится в корне хранилища и обновляется инкрементально. {@link #findCandidates(String)}
+ * возвращает надмножество заметок, строки которых могут содержать запрос; если индекс не готов
+ * или запрос не содержит токенов, возвращается {@code Optional.empty()} и вызывающий код
+ * должен выполнить полный просмотр файлов.</p>
+ */
+public interface SearchIndexService {
+
+    void open();
+
+    void sync();
+
+    void update(Path path, String content);
+
+    void remove(Path path);
+
+    void rename(Path oldPath, Path newPath);
+
+    Optional<List<Path>> findCandidates(String query);
+
+    void save();
+}
@@ -1,16 +1,54 @@
 package org.example.tonpad.core.service;
 
+import org.example.tonpad.core.editor.listener.NoteChangeListener;
+
+import java.nio.file.Path;
 import java.util.List;
-import java.util.function.IntSupplier;
+import java.util.Optional;
 import java.util.function.Supplier;
 
 public interface SearchService {
     record Hit(int start, int end) {}
 
-    interface Session extends AutoCloseable {
-        List<Hit> findAll (String query);
+    /**
+     * Текст заметки и номер последнего применённого к нему изменения редактора (0 - сразу после полной загрузки)
+     */
+    record Text(String content, int version) {}
+
+    /**
+     * Совпадения и текст, в котором они найдены, в одной и той же версии
+     */
+    record Result(String text, List<Hit> hits) {}
+
+    /**
+     * Поиск по тексту открытой заметки
+     *
+     * <p>Сессия подписывается на изменения редактора и держит текст в приведённом к нижнему регистру буфере,
+     * который правится на месте по каждому изменению. Целиком текст перечитывается, только если изменение
+     * пришло не по порядку. Методы поиска можно вызывать из любого потока.</p>
+     */
+    interface Session extends NoteChangeListener, AutoCloseable {
+        List<Hit> findAll(String query);
+
+        List<Hit> findAll(String query, SearchEngine.Options options);
+
+        /**
+         * @return пусто, если текста заметки сейчас нет (он разошёлся с редактором)
+         */
+        Optional<Result> search(String query, SearchEngine.Options options);
+
+        void moveTo(Path note);
+
         @Override void close();
     }
 
-    Session openSession(Supplier<String> textSupplier, IntSupplier versionSupplier);
+    /**
+     * @param textSupplier текущий текст заметки или null, если его нет; нужен, только когда буфер сессии отстал
+     */
+    Session openSession(Path note, Supplier<Text> textSupplier);
+
+    /**
+     * @return сессия открытой заметки
+     */
+    Optional<Session> findSession(Path note);
 }
@@ -1,5 +1,8 @@
 package org.example.tonpad.core.service.crypto;
 
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.file.Path;
 
 import org.example.tonpad.core.exceptions.DecryptionException;
@@ -15,5 +18,27 @@ public interface Encryptor {
 
     byte[] decrypt(byte[] text, byte[] aad) throws DecryptionException;
 
+    /**
+     * Шифрует остаток {@code plain} в бинарный формат прямо в {@code out}; места в {@code out} должно быть
+     * не меньше {@link #encryptedSize(int)}. Возвращает число записанных байт
+     */
+    int encrypt(ByteBuffer plain, ByteBuffer out, byte[] aad) throws EncryptionException;
+
+    int decrypt(ByteBuffer in, ByteBuffer out, byte[] aad) throws DecryptionException;
+
+    int encryptedSize(int plainLength);
+
+    /**
+     * Поток, шифрующий всё записанное в бинарный сегментированный формат; закрытие дописывает последний сегмент
+     * и закрывает {@code out}
+     */
+    OutputStream encryptingStream(OutputStream out, byte[] aad) throws EncryptionException;
+
+    /**
+     * Поток открытого текста: бинарный формат расшифровывается посегментно, старый текстовый - целиком,
+     * незашифрованные данные отдаются как есть
+     */
+    InputStream decryptingStream(InputStream in, byte[] aad) throws DecryptionException;
+
     boolean isActionWithNoPasswordAllowed(Path path);
 }
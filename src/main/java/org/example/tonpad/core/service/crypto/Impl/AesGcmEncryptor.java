@@ -1,6 +1,11 @@
 package org.example.tonpad.core.service.crypto.Impl;
 
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -25,7 +30,6 @@ public class AesGcmEncryptor implements Encryptor {
     private static final String KEY_LENGTH_ERROR = "key must be only 16/24/32 bytes length";
 
     private static final String ALGORYTHM = "AES";
-    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
     private static final int NONCE_LEN = 12;
     private static final int TAG_LEN_BITS  = 128;
 
@@ -34,6 +38,11 @@ public class AesGcmEncryptor implements Encryptor {
     public static final String HEADER = "TOP::LARSENS::INC::LTD::WOODLANE::LONDON::ASTON::VANQUISH::V12\\n";
     private static final byte[] HEADER_BYTES = HEADER.getBytes(StandardCharsets.US_ASCII);
 
+    /**
+     * Сколько байт начала файла достаточно, чтобы распознать любой из поддерживаемых форматов
+     */
+    public static final int PREFIX_LENGTH = Math.max(HEADER_BYTES.length, AesGcmSegmentStreams.HEADER_LEN);
+
     private final SecretKey key;
 
     public AesGcmEncryptor()
@@ -46,21 +55,88 @@ public class AesGcmEncryptor implements Encryptor {
         this.key = new SecretKeySpec(key, ALGORYTHM);
     }
 
+    /**
+     * Старый текстовый формат {@code HEADER + Base64}; новые данные нужно шифровать через {@link #encrypt(byte[], byte[])}
+     */
+    @Deprecated
     @Override
     public String encrypt(String text, String aad) {
         byte[] plain = text.getBytes(StandardCharsets.UTF_8);
         byte[] aadBytes = aad == null ? null : aad.getBytes(StandardCharsets.UTF_8);
-        byte[] wrapped = encrypt(plain, aadBytes);
+        byte[] wrapped = encryptLegacy(plain, aadBytes);
         return new String(wrapped, StandardCharsets.UTF_8);
     }
 
     @Override
     public byte[] encrypt(byte[] text, byte[] aad) {
+        byte[] out = new byte[AesGcmSegmentStreams.sealedSize(text.length)];
+        AesGcmSegmentStreams.seal(ByteBuffer.wrap(text), ByteBuffer.wrap(out), key, aad, rnd);
+        return out;
+    }
+
+    @Override
+    public int encrypt(ByteBuffer plain, ByteBuffer out, byte[] aad) {
+        return AesGcmSegmentStreams.seal(plain, out, key, aad, rnd);
+    }
+
+    @Override
+    public int encryptedSize(int plainLength) {
+        return AesGcmSegmentStreams.sealedSize(plainLength);
+    }
+
+    @Override
+    public int decrypt(ByteBuffer in, ByteBuffer out, byte[] aad) {
+        byte[] prefix = new byte[Math.min(in.remaining(), PREFIX_LENGTH)];
+        in.get(in.position(), prefix);
+        if (AesGcmSegmentStreams.startsWithMagic(prefix)) {
+            return AesGcmSegmentStreams.open(in, out, key, aad);
+        }
+        // старый формат и открытый текст обрабатываются через массив
+        byte[] data = new byte[in.remaining()];
+        in.get(data);
+        byte[] plain = decrypt(data, aad);
+        out.put(plain);
+        return plain.length;
+    }
+
+    @Override
+    public OutputStream encryptingStream(OutputStream out, byte[] aad) {
+        return AesGcmSegmentStreams.encrypting(out, key, aad, rnd);
+    }
+
+    @Override
+    public InputStream decryptingStream(InputStream in, byte[] aad) {
+        try {
+            InputStream source = in.markSupported() ? in : new BufferedInputStream(in);
+            source.mark(PREFIX_LENGTH);
+            byte[] prefix = source.readNBytes(PREFIX_LENGTH);
+            source.reset();
+
+            if (AesGcmSegmentStreams.startsWithMagic(prefix)) {
+                return AesGcmSegmentStreams.decrypting(source, key, aad);
+            }
+            if (startWith(prefix, HEADER_BYTES)) {
+                // старый формат не потоковый - читаем целиком
+                try (source) {
+                    return new ByteArrayInputStream(decrypt(source.readAllBytes(), aad));
+                }
+            }
+            return source;
+        } catch (IOException e) {
+            throw new DecryptionException("Decryption error", e);
+        }
+    }
+
+    public static boolean looksEncrypted(byte[] prefix) {
+        return prefix != null && (AesGcmSegmentStreams.startsWithMagic(prefix) || startWith(prefix, HEADER_BYTES));
+    }
+
+    private byte[] encryptLegacy(byte[] text, byte[] aad) {
         try {
             byte[] nonce = new byte[NONCE_LEN];
             rnd.nextBytes(nonce);
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            Cipher cipher = AesGcmSegmentStreams.cipher();
             cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LEN_BITS, nonce));
             if (aad != null && aad.length > 0) cipher.updateAAD(aad);
 
@@ -77,6 +153,10 @@ public class AesGcmEncryptor implements Encryptor {
         }
     }
 
+    /**
+     * Понимает только старый текстовый формат; бинарный формат читается через {@link #decrypt(byte[], byte[])}
+     */
+    @Deprecated
     @Override
     public String decrypt(String text, String aad) {
         byte[] in = text.getBytes(StandardCharsets.UTF_8);
@@ -87,6 +167,11 @@ public class AesGcmEncryptor implements Encryptor {
 
     @Override
     public byte[] decrypt(byte[] text, byte[] aad) {
+        if (AesGcmSegmentStreams.startsWithMagic(text)) {
+            byte[] out = new byte[AesGcmSegmentStreams.openedSize(text)];
+            AesGcmSegmentStreams.open(ByteBuffer.wrap(text), ByteBuffer.wrap(out), key, aad);
+            return out;
+        }
         if (!startWith(text, HEADER_BYTES)) return text;
         try {
             String whole = new String(text, StandardCharsets.UTF_8);
@@ -99,7 +184,7 @@ public class AesGcmEncryptor implements Encryptor {
             byte[] nonce = Arrays.copyOfRange(packed, 0, NONCE_LEN);
             byte[] cipherText = Arrays.copyOfRange(packed, NONCE_LEN, packed.length);
 
-            Cipher cipher = Cipher.getInstance(TRANSFORMATION);
+            Cipher cipher = AesGcmSegmentStreams.cipher();
             cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LEN_BITS, nonce));
             if (aad != null && aad.length > 0) cipher.updateAAD(aad);
 
@@ -113,11 +198,11 @@ public class AesGcmEncryptor implements Encryptor {
     public boolean isActionWithNoPasswordAllowed(Path path)
     {
         try (InputStream in = Files.newInputStream(path)) {
-            byte[] prefix = in.readNBytes(HEADER_BYTES.length);
+            byte[] prefix = in.readNBytes(PREFIX_LENGTH);
             if (prefix.length == 0) {
                 return true;
             }
-            if (startWith(prefix, HEADER_BYTES)) {
+            if (looksEncrypted(prefix)) {
                 return false;
             }
             return true;
@@ -0,0 +1,351 @@
+package org.example.tonpad.core.service.crypto.Impl;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+
+import org.example.tonpad.core.exceptions.DecryptionException;
+import org.example.tonpad.core.exceptions.EncryptionException;
+
+/**
+ * Потоковый бинарный формат шифрования
+ *
+ * <p>Заголовок (16 байт): {@code "TNPD"}, версия, размер сегмента (int), префикс nonce (7 байт).
+ * Далее идут сегменты AES-GCM по {@code segmentSize} байт открытого текста плюс 16 байт тега.
+ * Nonce сегмента: префикс || номер сегмента (4 байта) || признак последнего сегмента (1 байт),
+ * поэтому обрезка, перестановка и склейка сегментов обнаруживаются при проверке тега.
+ * Заголовок входит в AAD каждого сегмента.</p>
+ *
+ * <p>{@link Cipher} кешируется на поток: каждая операция над сегментом (init, AAD, doFinal) выполняется целиком
+ * внутри одного вызова, поэтому несколько потоков данных на одном треде могут пользоваться одним экземпляром.</p>
+ */
+final class AesGcmSegmentStreams {
+
+    static final byte[] MAGIC = {'T', 'N', 'P', 'D'};
+    static final byte VERSION = 1;
+    static final int HEADER_LEN = 16;
+    static final int DEFAULT_SEGMENT_SIZE = 64 * 1024;
+
+    private static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final int TAG_LEN = 16;
+    private static final int NONCE_PREFIX_LEN = 7;
+    private static final int MAX_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    private static final ThreadLocal<Cipher> CIPHER = ThreadLocal.withInitial(AesGcmSegmentStreams::newCipher);
+
+    private AesGcmSegmentStreams() {
+    }
+
+    static boolean startsWithMagic(byte[] data) {
+        if (data == null || data.length < MAGIC.length + 1) return false;
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (data[i] != MAGIC[i]) return false;
+        }
+        return data[MAGIC.length] == VERSION;
+    }
+
+    static Cipher cipher() {
+        return CIPHER.get();
+    }
+
+    static OutputStream encrypting(OutputStream out, SecretKey key, byte[] aad, Random rnd) {
+        return new EncryptingOutputStream(out, key, newHeader(rnd), aad, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Размер зашифрованного представления: последний сегмент есть всегда, даже пустой
+     */
+    static int sealedSize(int plainLength) {
+        int segments = plainLength == 0 ? 1 : (plainLength + DEFAULT_SEGMENT_SIZE - 1) / DEFAULT_SEGMENT_SIZE;
+        return HEADER_LEN + plainLength + segments * TAG_LEN;
+    }
+
+    static int openedSize(byte[] sealed) {
+        int segmentSize = segmentSize(sealed);
+        int body = sealed.length - HEADER_LEN;
+        int full = body / (segmentSize + TAG_LEN);
+        int rest = body % (segmentSize + TAG_LEN);
+        if (rest > 0 && rest < TAG_LEN || body < TAG_LEN) throw new DecryptionException("Truncated segment");
+        int segments = full + (rest > 0 ? 1 : 0);
+        return body - segments * TAG_LEN;
+    }
+
+    /**
+     * Шифрует всё оставшееся в {@code plain} прямо в {@code out} (в том числе direct-буферы), возвращает число записанных байт
+     */
+    static int seal(ByteBuffer plain, ByteBuffer out, SecretKey key, byte[] aad, Random rnd) {
+        byte[] header = newHeader(rnd);
+        byte[] ad = associatedData(header, aad);
+        byte[] nonce = noncePrefix(header);
+        int start = out.position();
+        out.put(header);
+
+        try {
+            Cipher cipher = CIPHER.get();
+            int index = 0;
+            boolean last;
+            do {
+                int n = Math.min(plain.remaining(), DEFAULT_SEGMENT_SIZE);
+                last = plain.remaining() == n;
+                ByteBuffer segment = plain.slice(plain.position(), n);
+                plain.position(plain.position() + n);
+
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LEN * 8, fillNonce(nonce, index++, last)));
+                cipher.updateAAD(ad);
+                cipher.doFinal(segment, out);
+            } while (!last);
+        } catch (GeneralSecurityException e) {
+            throw new EncryptionException("Encryption error", e);
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Расшифровывает всё оставшееся в {@code in} в {@code out}, возвращает число записанных байт
+     */
+    static int open(ByteBuffer in, ByteBuffer out, SecretKey key, byte[] aad) {
+        if (in.remaining() < HEADER_LEN) throw new DecryptionException("Invalid header");
+        byte[] header = new byte[HEADER_LEN];
+        in.get(header);
+        int segmentSize = segmentSize(header);
+        byte[] ad = associatedData(header, aad);
+        byte[] nonce = noncePrefix(header);
+        int start = out.position();
+
+        try {
+            Cipher cipher = CIPHER.get();
+            int index = 0;
+            boolean last;
+            do {
+                int n = Math.min(in.remaining(), segmentSize + TAG_LEN);
+                if (n < TAG_LEN) throw new DecryptionException("Truncated segment");
+                last = in.remaining() == n;
+                ByteBuffer segment = in.slice(in.position(), n);
+                in.position(in.position() + n);
+
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LEN * 8, fillNonce(nonce, index++, last)));
+                cipher.updateAAD(ad);
+                cipher.doFinal(segment, out);
+            } while (!last);
+        } catch (GeneralSecurityException e) {
+            throw new DecryptionException("Decryption error", e);
+        }
+        return out.position() - start;
+    }
+
+    /**
+     * Поток {@code in} должен быть спозиционирован на начало заголовка
+     */
+    static InputStream decrypting(InputStream in, SecretKey key, byte[] aad) throws IOException {
+        byte[] header = in.readNBytes(HEADER_LEN);
+        return new DecryptingInputStream(in, key, header, aad, segmentSize(header));
+    }
+
+    private static int segmentSize(byte[] header) {
+        if (header.length < HEADER_LEN || !startsWithMagic(header)) {
+            throw new DecryptionException("Invalid header");
+        }
+        int segmentSize = ByteBuffer.wrap(header, MAGIC.length + 1, 4).getInt();
+        if (segmentSize <= 0 || segmentSize > MAX_SEGMENT_SIZE) {
+            throw new DecryptionException("Invalid segment size");
+        }
+        return segmentSize;
+    }
+
+    private static byte[] newHeader(Random rnd) {
+        byte[] header = new byte[HEADER_LEN];
+        byte[] prefix = new byte[NONCE_PREFIX_LEN];
+        rnd.nextBytes(prefix);
+        ByteBuffer.wrap(header).put(MAGIC).put(VERSION).putInt(DEFAULT_SEGMENT_SIZE).put(prefix);
+        return header;
+    }
+
+    private static byte[] noncePrefix(byte[] header) {
+        byte[] nonce = new byte[NONCE_PREFIX_LEN + 5];
+        System.arraycopy(header, HEADER_LEN - NONCE_PREFIX_LEN, nonce, 0, NONCE_PREFIX_LEN);
+        return nonce;
+    }
+
+    private static byte[] fillNonce(byte[] nonce, int index, boolean last) {
+        ByteBuffer.wrap(nonce, NONCE_PREFIX_LEN, 5).putInt(index).put((byte) (last ? 1 : 0));
+        return nonce;
+    }
+
+    private static byte[] associatedData(byte[] header, byte[] aad) {
+        if (aad == null || aad.length == 0) return header;
+        byte[] all = Arrays.copyOf(header, header.length + aad.length);
+        System.arraycopy(aad, 0, all, header.length, aad.length);
+        return all;
+    }
+
+    private static Cipher newCipher() {
+        try {
+            return Cipher.getInstance(TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class EncryptingOutputStream extends FilterOutputStream {
+        private final SecretKey key;
+        private final byte[] header;
+        private final byte[] nonce;
+        private final byte[] aad;
+        private final byte[] plain;
+        private final byte[] sealed;
+        private int filled = 0;
+        private int index = 0;
+        private boolean headerWritten = false;
+        private boolean closed = false;
+
+        private EncryptingOutputStream(OutputStream out, SecretKey key, byte[] header, byte[] aad, int segmentSize) {
+            super(out);
+            this.key = key;
+            this.header = header;
+            this.nonce = noncePrefix(header);
+            this.aad = associatedData(header, aad);
+            this.plain = new byte[segmentSize];
+            this.sealed = new byte[segmentSize + TAG_LEN];
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                // полный сегмент сбрасывается только когда пришли следующие данные - иначе он может оказаться последним
+                if (filled == plain.length) writeSegment(false);
+                int n = Math.min(len, plain.length - filled);
+                System.arraycopy(b, off, plain, filled, n);
+                filled += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) return;
+            closed = true;
+            try {
+                writeSegment(true);
+                out.flush();
+            } finally {
+                Arrays.fill(plain, (byte) 0);
+                out.close();
+            }
+        }
+
+        private void writeSegment(boolean last) throws IOException {
+            if (!headerWritten) {
+                out.write(header);
+                headerWritten = true;
+            }
+            try {
+                Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_LEN * 8, fillNonce(nonce, index++, last)));
+                cipher.updateAAD(aad);
+                int n = cipher.doFinal(plain, 0, filled, sealed, 0);
+                out.write(sealed, 0, n);
+            } catch (GeneralSecurityException e) {
+                throw new EncryptionException("Encryption error", e);
+            }
+            filled = 0;
+        }
+    }
+
+    private static final class DecryptingInputStream extends InputStream {
+        private final PushbackInputStream in;
+        private final SecretKey key;
+        private final byte[] nonce;
+        private final byte[] aad;
+        private final byte[] sealed;
+        private final byte[] plain;
+        private int pos = 0;
+        private int limit = 0;
+        private int index = 0;
+        private boolean finished = false;
+
+        private DecryptingInputStream(InputStream in, SecretKey key, byte[] header, byte[] aad, int segmentSize) {
+            this.in = new PushbackInputStream(in, 1);
+            this.key = key;
+            this.nonce = noncePrefix(header);
+            this.aad = associatedData(header, aad);
+            this.sealed = new byte[segmentSize + TAG_LEN];
+            this.plain = new byte[segmentSize];
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) return 0;
+            while (pos == limit) {
+                if (finished) return -1;
+                readSegment();
+            }
+            int n = Math.min(len, limit - pos);
+            System.arraycopy(plain, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return limit - pos;
+        }
+
+        @Override
+        public void close() throws IOException {
+            Arrays.fill(plain, (byte) 0);
+            in.close();
+        }
+
+        private void readSegment() throws IOException {
+            int n = in.readNBytes(sealed, 0, sealed.length);
+            boolean last;
+            if (n < sealed.length) {
+                last = true;
+            } else {
+                int next = in.read();
+                last = next < 0;
+                if (!last) in.unread(next);
+            }
+            if (n < TAG_LEN) throw new DecryptionException("Truncated segment");
+
+            try {
+                Cipher cipher = CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_LEN * 8, fillNonce(nonce, index++, last)));
+                cipher.updateAAD(aad);
+                limit = cipher.doFinal(sealed, 0, n, plain, 0);
+                pos = 0;
+            } catch (GeneralSecurityException e) {
+                throw new DecryptionException("Decryption error", e);
+            }
+            finished = last;
+        }
+    }
+}
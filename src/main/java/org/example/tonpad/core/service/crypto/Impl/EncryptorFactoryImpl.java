@@ -1,18 +1,48 @@
 package org.example.tonpad.core.service.crypto.Impl;
 
+import java.security.MessageDigest;
+import java.util.Arrays;
+
 import org.example.tonpad.core.service.crypto.Encryptor;
 import org.example.tonpad.core.service.crypto.EncryptorFactory;
+import org.example.tonpad.core.session.VaultSession;
 import org.springframework.stereotype.Service;
 
 @Service
 public class EncryptorFactoryImpl implements EncryptorFactory {
+
+    private static final Encryptor NO_KEY_ENCRYPTOR = new AesGcmEncryptor();
+
+    // шифратор неизменяем и потокобезопасен, поэтому один экземпляр разделяется всеми вызовами с тем же ключом
+    private volatile CachedEncryptor cached;
+
+    public EncryptorFactoryImpl(VaultSession vaultSession) {
+        vaultSession.addLockListener(this::evict);
+    }
+
     @Override
     public Encryptor encryptorForKey(byte[] key) {
-        return new AesGcmEncryptor(key);
+        CachedEncryptor current = cached;
+        if (current != null && key != null && MessageDigest.isEqual(current.key(), key)) {
+            return current.encryptor();
+        }
+
+        Encryptor encryptor = new AesGcmEncryptor(key);
+        cached = new CachedEncryptor(key.clone(), encryptor);
+        return encryptor;
     }
 
     @Override
     public Encryptor encryptorForKey() {
-        return new AesGcmEncryptor();
+        return NO_KEY_ENCRYPTOR;
+    }
+
+    private void evict() {
+        CachedEncryptor current = cached;
+        cached = null;
+        if (current != null) Arrays.fill(current.key(), (byte) 0);
+    }
+
+    private record CachedEncryptor(byte[] key, Encryptor encryptor) {
     }
 }
@@ -9,4 +9,22 @@ public interface ConnectionProviderService {
     DSLContext getDSLContext(Path vaultPath);
 
     DSLContext getDSLContext();
+
+    /**
+     * Контекст пула читателей: не ждёт единственного соединения-писателя
+     */
+    DSLContext getReadDSLContext();
+
+    /**
+     * Выполняет действие в одной транзакции хранилища
+     *
+     * <p>Пока действие выполняется, {@link #getDSLContext()} на этом потоке возвращает контекст транзакции,
+     * поэтому репозитории участвуют в ней без изменений. Вложенный вызов становится частью внешней транзакции.</p>
+     */
+    void transaction(Runnable action);
+
+    /**
+     * То же, что {@link #transaction(Runnable)}, но для явно указанного хранилища
+     */
+    void transaction(Path vaultPath, Runnable action);
 }
@@ -0,0 +1,33 @@
+package org.example.tonpad.core.service.db;
+
+/**
+ * Отложенная запись метаданных заметок
+ *
+ * <p>Изменения копятся в очереди и записываются фоновым потоком пачками, по одной транзакции на пачку.
+ * Изменения с одинаковым ключом схлопываются: в базу попадает только последнее. Если пачка
+ * не записалась, её изменения повторяются по одному, и отбрасывается только то, которое не удалось записать. Каждое изменение
+ * записывается в то хранилище, которое было открыто в момент его постановки в очередь.</p>
+ */
+public interface MetadataWriteQueue {
+
+    /**
+     * Ключ изменяемой записи: entity - таблица, id - идентификатор записи в ней
+     */
+    record Key(String entity, Object id) {
+    }
+
+    void submit(Key key, Runnable write);
+
+    /**
+     * Слушатель вызывается в потоке записи после каждой зафиксированной транзакции
+     */
+    void addCommitListener(Runnable listener);
+
+    /**
+     * Записывает всё, что накопилось, и ждёт окончания записи
+     *
+     * <p>Чтения очередь не ждут и видят только записанное. Вызывать перед записью, которая идёт в базу
+     * мимо очереди, и перед чтением, которому нужны собственные изменения, - не из потока FX.</p>
+     */
+    void flush();
+}
@@ -17,4 +17,6 @@ public interface NotesToTemplatesService {
     void save(NotesToTemplatesRecord record);
 
     void delete(int id);
+
+    void delete(int noteId, int templateId);
 }
@@ -2,6 +2,7 @@ package org.example.tonpad.core.service.db;
 
 import org.example.tonpad.core.models.TemplateRecord;
 
+import java.util.Collection;
 import java.util.List;
 
 public interface TemplatesService {
@@ -14,5 +15,9 @@ public interface TemplatesService {
 
     void save(TemplateRecord template);
 
+    void saveAll(List<TemplateRecord> templates);
+
     void delete(int id);
+
+    void deleteAll(Collection<Integer> ids);
 }
@@ -1,7 +1,11 @@
 package org.example.tonpad.core.service.db.impl;
 
+import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.TonpadConfig;
 import org.example.tonpad.core.service.db.ConnectionProviderService;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.jooq.Configuration;
@@ -13,11 +17,15 @@ import org.jooq.impl.DSL;
 import org.jooq.impl.DataSourceConnectionProvider;
 import org.jooq.impl.DefaultConfiguration;
 import org.springframework.stereotype.Service;
+import org.sqlite.SQLiteConfig;
 
 import java.nio.file.Path;
-import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class ConnectionProviderServiceImpl implements ConnectionProviderService {
@@ -26,25 +34,135 @@ public class ConnectionProviderServiceImpl implements ConnectionProviderService
 
     private static final String DRIVER_STRING = "jdbc:sqlite:";
 
-    private final Map<Path, DSLContext> contextMap = new HashMap<>();
+    private static final String DRIVER_CLASS_NAME = "org.sqlite.JDBC";
+
+    private static final String POOL_CLOSE_ERROR = "Database pool closing error";
+
+    private final Map<Path, VaultDatabase> databases = new ConcurrentHashMap<>();
+
+    private final ThreadLocal<DSLContext> transactionContext = new ThreadLocal<>();
 
     private final VaultPathsContainer path;
 
+    private final TonpadConfig config;
+
     @Override
     public DSLContext getDSLContext() {
+        DSLContext transactional = transactionContext.get();
+        if (transactional != null) return transactional;
+
         return getDSLContext(path.getVaultPath());
     }
 
     @Override
     public DSLContext getDSLContext(Path vaultPath) {
-        return contextMap.computeIfAbsent(vaultPath, key -> createDSLContext());
+        return database(vaultPath).writer();
+    }
+
+    @Override
+    public DSLContext getReadDSLContext() {
+        // внутри транзакции читаем через неё, чтобы видеть собственные незафиксированные изменения
+        DSLContext transactional = transactionContext.get();
+        if (transactional != null) return transactional;
+
+        return database(path.getVaultPath()).reader();
     }
 
-    private DSLContext createDSLContext() {
-        HikariDataSource ds = new HikariDataSource();
-        ds.setJdbcUrl(DRIVER_STRING + path.getVaultPath().resolve(DATABASE_NAME));
-        ds.setDriverClassName("org.sqlite.JDBC");
+    @Override
+    public void transaction(Runnable action) {
+        transaction(path.getVaultPath(), action);
+    }
+
+    @Override
+    public void transaction(Path vaultPath, Runnable action) {
+        if (transactionContext.get() != null) {
+            action.run();
+            return;
+        }
+
+        getDSLContext(vaultPath).transaction(configuration -> {
+            transactionContext.set(DSL.using(configuration));
+            try {
+                action.run();
+            } finally {
+                transactionContext.remove();
+            }
+        });
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        synchronized (databases) {
+            databases.values().forEach(VaultDatabase::close);
+            databases.clear();
+        }
+    }
 
+    private VaultDatabase database(Path vaultPath) {
+        VaultDatabase database = databases.get(vaultPath);
+        if (database != null) return database;
+
+        synchronized (databases) {
+            database = databases.get(vaultPath);
+            if (database == null) {
+                // одновременно открыто только одно хранилище - пулы предыдущего больше не нужны
+                databases.values().forEach(VaultDatabase::close);
+                databases.clear();
+
+                database = openDatabase(vaultPath);
+                databases.put(vaultPath, database);
+            }
+            return database;
+        }
+    }
+
+    private VaultDatabase openDatabase(Path vaultPath) {
+        TonpadConfig.Sqlite sqlite = config.sqlite();
+        String url = DRIVER_STRING + vaultPath.resolve(DATABASE_NAME);
+
+        // писатель создаётся первым: он переводит базу в WAL, без которого читатели блокировались бы записью
+        HikariConfig writerConfig = poolConfig(url, "tonpad-writer", connectionProperties(sqlite, false));
+        writerConfig.setMaximumPoolSize(1);
+        HikariDataSource writerPool = new HikariDataSource(writerConfig);
+
+        HikariConfig readerConfig = poolConfig(url, "tonpad-reader", connectionProperties(sqlite, true));
+        readerConfig.setMaximumPoolSize(Math.max(1, sqlite.readerPoolSize()));
+        readerConfig.setMinimumIdle(1);
+        HikariDataSource readerPool;
+        try {
+            readerPool = new HikariDataSource(readerConfig);
+        } catch (RuntimeException e) {
+            writerPool.close();
+            throw e;
+        }
+
+        return new VaultDatabase(writerPool, readerPool, createDSLContext(writerPool), createDSLContext(readerPool));
+    }
+
+    private static HikariConfig poolConfig(String url, String poolName, Properties properties) {
+        HikariConfig hikariConfig = new HikariConfig();
+        hikariConfig.setJdbcUrl(url);
+        hikariConfig.setDriverClassName(DRIVER_CLASS_NAME);
+        hikariConfig.setPoolName(poolName);
+        hikariConfig.setDataSourceProperties(properties);
+        return hikariConfig;
+    }
+
+    private static Properties connectionProperties(TonpadConfig.Sqlite sqlite, boolean readOnly) {
+        SQLiteConfig sqliteConfig = new SQLiteConfig();
+        // режим журнала хранится в файле базы, и поменять его может только соединение с правом записи
+        if (!readOnly) {
+            sqliteConfig.setJournalMode(SQLiteConfig.JournalMode.valueOf(sqlite.journalMode().toUpperCase(Locale.ROOT)));
+        }
+        sqliteConfig.setSynchronous(SQLiteConfig.SynchronousMode.valueOf(sqlite.synchronous().toUpperCase(Locale.ROOT)));
+        sqliteConfig.setCacheSize(sqlite.cacheSize());
+        sqliteConfig.setBusyTimeout(sqlite.busyTimeoutMs());
+        sqliteConfig.setPragma(SQLiteConfig.Pragma.MMAP_SIZE, String.valueOf(sqlite.mmapSize()));
+        sqliteConfig.setReadOnly(readOnly);
+        return sqliteConfig.toProperties();
+    }
+
+    private static DSLContext createDSLContext(HikariDataSource ds) {
         ConnectionProvider connectionProvider = new DataSourceConnectionProvider(ds);
 
         Settings settings = new Settings().withRenderSchema(false);
@@ -56,4 +174,17 @@ public class ConnectionProviderServiceImpl implements ConnectionProviderService
 
         return DSL.using(configuration);
     }
+
+    private record VaultDatabase(HikariDataSource writerPool, HikariDataSource readerPool, DSLContext writer, DSLContext reader) {
+
+        private void close() {
+            for (HikariDataSource pool : new HikariDataSource[]{readerPool, writerPool}) {
+                try {
+                    pool.close();
+                } catch (RuntimeException e) {
+                    log.warn(POOL_CLOSE_ERROR, e);
+                }
+            }
+        }
+    }
 }
@@ -0,0 +1,179 @@
+package org.example.tonpad.core.service.db.impl;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.example.tonpad.core.repository.NotePathCache;
+import org.example.tonpad.core.service.db.ConnectionProviderService;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MetadataWriteQueueImpl implements MetadataWriteQueue {
+
+    private static final String FLUSH_ERROR = "Metadata flush error";
+
+    private static final String FLUSH_INTERRUPTED_ERROR = "Metadata flush interrupted";
+
+    private static final String WRITE_DROPPED_ERROR = "Metadata write dropped: {}";
+
+    // сколько ждать следующих изменений, прежде чем записать пачку
+    private static final long FLUSH_DELAY_MS = 200;
+
+    private final ConnectionProviderService connectionProviderService;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final NotePathCache notePathCache;
+
+    private final List<Runnable> commitListeners = new CopyOnWriteArrayList<>();
+
+    private volatile Thread writerThread;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "metadata-writer");
+        thread.setDaemon(true);
+        writerThread = thread;
+        return thread;
+    });
+
+    private final Object lock = new Object();
+
+    // хранилище -> изменения по ключам; порядок вставки - порядок последних изменений
+    private Map<Path, LinkedHashMap<Key, Runnable>> pending = new LinkedHashMap<>();
+
+    private boolean scheduled;
+
+    private boolean draining;
+
+    @Override
+    public void submit(Key key, Runnable write) {
+        Path vault = vaultPathsContainer.getVaultPath();
+        if (vault == null) return;
+
+        synchronized (lock) {
+            LinkedHashMap<Key, Runnable> writes = pending.computeIfAbsent(vault, v -> new LinkedHashMap<>());
+            // удаляем, чтобы изменение встало в конец: зависимые изменения записываются после него
+            writes.remove(key);
+            writes.put(key, write);
+
+            if (scheduled) return;
+            scheduled = true;
+        }
+        executor.schedule(this::drainLogged, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void addCommitListener(Runnable listener) {
+        commitListeners.add(listener);
+    }
+
+    @Override
+    public void flush() {
+        if (Thread.currentThread() == writerThread) {
+            drain();
+            return;
+        }
+
+        synchronized (lock) {
+            if (pending.isEmpty() && !draining) return;
+        }
+
+        Future<?> future = executor.submit(this::drain);
+        try {
+            future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TonpadBaseException(FLUSH_INTERRUPTED_ERROR, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) throw runtime;
+            throw new TonpadBaseException(FLUSH_ERROR, e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn(FLUSH_ERROR, e);
+        }
+        executor.shutdown();
+    }
+
+    private void drainLogged() {
+        try {
+            drain();
+        } catch (RuntimeException e) {
+            log.warn(FLUSH_ERROR, e);
+        }
+    }
+
+    private void drain() {
+        Map<Path, LinkedHashMap<Key, Runnable>> batch;
+        synchronized (lock) {
+            batch = pending;
+            pending = new LinkedHashMap<>();
+            scheduled = false;
+            draining = true;
+        }
+
+        try {
+            for (Map.Entry<Path, LinkedHashMap<Key, Runnable>> entry : batch.entrySet()) {
+                Path vault = entry.getKey();
+                try {
+                    connectionProviderService.transaction(vault, () -> entry.getValue().values().forEach(Runnable::run));
+                    committed();
+                } catch (RuntimeException e) {
+                    // пачка откатилась целиком; повторяем изменения по одному, чтобы потерять только сбойное
+                    rolledBack();
+                    entry.getValue().forEach((key, write) -> writeAlone(vault, key, write));
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                draining = false;
+            }
+        }
+    }
+
+    private void writeAlone(Path vault, Key key, Runnable write) {
+        try {
+            connectionProviderService.transaction(vault, write);
+            committed();
+        } catch (RuntimeException e) {
+            rolledBack();
+            log.warn(WRITE_DROPPED_ERROR, key, e);
+        }
+    }
+
+    private void committed() {
+        for (Runnable listener : commitListeners) {
+            try {
+                listener.run();
+            } catch (RuntimeException e) {
+                log.warn(FLUSH_ERROR, e);
+            }
+        }
+    }
+
+    // в кэш путей могли попасть записи откатившейся транзакции
+    private void rolledBack() {
+        notePathCache.clear();
+    }
+}
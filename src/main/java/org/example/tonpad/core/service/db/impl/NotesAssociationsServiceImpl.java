@@ -4,9 +4,9 @@ import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.exceptions.ObjectNotFoundException;
 import org.example.tonpad.core.models.NotesAssociationsRecord;
 import org.example.tonpad.core.repository.NotesAssociationsRepository;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
 import org.example.tonpad.core.service.db.NotesAssociationsService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -14,8 +14,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class NotesAssociationsServiceImpl implements NotesAssociationsService {
 
+    private static final String ENTITY = "notes_associations";
+
+    // связи без id - по паре (откуда, куда), чтобы добавление и удаление схлопывались
+    private static final String PAIR_ENTITY = "notes_associations_pair";
+
     private final NotesAssociationsRepository repository;
 
+    private final MetadataWriteQueue writeQueue;
+
     @Override
     public List<NotesAssociationsRecord> getAll() {
         return repository.getAll();
@@ -37,20 +44,30 @@ public class NotesAssociationsServiceImpl implements NotesAssociationsService {
     }
 
     @Override
-    @Transactional
     public void save(NotesAssociationsRecord record) {
-        repository.save(record);
+        int srcId = record.getSrcId();
+        int dstId = record.getDstId();
+
+        if (record.getId() == null) {
+            writeQueue.submit(pairKey(srcId, dstId), () -> repository.saveIfAbsent(srcId, dstId));
+            return;
+        }
+
+        NotesAssociationsRecord snapshot = new NotesAssociationsRecord(record.getId(), srcId, dstId);
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, record.getId()), () -> repository.save(snapshot));
     }
 
     @Override
-    @Transactional
     public void delete(int id) {
-        repository.delete(id);
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, id), () -> repository.delete(id));
     }
 
     @Override
-    @Transactional
     public void delete(int srcId, int dstId) {
-        repository.delete(srcId, dstId);
+        writeQueue.submit(pairKey(srcId, dstId), () -> repository.delete(srcId, dstId));
+    }
+
+    private static MetadataWriteQueue.Key pairKey(int srcId, int dstId) {
+        return new MetadataWriteQueue.Key(PAIR_ENTITY, List.of(srcId, dstId));
     }
 }
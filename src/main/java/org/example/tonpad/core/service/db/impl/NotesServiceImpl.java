@@ -4,9 +4,9 @@ import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.exceptions.ObjectNotFoundException;
 import org.example.tonpad.core.models.NoteRecord;
 import org.example.tonpad.core.repository.NotesRepository;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
 import org.example.tonpad.core.service.db.NotesService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -14,8 +14,12 @@ import java.util.List;
 @RequiredArgsConstructor
 public class NotesServiceImpl implements NotesService {
 
+    private static final String ENTITY = "notes";
+
     private final NotesRepository repository;
 
+    private final MetadataWriteQueue writeQueue;
+
     @Override
     public List<NoteRecord> getAll() {
         return repository.getAll();
@@ -27,14 +31,21 @@ public class NotesServiceImpl implements NotesService {
     }
 
     @Override
-    @Transactional
     public void save(NoteRecord note) {
-        repository.save(note);
+        // новой заметке id нужен сразу, поэтому вставка не откладывается; отложенные изменения
+        // (например, переименование с этого пути) должны попасть в базу раньше неё
+        if (note.getId() == null) {
+            writeQueue.flush();
+            repository.save(note);
+            return;
+        }
+
+        NoteRecord snapshot = new NoteRecord(note.getId(), note.getPath());
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, note.getId()), () -> repository.save(snapshot));
     }
 
     @Override
-    @Transactional
     public void delete(int id) {
-        repository.delete(id);
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, id), () -> repository.delete(id));
     }
 }
@@ -4,9 +4,9 @@ import lombok.RequiredArgsConstructor;
 import org.example.tonpad.core.exceptions.ObjectNotFoundException;
 import org.example.tonpad.core.models.NotesToTemplatesRecord;
 import org.example.tonpad.core.repository.NotesToTemplatesRepository;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
 import org.example.tonpad.core.service.db.NotesToTemplatesService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 
@@ -14,8 +14,15 @@ import java.util.List;
 @RequiredArgsConstructor
 public class NotesToTemplatesServiceImpl implements NotesToTemplatesService {
 
+    private static final String ENTITY = "notes_to_templates";
+
+    // привязки без id - по паре (заметка, шаблон), чтобы привязка и отвязка схлопывались
+    private static final String PAIR_ENTITY = "notes_to_templates_pair";
+
     private final NotesToTemplatesRepository repository;
 
+    private final MetadataWriteQueue writeQueue;
+
     @Override
     public List<NotesToTemplatesRecord> getAll() {
         return repository.getAll();
@@ -37,14 +44,30 @@ public class NotesToTemplatesServiceImpl implements NotesToTemplatesService {
     }
 
     @Override
-    @Transactional
     public void save(NotesToTemplatesRecord record) {
-        repository.save(record);
+        int noteId = record.getNoteId();
+        int templateId = record.getTemplateId();
+
+        if (record.getId() == null) {
+            writeQueue.submit(pairKey(noteId, templateId), () -> repository.saveIfAbsent(noteId, templateId));
+            return;
+        }
+
+        NotesToTemplatesRecord snapshot = new NotesToTemplatesRecord(record.getId(), noteId, templateId);
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, record.getId()), () -> repository.save(snapshot));
     }
 
     @Override
-    @Transactional
     public void delete(int id) {
-        repository.delete(id);
+        writeQueue.submit(new MetadataWriteQueue.Key(ENTITY, id), () -> repository.delete(id));
+    }
+
+    @Override
+    public void delete(int noteId, int templateId) {
+        writeQueue.submit(pairKey(noteId, templateId), () -> repository.delete(noteId, templateId));
+    }
+
+    private static MetadataWriteQueue.Key pairKey(int noteId, int templateId) {
+        return new MetadataWriteQueue.Key(PAIR_ENTITY, List.of(noteId, templateId));
     }
 }
@@ -6,11 +6,14 @@ import org.example.tonpad.core.models.TemplateFieldRecord;
 import org.example.tonpad.core.models.TemplateRecord;
 import org.example.tonpad.core.repository.TemplateFieldsRepository;
 import org.example.tonpad.core.repository.TemplatesRepository;
+import org.example.tonpad.core.service.db.ConnectionProviderService;
 import org.example.tonpad.core.service.db.TemplatesService;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 @Service
 @RequiredArgsConstructor
@@ -20,11 +23,15 @@ public class TemplatesServiceImpl implements TemplatesService {
 
     private final TemplateFieldsRepository fieldsRepository;
 
+    private final ConnectionProviderService connectionProviderService;
+
     @Override
     public List<TemplateRecord> getAll() {
         List<TemplateRecord> templates = templatesRepository.getAll();
+        Map<Integer, List<String>> fields = fieldsRepository.getAllGroupedByTemplateId();
         for (TemplateRecord record : templates) {
-            record.setFields(fieldsRepository.getByTemplateId(record.getId()));
+            List<String> templateFields = fields.get(record.getId());
+            record.setFields(templateFields != null ? templateFields : new ArrayList<>());
         }
         return templates;
     }
@@ -44,19 +51,43 @@ public class TemplatesServiceImpl implements TemplatesService {
     }
 
     @Override
-    @Transactional
     public void save(TemplateRecord template) {
-        templatesRepository.save(template);
-        fieldsRepository.deleteByTemplateId(template.getId());
-        for (String field : template.getFields()) {
-            fieldsRepository.save(new TemplateFieldRecord(field));
-        }
+        saveAll(List.of(template));
+    }
+
+    @Override
+    public void saveAll(List<TemplateRecord> templates) {
+        if (templates.isEmpty()) return;
+
+        connectionProviderService.transaction(() -> {
+            templatesRepository.saveAll(templates);
+
+            List<Integer> ids = templates.stream().map(TemplateRecord::getId).toList();
+            fieldsRepository.deleteByTemplateIds(ids);
+
+            List<TemplateFieldRecord> fields = new ArrayList<>();
+            for (TemplateRecord template : templates) {
+                if (template.getFields() == null) continue;
+                for (String field : template.getFields()) {
+                    fields.add(new TemplateFieldRecord(null, template.getId(), field));
+                }
+            }
+            fieldsRepository.saveAll(fields);
+        });
     }
 
     @Override
-    @Transactional
     public void delete(int id) {
-        templatesRepository.delete(id);
-        fieldsRepository.deleteByTemplateId(id);
+        deleteAll(List.of(id));
+    }
+
+    @Override
+    public void deleteAll(Collection<Integer> ids) {
+        if (ids.isEmpty()) return;
+
+        connectionProviderService.transaction(() -> {
+            fieldsRepository.deleteByTemplateIds(ids);
+            templatesRepository.deleteAll(ids);
+        });
     }
 }
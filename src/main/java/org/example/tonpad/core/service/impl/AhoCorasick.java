@@ -0,0 +1,184 @@
+package org.example.tonpad.core.service.impl;
+
+import org.example.tonpad.core.service.SearchEngine;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Автомат Ахо-Корасик для набора литеральных термов
+ *
+ * <p>Регистр приводится посимвольно, поэтому позиции совпадений - это позиции в исходном тексте.
+ * Сообщает все вхождения всех термов, в том числе пересекающиеся, в порядке их концов.</p>
+ */
+final class AhoCorasick {
+
+    private static final char[] NO_LABELS = new char[0];
+
+    private static final int[] NO_TARGETS = new int[0];
+
+    private static final int ASCII = 128;
+
+    private final boolean caseSensitive;
+
+    private final int[] termLengths;
+
+    private final int maxTermLength;
+
+    // переходы узла: отсортированные символы и соответствующие им узлы
+    private final char[][] labels;
+
+    private final int[][] targets;
+
+    // терм, который заканчивается в узле, или -1
+    private final int[] term;
+
+    private final int[] fail;
+
+    // ближайший по суффиксным ссылкам узел, в котором заканчивается терм, или -1
+    private final int[] dictLink;
+
+    // переходы из корня для ASCII, чтобы не искать их двоичным поиском на каждом символе
+    private final int[] rootAscii = new int[ASCII];
+
+    private int size = 1;
+
+    AhoCorasick(List<String> terms, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+
+        int capacity = 1;
+        for (String t : terms) {
+            capacity += t.length();
+        }
+        labels = new char[capacity][];
+        targets = new int[capacity][];
+        term = new int[capacity];
+        Arrays.fill(term, -1);
+        labels[0] = NO_LABELS;
+        targets[0] = NO_TARGETS;
+
+        termLengths = new int[terms.size()];
+        int max = 0;
+        for (int t = 0; t < terms.size(); t++) {
+            String s = terms.get(t);
+            termLengths[t] = s.length();
+            max = Math.max(max, s.length());
+            if (s.isEmpty()) continue;
+
+            int node = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = fold(s.charAt(i));
+                int next = child(node, c);
+                node = next >= 0 ? next : addChild(node, c);
+            }
+            if (term[node] < 0) term[node] = t;
+        }
+        maxTermLength = max;
+
+        fail = new int[size];
+        dictLink = new int[size];
+        buildLinks();
+
+        for (char c = 0; c < ASCII; c++) {
+            rootAscii[c] = Math.max(child(0, fold(c)), 0);
+        }
+    }
+
+    int maxTermLength() {
+        return maxTermLength;
+    }
+
+    void scan(CharSequence text, int from, int to, SearchEngine.HitConsumer consumer) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = next(state, fold(text.charAt(i)));
+
+            int node = term[state] >= 0 ? state : dictLink[state];
+            while (node >= 0) {
+                if (!consumer.accept(i + 1 - termLengths[term[node]], i + 1)) return;
+                node = dictLink[node];
+            }
+        }
+    }
+
+    private int next(int state, char c) {
+        while (true) {
+            if (state == 0) {
+                if (c < ASCII) return rootAscii[c];
+                return Math.max(child(0, c), 0);
+            }
+            int next = child(state, c);
+            if (next >= 0) return next;
+            state = fail[state];
+        }
+    }
+
+    private int child(int node, char c) {
+        int index = Arrays.binarySearch(labels[node], c);
+        return index >= 0 ? targets[node][index] : -1;
+    }
+
+    private int addChild(int node, char c) {
+        int created = size++;
+        labels[created] = NO_LABELS;
+        targets[created] = NO_TARGETS;
+
+        char[] oldLabels = labels[node];
+        int[] oldTargets = targets[node];
+        int at = -Arrays.binarySearch(oldLabels, c) - 1;
+
+        char[] newLabels = new char[oldLabels.length + 1];
+        int[] newTargets = new int[oldTargets.length + 1];
+        System.arraycopy(oldLabels, 0, newLabels, 0, at);
+        System.arraycopy(oldTargets, 0, newTargets, 0, at);
+        newLabels[at] = c;
+        newTargets[at] = created;
+        System.arraycopy(oldLabels, at, newLabels, at + 1, oldLabels.length - at);
+        System.arraycopy(oldTargets, at, newTargets, at + 1, oldTargets.length - at);
+
+        labels[node] = newLabels;
+        targets[node] = newTargets;
+        return created;
+    }
+
+    // суффиксные ссылки обходом в ширину: у узла глубины d ссылка ведёт на узел глубины меньше d
+    private void buildLinks() {
+        int[] queue = new int[size];
+        int head = 0;
+        int tail = 0;
+
+        dictLink[0] = -1;
+        for (int child : targets[0]) {
+            fail[child] = 0;
+            dictLink[child] = -1;
+            queue[tail++] = child;
+        }
+
+        while (head < tail) {
+            int node = queue[head++];
+            char[] nodeLabels = labels[node];
+            int[] nodeTargets = targets[node];
+
+            for (int i = 0; i < nodeLabels.length; i++) {
+                char c = nodeLabels[i];
+                int next = nodeTargets[i];
+
+                int f = fail[node];
+                int link = child(f, c);
+                while (link < 0 && f != 0) {
+                    f = fail[f];
+                    link = child(f, c);
+                }
+                int failNode = Math.max(link, 0);
+
+                fail[next] = failNode;
+                dictLink[next] = term[failNode] >= 0 ? failNode : dictLink[failNode];
+                queue[tail++] = next;
+            }
+        }
+    }
+
+    private char fold(char c) {
+        return caseSensitive ? c : Character.toLowerCase(c);
+    }
+}
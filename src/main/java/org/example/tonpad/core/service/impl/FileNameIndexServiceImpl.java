@@ -0,0 +1,561 @@
+package org.example.tonpad.core.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.files.FileTreeEvent;
+import org.example.tonpad.core.files.VaultWatchService;
+import org.example.tonpad.core.service.FileNameIndexService;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Записи хранятся в массивах по id, списки триграмм имён - списками id по возрастанию
+ *
+ * <p>id не переиспользуются: удалённая запись только помечается, и списки триграмм не нужно чистить.
+ * Когда удалённых становится больше живых, индекс пересобирается. Переименование меняет id только
+ * у самого элемента - у вложенных имена не меняются, и им достаточно обновить путь.</p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FileNameIndexServiceImpl implements FileNameIndexService {
+
+    private static final String INDEX_BUILD_ERROR = "File name index building error";
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private static final int MIN_COMPACT_SIZE = 4096;
+
+    private static final int MATCH_SCORE = 16;
+
+    private static final int CONSECUTIVE_BONUS = 8;
+
+    private static final int WORD_START_BONUS = 8;
+
+    private static final int NAME_BONUS = 4;
+
+    private static final int NAME_PREFIX_BONUS = 12;
+
+    private static final int GAP_START_PENALTY = 3;
+
+    private static final int MAX_GAP_PENALTY = 10;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final VaultWatchService vaultWatchService;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "file-name-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final NavigableMap<String, Integer> ids = new TreeMap<>();
+
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+
+    private final Map<String, IntList> names = new HashMap<>();
+
+    private final BitSet directories = new BitSet();
+
+    // null - запись удалена
+    private String[] paths = new String[INITIAL_CAPACITY];
+
+    // пути в нижнем регистре подряд в одном массиве (посимвольно - позиции совпадают с paths):
+    // нечёткий поиск идёт по памяти последовательно, а не по отдельному объекту на каждый путь
+    private char[] folded = new char[INITIAL_CAPACITY * 32];
+
+    private int foldedLength;
+
+    private int[] foldedStarts = new int[INITIAL_CAPACITY];
+
+    private int[] nameStarts = new int[INITIAL_CAPACITY];
+
+    // какие символы (по модулю 64) есть в пути - быстро отсеивает пути для нечёткого поиска
+    private long[] masks = new long[INITIAL_CAPACITY];
+
+    private long[] nameMasks = new long[INITIAL_CAPACITY];
+
+    private int size;
+
+    private int removed;
+
+    // символы в folded, которые больше не принадлежат ни одному пути
+    private int removedChars;
+
+    private volatile boolean ready = false;
+
+    private volatile Path notesPath;
+
+    @PostConstruct
+    public void init() {
+        vaultWatchService.addListener(this::onFileTreeEvents);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void open() {
+        int gen = generation.incrementAndGet();
+        ready = false;
+
+        Path notes = vaultPathsContainer.getNotesPath();
+        executor.execute(() -> {
+            if (gen != generation.get()) return;
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                notesPath = notes;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            addTree(notes, gen);
+            if (gen == generation.get()) ready = true;
+        });
+    }
+
+    @Override
+    public Optional<List<Path>> findCandidates(String fragment) {
+        if (!ready || fragment == null) return Optional.empty();
+
+        String folded = fold(fragment);
+        lock.readLock().lock();
+        try {
+            if (folded.length() < 3) return Optional.of(livePaths(null));
+
+            IntList smallest = null;
+            for (int i = 0; i + 3 <= folded.length(); i++) {
+                IntList list = trigrams.get(trigram(folded, i));
+                if (list == null) return Optional.of(List.of());
+                if (smallest == null || list.size < smallest.size) smallest = list;
+            }
+            return Optional.of(livePaths(smallest));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<List<Path>> findByName(String fileName) {
+        if (!ready || fileName == null) return Optional.empty();
+
+        lock.readLock().lock();
+        try {
+            IntList list = names.get(fileName);
+            return Optional.of(list == null ? List.of() : livePaths(list));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<List<Match>> findFuzzy(String query, int limit) {
+        if (!ready || query == null) return Optional.empty();
+
+        char[] chars = fold(query.replace(" ", "")).toCharArray();
+        if (chars.length == 0 || limit <= 0) return Optional.of(List.of());
+
+        long queryMask = 0;
+        for (char c : chars) queryMask |= mask(c);
+
+        // в куче наверху худший из отобранных
+        Comparator<Candidate> order = Comparator.comparingInt(Candidate::score)
+                .thenComparing(Comparator.comparingInt(Candidate::length).reversed());
+        PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1, order);
+
+        lock.readLock().lock();
+        try {
+            int[] positions = new int[chars.length];
+            int[] pathPositions = new int[chars.length];
+            for (int id = 0; id < size; id++) {
+                String path = paths[id];
+                if (path == null || (masks[id] & queryMask) != queryMask) continue;
+
+                // как в палитрах быстрого открытия, совпадение в самом имени важнее совпадения в пути
+                int[] matched;
+                int start = foldedStarts[id];
+                int end = start + path.length();
+                if ((nameMasks[id] & queryMask) == queryMask
+                        && match(folded, start, start + nameStarts[id], end, chars, positions)) matched = positions;
+                else if (nameStarts[id] > 0 && match(folded, start, start, end, chars, pathPositions)) matched = pathPositions;
+                else continue;
+                int score = score(path, nameStarts[id], matched);
+
+                if (best.size() == limit) {
+                    Candidate worst = best.peek();
+                    if (score < worst.score() || (score == worst.score() && path.length() >= worst.length())) continue;
+                    best.poll();
+                }
+                best.add(new Candidate(id, score, path.length(), matched.clone()));
+            }
+
+            List<Match> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                Candidate candidate = best.poll();
+                result.add(new Match(Path.of(paths[candidate.id()]), directories.get(candidate.id()),
+                        candidate.score(), candidate.positions()));
+            }
+            Collections.reverse(result);
+            return Optional.of(result);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void onFileTreeEvents(List<FileTreeEvent> events) {
+        int gen = generation.get();
+        executor.execute(() -> {
+            if (gen != generation.get()) return;
+            for (FileTreeEvent event : events) {
+                apply(event, gen);
+            }
+        });
+    }
+
+    private void apply(FileTreeEvent event, int gen) {
+        String rel = relativize(event.path());
+        switch (event.kind()) {
+            case CREATED -> {
+                if (rel != null) addTree(event.path(), gen);
+            }
+            case DELETED -> {
+                if (rel != null) removeTree(rel);
+            }
+            case MOVED -> {
+                String oldRel = relativize(event.oldPath());
+                if (oldRel != null && rel != null) moveTree(oldRel, rel, event.path(), gen);
+                else if (oldRel != null) removeTree(oldRel);
+                else if (rel != null) addTree(event.path(), gen);
+            }
+            case MODIFIED -> { }
+        }
+    }
+
+    private void addTree(Path start, int gen) {
+        Path notes = notesPath;
+        if (notes == null || !Files.exists(start)) return;
+
+        List<String> found = new ArrayList<>();
+        BitSet foundDirectories = new BitSet();
+        try {
+            Files.walkFileTree(start, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (gen != generation.get()) return FileVisitResult.TERMINATE;
+                    if (!dir.equals(notes)) {
+                        foundDirectories.set(found.size());
+                        found.add(toKey(notes.relativize(dir)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    String name = file.getFileName().toString();
+                    // временные файлы атомарной записи в дерево не попадают
+                    if (!(name.startsWith(".") && name.endsWith(".tmp"))) {
+                        found.add(toKey(notes.relativize(file)));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    log.debug("skip {} in file name index: {}", file, e.toString());
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.warn(INDEX_BUILD_ERROR, e);
+        }
+
+        if (gen != generation.get()) return;
+        lock.writeLock().lock();
+        try {
+            for (int i = 0; i < found.size(); i++) {
+                add(found.get(i), foundDirectories.get(i));
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeTree(String rel) {
+        lock.writeLock().lock();
+        try {
+            for (int id : subtree(rel)) {
+                remove(id);
+            }
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void moveTree(String oldRel, String newRel, Path newPath, int gen) {
+        lock.writeLock().lock();
+        try {
+            Integer rootId = ids.get(oldRel);
+            if (rootId != null && !ids.containsKey(newRel)) {
+                boolean directory = directories.get(rootId);
+                for (int id : subtree(oldRel)) {
+                    if (id == rootId) continue;
+                    String path = newRel + paths[id].substring(oldRel.length());
+                    ids.remove(paths[id]);
+                    ids.put(path, id);
+                    removedChars += paths[id].length();
+                    paths[id] = path;
+                    foldedStarts[id] = appendFolded(path);
+                    nameStarts[id] = path.lastIndexOf('/') + 1;
+                    masks[id] = mask(path, 0);
+                }
+                // у самого элемента меняется имя - он получает новый id
+                remove(rootId);
+                add(newRel, directory);
+                compactIfNeeded();
+                return;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        addTree(newPath, gen);
+    }
+
+    private List<Integer> subtree(String rel) {
+        List<Integer> result = new ArrayList<>();
+        Integer id = ids.get(rel);
+        if (id != null) result.add(id);
+        // '0' следует за '/' - в диапазон попадают ровно пути внутри rel
+        result.addAll(ids.subMap(rel + "/", rel + "0").values());
+        return result;
+    }
+
+    private void add(String rel, boolean directory) {
+        Integer existing = ids.get(rel);
+        if (existing != null) {
+            if (directories.get(existing) == directory) return;
+            remove(existing);
+        }
+
+        if (size == paths.length) {
+            int capacity = size * 2;
+            paths = Arrays.copyOf(paths, capacity);
+            foldedStarts = Arrays.copyOf(foldedStarts, capacity);
+            nameStarts = Arrays.copyOf(nameStarts, capacity);
+            masks = Arrays.copyOf(masks, capacity);
+            nameMasks = Arrays.copyOf(nameMasks, capacity);
+        }
+
+        int id = size++;
+        int nameStart = rel.lastIndexOf('/') + 1;
+        paths[id] = rel;
+        foldedStarts[id] = appendFolded(rel);
+        nameStarts[id] = nameStart;
+        masks[id] = mask(rel, 0);
+        nameMasks[id] = mask(rel, nameStart);
+        directories.set(id, directory);
+        ids.put(rel, id);
+
+        String name = rel.substring(nameStart);
+        names.computeIfAbsent(name, n -> new IntList()).addOnce(id);
+        String folded = fold(name);
+        for (int i = 0; i + 3 <= folded.length(); i++) {
+            trigrams.computeIfAbsent(trigram(folded, i), t -> new IntList()).addOnce(id);
+        }
+    }
+
+    private void remove(int id) {
+        ids.remove(paths[id]);
+        removedChars += paths[id].length();
+        paths[id] = null;
+        directories.clear(id);
+        removed++;
+    }
+
+    private void compactIfNeeded() {
+        boolean manyRemoved = removed >= MIN_COMPACT_SIZE && removed >= size - removed;
+        boolean manyRemovedChars = removedChars >= MIN_COMPACT_SIZE * 32 && removedChars >= foldedLength - removedChars;
+        if (!manyRemoved && !manyRemovedChars) return;
+
+        String[] livePaths = Arrays.copyOf(paths, size);
+        BitSet liveDirectories = (BitSet) directories.clone();
+        int liveSize = size;
+        clear();
+        for (int id = 0; id < liveSize; id++) {
+            if (livePaths[id] != null) add(livePaths[id], liveDirectories.get(id));
+        }
+    }
+
+    private void clear() {
+        ids.clear();
+        trigrams.clear();
+        names.clear();
+        directories.clear();
+        paths = new String[INITIAL_CAPACITY];
+        folded = new char[INITIAL_CAPACITY * 32];
+        foldedLength = 0;
+        foldedStarts = new int[INITIAL_CAPACITY];
+        nameStarts = new int[INITIAL_CAPACITY];
+        masks = new long[INITIAL_CAPACITY];
+        nameMasks = new long[INITIAL_CAPACITY];
+        size = 0;
+        removed = 0;
+        removedChars = 0;
+    }
+
+    private int appendFolded(String path) {
+        if (foldedLength + path.length() > folded.length) {
+            folded = Arrays.copyOf(folded, Math.max(folded.length * 2, foldedLength + path.length()));
+        }
+        int start = foldedLength;
+        for (int i = 0; i < path.length(); i++) {
+            folded[foldedLength++] = fold(path.charAt(i));
+        }
+        return start;
+    }
+
+    // null - все живые записи
+    private List<Path> livePaths(IntList list) {
+        int count = list == null ? size : list.size;
+        List<Path> result = new ArrayList<>(Math.min(count, size - removed));
+        for (int i = 0; i < count; i++) {
+            String path = paths[list == null ? i : list.data[i]];
+            if (path != null) result.add(Path.of(path));
+        }
+        return result;
+    }
+
+    private String relativize(Path path) {
+        Path notes = notesPath;
+        if (notes == null || path == null || !path.startsWith(notes) || path.equals(notes)) return null;
+        return toKey(notes.relativize(path));
+    }
+
+    private static String toKey(Path relative) {
+        return relative.toString().replace('\\', '/');
+    }
+
+    // позиции - относительно base
+    private static boolean match(char[] folded, int base, int from, int to, char[] query, int[] positions) {
+        int matched = 0;
+        int end = -1;
+        for (int i = from; i < to && matched < query.length; i++) {
+            if (folded[i] == query[matched]) {
+                matched++;
+                end = i;
+            }
+        }
+        if (matched < query.length) return false;
+
+        // с конца первого вхождения назад - самое короткое окно, в котором есть весь запрос
+        int q = query.length - 1;
+        for (int i = end; q >= 0; i--) {
+            if (folded[i] == query[q]) positions[q--] = i - base;
+        }
+        return true;
+    }
+
+    private static int score(String path, int nameStart, int[] positions) {
+        int score = 0;
+        for (int k = 0; k < positions.length; k++) {
+            int p = positions[k];
+            score += MATCH_SCORE;
+            if (k > 0) {
+                int gap = p - positions[k - 1] - 1;
+                if (gap == 0) score += CONSECUTIVE_BONUS;
+                else score -= GAP_START_PENALTY + Math.min(gap - 1, MAX_GAP_PENALTY);
+            }
+            if (isWordStart(path, p)) score += WORD_START_BONUS;
+            if (p >= nameStart) score += NAME_BONUS;
+        }
+        if (positions[0] == nameStart) score += NAME_PREFIX_BONUS;
+        return score;
+    }
+
+    private static boolean isWordStart(String path, int index) {
+        if (index == 0) return true;
+        char previous = path.charAt(index - 1);
+        char current = path.charAt(index);
+        return !Character.isLetterOrDigit(previous)
+                || (Character.isLowerCase(previous) && Character.isUpperCase(current))
+                || (Character.isLetter(previous) && Character.isDigit(current));
+    }
+
+    private static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    private static String fold(String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            sb.append(fold(text.charAt(i)));
+        }
+        return sb.toString();
+    }
+
+    private static long mask(char c) {
+        return 1L << (fold(c) & 63);
+    }
+
+    private static long mask(String path, int from) {
+        long mask = 0;
+        for (int i = from; i < path.length(); i++) {
+            mask |= mask(path.charAt(i));
+        }
+        return mask;
+    }
+
+    private static long trigram(String folded, int from) {
+        return ((long) folded.charAt(from) << 32) | ((long) folded.charAt(from + 1) << 16) | folded.charAt(from + 2);
+    }
+
+    private record Candidate(int id, int score, int length, int[] positions) {
+    }
+
+    private static final class IntList {
+        private int[] data = new int[4];
+        private int size;
+
+        // id добавляются по возрастанию - повтор возможен только подряд
+        private void addOnce(int value) {
+            if (size > 0 && data[size - 1] == value) return;
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.example.tonpad.core.service.impl;
+
+import java.util.Arrays;
+
+/**
+ * Поиск одного литерального образца алгоритмом Бойера-Мура-Хорспула
+ *
+ * <p>Таблица сдвигов индексируется младшим байтом символа: у символов с одинаковым младшим
+ * байтом берётся меньший сдвиг, поэтому таблица остаётся маленькой и для любого алфавита.</p>
+ */
+final class Horspool {
+
+    private static final int TABLE_SIZE = 256;
+
+    private static final int TABLE_MASK = TABLE_SIZE - 1;
+
+    private final char[] pattern;
+
+    private final boolean caseSensitive;
+
+    private final int[] shift = new int[TABLE_SIZE];
+
+    Horspool(CharSequence pattern, boolean caseSensitive) {
+        this.caseSensitive = caseSensitive;
+        this.pattern = new char[pattern.length()];
+        for (int i = 0; i < this.pattern.length; i++) {
+            this.pattern[i] = caseSensitive ? pattern.charAt(i) : fold(pattern.charAt(i));
+        }
+
+        int m = this.pattern.length;
+        Arrays.fill(shift, Math.max(m, 1));
+        for (int i = 0; i < m - 1; i++) {
+            int slot = this.pattern[i] & TABLE_MASK;
+            shift[slot] = Math.min(shift[slot], m - 1 - i);
+        }
+    }
+
+    static char fold(char c) {
+        return Character.toLowerCase(c);
+    }
+
+    int length() {
+        return pattern.length;
+    }
+
+    boolean caseSensitive() {
+        return caseSensitive;
+    }
+
+    /**
+     * Поиск в буфере, который уже приведён к регистру так же, как образец
+     */
+    int indexOf(char[] text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) return -1;
+
+        int last = m - 1;
+        char lastChar = pattern[last];
+        int i = from;
+        while (i <= to - m) {
+            char c = text[i + last];
+            if (c == lastChar) {
+                int j = last - 1;
+                while (j >= 0 && text[i + j] == pattern[j]) j--;
+                if (j < 0) return i;
+            }
+            i += shift[c & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    int indexOf(CharSequence text, int from, int to) {
+        int m = pattern.length;
+        if (m == 0) return -1;
+
+        int last = m - 1;
+        char lastChar = pattern[last];
+        int i = from;
+        while (i <= to - m) {
+            char c = charAt(text, i + last);
+            if (c == lastChar) {
+                int j = last - 1;
+                while (j >= 0 && charAt(text, i + j) == pattern[j]) j--;
+                if (j < 0) return i;
+            }
+            i += shift[c & TABLE_MASK];
+        }
+        return -1;
+    }
+
+    private char charAt(CharSequence text, int index) {
+        char c = text.charAt(index);
+        return caseSensitive ? c : fold(c);
+    }
+}
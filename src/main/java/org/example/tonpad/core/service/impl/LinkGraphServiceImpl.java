@@ -0,0 +1,590 @@
+package org.example.tonpad.core.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.files.FileTreeEvent;
+import org.example.tonpad.core.files.NoteContentService;
+import org.example.tonpad.core.files.ScannedEntry;
+import org.example.tonpad.core.files.VaultScanner;
+import org.example.tonpad.core.files.VaultWatchService;
+import org.example.tonpad.core.models.NoteRecord;
+import org.example.tonpad.core.models.NotesAssociationsRecord;
+import org.example.tonpad.core.repository.NotesAssociationsRepository;
+import org.example.tonpad.core.repository.NotesRepository;
+import org.example.tonpad.core.service.FileNameIndexService;
+import org.example.tonpad.core.service.LinkGraphService;
+import org.example.tonpad.core.service.db.ConnectionProviderService;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class LinkGraphServiceImpl implements LinkGraphService {
+
+    private final static String LINKS_SCAN_ERROR = "Link scan error";
+
+    private static final String LINKS_ENTITY = "note_links";
+
+    private static final String MOVES_ENTITY = "note_links_move";
+
+    private static final String PLACEHOLDERS_ENTITY = "note_links_placeholders";
+
+    // [[цель]], [[цель#заголовок]], [[цель|текст]], ![[цель]]
+    private static final Pattern LINK_PATTERN =
+            Pattern.compile("!?\\[\\[([^\\[\\]|#\\n]+)(?:#[^\\[\\]|\\n]*)?(?:\\|[^\\[\\]\\n]*)?]]");
+
+    private static final String NOTE_EXTENSION = ".md";
+
+    // появляется после первого полного обхода хранилища; без него обход повторяется при открытии
+    private static final String SCANNED_MARKER = ".links-scanned";
+
+    // сколько заметок обхода копится в очереди метаданных до принудительной записи
+    private static final int SCAN_FLUSH_EVERY = 256;
+
+    // из нескольких заметок с одним именем короткая ссылка ведёт на ближайшую к корню
+    private static final Comparator<String> SHORTEST_PATH_FIRST =
+            Comparator.comparingInt(String::length).thenComparing(Comparator.naturalOrder());
+
+    private final NotesRepository notesRepository;
+
+    private final NotesAssociationsRepository associationsRepository;
+
+    private final FileNameIndexService fileNameIndexService;
+
+    private final ConnectionProviderService connectionProviderService;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final MetadataWriteQueue writeQueue;
+
+    private final VaultWatchService vaultWatchService;
+
+    private final VaultScanner vaultScanner;
+
+    private final NoteContentService noteContentService;
+
+    private final ExecutorService scanExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "link-graph-scan");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // растёт при каждом открытии хранилища: обход прошлого хранилища прекращается
+    private final AtomicInteger generation = new AtomicInteger();
+
+    // растёт с каждым переименованием и удалением: обновления ссылок по разные стороны от них не схлопываются
+    private final AtomicLong movesVersion = new AtomicLong();
+
+    private final Object adjacencyLock = new Object();
+
+    private final AtomicLong edgesVersion = new AtomicLong();
+
+    private volatile Adjacency adjacency;
+
+    @PostConstruct
+    public void init() {
+        // снимок, прочитанный до фиксации изменения, кэшировать нельзя
+        writeQueue.addCommitListener(this::invalidateAdjacency);
+        vaultWatchService.addListener(this::onFileTreeEvents);
+    }
+
+    @Override
+    public void open() {
+        int gen = generation.incrementAndGet();
+        Path vault = vaultPathsContainer.getVaultPath();
+        Path notes = vaultPathsContainer.getNotesPath();
+        if (vault == null || notes == null || Files.exists(vault.resolve(SCANNED_MARKER))) return;
+
+        scanExecutor.execute(() -> scan(gen, vault, notes));
+    }
+
+    @Override
+    public void update(Path note, String content) {
+        String rel = relativize(note);
+        if (rel == null || !rel.endsWith(NOTE_EXTENSION)) return;
+
+        submit(linksKey(rel), () -> updateNow(rel, resolveAll(rel, parseTargets(content), this::findByName)));
+    }
+
+    @Override
+    public void remove(Path note) {
+        String rel = relativize(note);
+        if (rel == null) return;
+
+        submit(new MetadataWriteQueue.Key(MOVES_ENTITY, movesVersion.incrementAndGet()), () -> removeNow(rel));
+    }
+
+    @Override
+    public void rename(Path oldPath, Path newPath) {
+        String oldRel = relativize(oldPath);
+        String newRel = relativize(newPath);
+        if (oldRel == null || newRel == null) return;
+
+        submit(new MetadataWriteQueue.Key(MOVES_ENTITY, movesVersion.incrementAndGet()), () -> renameNow(oldRel, newRel));
+    }
+
+    @Override
+    public List<Path> getBacklinks(Path note) {
+        return neighbours(note, true);
+    }
+
+    @Override
+    public List<Path> getOutlinks(Path note) {
+        return neighbours(note, false);
+    }
+
+    @Override
+    public Set<Path> getNeighborhood(Path note, int hops) {
+        String rel = relativize(note);
+        if (rel == null || hops <= 0) return Set.of();
+
+        Adjacency graph = adjacency();
+        int start = notesRepository.getByPath(rel).map(NoteRecord::getId).orElse(-1);
+        if (!graph.isNode(start)) return Set.of();
+
+        // обход в ширину по связям в обе стороны
+        boolean[] visited = new boolean[graph.size()];
+        visited[start] = true;
+        int[] frontier = {start};
+        int frontierSize = 1;
+        List<Integer> found = new ArrayList<>();
+
+        for (int hop = 0; hop < hops && frontierSize > 0; hop++) {
+            int[] next = new int[16];
+            int nextSize = 0;
+            for (int i = 0; i < frontierSize; i++) {
+                int node = frontier[i];
+                for (int pass = 0; pass < 2; pass++) {
+                    int[] offsets = pass == 0 ? graph.outOffsets() : graph.inOffsets();
+                    int[] targets = pass == 0 ? graph.outTargets() : graph.inSources();
+                    for (int k = offsets[node]; k < offsets[node + 1]; k++) {
+                        int other = targets[k];
+                        if (visited[other]) continue;
+                        visited[other] = true;
+                        found.add(other);
+                        if (nextSize == next.length) next = Arrays.copyOf(next, nextSize * 2);
+                        next[nextSize++] = other;
+                    }
+                }
+            }
+            frontier = next;
+            frontierSize = nextSize;
+        }
+        return new LinkedHashSet<>(toPaths(found));
+    }
+
+    // заметки, созданные или перемещённые, в том числе в обход приложения, тоже разрешают заглушки
+    private void onFileTreeEvents(List<FileTreeEvent> events) {
+        for (FileTreeEvent event : events) {
+            String rel = relativize(event.path());
+            if (rel == null) continue;
+
+            if (event.kind() == FileTreeEvent.Kind.CREATED) {
+                submit(new MetadataWriteQueue.Key(PLACEHOLDERS_ENTITY, rel), () -> resolvePlaceholdersNow(rel));
+            } else if (event.kind() == FileTreeEvent.Kind.MOVED) {
+                // переименование из приложения сюда тоже приходит, но повторный renameNow ничего не находит
+                String oldRel = relativize(event.oldPath());
+                submit(new MetadataWriteQueue.Key(MOVES_ENTITY, movesVersion.incrementAndGet()), () -> {
+                    if (oldRel != null) renameNow(oldRel, rel);
+                    resolvePlaceholdersNow(rel);
+                });
+            }
+        }
+    }
+
+    /**
+     * Заполняет граф по заметкам, которые ещё не сохранялись в приложении. Короткие ссылки разрешаются
+     * по именам из того же обхода, так как индекс имён может быть ещё не готов. Заметки, которые
+     * не удалось прочитать (например, хранилище заблокировано), пропускаются, и обход повторится
+     * при следующем открытии
+     */
+    private void scan(int gen, Path vault, Path notes) {
+        try {
+            List<String> paths = new ArrayList<>();
+            Map<String, String> byName = new HashMap<>();
+            for (ScannedEntry entry : vaultScanner.scan(notes).notes()) {
+                String rel = notes.relativize(entry.path()).toString().replace('\\', '/');
+                if (!rel.endsWith(NOTE_EXTENSION)) continue;
+                paths.add(rel);
+                byName.merge(fileName(rel), rel, (a, b) -> SHORTEST_PATH_FIRST.compare(a, b) <= 0 ? a : b);
+            }
+
+            boolean complete = true;
+            int submitted = 0;
+            for (String rel : paths) {
+                if (gen != generation.get()) return;
+
+                String content;
+                try {
+                    content = noteContentService.read(notes.resolve(rel));
+                } catch (RuntimeException e) {
+                    log.debug("skip links of {}: {}", rel, e.toString());
+                    complete = false;
+                    continue;
+                }
+                Set<String> targets = parseTargets(content);
+                if (targets.isEmpty()) continue;
+
+                Set<String> resolved = resolveAll(rel, targets, name -> Optional.ofNullable(byName.get(name)));
+                submit(linksKey(rel), () -> updateNow(rel, resolved));
+                if (++submitted % SCAN_FLUSH_EVERY == 0) writeQueue.flush();
+            }
+            writeQueue.flush();
+
+            if (complete && gen == generation.get()) {
+                try {
+                    Files.createFile(vault.resolve(SCANNED_MARKER));
+                } catch (FileAlreadyExistsException ignored) {
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn(LINKS_SCAN_ERROR, e);
+        }
+    }
+
+    // из нескольких сохранений одной заметки записывается только последнее
+    private MetadataWriteQueue.Key linksKey(String rel) {
+        return new MetadataWriteQueue.Key(LINKS_ENTITY, List.of(rel, movesVersion.get()));
+    }
+
+    private List<Path> neighbours(Path note, boolean incoming) {
+        String rel = relativize(note);
+        if (rel == null) return List.of();
+
+        Adjacency graph = adjacency();
+        int id = notesRepository.getByPath(rel).map(NoteRecord::getId).orElse(-1);
+        if (!graph.isNode(id)) return List.of();
+
+        int[] offsets = incoming ? graph.inOffsets() : graph.outOffsets();
+        int[] targets = incoming ? graph.inSources() : graph.outTargets();
+
+        List<Integer> ids = new ArrayList<>(offsets[id + 1] - offsets[id]);
+        for (int k = offsets[id]; k < offsets[id + 1]; k++) {
+            ids.add(targets[k]);
+        }
+        return toPaths(ids);
+    }
+
+    private List<Path> toPaths(List<Integer> ids) {
+        if (ids.isEmpty()) return List.of();
+
+        Map<Integer, String> paths = notesRepository.getPathsByIds(ids);
+        Path notes = vaultPathsContainer.getNotesPath();
+        List<Path> result = new ArrayList<>(ids.size());
+        for (Integer id : ids) {
+            String path = paths.get(id);
+            if (path != null) result.add(notes.resolve(path));
+        }
+        return result;
+    }
+
+    // изменения пишутся пачками через очередь метаданных; ошибку записи очередь логирует сама
+    private void submit(MetadataWriteQueue.Key key, Runnable task) {
+        Path vault = vaultPathsContainer.getVaultPath();
+        writeQueue.submit(key, () -> {
+            if (!Objects.equals(vault, vaultPathsContainer.getVaultPath())) return;
+            task.run();
+        });
+    }
+
+    private void updateNow(String rel, Set<String> resolved) {
+        connectionProviderService.transaction(() -> {
+            int srcId = ensureNote(rel);
+
+            Map<String, Integer> known = notesRepository.getIdsByPaths(resolved);
+            Set<Integer> wanted = new LinkedHashSet<>();
+            for (String path : resolved) {
+                Integer id = known.get(path);
+                wanted.add(id != null ? id : insertNote(path));
+            }
+
+            Set<Integer> current = new HashSet<>();
+            for (NotesAssociationsRecord record : associationsRepository.getBySrcId(srcId)) {
+                current.add(record.getDstId());
+            }
+
+            List<Integer> added = wanted.stream().filter(id -> !current.contains(id)).toList();
+            List<Integer> removed = current.stream().filter(id -> !wanted.contains(id)).toList();
+            associationsRepository.saveAll(srcId, added);
+            associationsRepository.deleteAll(srcId, removed);
+        });
+        invalidateAdjacency();
+    }
+
+    private void removeNow(String rel) {
+        connectionProviderService.transaction(() -> {
+            for (NoteRecord note : notesRepository.getByPathPrefix(rel)) {
+                int id = note.getId();
+                associationsRepository.deleteBySrcId(id);
+                // на заметку ещё ссылаются - оставляем её как цель неразрешённых ссылок
+                if (associationsRepository.getByDstId(id).isEmpty()) {
+                    notesRepository.delete(id);
+                }
+            }
+        });
+        invalidateAdjacency();
+    }
+
+    private void renameNow(String oldRel, String newRel) {
+        connectionProviderService.transaction(() -> {
+            List<NoteRecord> moved = notesRepository.getByPathPrefix(oldRel);
+            List<String> newPaths = moved.stream()
+                    .map(note -> newRel + note.getPath().substring(oldRel.length()))
+                    .toList();
+            // на новые имена уже ссылались до того, как заметки появились
+            Map<String, Integer> placeholders = notesRepository.getIdsByPaths(newPaths);
+
+            for (int i = 0; i < moved.size(); i++) {
+                int id = moved.get(i).getId();
+                String newPath = newPaths.get(i);
+
+                Integer placeholder = placeholders.get(newPath);
+                if (placeholder != null) {
+                    associationsRepository.moveDst(placeholder, id);
+                    associationsRepository.deleteBySrcId(placeholder);
+                    notesRepository.delete(placeholder);
+                }
+
+                notesRepository.save(new NoteRecord(id, newPath));
+            }
+        });
+        invalidateAdjacency();
+    }
+
+    /**
+     * Заглушка короткой ссылки [[имя]] лежит в корне; её связи переходят к новой заметке с таким именем,
+     * если именно на неё ссылка и разрешилась бы
+     */
+    private void resolvePlaceholdersNow(String rel) {
+        List<String> appeared = notesUnder(rel);
+        if (appeared.isEmpty()) return;
+
+        Path notes = vaultPathsContainer.getNotesPath();
+        connectionProviderService.transaction(() -> {
+            for (String path : appeared) {
+                String name = fileName(path);
+                // заметка в корне и так заняла строку заглушки по точному пути
+                if (path.equals(name) || Files.exists(notes.resolve(name))) continue;
+
+                Optional<NoteRecord> placeholder = notesRepository.getByPath(name);
+                if (placeholder.isEmpty() || !path.equals(closestByName(name, path))) continue;
+
+                int placeholderId = placeholder.get().getId();
+                associationsRepository.moveDst(placeholderId, ensureNote(path));
+                associationsRepository.deleteBySrcId(placeholderId);
+                notesRepository.delete(placeholderId);
+            }
+        });
+        invalidateAdjacency();
+    }
+
+    // пока индекс имён строится, ближайшую заметку выбрать нельзя - заглушка остаётся
+    private String closestByName(String fileName, String appeared) {
+        return fileNameIndexService.findByName(fileName)
+                .flatMap(paths -> Stream.concat(
+                                paths.stream().map(p -> p.toString().replace('\\', '/')),
+                                Stream.of(appeared))
+                        .min(SHORTEST_PATH_FIRST))
+                .orElse(null);
+    }
+
+    private List<String> notesUnder(String rel) {
+        Path notes = vaultPathsContainer.getNotesPath();
+        if (notes == null) return List.of();
+
+        Path start = notes.resolve(rel);
+        if (!Files.isDirectory(start)) {
+            return rel.endsWith(NOTE_EXTENSION) && Files.isRegularFile(start) ? List.of(rel) : List.of();
+        }
+        try (Stream<Path> files = Files.walk(start)) {
+            return files.filter(file -> file.getFileName().toString().endsWith(NOTE_EXTENSION))
+                    .filter(Files::isRegularFile)
+                    .map(file -> notes.relativize(file).toString().replace('\\', '/'))
+                    .toList();
+        } catch (IOException | RuntimeException e) {
+            log.debug("skip placeholders under {}: {}", start, e.toString());
+            return List.of();
+        }
+    }
+
+    private int ensureNote(String path) {
+        return notesRepository.getByPath(path)
+                .map(NoteRecord::getId)
+                .orElseGet(() -> insertNote(path));
+    }
+
+    private int insertNote(String path) {
+        NoteRecord record = new NoteRecord(path);
+        notesRepository.save(record);
+        return record.getId();
+    }
+
+    private static Set<String> resolveAll(String rel, Set<String> targets, Function<String, Optional<String>> byName) {
+        Set<String> resolved = new LinkedHashSet<>();
+        for (String target : targets) {
+            String path = resolve(target, byName);
+            if (path != null && !path.equals(rel)) resolved.add(path);
+        }
+        return resolved;
+    }
+
+    // короткая ссылка [[имя]] ведёт на заметку с таким именем файла, иначе - на заметку в корне
+    private static String resolve(String target, Function<String, Optional<String>> byName) {
+        String path = target.trim().replace('\\', '/');
+        while (path.startsWith("/")) path = path.substring(1);
+        if (path.isEmpty()) return null;
+
+        String name = fileName(path);
+        int dot = name.lastIndexOf('.');
+        if (dot > 0 && !name.endsWith(NOTE_EXTENSION) && isExtension(name.substring(dot + 1))) {
+            // вложение (картинка и т.п.), а не заметка
+            return null;
+        }
+        if (!path.endsWith(NOTE_EXTENSION)) path += NOTE_EXTENSION;
+
+        if (path.contains("/")) return path;
+        return byName.apply(path).orElse(path);
+    }
+
+    // пока индекс имён строится, короткие ссылки ведут в корень
+    private Optional<String> findByName(String fileName) {
+        return fileNameIndexService.findByName(fileName)
+                .flatMap(paths -> paths.stream()
+                        .map(p -> p.toString().replace('\\', '/'))
+                        .min(SHORTEST_PATH_FIRST));
+    }
+
+    private static boolean isExtension(String suffix) {
+        if (suffix.isEmpty() || suffix.length() > 4) return false;
+        for (int i = 0; i < suffix.length(); i++) {
+            if (!Character.isLetterOrDigit(suffix.charAt(i))) return false;
+        }
+        return true;
+    }
+
+    static Set<String> parseTargets(String content) {
+        Set<String> targets = new LinkedHashSet<>();
+        if (content == null) return targets;
+
+        Matcher matcher = LINK_PATTERN.matcher(content);
+        while (matcher.find()) {
+            String target = matcher.group(1).trim();
+            if (!target.isEmpty()) targets.add(target);
+        }
+        return targets;
+    }
+
+    private static String fileName(String path) {
+        int slash = path.lastIndexOf('/');
+        return slash < 0 ? path : path.substring(slash + 1);
+    }
+
+    private String relativize(Path path) {
+        Path notes = vaultPathsContainer.getNotesPath();
+        if (notes == null || path == null || !path.startsWith(notes) || path.equals(notes)) return null;
+        return notes.relativize(path).toString().replace('\\', '/');
+    }
+
+    private void invalidateAdjacency() {
+        edgesVersion.incrementAndGet();
+        adjacency = null;
+    }
+
+    private Adjacency adjacency() {
+        Path vault = vaultPathsContainer.getVaultPath();
+        Adjacency current = adjacency;
+        if (current != null && current.vault().equals(vault)) return current;
+
+        synchronized (adjacencyLock) {
+            current = adjacency;
+            if (current != null && current.vault().equals(vault)) return current;
+
+            long version = edgesVersion.get();
+            current = Adjacency.build(vault, associationsRepository.getAll());
+            // если граф успел измениться во время чтения, снимок используем один раз и не кэшируем
+            if (version == edgesVersion.get()) adjacency = current;
+            return current;
+        }
+    }
+
+    /**
+     * Неизменяемый снимок графа в формате CSR: связи узла id - это
+     * {@code targets[offsets[id] .. offsets[id + 1])}, id узла совпадает с id заметки в таблице notes.
+     * Пути узлов в снимке не хранятся, они берутся из таблицы notes через кэш путей
+     */
+    private record Adjacency(
+            Path vault,
+            int size,
+            int[] outOffsets,
+            int[] outTargets,
+            int[] inOffsets,
+            int[] inSources
+    ) {
+
+        private static Adjacency build(Path vault, List<NotesAssociationsRecord> edges) {
+            int maxId = -1;
+            for (NotesAssociationsRecord edge : edges) {
+                if (edge.getSrcId() < 0 || edge.getDstId() < 0) continue;
+                maxId = Math.max(maxId, Math.max(edge.getSrcId(), edge.getDstId()));
+            }
+
+            int size = maxId + 1;
+            int[] outOffsets = new int[size + 1];
+            int[] inOffsets = new int[size + 1];
+            int edgeCount = 0;
+            for (NotesAssociationsRecord edge : edges) {
+                if (edge.getSrcId() < 0 || edge.getDstId() < 0) continue;
+                outOffsets[edge.getSrcId() + 1]++;
+                inOffsets[edge.getDstId() + 1]++;
+                edgeCount++;
+            }
+            for (int i = 0; i < size; i++) {
+                outOffsets[i + 1] += outOffsets[i];
+                inOffsets[i + 1] += inOffsets[i];
+            }
+
+            int[] outTargets = new int[edgeCount];
+            int[] inSources = new int[edgeCount];
+            int[] outFill = Arrays.copyOf(outOffsets, size);
+            int[] inFill = Arrays.copyOf(inOffsets, size);
+            for (NotesAssociationsRecord edge : edges) {
+                if (edge.getSrcId() < 0 || edge.getDstId() < 0) continue;
+                outTargets[outFill[edge.getSrcId()]++] = edge.getDstId();
+                inSources[inFill[edge.getDstId()]++] = edge.getSrcId();
+            }
+
+            return new Adjacency(vault, size, outOffsets, outTargets, inOffsets, inSources);
+        }
+
+        private boolean isNode(int id) {
+            return id >= 0 && id < size;
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package org.example.tonpad.core.service.impl;
+
+import org.example.tonpad.core.service.SearchEngine;
+import org.springframework.stereotype.Service;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+@Service
+public class SearchEngineImpl implements SearchEngine {
+
+    private static final String WORD_CHAR = "[\\p{L}\\p{Nd}_]";
+
+    // сколько кандидатов копить, прежде чем отдать те, что уже не могут пересечься с будущими
+    private static final int SELECTION_BATCH = 256;
+
+    private static final CompiledQuery EMPTY_QUERY = new CompiledQuery() {
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void scan(CharSequence text, int from, int to, HitConsumer consumer) {
+        }
+    };
+
+    @Override
+    public CompiledQuery compile(List<String> terms, Options options) {
+        List<String> distinct = terms.stream()
+                .filter(t -> t != null && !t.isEmpty())
+                .distinct()
+                .toList();
+        if (distinct.isEmpty()) return EMPTY_QUERY;
+
+        if (options.regex()) return new RegexQuery(distinct, options);
+        return distinct.size() == 1 ? new SingleTermQuery(distinct.get(0), options) : new LiteralQuery(distinct, options);
+    }
+
+    static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_';
+    }
+
+    static boolean isWholeWord(CharSequence text, int start, int end) {
+        return (start == 0 || !isWordChar(text.charAt(start - 1)))
+                && (end == text.length() || !isWordChar(text.charAt(end)));
+    }
+
+    // один терм - самый частый запрос, для него автомат не нужен
+    private static final class SingleTermQuery implements CompiledQuery {
+
+        private final Horspool horspool;
+
+        private final boolean wholeWord;
+
+        private SingleTermQuery(String term, Options options) {
+            this.horspool = new Horspool(term, options.caseSensitive());
+            this.wholeWord = options.wholeWord();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void scan(CharSequence text, int from, int to, HitConsumer consumer) {
+            // буфер сессии поиска уже свёрнут к регистру образца - сравниваем массив напрямую
+            char[] array = null;
+            int base = 0;
+            if (horspool.caseSensitive() && text instanceof CharBuffer buffer && buffer.hasArray()) {
+                array = buffer.array();
+                base = buffer.arrayOffset() + buffer.position();
+            }
+
+            int length = horspool.length();
+            int i = from;
+            while ((i = array != null ? indexOf(array, base, i, to) : horspool.indexOf(text, i, to)) >= 0) {
+                if (wholeWord && !isWholeWord(text, i, i + length)) {
+                    i++;
+                    continue;
+                }
+                if (!consumer.accept(i, i + length)) return;
+                i += length;
+            }
+        }
+
+        private int indexOf(char[] array, int base, int from, int to) {
+            int index = horspool.indexOf(array, base + from, base + to);
+            return index < 0 ? -1 : index - base;
+        }
+    }
+
+    private static final class LiteralQuery implements CompiledQuery {
+
+        private final AhoCorasick automaton;
+
+        private final boolean wholeWord;
+
+        private LiteralQuery(List<String> terms, Options options) {
+            this.automaton = new AhoCorasick(terms, options.caseSensitive());
+            this.wholeWord = options.wholeWord();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void scan(CharSequence text, int from, int to, HitConsumer consumer) {
+            Selection selection = new Selection(consumer, from);
+            int maxLength = automaton.maxTermLength();
+
+            automaton.scan(text, from, to, (start, end) -> {
+                if (wholeWord && !isWholeWord(text, start, end)) return true;
+                return selection.add(start, end, end - maxLength);
+            });
+            selection.flush(Integer.MAX_VALUE);
+        }
+    }
+
+    private static final class RegexQuery implements CompiledQuery {
+
+        private final Pattern pattern;
+
+        private RegexQuery(List<String> terms, Options options) {
+            String body = terms.size() == 1
+                    ? terms.get(0)
+                    : terms.stream().map(t -> "(?:" + t + ")").collect(Collectors.joining("|"));
+            if (options.wholeWord()) {
+                body = "(?<!" + WORD_CHAR + ")(?:" + body + ")(?!" + WORD_CHAR + ")";
+            }
+
+            int flags = Pattern.MULTILINE;
+            if (!options.caseSensitive()) flags |= Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE;
+            this.pattern = Pattern.compile(body, flags);
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return false;
+        }
+
+        @Override
+        public void scan(CharSequence text, int from, int to, HitConsumer consumer) {
+            Matcher matcher = pattern.matcher(text);
+            matcher.region(from, to);
+            matcher.useTransparentBounds(true);
+            matcher.useAnchoringBounds(false);
+
+            while (matcher.find()) {
+                // пустые совпадения (например, у "a*") подсвечивать нечего
+                if (matcher.end() == matcher.start()) continue;
+                if (!consumer.accept(matcher.start(), matcher.end())) return;
+            }
+        }
+    }
+
+    /**
+     * Выбирает из всех вхождений непересекающиеся: самое левое, при равенстве - самое длинное
+     *
+     * <p>Кандидат упаковывается в long так, что сортировка по возрастанию даёт порядок
+     * "начало по возрастанию, конец по убыванию".</p>
+     */
+    private static final class Selection {
+
+        private final HitConsumer consumer;
+
+        private long[] buffer = new long[16];
+
+        private int size;
+
+        private int lastEnd;
+
+        private boolean stopped;
+
+        private Selection(HitConsumer consumer, int from) {
+            this.consumer = consumer;
+            this.lastEnd = from;
+        }
+
+        // settledBefore - кандидаты, начинающиеся раньше, уже не пересекутся с ещё не найденными
+        private boolean add(int start, int end, int settledBefore) {
+            if (size == buffer.length) buffer = Arrays.copyOf(buffer, size * 2);
+            buffer[size++] = ((long) start << 32) | ((~end) & 0xFFFFFFFFL);
+
+            if (size >= SELECTION_BATCH) flush(settledBefore);
+            return !stopped;
+        }
+
+        private void flush(int settledBefore) {
+            if (stopped || size == 0) return;
+            Arrays.sort(buffer, 0, size);
+
+            int k = 0;
+            for (; k < size; k++) {
+                long key = buffer[k];
+                int start = (int) (key >>> 32);
+                if (start >= settledBefore) break;
+
+                int end = ~(int) key;
+                if (start < lastEnd) continue;
+                if (!consumer.accept(start, end)) {
+                    stopped = true;
+                    return;
+                }
+                lastEnd = end;
+            }
+
+            System.arraycopy(buffer, k, buffer, 0, size - k);
+            size -= k;
+        }
+    }
+}
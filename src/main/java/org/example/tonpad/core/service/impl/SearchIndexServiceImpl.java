@@ -0,0 +1,737 @@
+package org.example.tonpad.core.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.example.tonpad.core.exceptions.CustomIOException;
+import org.example.tonpad.core.files.NoteContentService;
+import org.example.tonpad.core.files.ScannedEntry;
+import org.example.tonpad.core.files.VaultScanner;
+import org.example.tonpad.core.service.SearchIndexService;
+import org.example.tonpad.core.service.crypto.Encryptor;
+import org.example.tonpad.core.service.crypto.EncryptorFactory;
+import org.example.tonpad.core.session.VaultSession;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchIndexServiceImpl implements SearchIndexService {
+
+    private static final String INDEX_FILE_NAME = "search-index.bin";
+
+    private static final int MAGIC = 0x54504958;
+
+    private static final int VERSION = 1;
+
+    private static final long SAVE_DELAY_MS = 5_000;
+
+    private static final String INDEX_LOAD_ERROR = "Search index loading error";
+
+    private static final String INDEX_SAVE_ERROR = "Search index saving error";
+
+    private static final String INDEX_SYNC_ERROR = "Search index sync error";
+
+    // длина n-граммы в индексе слов для поиска по середине слова
+    private static final int GRAM = 3;
+
+    private final VaultScanner vaultScanner;
+
+    private final VaultSession vaultSession;
+
+    private final EncryptorFactory encryptorFactory;
+
+    private final VaultPathsContainer vaultPathsContainer;
+
+    private final NoteContentService noteContentService;
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "search-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final Map<String, IndexedFile> files = new HashMap<>();
+
+    private final List<IndexedFile> filesById = new ArrayList<>();
+
+    // id удалённых файлов переиспользуются, чтобы filesById и битовые множества не росли
+    private final IntList freeFileIds = new IntList();
+
+    // отсортировано, чтобы слова с заданным началом шли одним диапазоном
+    private final NavigableMap<String, Term> postings = new TreeMap<>();
+
+    private final List<String> termsById = new ArrayList<>();
+
+    private final IntList freeTermIds = new IntList();
+
+    // триграмма -> id слов, в которые она входит
+    private final Map<String, IntList> termsByGram = new HashMap<>();
+
+    private volatile boolean ready = false;
+
+    private volatile Path indexPath;
+
+    private volatile Path notesPath;
+
+    private volatile String fingerPrint;
+
+    private boolean dirty = false;
+
+    private ScheduledFuture<?> pendingSave;
+
+    @Override
+    public void open() {
+        int gen = generation.incrementAndGet();
+        ready = false;
+
+        Path vaultPath = vaultPathsContainer.getVaultPath();
+        Path notes = vaultPathsContainer.getNotesPath();
+        String currentFingerPrint = vaultSession.getFingerPrint();
+
+        executor.execute(() -> {
+            if (gen != generation.get()) return;
+
+            lock.writeLock().lock();
+            try {
+                clear();
+                indexPath = vaultPath.resolve(INDEX_FILE_NAME);
+                notesPath = notes;
+                fingerPrint = currentFingerPrint;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            load(gen);
+            syncNow(gen);
+
+            if (gen == generation.get()) {
+                ready = true;
+                scheduleSave();
+            }
+        });
+    }
+
+    @Override
+    public void sync() {
+        int gen = generation.get();
+        executor.execute(() -> {
+            syncNow(gen);
+            scheduleSave();
+        });
+    }
+
+    @Override
+    public void update(Path path, String content) {
+        String rel = relativize(path);
+        if (rel == null) return;
+
+        BasicFileAttributes attrs;
+        try {
+            attrs = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (IOException e) {
+            log.debug("skip index update for {}: {}", path, e.toString());
+            return;
+        }
+
+        // разбор на слова - в потоке индекса; изменения идут через него по порядку, переименование не обгонит правку
+        long mtime = attrs.lastModifiedTime().toMillis();
+        long size = attrs.size();
+        executor.execute(() -> {
+            index(rel, mtime, size, content);
+            scheduleSave();
+        });
+    }
+
+    @Override
+    public void remove(Path path) {
+        String rel = relativize(path);
+        if (rel == null) return;
+
+        executor.execute(() -> {
+            lock.writeLock().lock();
+            try {
+                String prefix = rel + "/";
+                List<String> removed = files.keySet().stream()
+                        .filter(p -> p.equals(rel) || p.startsWith(prefix))
+                        .toList();
+                removed.forEach(this::unindex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            scheduleSave();
+        });
+    }
+
+    @Override
+    public void rename(Path oldPath, Path newPath) {
+        String oldRel = relativize(oldPath);
+        String newRel = relativize(newPath);
+        if (oldRel == null || newRel == null) return;
+
+        executor.execute(() -> {
+            lock.writeLock().lock();
+            try {
+                String prefix = oldRel + "/";
+                List<IndexedFile> moved = files.values().stream()
+                        .filter(f -> f.path.equals(oldRel) || f.path.startsWith(prefix))
+                        .toList();
+                for (IndexedFile file : moved) {
+                    files.remove(file.path);
+                    file.path = newRel + file.path.substring(oldRel.length());
+                    files.put(file.path, file);
+                }
+                dirty |= !moved.isEmpty();
+            } finally {
+                lock.writeLock().unlock();
+            }
+            scheduleSave();
+        });
+    }
+
+    @Override
+    public Optional<List<Path>> findCandidates(String query) {
+        if (!ready || query == null) return Optional.empty();
+
+        List<QueryToken> tokens = queryTokens(query);
+        if (tokens.isEmpty()) return Optional.empty();
+        // самый длинный токен обычно самый избирательный
+        tokens.sort(Comparator.comparingInt((QueryToken t) -> t.text().length()).reversed());
+
+        lock.readLock().lock();
+        try {
+            BitSet result = null;
+            for (QueryToken token : tokens) {
+                BitSet matched = lookup(token);
+                if (result == null) result = matched;
+                else result.and(matched);
+                if (result.isEmpty()) break;
+            }
+
+            Path notes = notesPath;
+            List<Path> candidates = new ArrayList<>(result.cardinality());
+            for (int id = result.nextSetBit(0); id >= 0; id = result.nextSetBit(id + 1)) {
+                IndexedFile file = filesById.get(id);
+                if (file != null) candidates.add(notes.resolve(file.path));
+            }
+            candidates.sort(Comparator.comparing(Path::toString, String.CASE_INSENSITIVE_ORDER));
+            return Optional.of(candidates);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void save() {
+        int gen = generation.get();
+        executor.execute(() -> saveNow(gen));
+    }
+
+    private void scheduleSave() {
+        int gen = generation.get();
+        synchronized (this) {
+            if (pendingSave != null && !pendingSave.isDone()) return;
+            pendingSave = executor.schedule(() -> saveNow(gen), SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private BitSet lookup(QueryToken token) {
+        String text = token.text();
+        BitSet matched = new BitSet(filesById.size());
+        if (!token.leftOpen()) {
+            if (!token.rightOpen()) {
+                Term term = postings.get(text);
+                if (term != null) term.files.addTo(matched);
+            } else {
+                for (Term term : postings.subMap(text, true, text + Character.MAX_VALUE, false).values()) {
+                    term.files.addTo(matched);
+                }
+            }
+            return matched;
+        }
+
+        // токен может начинаться в середине слова текста
+        for (String candidate : termsContaining(text)) {
+            if (token.rightOpen() || candidate.endsWith(text)) {
+                postings.get(candidate).files.addTo(matched);
+            }
+        }
+        return matched;
+    }
+
+    private List<String> termsContaining(String text) {
+        if (text.length() < GRAM) {
+            return postings.keySet().stream().filter(term -> term.contains(text)).toList();
+        }
+
+        // достаточно проверить слова с самой редкой триграммой токена
+        IntList rarest = null;
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            IntList ids = termsByGram.get(text.substring(i, i + GRAM));
+            if (ids == null) return List.of();
+            if (rarest == null || ids.size < rarest.size) rarest = ids;
+        }
+
+        List<String> result = new ArrayList<>();
+        for (int i = 0; i < rarest.size; i++) {
+            String term = termsById.get(rarest.data[i]);
+            if (term.contains(text)) result.add(term);
+        }
+        return result;
+    }
+
+    /**
+     * Токены запроса по порядку. Первый токен может оказаться концом слова текста, а последний - его началом,
+     * если запрос начинается или заканчивается посреди слова; остальные совпадают со словами текста целиком
+     */
+    static List<QueryToken> queryTokens(String query) {
+        List<String> texts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = query.length(); i < n; i++) {
+            char ch = query.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                sb.append(Character.toLowerCase(ch));
+            } else if (!sb.isEmpty()) {
+                texts.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (!sb.isEmpty()) texts.add(sb.toString());
+        if (texts.isEmpty()) return new ArrayList<>();
+
+        boolean startsInWord = Character.isLetterOrDigit(query.charAt(0));
+        boolean endsInWord = Character.isLetterOrDigit(query.charAt(query.length() - 1));
+        List<QueryToken> tokens = new ArrayList<>(texts.size());
+        for (int i = 0; i < texts.size(); i++) {
+            tokens.add(new QueryToken(texts.get(i), i == 0 && startsInWord, i == texts.size() - 1 && endsInWord));
+        }
+        return tokens;
+    }
+
+    private void syncNow(int gen) {
+        Path notes = notesPath;
+        if (notes == null || !Files.isDirectory(notes)) return;
+
+        Map<String, ScannedEntry> onDisk = new HashMap<>();
+        try {
+            for (ScannedEntry entry : vaultScanner.scan(notes).markdownFiles()) {
+                onDisk.put(toKey(notes.relativize(entry.path())), entry);
+            }
+        } catch (CustomIOException e) {
+            log.warn(INDEX_SYNC_ERROR, e);
+            return;
+        }
+
+        List<String> missing;
+        lock.readLock().lock();
+        try {
+            missing = files.keySet().stream().filter(p -> !onDisk.containsKey(p)).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (!missing.isEmpty()) {
+            lock.writeLock().lock();
+            try {
+                missing.forEach(this::unindex);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+
+        for (Map.Entry<String, ScannedEntry> entry : onDisk.entrySet()) {
+            if (gen != generation.get()) return;
+
+            String rel = entry.getKey();
+            long mtime = entry.getValue().lastModified();
+            long size = entry.getValue().size();
+
+            lock.readLock().lock();
+            IndexedFile known;
+            try {
+                known = files.get(rel);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (known != null && known.mtime == mtime && known.size == size) continue;
+
+            String content = readContent(notes.resolve(rel));
+            if (content == null) {
+                lock.writeLock().lock();
+                try {
+                    unindex(rel);
+                } finally {
+                    lock.writeLock().unlock();
+                }
+                continue;
+            }
+            index(rel, mtime, size, content);
+        }
+    }
+
+    private String readContent(Path file) {
+        try {
+            return noteContentService.read(file);
+        } catch (Exception e) {
+            log.debug("skip {} from search index: {}", file, e.toString());
+            return null;
+        }
+    }
+
+    private void index(String rel, long mtime, long size, String content) {
+        Set<String> terms = tokenize(content);
+
+        lock.writeLock().lock();
+        try {
+            unindex(rel);
+
+            int id = freeFileIds.size > 0 ? freeFileIds.removeLast() : filesById.size();
+            IndexedFile file = new IndexedFile(id, rel, mtime, size, terms.toArray(new String[0]));
+            if (id == filesById.size()) filesById.add(file);
+            else filesById.set(id, file);
+            files.put(rel, file);
+            for (String term : file.terms) {
+                term(term).files.add(file.id);
+            }
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void unindex(String rel) {
+        IndexedFile file = files.remove(rel);
+        if (file == null) return;
+
+        filesById.set(file.id, null);
+        freeFileIds.add(file.id);
+        for (String term : file.terms) {
+            Term entry = postings.get(term);
+            if (entry == null) continue;
+            entry.files.remove(file.id);
+            if (entry.files.size == 0) removeTerm(term, entry);
+        }
+        dirty = true;
+    }
+
+    private Term term(String text) {
+        Term term = postings.get(text);
+        if (term != null) return term;
+
+        int id = freeTermIds.size > 0 ? freeTermIds.removeLast() : termsById.size();
+        if (id == termsById.size()) termsById.add(text);
+        else termsById.set(id, text);
+        term = new Term(id);
+        postings.put(text, term);
+        for (String gram : grams(text)) {
+            termsByGram.computeIfAbsent(gram, g -> new IntList()).add(id);
+        }
+        return term;
+    }
+
+    private void removeTerm(String text, Term term) {
+        postings.remove(text);
+        termsById.set(term.id, null);
+        freeTermIds.add(term.id);
+        for (String gram : grams(text)) {
+            IntList ids = termsByGram.get(gram);
+            if (ids == null) continue;
+            ids.remove(term.id);
+            if (ids.size == 0) termsByGram.remove(gram);
+        }
+    }
+
+    private static Set<String> grams(String term) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= term.length(); i++) {
+            grams.add(term.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private void clear() {
+        files.clear();
+        filesById.clear();
+        freeFileIds.clear();
+        postings.clear();
+        termsById.clear();
+        freeTermIds.clear();
+        termsByGram.clear();
+        dirty = false;
+    }
+
+    private void load(int gen) {
+        Path path = indexPath;
+        if (path == null || !Files.exists(path)) return;
+
+        try {
+            byte[] raw = Files.readAllBytes(path);
+            byte[] data = cryptor().map(c -> c.decrypt(raw, null)).orElse(raw);
+
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+                if (!readString(in).equals(fingerPrint)) return;
+
+                lock.writeLock().lock();
+                try {
+                    if (gen != generation.get()) return;
+
+                    int fileCount = in.readInt();
+                    List<List<String>> termsByFile = new ArrayList<>(fileCount);
+                    for (int i = 0; i < fileCount; i++) {
+                        String rel = readString(in);
+                        long mtime = in.readLong();
+                        long size = in.readLong();
+                        IndexedFile file = new IndexedFile(i, rel, mtime, size, null);
+                        filesById.add(file);
+                        files.put(rel, file);
+                        termsByFile.add(new ArrayList<>());
+                    }
+
+                    int termCount = in.readInt();
+                    for (int i = 0; i < termCount; i++) {
+                        String text = readString(in);
+                        int count = in.readInt();
+                        Term term = term(text);
+                        for (int j = 0; j < count; j++) {
+                            int id = in.readInt();
+                            term.files.add(id);
+                            termsByFile.get(id).add(text);
+                        }
+                    }
+
+                    for (IndexedFile file : filesById) {
+                        file.terms = termsByFile.get(file.id).toArray(new String[0]);
+                    }
+                    dirty = false;
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            }
+        } catch (Exception e) {
+            log.warn(INDEX_LOAD_ERROR, e);
+            lock.writeLock().lock();
+            try {
+                clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void saveNow(int gen) {
+        Path path = indexPath;
+        if (path == null || gen != generation.get()) return;
+        // ключ сессии мог смениться (смена пароля, блокировка) - не пишем индекс чужим ключом
+        if (!vaultSession.isUnlocked() || !vaultSession.getFingerPrint().equals(fingerPrint)) return;
+
+        byte[] data;
+        lock.readLock().lock();
+        try {
+            if (!dirty) return;
+            data = serialize();
+            dirty = false;
+        } catch (IOException e) {
+            log.warn(INDEX_SAVE_ERROR, e);
+            return;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        try {
+            byte[] out = cryptor().map(c -> c.encrypt(data, null)).orElse(data);
+            Path tmp = path.resolveSibling(INDEX_FILE_NAME + ".tmp");
+            Files.write(tmp, out);
+            try {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (Exception e) {
+            log.warn(INDEX_SAVE_ERROR, e);
+        }
+    }
+
+    private byte[] serialize() throws IOException {
+        // идентификаторы уплотняются при записи, удалённые файлы не сохраняются
+        int[] remap = new int[filesById.size()];
+        List<IndexedFile> live = new ArrayList<>(files.size());
+        for (IndexedFile file : filesById) {
+            if (file == null) continue;
+            remap[file.id] = live.size();
+            live.add(file);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, fingerPrint);
+
+            out.writeInt(live.size());
+            for (IndexedFile file : live) {
+                writeString(out, file.path);
+                out.writeLong(file.mtime);
+                out.writeLong(file.size);
+            }
+
+            out.writeInt(postings.size());
+            for (Map.Entry<String, Term> entry : postings.entrySet()) {
+                IntList list = entry.getValue().files;
+                writeString(out, entry.getKey());
+                out.writeInt(list.size);
+                for (int i = 0; i < list.size; i++) {
+                    out.writeInt(remap[list.data[i]]);
+                }
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    private Optional<Encryptor> cryptor() {
+        return vaultSession.getKeyIfPresent()
+                .map(Key::getEncoded)
+                .map(encryptorFactory::encryptorForKey);
+    }
+
+    private String relativize(Path path) {
+        Path notes = notesPath;
+        if (notes == null || path == null || !path.startsWith(notes) || path.equals(notes)) return null;
+        return toKey(notes.relativize(path));
+    }
+
+    private static String toKey(Path relative) {
+        return relative.toString().replace('\\', '/');
+    }
+
+    static Set<String> tokenize(String text) {
+        Set<String> terms = new HashSet<>();
+        if (text == null) return terms;
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0, n = text.length(); i < n; i++) {
+            char ch = text.charAt(i);
+            if (Character.isLetterOrDigit(ch)) {
+                sb.append(Character.toLowerCase(ch));
+            } else if (!sb.isEmpty()) {
+                terms.add(sb.toString());
+                sb.setLength(0);
+            }
+        }
+        if (!sb.isEmpty()) terms.add(sb.toString());
+        return terms;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static final class IndexedFile {
+        private final int id;
+        private String path;
+        private final long mtime;
+        private final long size;
+        private String[] terms;
+
+        private IndexedFile(int id, String path, long mtime, long size, String[] terms) {
+            this.id = id;
+            this.path = path;
+            this.mtime = mtime;
+            this.size = size;
+            this.terms = terms;
+        }
+    }
+
+    /**
+     * @param leftOpen  токен может начинаться посреди слова текста
+     * @param rightOpen токен может заканчиваться посреди слова текста
+     */
+    record QueryToken(String text, boolean leftOpen, boolean rightOpen) {}
+
+    private static final class Term {
+        private final int id;
+        private final IntList files = new IntList();
+
+        private Term(int id) {
+            this.id = id;
+        }
+    }
+
+    private static final class IntList {
+        private int[] data;
+        private int size;
+
+        private IntList() {
+            this.data = new int[4];
+        }
+
+        private void add(int value) {
+            if (size == data.length) data = Arrays.copyOf(data, size * 2);
+            data[size++] = value;
+        }
+
+        private void remove(int value) {
+            for (int i = 0; i < size; i++) {
+                if (data[i] == value) {
+                    data[i] = data[--size];
+                    return;
+                }
+            }
+        }
+
+        private int removeLast() {
+            return data[--size];
+        }
+
+        private void clear() {
+            size = 0;
+        }
+
+        private void addTo(BitSet set) {
+            for (int i = 0; i < size; i++) set.set(data[i]);
+        }
+    }
+}
@@ -1,76 +1,207 @@
 package org.example.tonpad.core.service.impl;
 
-import java.util.ArrayList;
+import java.nio.CharBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Locale;
-import java.util.function.IntSupplier;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
+import org.example.tonpad.core.service.SearchEngine;
 import org.example.tonpad.core.service.SearchService;
 import org.springframework.stereotype.Service;
 
+import lombok.RequiredArgsConstructor;
+
 @Service
+@RequiredArgsConstructor
 public class SearchServiceImpl implements SearchService {
 
+    private final SearchEngine searchEngine;
+
+    private final Map<Path, SessionImpl> sessions = new ConcurrentHashMap<>();
+
     @Override
-    public Session openSession(Supplier<String> textSupplier, IntSupplier versionSupplier) {
-        return new SessionImpl(textSupplier, versionSupplier);
+    public Session openSession(Path note, Supplier<Text> textSupplier) {
+        SessionImpl session = new SessionImpl(key(note), textSupplier);
+        sessions.put(session.note, session);
+        return session;
     }
 
-    private static final class SessionImpl implements Session
+    @Override
+    public Optional<Session> findSession(Path note) {
+        return Optional.ofNullable(sessions.get(key(note)));
+    }
+
+    private static Path key(Path note) {
+        return note.toAbsolutePath().normalize();
+    }
+
+    private final class SessionImpl implements Session
     {
-        private Supplier<String> textSupplier;
-        private IntSupplier versionSupplier;
+        private static final char[] EMPTY = new char[0];
+
+        // после полной загрузки редактор может прислать изменение с любым номером
+        private static final int ANY_VERSION = 0;
+
+        private Path note;
 
-        private String cachedLowerText;
-        private int cachedVersion = Integer.MIN_VALUE;
+        private final Supplier<Text> textSupplier;
 
-        private SessionImpl(Supplier<String> textSupplier, IntSupplier versionSupplier)
+        // исходный текст и он же в нижнем регистре; оба правятся на месте
+        private char[] text = EMPTY;
+        private char[] folded = EMPTY;
+        private int length;
+        private int version;
+        private boolean stale = true;
+        private boolean closed;
+
+        private String compiledFor;
+        private SearchEngine.Options compiledOptions;
+        private SearchEngine.CompiledQuery compiledQuery;
+
+        private SessionImpl(Path note, Supplier<Text> textSupplier)
         {
+            this.note = note;
             this.textSupplier = textSupplier;
-            this.versionSupplier = versionSupplier;
         }
 
         @Override
         public List<Hit> findAll(String query) {
-            if(query == null || query.isEmpty()) return List.of();
+            return findAll(query, SearchEngine.Options.DEFAULT);
+        }
 
-            ensureCacheIsFresh();
+        @Override
+        public synchronized List<Hit> findAll(String query, SearchEngine.Options options) {
+            if(query == null || query.isEmpty() || !ensureFresh()) return List.of();
+            return hits(query, options);
+        }
+
+        @Override
+        public synchronized Optional<Result> search(String query, SearchEngine.Options options) {
+            if(!ensureFresh()) return Optional.empty();
+            List<Hit> hits = query == null || query.isEmpty() ? List.of() : hits(query, options);
+            return Optional.of(new Result(new String(text, 0, length), hits));
+        }
 
-            final String q = query.toLowerCase(Locale.ROOT);
+        private List<Hit> hits(String query, SearchEngine.Options options)
+        {
+            if(!query.equals(compiledFor) || !options.equals(compiledOptions))
+            {
+                // без учёта регистра литералы ищутся по уже свёрнутому буферу точным сравнением
+                this.compiledQuery = options.caseSensitive() || options.regex()
+                        ? searchEngine.compile(query, options)
+                        : searchEngine.compile(fold(query), new SearchEngine.Options(true, options.wholeWord(), false));
+                this.compiledFor = query;
+                this.compiledOptions = options;
+            }
 
-            return indexOfAll(q);
+            char[] source = options.caseSensitive() ? text : folded;
+            return compiledQuery.findAll(CharBuffer.wrap(source, 0, length));
         }
 
-        private List<Hit> indexOfAll(String query) 
+        @Override
+        public synchronized void onNoteReset(String content, boolean clean)
         {
-            List<Hit> hits = new ArrayList<>();
-            int searchIdx = 0;
-            while(true)
+            if(closed) return;
+            load(content, ANY_VERSION);
+        }
+
+        @Override
+        public synchronized void onNoteChanged(int version, int start, int end, String replacement)
+        {
+            if(closed || stale || (this.version != ANY_VERSION && version != this.version + 1)
+                    || start < 0 || start > end || end > length)
+            {
+                this.stale = true;
+                return;
+            }
+
+            int inserted = replacement.length();
+            int newLength = length - (end - start) + inserted;
+            ensureCapacity(newLength);
+
+            System.arraycopy(text, end, text, start + inserted, length - end);
+            System.arraycopy(folded, end, folded, start + inserted, length - end);
+            replacement.getChars(0, inserted, text, start);
+            for(int i = start; i < start + inserted; i++)
+            {
+                folded[i] = Horspool.fold(text[i]);
+            }
+
+            this.length = newLength;
+            this.version = version;
+        }
+
+        // полностью буфер перечитывается, только если изменения пришли не по порядку
+        private boolean ensureFresh()
+        {
+            if(closed) return false;
+            if(stale)
+            {
+                Text current = textSupplier.get();
+                if(current == null || current.content() == null) return false;
+                load(current.content(), current.version());
+            }
+            return true;
+        }
+
+        private void load(String content, int version)
+        {
+            int textLength = content.length();
+            ensureCapacity(textLength);
+            content.getChars(0, textLength, text, 0);
+            for(int i = 0; i < textLength; i++)
             {
-                int startHitIdx = cachedLowerText.indexOf(query, searchIdx);
-                if(startHitIdx < 0) break;
-                hits.add(new Hit(startHitIdx, startHitIdx + query.length()));
-                searchIdx = startHitIdx + query.length();
+                folded[i] = Horspool.fold(text[i]);
             }
+            this.length = textLength;
+            this.version = version;
+            this.stale = false;
+        }
 
-            return hits;
+        private void ensureCapacity(int capacity)
+        {
+            if(folded.length < capacity)
+            {
+                int newCapacity = Math.max(capacity, folded.length + (folded.length >> 1));
+                this.text = Arrays.copyOf(text, newCapacity);
+                this.folded = Arrays.copyOf(folded, newCapacity);
+            }
         }
 
-        private void ensureCacheIsFresh()
+        private static String fold(String query)
         {
-            int version = versionSupplier.getAsInt();
-            if(version != cachedVersion)
+            char[] chars = query.toCharArray();
+            for(int i = 0; i < chars.length; i++)
             {
-                String text = textSupplier.get();
-                this.cachedLowerText = text == null ? "" : text.toLowerCase(Locale.ROOT);
-                this.cachedVersion = version;
+                chars[i] = Horspool.fold(chars[i]);
             }
+            return new String(chars);
+        }
+
+        @Override
+        public synchronized void moveTo(Path newNote)
+        {
+            if(closed) return;
+            sessions.remove(note, this);
+            this.note = key(newNote);
+            sessions.put(note, this);
         }
 
-        @Override public void close()
+        @Override public synchronized void close()
         {
-            this.cachedLowerText = null;
+            sessions.remove(note, this);
+            this.text = EMPTY;
+            this.folded = EMPTY;
+            this.length = 0;
+            this.stale = true;
+            this.closed = true;
+            this.compiledQuery = null;
+            this.compiledFor = null;
+            this.compiledOptions = null;
         }
     }
 }
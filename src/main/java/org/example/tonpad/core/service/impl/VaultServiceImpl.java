@@ -30,6 +30,11 @@ public class VaultServiceImpl implements VaultService {
 
     private static final String DRIVER_STRING = "jdbc:sqlite:";
 
+    // миграции применяются по одному разу; номер последней примененной хранится в PRAGMA user_version
+    private static final List<String> MIGRATIONS = List.of(
+            "db/changelog/migrations/001-notes-path-unique.sql"
+    );
+
     private final DirectoryService directoryService;
 
     private final FileSystemService fileSystemService;
@@ -58,14 +63,8 @@ public class VaultServiceImpl implements VaultService {
         try (Connection conn = DriverManager.getConnection(url);
              Statement stmt = conn.createStatement()) {
 
-            String sql = readScript(changelogPath);
-
-            for (String command : sql.split(";")) {
-                command = command.trim();
-                if (!command.isEmpty()) {
-                    stmt.execute(command);
-                }
-            }
+            applyChangelog(stmt);
+            applyMigrations(conn, stmt);
         } catch (Exception e) {
             throw new CustomIOException("Vault could not be initialized");
         }
@@ -101,11 +100,51 @@ public class VaultServiceImpl implements VaultService {
                                 String.join("\n  - ", errors)
                 );
             }
+
+            // changelog идемпотентен: у хранилищ, созданных раньше, появятся новые индексы
+            applyChangelog(stmt);
+            applyMigrations(conn, stmt);
         } catch (Exception e) {
             throw new CustomIOException("Vault is not initialized");
         }
     }
 
+    private void applyChangelog(Statement stmt) throws IOException, SQLException {
+        executeScript(stmt, readScript(changelogPath));
+    }
+
+    private static void executeScript(Statement stmt, String sql) throws SQLException {
+        for (String command : sql.split(";")) {
+            command = command.trim();
+            if (!command.isEmpty()) {
+                stmt.execute(command);
+            }
+        }
+    }
+
+    private void applyMigrations(Connection conn, Statement stmt) throws IOException, SQLException {
+        int version;
+        try (ResultSet result = stmt.executeQuery("PRAGMA user_version")) {
+            version = result.next() ? result.getInt(1) : 0;
+        }
+        if (version >= MIGRATIONS.size()) return;
+
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+            for (int i = version; i < MIGRATIONS.size(); i++) {
+                executeScript(stmt, readScript(MIGRATIONS.get(i)));
+            }
+            stmt.execute("PRAGMA user_version = " + MIGRATIONS.size());
+            conn.commit();
+        } catch (IOException | SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
     private String readScript(String changelogPath) throws IOException {
         Resource resource = new ClassPathResource(changelogPath);
         return StreamUtils.copyToString(resource.getInputStream(), StandardCharsets.UTF_8);
@@ -4,7 +4,9 @@ import java.lang.reflect.Field;
 import java.security.MessageDigest;
 import java.util.Arrays;
 import java.util.HexFormat;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicReference;
 
 import javax.crypto.SecretKey;
@@ -31,6 +33,8 @@ public class DefaultVaultSession implements VaultSession {
     private final AtomicReference<SecretKey> keyRef = new AtomicReference<>();
     private volatile Mode mode = Mode.LOCKED;
 
+    private final List<Runnable> lockListeners = new CopyOnWriteArrayList<>();
+
     @Override
     public void unlock(char[] password) {
         if (password == null || password.length == 0) throw new IllegalArgumentException("empty password");
@@ -93,6 +97,12 @@ public class DefaultVaultSession implements VaultSession {
         SecretKey key = keyRef.getAndSet(null);
         if (key != null) zeroKey(key);
         mode = Mode.LOCKED;
+        lockListeners.forEach(Runnable::run);
+    }
+
+    @Override
+    public void addLockListener(Runnable listener) {
+        lockListeners.add(listener);
     }
 
     @Override
@@ -16,4 +16,5 @@ public interface VaultSession {
     SecretKey requiredKey();
     Optional<SecretKey> getKeyIfPresent();
     String getFingerPrint();
+    void addLockListener(Runnable listener);
 }
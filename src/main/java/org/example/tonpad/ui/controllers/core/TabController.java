@@ -16,14 +16,18 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.tonpad.core.editor.enums.EditorMode;
 import org.example.tonpad.core.editor.enums.FormatType;
 import org.example.tonpad.core.editor.impl.EditorImpl;
-import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.example.tonpad.core.editor.listener.NoteChangeListener;
+import org.example.tonpad.core.exceptions.handler.GlobalExceptionHandler;
+import org.example.tonpad.core.files.NoteContentService;
+import org.example.tonpad.core.files.NoteDocument;
+import org.example.tonpad.core.files.NoteJournalService;
+import org.example.tonpad.core.files.NoteSaveService;
 import org.example.tonpad.core.files.regularFiles.RegularFileService;
+import org.example.tonpad.core.service.LinkGraphService;
 import org.example.tonpad.core.service.RecentTabService;
-import org.example.tonpad.core.service.crypto.Encryptor;
-import org.example.tonpad.core.service.crypto.EncryptorFactory;
-import org.example.tonpad.core.exceptions.DecryptionException;
+import org.example.tonpad.core.service.SearchIndexService;
+import org.example.tonpad.core.service.SearchService;
 import org.example.tonpad.core.exceptions.ObjectNotFoundException;
-import org.example.tonpad.core.session.VaultSession;
 import org.example.tonpad.core.editor.Editor;
 import org.example.tonpad.ui.controllers.search.SearchInTextController;
 import org.example.tonpad.ui.controllers.toolbar.EditorToolbarController;
@@ -33,10 +37,8 @@ import org.springframework.stereotype.Component;
 import java.net.URI;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.security.Key;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Component
@@ -57,18 +59,28 @@ public class TabController {
     private Runnable showSearchPaneHandler;
 
     private final EditorToolbarController editorToolbarController;
-    
-    private final Map<Tab, Boolean> dirtyMap = new ConcurrentHashMap<>();
 
     private final RegularFileService fileSystemService;
 
     private final RecentTabService recentTabService;
 
-    private final VaultSession vaultSession;
+    private final SearchInTextController searchInTextController;
+
+    private final SearchIndexService searchIndexService;
 
-    private final EncryptorFactory encryptorFactory;
+    private final SearchService searchService;
 
-    private final SearchInTextController searchInTextController;
+    private final NoteContentService noteContentService;
+
+    private final LinkGraphService linkGraphService;
+
+    private final NoteJournalService noteJournalService;
+
+    private final NoteSaveService noteSaveService;
+
+    private final GlobalExceptionHandler globalExceptionHandler;
+
+    private final Set<NoteDocument> failedSaves = ConcurrentHashMap.newKeySet();
 
     public void init(URI fileUri, EditorMode editorMode, boolean protectedMode) {
         createInitialTab(fileUri, editorMode, protectedMode);
@@ -175,24 +187,7 @@ public class TabController {
         String noteContent;
 
         if (protectedMode) {
-            if(vaultSession.isOpendWithNoPassword()) {
-                Encryptor encoder = encryptorFactory.encryptorForKey();
-                if (encoder.isActionWithNoPasswordAllowed(filePath)) {
-                    noteContent = fileSystemService.readFile(filePath);
-                }
-                else {
-                    throw new DecryptionException("Invalid password");
-                }
-            } else {
-                try {
-                    byte[] key = vaultSession.getKeyIfPresent().map(Key::getEncoded).orElse(null);
-                    Encryptor encoder = encryptorFactory.encryptorForKey(key);
-                    noteContent = encoder.decrypt(fileSystemService.readFile(filePath), null);
-                }
-                catch(DecryptionException e) {
-                    throw new DecryptionException("Invalid password", e);
-                }
-            }
+            noteContent = noteContentService.read(filePath);
         } else {
             noteContent = fileSystemService.readFile(filePath);
         }
@@ -230,26 +225,7 @@ public class TabController {
             return;
         }
 
-        String noteContent;
-
-        if(vaultSession.isOpendWithNoPassword()) {
-            Encryptor encoder = encryptorFactory.encryptorForKey();
-            if (encoder.isActionWithNoPasswordAllowed(filePath)) {
-                noteContent = fileSystemService.readFile(filePath);
-            }
-            else {
-                throw new DecryptionException("Invalid password");
-            }
-        } else {
-            try {
-                byte[] key = vaultSession.getKeyIfPresent().map(Key::getEncoded).orElse(null);
-                Encryptor encoder = encryptorFactory.encryptorForKey(key);
-                noteContent = encoder.decrypt(fileSystemService.readFile(filePath), null);
-            }
-            catch(DecryptionException e) {
-                throw new DecryptionException("Invalid password", e);
-            }
-        }
+        String noteContent = noteContentService.read(filePath);
 
         createTabWithContent(getTabName(filePath), noteContent, filePath, EditorMode.NOTE, true);
         recentTabService.addOpenedTab(filePath);
@@ -291,7 +267,9 @@ public class TabController {
             pathMap.put(newPath, tab);
 
             TabParams tabParams = tabMap.get(tab);
-            tabMap.put(tab, new TabParams(tabParams.editor(), newPath));
+            tabMap.put(tab, new TabParams(tabParams.editor(), newPath, tabParams.document(), tabParams.searchSession()));
+            if (tabParams.document() != null) tabParams.document().moveTo(newPath);
+            if (tabParams.searchSession() != null) tabParams.searchSession().moveTo(newPath);
 
             String title = getTabName(newPath);
             tab.setText(title);
@@ -341,7 +319,7 @@ public class TabController {
         AnchorPane content = new AnchorPane();
         WebView webView = new WebView();
 
-        initTabContent(newTab, "<h1>Error loading content</h1>", content, webView, EditorMode.SNIPPET);
+        initTabContent(newTab, "<h1>Error loading content</h1>", content, webView, EditorMode.SNIPPET, null, null, null);
         addTabToPane(newTab);
 
         newTab.setOnCloseRequest(event -> closeTab(newTab, false));
@@ -353,26 +331,33 @@ public class TabController {
         AnchorPane content = new AnchorPane();
         WebView webView = new WebView();
         pathMap.put(path, newTab);
-        Editor editor = initTabContent(newTab, noteContent, content, webView, editorMode);
-        tabMap.put(newTab, new TabParams(editor, path));
-
-        dirtyMap.put(newTab, false);
-        addTabToPane(newTab);
 
         PauseTransition debounce = new PauseTransition(Duration.millis(1500));
         debounce.setOnFinished(event -> saveToFile(newTab, protectedMode));
 
+        String recovered = noteJournalService.recover(path, noteContent, protectedMode);
+        NoteDocument document = openDocument(path, noteContent, recovered != null, protectedMode);
+        SearchService.Session searchSession = searchService.openSession(path, document::searchText);
+        Editor editor = initTabContent(newTab, recovered != null ? recovered : noteContent, content, webView, editorMode,
+                document, searchSession, debounce);
+        tabMap.put(newTab, new TabParams(editor, path, document, searchSession));
+
+        addTabToPane(newTab);
+
         newTab.setOnCloseRequest(event -> {
             saveToFile(newTab, protectedMode);
             closeTab(newTab, false);
         });
-        content.addEventFilter(KeyEvent.KEY_TYPED, event -> {
-            dirtyMap.put(newTab, true);
-            debounce.playFromStart();
-        });
     }
 
-    private Editor initTabContent(Tab tab, String noteContent, AnchorPane content, WebView webView, EditorMode editorMode) {
+    private NoteDocument openDocument(Path path, String fileContent, boolean recovered, boolean protectedMode) {
+        NoteDocument document = new NoteDocument(path, noteJournalService.open(path, protectedMode), fileContent);
+        if (recovered) document.markRecovered();
+        return document;
+    }
+
+    private Editor initTabContent(Tab tab, String noteContent, AnchorPane content, WebView webView, EditorMode editorMode,
+                                  NoteDocument document, SearchService.Session searchSession, PauseTransition debounce) {
         AnchorPane.setTopAnchor(webView, 0.0);
         AnchorPane.setBottomAnchor(webView, 0.0);
         AnchorPane.setLeftAnchor(webView, 0.0);
@@ -380,6 +365,21 @@ public class TabController {
         content.getChildren().add(webView);
 
         Editor editor = new EditorImpl(webView.getEngine(), editorMode, false);
+        if (document != null) {
+            editor.addNoteChangeListener(document);
+            if (searchSession != null) editor.addNoteChangeListener(searchSession);
+            editor.addNoteChangeListener(new NoteChangeListener() {
+                @Override
+                public void onNoteReset(String content, boolean clean) {
+                    if (document.isDirty()) debounce.playFromStart();
+                }
+
+                @Override
+                public void onNoteChanged(int version, int start, int end, String text) {
+                    debounce.playFromStart();
+                }
+            });
+        }
         editor.setNoteContent(noteContent);
 
         setupKeyboardShortcutsForWebView(webView, editor);
@@ -434,21 +434,27 @@ public class TabController {
         tab.setText(title);
         pathMap.put(path, tab);
 
+        TabParams previous = tabMap.get(tab);
+        if (previous != null && previous.document() != null) previous.document().close();
+        if (previous != null && previous.searchSession() != null) previous.searchSession().close();
+
         AnchorPane content = new AnchorPane();
         WebView webView = new WebView();
-        Editor editor = initTabContent(tab, noteContent, content, webView, editorMode);
-        tabMap.put(tab, new TabParams(editor, path));
-
-        dirtyMap.put(tab, false);
 
         PauseTransition debounce = new PauseTransition(Duration.millis(1500));
         debounce.setOnFinished(event -> saveToFile(tab, protectedMode));
 
+        String recovered = noteJournalService.recover(path, noteContent, protectedMode);
+        NoteDocument document = openDocument(path, noteContent, recovered != null, protectedMode);
+        SearchService.Session searchSession = searchService.openSession(path, document::searchText);
+        Editor editor = initTabContent(tab, recovered != null ? recovered : noteContent, content, webView, editorMode,
+                document, searchSession, debounce);
+        tabMap.put(tab, new TabParams(editor, path, document, searchSession));
+
         tab.setOnCloseRequest(event -> {
             saveToFile(tab, protectedMode);
             closeTab(tab, false);
         });
-        content.addEventFilter(KeyEvent.KEY_TYPED, event -> debounce.playFromStart());
     }
 
     private String getTabName(Path filePath) {
@@ -458,10 +464,15 @@ public class TabController {
     }
 
     private void closeTab(Tab tab, boolean isVaultChanging) {
-        Path path = tabMap.get(tab).path();
-        tabMap.remove(tab);
+        TabParams params = tabMap.remove(tab);
+        Path path = params.path();
         pathMap.remove(path);
-        dirtyMap.remove(tab);
+        // журнал несохранённой заметки остаётся на диске до следующего открытия
+        if (params.document() != null) {
+            params.document().close();
+            failedSaves.remove(params.document());
+        }
+        if (params.searchSession() != null) params.searchSession().close();
 
         if (tab.getTabPane() != null) {
             tab.getTabPane().getTabs().remove(tab);
@@ -483,37 +494,26 @@ public class TabController {
     }
 
     private void saveToFile(Tab tab, boolean protectedMode) {
-        Boolean dirty = dirtyMap.get(tab);
-        if (dirty == null || !dirty) {
-            return;
-        }
-
-        byte[] key = vaultSession.getKeyIfPresent()
-                        .map(Key::getEncoded)
-                        .orElse(null);
-
         TabParams params = tabMap.get(tab);
-        if (params == null) {
+        if (params == null || params.document() == null || !params.document().isDirty()) {
             return;
         }
 
-        Path path = params.path();
-        Editor editor = params.editor();
-        
-        new Thread(() -> {
-            try {
-                String noteContent = editor.getNoteContent().get(3, TimeUnit.SECONDS);
-                if (vaultSession.isOpendWithNoPassword() || !protectedMode)
-                    fileSystemService.writeFile(path, noteContent);
-                else
-                {
-                    Encryptor encoder = encryptorFactory.encryptorForKey(key);
-                    fileSystemService.writeFile(path, encoder.encrypt(noteContent, null));
-                }
-                dirtyMap.put(tab, false);
-            } catch (Exception e) {
-                throw new TonpadBaseException("Editor not responds");
-            }
-        }).start();
+        NoteDocument document = params.document();
+        noteSaveService.save(document, protectedMode, params.editor()::getNoteContent)
+                .whenComplete((saved, error) -> {
+                    if (error != null) {
+                        // об ошибке сообщаем один раз, пока заметка снова не сохранится
+                        if (failedSaves.add(document)) {
+                            globalExceptionHandler.uncaughtException(Thread.currentThread(), error);
+                        }
+                        return;
+                    }
+                    failedSaves.remove(document);
+                    if (saved == null) return;
+
+                    searchIndexService.update(document.getPath(), saved.content());
+                    linkGraphService.update(document.getPath(), saved.content());
+                });
     }
 }
@@ -19,6 +19,7 @@ import lombok.extern.slf4j.Slf4j;
 
 import org.example.tonpad.core.files.RecentVaultService;
 import org.example.tonpad.core.service.VaultService;
+import org.example.tonpad.core.service.db.MetadataWriteQueue;
 import org.example.tonpad.core.exceptions.DerivationException;
 import org.example.tonpad.core.session.VaultSession;
 import org.example.tonpad.ui.controllers.AbstractController;
@@ -75,6 +76,8 @@ public class QuickStartDialogController extends AbstractController {
 
     private final VaultSession vaultSession;
 
+    private final MetadataWriteQueue metadataWriteQueue;
+
     private Stage stage;
 
     private double xOffset = 0;
@@ -140,7 +143,7 @@ public class QuickStartDialogController extends AbstractController {
 
         Path vaultPath = Path.of(path);
         vaultService.checkVaultInitialization(vaultPath);
-        vaultPathsContainer.setVaultPath(vaultPath);
+        switchVault(vaultPath);
         recentVaultService.setFirstRecent(recentVaults, path);
 
         AtomicBoolean confirm = new AtomicBoolean(false);
@@ -209,7 +212,7 @@ public class QuickStartDialogController extends AbstractController {
         dlg.showModal(stage, 
         pwd -> {
             try {
-                vaultPathsContainer.setVaultPath(selectedDirectory.getAbsolutePath());
+                switchVault(selectedDirectory.toPath());
                 vaultService.initVault(selectedDirectory.toPath());
                 vaultSession.unlock(pwd);    
                 confirm.set(true);
@@ -222,7 +225,7 @@ public class QuickStartDialogController extends AbstractController {
         }, 
         () -> {
             try {
-                vaultPathsContainer.setVaultPath(selectedDirectory.getAbsolutePath());
+                switchVault(selectedDirectory.toPath());
                 vaultService.initVault(selectedDirectory.toPath());
                 vaultSession.openWithoutPassword();
                 confirm.set(true);
@@ -239,6 +242,12 @@ public class QuickStartDialogController extends AbstractController {
         hide();
     }
 
+    private void switchVault(Path vaultPath) {
+        // отложенные изменения метаданных относятся к предыдущему хранилищу
+        metadataWriteQueue.flush();
+        vaultPathsContainer.setVaultPath(vaultPath);
+    }
+
     private boolean isEmptyDirectory(File directory) {
         if (!directory.exists() || !directory.isDirectory()) {
             return true;
@@ -271,7 +280,7 @@ public class QuickStartDialogController extends AbstractController {
         String path = selectedDirectory.getAbsolutePath();
         Path vaultPath = Path.of(path);
         vaultService.checkVaultInitialization(vaultPath);
-        vaultPathsContainer.setVaultPath(vaultPath);
+        switchVault(vaultPath);
         recentVaultService.setFirstRecent(recentVaults, path);
 
         AtomicBoolean confirm = new AtomicBoolean(false);
@@ -3,11 +3,14 @@ package org.example.tonpad.ui.controllers.search;
 import javafx.animation.PauseTransition;
 import javafx.fxml.FXML;
 import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.VBox;
 import javafx.util.Duration;
 import lombok.Getter;
 import org.example.tonpad.core.files.FileSystemService;
+import org.example.tonpad.core.service.FileNameIndexService;
+import org.example.tonpad.core.service.SearchEngine;
 import org.example.tonpad.core.service.SearchService;
 import org.example.tonpad.ui.controllers.AbstractController;
 import org.example.tonpad.ui.controllers.tree.FileTreeController;
@@ -19,10 +22,15 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.regex.PatternSyntaxException;
 
 @Component
 public class SearchInFileTreeController extends AbstractController {
 
+    // сколько лучших нечётких совпадений подсвечивать, если по подстроке не нашлось ничего
+    private static final int FUZZY_LIMIT = 50;
+
     @Getter
     @FXML
     private VBox searchBarVBox;
@@ -30,18 +38,35 @@ public class SearchInFileTreeController extends AbstractController {
     @FXML
     private TextField searchField;
 
+    @FXML
+    private ToggleButton caseSensitiveToggle;
+
+    @FXML
+    private ToggleButton wholeWordToggle;
+
+    @FXML
+    private ToggleButton regexToggle;
+
     private final FileTreeController fileTreeController;
 
     private final FileSystemService fileSystemService;
 
     private final VaultPathsContainer vaultPathsContainer;
 
+    private final SearchEngine searchEngine;
+
+    private final FileNameIndexService fileNameIndexService;
+
     public SearchInFileTreeController(FileTreeController fileTreeController,
                                       FileSystemService fileSystemService,
-                                      VaultPathsContainer vaultPathsContainer) {
+                                      VaultPathsContainer vaultPathsContainer,
+                                      SearchEngine searchEngine,
+                                      FileNameIndexService fileNameIndexService) {
         this.fileTreeController = fileTreeController;
         this.fileSystemService = fileSystemService;
         this.vaultPathsContainer = vaultPathsContainer;
+        this.searchEngine = searchEngine;
+        this.fileNameIndexService = fileNameIndexService;
     }
 
     @FXML
@@ -52,6 +77,10 @@ public class SearchInFileTreeController extends AbstractController {
             debounce.setOnFinished(e -> runSearch());
             debounce.playFromStart();
         });
+
+        for (ToggleButton toggle : List.of(caseSensitiveToggle, wholeWordToggle, regexToggle)) {
+            toggle.selectedProperty().addListener((o, ov, nv) -> runSearch());
+        }
     }
 
     public void init(AnchorPane parent) {
@@ -67,7 +96,6 @@ public class SearchInFileTreeController extends AbstractController {
 
     public void hideSearchBar() {
         fileTreeController.setHitsMap(new HashMap<>());
-        fileTreeController.refreshTree();
         setQuery("");
     }
 
@@ -75,34 +103,37 @@ public class SearchInFileTreeController extends AbstractController {
         String query = getQuery();
         if (query.isEmpty()) {
             fileTreeController.setHitsMap(new HashMap<>());
-            fileTreeController.refreshTree();
             return;
         }
 
         Map<String, List<SearchService.Hit>> searchResults = runFileTreeSearch(query);
         fileTreeController.setHitsMap(searchResults);
-        fileTreeController.refreshTree();
     }
 
     private Map<String, List<SearchService.Hit>> runFileTreeSearch(String query) {
         Map<String, List<SearchService.Hit>> map = new HashMap<>();
         if (query == null || query.isBlank()) return map;
 
-        final String needle = query.toLowerCase();
+        final SearchEngine.Options options = options();
+        final SearchEngine.CompiledQuery compiledQuery;
+        try {
+            compiledQuery = searchEngine.compile(query, options);
+        } catch (PatternSyntaxException e) {
+            // регулярное выражение ещё не дописано
+            return map;
+        }
         final Path rootPath = vaultPathsContainer.getNotesPath();
         final String rootAbs = rootPath.toString();
         final String rootName = rootPath.getFileName() != null ? rootPath.getFileName().toString() : rootAbs;
 
-        fileSystemService.findByNameContains(rootAbs, query).stream()
+        // индекс отдаёт надмножество, имена всё равно проверяются запросом; пока он строится
+        // или запрос - регулярное выражение, обходим диск
+        Optional<List<Path>> candidates = options.regex() ? Optional.empty() : fileNameIndexService.findCandidates(query);
+        candidates
+                .orElseGet(() -> fileSystemService.findByName(rootPath, compiledQuery::matches)).stream()
                 .map(rel -> {
                     String fileName = rel.getFileName() == null ? "" : rel.getFileName().toString();
-                    String hay = fileName.toLowerCase();
-                    int from = 0, idx;
-                    var hits = new ArrayList<SearchService.Hit>();
-                    while ((idx = hay.indexOf(needle, from)) >= 0) {
-                        hits.add(new SearchService.Hit(idx, idx + needle.length()));
-                        from = idx + needle.length();
-                    }
+                    List<SearchService.Hit> hits = compiledQuery.findAll(fileName);
                     String relStr = rel.toString().replace('\\', '/');
                     String key = relStr.isEmpty() ? rootName : (rootName + "/" + relStr);
                     return Map.entry(key, hits);
@@ -110,14 +141,15 @@ public class SearchInFileTreeController extends AbstractController {
                 .filter(e -> !e.getValue().isEmpty())
                 .forEach(e -> map.put(e.getKey(), e.getValue()));
 
-        // Поиск в корневом имени
-        String hay = rootName.toLowerCase();
-        int from = 0, idx;
-        var hits = new ArrayList<SearchService.Hit>();
-        while ((idx = hay.indexOf(needle, from)) >= 0) {
-            hits.add(new SearchService.Hit(idx, idx + needle.length()));
-            from = idx + needle.length();
+        // опечатка или пропущенные буквы: символы запроса по порядку в пути, как в быстром открытии;
+        // с включёнными режимами поиска совпадение должно быть точным
+        if (map.isEmpty() && options.equals(SearchEngine.Options.DEFAULT)) {
+            fileNameIndexService.findFuzzy(query, FUZZY_LIMIT)
+                    .ifPresent(matches -> matches.forEach(match -> addFuzzyHits(map, rootName, match)));
         }
+
+        // Поиск в корневом имени
+        List<SearchService.Hit> hits = compiledQuery.findAll(rootName);
         if (!hits.isEmpty()) {
             map.put(rootName, hits);
         }
@@ -125,6 +157,32 @@ public class SearchInFileTreeController extends AbstractController {
         return map;
     }
 
+    // совпавшие символы пути подсвечиваются в узлах тех каталогов и файла, в имени которых они стоят
+    private static void addFuzzyHits(Map<String, List<SearchService.Hit>> map, String rootName,
+                                     FileNameIndexService.Match match) {
+        String path = match.path().toString().replace('\\', '/');
+        Map<String, List<SearchService.Hit>> hitsByNode = new HashMap<>();
+        for (int position : match.positions()) {
+            int segmentStart = path.lastIndexOf('/', position) + 1;
+            int segmentEnd = path.indexOf('/', position);
+            String key = rootName + "/" + path.substring(0, segmentEnd < 0 ? path.length() : segmentEnd);
+            int offset = position - segmentStart;
+
+            List<SearchService.Hit> hits = hitsByNode.computeIfAbsent(key, k -> new ArrayList<>());
+            // подряд идущие символы - один отрезок подсветки
+            SearchService.Hit last = hits.isEmpty() ? null : hits.get(hits.size() - 1);
+            if (last != null && last.end() == offset) hits.set(hits.size() - 1, new SearchService.Hit(last.start(), offset + 1));
+            else hits.add(new SearchService.Hit(offset, offset + 1));
+        }
+        // совпадения отсортированы по убыванию score: общий каталог подсвечивается по лучшему из них
+        hitsByNode.forEach(map::putIfAbsent);
+    }
+
+    private SearchEngine.Options options() {
+        return new SearchEngine.Options(
+                caseSensitiveToggle.isSelected(), wholeWordToggle.isSelected(), regexToggle.isSelected());
+    }
+
     public void focus() {
         searchField.requestFocus();
         searchField.selectAll();
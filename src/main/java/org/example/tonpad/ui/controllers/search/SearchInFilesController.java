@@ -4,6 +4,7 @@ import javafx.animation.PauseTransition;
 import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.TextField;
+import javafx.scene.control.ToggleButton;
 import javafx.scene.control.TreeCell;
 import javafx.scene.control.TreeItem;
 import javafx.scene.control.TreeView;
@@ -18,29 +19,45 @@ import javafx.util.Duration;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
 import org.example.tonpad.core.editor.enums.EditorMode;
-import org.example.tonpad.core.exceptions.DecryptionException;
 import org.example.tonpad.core.extentions.TriConsumer;
-import org.example.tonpad.core.files.FileSystemService;
-import org.example.tonpad.core.files.FileTree;
-import org.example.tonpad.core.service.crypto.Encryptor;
-import org.example.tonpad.core.service.crypto.Impl.AesGcmEncryptor;
-import org.example.tonpad.core.session.VaultSession;
+import org.example.tonpad.core.files.NoteContentService;
+import org.example.tonpad.core.files.ScannedEntry;
+import org.example.tonpad.core.files.VaultScanner;
+import org.example.tonpad.core.service.SearchEngine;
+import org.example.tonpad.core.service.SearchIndexService;
+import org.example.tonpad.core.service.SearchService;
 import org.example.tonpad.ui.controllers.AbstractController;
+import org.example.tonpad.ui.extentions.SearchFileResult;
 import org.example.tonpad.ui.extentions.SearchResultCell;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.example.tonpad.ui.extentions.SearchTreeItem;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Path;
-import java.security.Key;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 
+@Slf4j
 @Component
 @RequiredArgsConstructor
 public class SearchInFilesController extends AbstractController {
@@ -63,6 +80,15 @@ public class SearchInFilesController extends AbstractController {
     @FXML
     private TreeView<String> searchTreeView;
 
+    @FXML
+    private ToggleButton caseSensitiveToggle;
+
+    @FXML
+    private ToggleButton wholeWordToggle;
+
+    @FXML
+    private ToggleButton regexToggle;
+
     @Setter
     private Runnable onSearchStarted;
 
@@ -78,15 +104,42 @@ public class SearchInFilesController extends AbstractController {
     @Setter
     private java.util.function.Consumer<String> onQueryChanged;
 
-    private Thread searchThread;
+    private static final int SEARCH_WORKERS = Math.max(1, Runtime.getRuntime().availableProcessors());
+
+    // столько файлов одного поиска стоит в очереди пула, следующий отправляется по завершении предыдущего
+    private static final int SEARCH_WINDOW = SEARCH_WORKERS * 2;
+
+    private static final Pattern FRONTMATTER_PATTERN =
+            Pattern.compile("^---\\s*\\n([\\s\\S]*?)\\n---\\s*\\n([\\s\\S]*)$", Pattern.MULTILINE);
+
+    private static final String SEARCHING_TEXT = "Searching...";
+
+    private static final String INVALID_REGEX_TEXT = "Invalid regex";
+
+    private static final int EXPANDED_LINES_LIMIT = 1000;
+
+    private final ExecutorService searchExecutor = Executors.newFixedThreadPool(SEARCH_WORKERS, r -> {
+        Thread thread = new Thread(r, "vault-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile SearchRun currentRun;
 
-    private final FileSystemService fileSystemService;
+    // по одной задаче на заметку: новая задача отменяет прежнюю
+    private final Map<String, Future<?>> searchesByNote = new ConcurrentHashMap<>();
 
-    private volatile boolean searchCancelled = false;
+    private final VaultScanner vaultScanner;
 
     private final VaultPathsContainer vaultPathsContainer;
 
-    private final VaultSession vaultSession;
+    private final SearchIndexService searchIndexService;
+
+    private final NoteContentService noteContentService;
+
+    private final SearchEngine searchEngine;
+
+    private final SearchService searchService;
 
     @FXML
     private void initialize() {
@@ -112,6 +165,13 @@ public class SearchInFilesController extends AbstractController {
                 cancelSearch();
             }
         });
+
+        // смена режима сразу перезапускает поиск по введённому запросу
+        for (ToggleButton toggle : List.of(caseSensitiveToggle, wholeWordToggle, regexToggle)) {
+            toggle.selectedProperty().addListener((o, ov, nv) -> {
+                if (!getQuery().isEmpty()) startSearch();
+            });
+        }
     }
 
     public void init(AnchorPane parent) {
@@ -175,16 +235,33 @@ public class SearchInFilesController extends AbstractController {
 
         cancelSearch();
 
-        searchCancelled = false;
-        searchThread = new Thread(() -> performSearch(query));
-        searchThread.setDaemon(true);
-        searchThread.start();
+        SearchEngine.Options options = options();
+        SearchEngine.CompiledQuery compiledQuery;
+        try {
+            compiledQuery = searchEngine.compile(query, options);
+        } catch (PatternSyntaxException e) {
+            clearResults();
+            searchResultsField.setText(INVALID_REGEX_TEXT);
+            return;
+        }
+
+        SearchTreeItem root = new SearchTreeItem("", true);
+        root.setExpanded(true);
+        searchTreeView.setCellFactory(tv -> new SearchResultCell(compiledQuery));
+        searchTreeView.setRoot(root);
+        searchTreeView.setShowRoot(false);
+        searchResultsField.setText(SEARCHING_TEXT);
+
+        SearchRun run = new SearchRun(query, options, compiledQuery, root);
+        currentRun = run;
+        run.track(searchExecutor.submit(() -> submitFiles(run)));
     }
 
     public void cancelSearch() {
-        searchCancelled = true;
-        if (searchThread != null && searchThread.isAlive()) {
-            searchThread.interrupt();
+        SearchRun run = currentRun;
+        if (run != null) {
+            run.cancel();
+            currentRun = null;
         }
 
         if (onCancel != null) {
@@ -193,173 +270,328 @@ public class SearchInFilesController extends AbstractController {
     }
 
     public String openFile(Path filePath) {
-        if(vaultSession.isOpendWithNoPassword())
-        {
-            Encryptor encoder = new AesGcmEncryptor();
-            if (encoder.isActionWithNoPasswordAllowed(filePath)) {
-                return fileSystemService.readFile(filePath);
-            }
-            else {
-                throw new DecryptionException("Invalid password");
-            }
+        return noteContentService.read(filePath);
+    }
+
+    private void submitFiles(SearchRun run) {
+        // индекс ищет по токенам запроса, для регулярного выражения они неизвестны
+        Optional<List<Path>> candidates = run.options.regex()
+                ? Optional.empty()
+                : searchIndexService.findCandidates(run.query);
+        List<SearchTreeItem> mdFiles = candidates
+                .map(this::toSearchItems)
+                .orElseGet(() -> toSearchItems(vaultScanner.scan(vaultPathsContainer.getNotesPath()).markdownFiles().stream()
+                        .map(ScannedEntry::path)
+                        .toList()));
+        if (run.cancelled) return;
+
+        run.files = mdFiles.stream().map(SearchTreeItem::getValue).toList();
+        run.remaining.set(mdFiles.size());
+        if (mdFiles.isEmpty()) {
+            scheduleFlush(run);
+            return;
         }
-        else
-        {
-            try
-            {
-                byte[] key = vaultSession.getKeyIfPresent().map(Key::getEncoded).orElse(null);
-                Encryptor encoder = new AesGcmEncryptor(key);
-                return encoder.decrypt(fileSystemService.readFile(filePath), null);
-            }
-            catch(DecryptionException e) {
-                throw new DecryptionException("Invalid password", e);
+
+        for (int i = 0; i < SEARCH_WINDOW; i++) {
+            submitNext(run);
+        }
+    }
+
+    private void submitNext(SearchRun run) {
+        int order = run.nextFile.getAndIncrement();
+        if (run.cancelled || order >= run.files.size()) return;
+
+        String filePath = run.files.get(order);
+        FutureTask<Void> task = new FutureTask<>(() -> searchFile(run, order, filePath), null) {
+            // вызывается и после отмены, в том числе не начатой задачи
+            @Override
+            protected void done() {
+                run.tasks.remove(this);
+                searchesByNote.remove(filePath, this);
+                run.remaining.decrementAndGet();
+                scheduleFlush(run);
+                submitNext(run);
             }
+        };
+
+        run.tasks.add(task);
+        Future<?> superseded = searchesByNote.put(filePath, task);
+        if (superseded != null) superseded.cancel(true);
+        if (run.cancelled) task.cancel(true);
+        else searchExecutor.execute(task);
+    }
+
+    private void searchFile(SearchRun run, int order, String filePath) {
+        try {
+            if (run.cancelled) return;
+
+            FileHit hit = searchInFile(run, order, filePath);
+            if (hit != null && !run.cancelled) run.pending.add(hit);
+        } catch (Exception e) {
+            if (!run.cancelled) log.debug("skip {} in search: {}", filePath, e.toString());
         }
     }
 
-    private void performSearch(String query) {
-        FileTree fileTree = fileSystemService.getFileTree(vaultPathsContainer.getNotesPath());
+    private FileHit searchInFile(SearchRun run, int order, String filePath) {
+        Path fullPath = vaultPathsContainer.getNotesPath().resolve(filePath);
 
-        List<SearchTreeItem> mdFiles = collectMdFiles(fileTree);
-        SearchTreeItem root = new SearchTreeItem("", true);
+        // открытая заметка ищется по тексту редактора вместе с несохранёнными правками
+        Optional<SearchService.Result> live = searchService.findSession(fullPath)
+                .flatMap(session -> session.search(run.query, run.options));
+        String fileContent = live.map(SearchService.Result::text).orElseGet(() -> openFile(fullPath));
+        if (run.cancelled) return null;
 
-        searchTreeView.setCellFactory(tv -> new SearchResultCell(query));
+        HitSource hits = live.isPresent()
+                ? hitsOf(live.get().hits())
+                : (from, to, consumer) -> run.compiledQuery.scan(fileContent, from, to, consumer);
 
-        int totalMatches = 0;
-        int filesWithMatches = 0;
+        FrontmatterInfo frontmatterInfo = parseFrontmatter(fileContent);
+        int frontmatterOffset = frontmatterInfo.frontmatterLineCount;
 
-        for (SearchTreeItem fileItem : mdFiles) {
-            if (searchCancelled) break;
+        SearchFileResult.Builder result = SearchFileResult.builder(filePath);
 
-            String filePath = fileItem.getValue();
-            Path fullPath = vaultPathsContainer.getNotesPath().resolve(filePath);
+        // 1. СНАЧАЛА обрабатываем frontmatter (если есть)
+        if (frontmatterInfo.hasFrontmatter) {
+            int frontmatterEnd = lineStart(fileContent, frontmatterOffset);
+            hits.scan(0, frontmatterEnd, new LineCollector(fileContent, 0, 0, false, result));
+        }
 
-            SearchTreeItem fileNode = new SearchTreeItem(filePath, true);
-            boolean hasMatches = false;
+        // 2. ПОТОМ обрабатываем нормальный контент
+        int contentStart = frontmatterInfo.contentStart;
+        hits.scan(contentStart, fileContent.length(),
+                new LineCollector(fileContent, contentStart, frontmatterOffset, true, result));
 
-            String fileContent = openFile(fullPath);
+        SearchFileResult fileResult = result.build();
+        if (fileResult.isEmpty()) return null;
+        return new FileHit(order, fileResult);
+    }
 
-            FrontmatterInfo frontmatterInfo = parseFrontmatter(fileContent);
-            String searchContent = frontmatterInfo.content;
-            int frontmatterOffset = frontmatterInfo.frontmatterLineCount;
+    /**
+     * Совпадения в диапазоне текста: из поиска по файлу или из сессии открытой заметки
+     */
+    @FunctionalInterface
+    private interface HitSource {
+        void scan(int from, int to, SearchEngine.HitConsumer consumer);
+    }
 
-            // 1. СНАЧАЛА обрабатываем frontmatter (если есть)
-            if (frontmatterInfo.hasFrontmatter) {
-                List<String> allLines = Arrays.asList(fileContent.split("\n", -1));
-                for (int i = 0; i < frontmatterOffset; i++) {
-                    String line = allLines.get(i);
+    private static HitSource hitsOf(List<SearchService.Hit> hits) {
+        return (from, to, consumer) -> {
+            for (SearchService.Hit hit : hits) {
+                if (hit.start() < from || hit.end() > to) continue;
+                if (!consumer.accept(hit.start(), hit.end())) return;
+            }
+        };
+    }
 
-                    String lineLower = line.toLowerCase();
-                    String queryLower = query.toLowerCase();
+    /**
+     * Раскладывает совпадения одного прохода поиска по строкам текста
+     */
+    private static final class LineCollector implements SearchEngine.HitConsumer {
+        private final String text;
 
-                    List<Integer> matchPositions = new ArrayList<>();
-                    int index = 0;
-                    while ((index = lineLower.indexOf(queryLower, index)) != -1) {
-                        matchPositions.add(index);
-                        index += 1;
-                    }
+        private final int lineOffset;
 
-                    if (!matchPositions.isEmpty()) {
-                        SearchTreeItem matchItem = new SearchTreeItem(
-                                String.format("%d: %s", i + 1, line.trim()),
-                                false
-                        );
+        // совпадения front matter не нумеруются - редактор ищет только в тексте заметки
+        private final boolean countMatches;
 
-                        matchItem.setFirstMatchIndex(-1);
-                        matchItem.setQuery(query);
+        private final SearchFileResult.Builder result;
 
-                        fileNode.getChildren().add(matchItem);
-                        hasMatches = true;
-                        totalMatches += matchPositions.size();
-                    }
-                }
-            }
+        private int lineIndex;
+
+        private int lineStart;
 
-            // 2. ПОТОМ обрабатываем нормальный контент
-            List<String> lines = Arrays.asList(searchContent.split("\n", -1));
-            int normalContentMatchCounter = 0;
+        private int lineEnd = -1;
 
-            for (int i = 0; i < lines.size(); i++) {
-                if (searchCancelled) break;
+        private int matchIndex;
 
-                String line = lines.get(i);
-                String lineLower = line.toLowerCase();
-                String queryLower = query.toLowerCase();
+        private LineCollector(String text, int from, int lineOffset, boolean countMatches, SearchFileResult.Builder result) {
+            this.text = text;
+            this.lineStart = from;
+            this.lineOffset = lineOffset;
+            this.countMatches = countMatches;
+            this.result = result;
+        }
 
-                List<Integer> matchPositions = new ArrayList<>();
-                int index = 0;
-                while ((index = lineLower.indexOf(queryLower, index)) != -1) {
-                    matchPositions.add(index);
-                    index += 1;
+        @Override
+        public boolean accept(int start, int end) {
+            if (lineEnd < 0 || start > lineEnd) {
+                if (lineEnd < 0) lineEnd = lineEnd(text, lineStart);
+                while (start > lineEnd) {
+                    lineIndex++;
+                    lineStart = lineEnd + 1;
+                    lineEnd = lineEnd(text, lineStart);
                 }
+                result.line(lineIndex + 1 + lineOffset, text, lineStart, lineEnd, countMatches ? matchIndex : -1);
+            }
+            result.match(start, end);
+            matchIndex++;
+            return true;
+        }
+    }
 
-                if (!matchPositions.isEmpty()) {
-                    int firstMatchGlobalIndex = normalContentMatchCounter;
-                    int realLineNumber = i + 1 + frontmatterOffset;
+    private static int lineEnd(String text, int from) {
+        int index = text.indexOf('\n', from);
+        return index < 0 ? text.length() : index;
+    }
 
-                    SearchTreeItem matchItem = new SearchTreeItem(
-                            String.format("%d: %s", realLineNumber, line.trim()),
-                            false
-                    );
+    private static int lineStart(String text, int line) {
+        int position = 0;
+        for (int i = 0; i < line && position <= text.length(); i++) {
+            position = lineEnd(text, position) + 1;
+        }
+        return Math.min(position, text.length());
+    }
 
-                    matchItem.setFirstMatchIndex(firstMatchGlobalIndex);
-                    matchItem.setQuery(query);
+    // не больше одного отложенного обновления дерева на поиск - результаты копятся, пока FX-поток занят
+    private void scheduleFlush(SearchRun run) {
+        if (run.flushScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> flush(run));
+        }
+    }
+
+    private void flush(SearchRun run) {
+        run.flushScheduled.set(false);
+        if (run.cancelled) return;
 
-                    fileNode.getChildren().add(matchItem);
-                    hasMatches = true;
-                    totalMatches += matchPositions.size();
-                    normalContentMatchCounter += matchPositions.size();
+        List<FileHit> batch = new ArrayList<>();
+        FileHit hit;
+        while ((hit = run.pending.poll()) != null) {
+            batch.add(hit);
+        }
+
+        if (!batch.isEmpty()) {
+            batch.sort(Comparator.comparingInt(FileHit::order));
+            List<TreeItem<String>> children = run.root.getChildren();
+
+            // файлы обычно завершаются по порядку - тогда добавляем всю пачку одним изменением
+            if (run.shownOrders.isEmpty() || batch.get(0).order() > run.shownOrders.get(run.shownOrders.size() - 1)) {
+                List<TreeItem<String>> nodes = new ArrayList<>(batch.size());
+                for (FileHit fileHit : batch) {
+                    nodes.add(createFileNode(run, fileHit.result()));
+                    run.shownOrders.add(fileHit.order());
+                }
+                children.addAll(nodes);
+            } else {
+                for (FileHit fileHit : batch) {
+                    int pos = -Collections.binarySearch(run.shownOrders, fileHit.order()) - 1;
+                    run.shownOrders.add(pos, fileHit.order());
+                    children.add(pos, createFileNode(run, fileHit.result()));
                 }
             }
 
-            if (hasMatches) {
-                root.getChildren().add(fileNode);
-                filesWithMatches++;
+            for (FileHit fileHit : batch) {
+                run.totalMatches += fileHit.result().getMatchCount();
             }
+            run.filesWithMatches += batch.size();
         }
 
-        if (!searchCancelled) {
-            int finalTotalMatches = totalMatches;
-            int finalFilesWithMatches = filesWithMatches;
-            Platform.runLater(() -> {
-                searchTreeView.setRoot(root);
-                searchTreeView.setShowRoot(false);
-                root.setExpanded(true);
-
-                for (TreeItem<String> fileNode : root.getChildren()) {
-                    fileNode.setExpanded(true);
-                }
+        boolean finished = run.remaining.get() == 0;
+        if (finished || run.totalMatches > 0) {
+            updateResultsText(run.totalMatches, run.filesWithMatches);
+        }
+        if (finished && currentRun == run) {
+            currentRun = null;
+        }
+    }
 
-                updateResultsText(finalTotalMatches, finalFilesWithMatches);
-            });
+    // строки файла создаются при раскрытии, сразу раскрываем только первые файлы
+    private SearchTreeItem createFileNode(SearchRun run, SearchFileResult result) {
+        SearchTreeItem fileNode = new SearchTreeItem(result, run.query);
+        if (run.expandedLines + result.getLineCount() <= EXPANDED_LINES_LIMIT) {
+            run.expandedLines += result.getLineCount();
+            fileNode.setExpanded(true);
         }
+        return fileNode;
     }
 
     private FrontmatterInfo parseFrontmatter(String fileContent) {
-        Pattern pattern = Pattern.compile("^---\\s*\\n([\\s\\S]*?)\\n---\\s*\\n([\\s\\S]*)$", Pattern.MULTILINE);
-        Matcher matcher = pattern.matcher(fileContent);
+        Matcher matcher = FRONTMATTER_PATTERN.matcher(fileContent);
 
         if (matcher.find()) {
             String frontmatter = matcher.group(1);
-            String content = matcher.group(2);
 
             int frontmatterLines = frontmatter.split("\n", -1).length + 2;
 
-            return new FrontmatterInfo(true, frontmatterLines, content);
+            return new FrontmatterInfo(true, frontmatterLines, matcher.start(2));
         }
 
-        return new FrontmatterInfo(false, 0, fileContent);
+        return new FrontmatterInfo(false, 0, 0);
     }
 
     private static class FrontmatterInfo {
         boolean hasFrontmatter;
         int frontmatterLineCount;
-        String content;
+        int contentStart;
 
-        FrontmatterInfo(boolean hasFrontmatter, int frontmatterLineCount, String content) {
+        FrontmatterInfo(boolean hasFrontmatter, int frontmatterLineCount, int contentStart) {
             this.hasFrontmatter = hasFrontmatter;
             this.frontmatterLineCount = frontmatterLineCount;
-            this.content = content;
+            this.contentStart = contentStart;
+        }
+    }
+
+    private record FileHit(int order, SearchFileResult result) {
+    }
+
+    /**
+     * Состояние одного запуска поиска
+     *
+     * <p>Воркеры кладут найденные файлы в {@code pending}, FX-поток забирает их пачками.
+     * Поля без volatile трогает только FX-поток.</p>
+     */
+    private static final class SearchRun {
+        private final String query;
+
+        private final SearchEngine.Options options;
+
+        private final SearchEngine.CompiledQuery compiledQuery;
+
+        private final SearchTreeItem root;
+
+        private final Queue<FileHit> pending = new ConcurrentLinkedQueue<>();
+
+        // незавершённые задачи: список файлов и не больше SEARCH_WINDOW файлов
+        private final Set<Future<?>> tasks = ConcurrentHashMap.newKeySet();
+
+        private volatile List<String> files = List.of();
+
+        private final AtomicInteger nextFile = new AtomicInteger();
+
+        // -1, пока список файлов ещё не собран
+        private final AtomicInteger remaining = new AtomicInteger(-1);
+
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+        private final List<Integer> shownOrders = new ArrayList<>();
+
+        private volatile boolean cancelled;
+
+        private int totalMatches;
+
+        private int filesWithMatches;
+
+        private int expandedLines;
+
+        private SearchRun(String query, SearchEngine.Options options, SearchEngine.CompiledQuery compiledQuery,
+                          SearchTreeItem root) {
+            this.query = query;
+            this.options = options;
+            this.compiledQuery = compiledQuery;
+            this.root = root;
+        }
+
+        private void track(Future<?> task) {
+            tasks.add(task);
+            if (cancelled) task.cancel(true);
+        }
+
+        private void cancel() {
+            cancelled = true;
+            for (Future<?> task : tasks) {
+                task.cancel(true);
+            }
+            tasks.clear();
+            pending.clear();
         }
     }
 
@@ -387,6 +619,11 @@ public class SearchInFilesController extends AbstractController {
         searchField.selectAll();
     }
 
+    private SearchEngine.Options options() {
+        return new SearchEngine.Options(
+                caseSensitiveToggle.isSelected(), wholeWordToggle.isSelected(), regexToggle.isSelected());
+    }
+
     public void clearResults() {
         searchTreeView.setRoot(null);
     }
@@ -399,27 +636,13 @@ public class SearchInFilesController extends AbstractController {
         return searchField.getText().trim();
     }
 
-    private List<SearchTreeItem> collectMdFiles(FileTree fileTree) {
-        List<SearchTreeItem> mdFiles = new ArrayList<>();
-        collectMdFilesRecursive(fileTree, mdFiles);
-        return mdFiles;
-    }
-
-    private void collectMdFilesRecursive(FileTree node, List<SearchTreeItem> result) {
-        if (node == null) return;
-
-        if (node.getChildren() == null) {
-            String fileName = node.getPath().getFileName().toString();
-            if (fileSystemService.isMarkdownFile(fileName)) {
-                Path relativePath = vaultPathsContainer.getNotesPath().relativize(node.getPath());
-                SearchTreeItem item = new SearchTreeItem(relativePath.toString(), true);
-                result.add(item);
-            }
-        } else {
-            for (FileTree child : node.getChildren()) {
-                collectMdFilesRecursive(child, result);
-            }
+    private List<SearchTreeItem> toSearchItems(List<Path> paths) {
+        Path notesPath = vaultPathsContainer.getNotesPath();
+        List<SearchTreeItem> items = new ArrayList<>(paths.size());
+        for (Path path : paths) {
+            items.add(new SearchTreeItem(notesPath.relativize(path).toString(), true));
         }
+        return items;
     }
 
     @Override
@@ -2,17 +2,21 @@ package org.example.tonpad.ui.controllers.settings;
 
 import org.example.tonpad.core.exceptions.CustomIOException;
 import org.example.tonpad.core.files.CryptoFileService;
+import org.example.tonpad.core.files.CryptoProgressListener;
 import org.example.tonpad.core.service.RecentTabService;
+import org.example.tonpad.core.service.SearchIndexService;
 import org.example.tonpad.core.service.crypto.DerivationService;
 import org.example.tonpad.core.exceptions.DerivationException;
 import org.example.tonpad.core.session.VaultSession;
 import org.example.tonpad.ui.controllers.AbstractController;
 import org.example.tonpad.ui.controllers.security.ResetPasswordController;
+import org.example.tonpad.ui.extentions.CryptoProgressDialog;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.example.tonpad.ui.service.ThemeService;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Component;
 
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.VBox;
@@ -21,9 +25,18 @@ import javafx.stage.Window;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import javafx.scene.Scene;
+import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonBar;
+import javafx.scene.control.ButtonType;
 import javafx.scene.control.ChoiceBox;
 
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 @Component
 @Slf4j
 @RequiredArgsConstructor
@@ -50,9 +63,19 @@ public class SettingsController extends AbstractController {
     private final RecentTabService recentTabService;
     private final VaultSession vaultSession;
     private final VaultPathsContainer vaultPathsContainer;
+    private final SearchIndexService searchIndexService;
 
     private static final double OFFSET = 12.0;
 
+    private static final long PROGRESS_LOG_STEP = 100;
+
+    // перешифрование идёт вне потока JavaFX, по одной операции за раз
+    private final ExecutorService cryptoExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "crypto-bulk");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private AnchorPane host;
     private boolean isShowing = false;
 
@@ -71,74 +94,165 @@ public class SettingsController extends AbstractController {
         if(changePasswordButton != null) changePasswordButton.setOnAction(e -> onChangePassword());
     }
 
+    /**
+     * Вызывается после открытия хранилища: если массовое шифрование прервалось, предлагает продолжить его
+     */
+    public void checkInterruptedRun() {
+        Path root = vaultPathsContainer.getVaultPath();
+        Optional<CryptoFileService.InterruptedRun> interrupted = cryptoFileService.findInterruptedRun(root);
+        if (interrupted.isEmpty()) return;
+
+        CryptoFileService.InterruptedRun run = interrupted.get();
+        boolean decrypt = run.operation() == CryptoFileService.Operation.DECRYPT;
+
+        ButtonType resume = new ButtonType("Continue", ButtonBar.ButtonData.OK_DONE);
+        ButtonType discard = new ButtonType("Discard", ButtonBar.ButtonData.CANCEL_CLOSE);
+        Alert alert = new Alert(Alert.AlertType.CONFIRMATION, null, resume, discard);
+        alert.setTitle("Interrupted Operation");
+        alert.setHeaderText(decrypt
+                ? "Removing the vault password was interrupted"
+                : "Changing the vault password was interrupted");
+        alert.setContentText(run.processedFiles() + " files were already processed. " + (decrypt
+                ? "Continue to decrypt the remaining files."
+                : "Enter the same new password to re-encrypt the remaining files."));
+        Stage stage = findOwnerStage();
+        if (stage != null) alert.initOwner(stage);
+
+        if (alert.showAndWait().orElse(discard) != resume) {
+            cryptoFileService.discardInterruptedRun(root);
+            return;
+        }
+        // тот же ключ даёт тот же журнал, поэтому операция продолжится с места остановки
+        if (decrypt) resetPassword();
+        else onChangePassword();
+    }
+
     private void onChangePassword() {
         Stage stage = findOwnerStage();
         ResetPasswordController dlg = resetPasswordProvider.getObject();
-        dlg.showModal(stage,
-        pwd -> { // смена пароля. char[] pwd
-            // все .enc перешифрует. Либо все файлы зашифрует в файлы .enc
-            try {
-                final boolean wasNoPwd = vaultSession.isOpendWithNoPassword();
-                final boolean wasWithKey = vaultSession.isProtectionEnabled();
+        dlg.showModal(stage, this::changePassword, this::resetPassword);
+    }
 
-                log.info("[SET-PWD] session state before: unlocked={}, withKey={}, noPwd={}",
-                        vaultSession.isUnlocked(), wasWithKey, wasNoPwd);
+    // все .enc перешифрует. Либо все файлы зашифрует в файлы .enc
+    private void changePassword(char[] pwd) {
+        final boolean wasNoPwd = vaultSession.isOpendWithNoPassword();
+        final boolean wasWithKey = vaultSession.isProtectionEnabled();
 
-                byte[] oldKeyOrNull = vaultSession.getKeyIfPresent()
-                        .map(k -> k.getEncoded())
-                        .orElse(null);
+        log.info("[SET-PWD] session state before: unlocked={}, withKey={}, noPwd={}",
+                vaultSession.isUnlocked(), wasWithKey, wasNoPwd);
 
-                byte[] newKey = derivationService.deriveAuthHash(pwd);
-                log.info("[SET-PWD] derive newKey ok, oldKeyPresent={}, root='{}'",
-                        oldKeyOrNull != null, vaultPathsContainer.getVaultPath());
+        byte[] oldKeyOrNull = vaultSession.getKeyIfPresent()
+                .map(k -> k.getEncoded())
+                .orElse(null);
+        Path root = vaultPathsContainer.getVaultPath();
+        // диалог затирает пароль сразу после возврата, а нужен он до конца операции
+        char[] password = pwd.clone();
 
-                cryptoFileService.reEncryptFiles(oldKeyOrNull, newKey, vaultPathsContainer.getVaultPath());
+        runInBackground("[SET-PWD]", "Re-encrypting notes", listener -> {
+            try {
+                byte[] newKey = derivationService.deriveAuthHash(password);
+                log.info("[SET-PWD] derive newKey ok, oldKeyPresent={}, root='{}'", oldKeyOrNull != null, root);
 
+                cryptoFileService.reEncryptFiles(oldKeyOrNull, newKey, root, listener);
+            } catch (Exception e) {
+                Arrays.fill(password, '\0');
+                throw e;
+            }
+        }, () -> {
+            try {
                 // Переводим сессию в режим с паролем:
                 vaultSession.lock();
-                vaultSession.unlock(pwd);
+                vaultSession.unlock(password);
                 log.info("[SET-PWD] session state after: unlocked={}, withKey={}, noPwd={}",
                         vaultSession.isUnlocked(), vaultSession.isProtectionEnabled(), vaultSession.isOpendWithNoPassword());
 
                 recentTabService.refreshFingerPrint();
+                searchIndexService.open();
+            } finally {
+                Arrays.fill(password, '\0');
             }
-            catch (DerivationException e) {
-                log.info("[SET-PWD] derivation failed: {}", e.toString());
-            }
-            catch (Exception e) {
-                log.info("[SET-PWD] unexpected error: {}", e.toString());
+        });
+    }
+
+    // сброс пароля. Все расшифровать. Все файлы с .enc перейдут в .dec
+    private void resetPassword() {
+        final boolean wasNoPwd = vaultSession.isOpendWithNoPassword();
+        final boolean wasWithKey = vaultSession.isProtectionEnabled();
+        log.info("[RESET-PWD] session state before: unlocked={}, withKey={}, noPwd={}",
+                vaultSession.isUnlocked(), wasWithKey, wasNoPwd);
+
+        byte[] oldKey = vaultSession.getKeyIfPresent()
+                .map(k -> k.getEncoded())
+                .orElse(null);
+        Path root = vaultPathsContainer.getVaultPath();
+
+        runInBackground("[RESET-PWD]", "Decrypting notes", listener -> {
+            if (oldKey == null) {
+                log.info("[RESET-PWD] no key present -> nothing to decrypt");
+            } else {
+                cryptoFileService.decryptFiles(oldKey, root, listener);
             }
-        },
-        () -> { // сброс пароля. Все расшифровать. Все файлы с .enc перейдут в .dec
-            try {
-                final boolean wasNoPwd = vaultSession.isOpendWithNoPassword();
-                final boolean wasWithKey = vaultSession.isProtectionEnabled();
-                log.info("[RESET-PWD] session state before: unlocked={}, withKey={}, noPwd={}",
-                        vaultSession.isUnlocked(), wasWithKey, wasNoPwd);
-
-                byte[] oldKey = vaultSession.getKeyIfPresent()
-                        .map(k -> k.getEncoded())
-                        .orElse(null);
-
-                if (oldKey == null) {
-                    log.info("[RESET-PWD] no key present -> nothing to decrypt");
-                } else {
-                    cryptoFileService.decryptFiles(oldKey, vaultPathsContainer.getVaultPath());
-                }
+        }, () -> {
+            vaultSession.lock();
+            vaultSession.openWithoutPassword();
+            log.info("[RESET-PWD] session state after: unlocked={}, withKey={}, noPwd={}",
+                    vaultSession.isUnlocked(), vaultSession.isProtectionEnabled(), vaultSession.isOpendWithNoPassword());
+
+            recentTabService.refreshFingerPrint();
+            searchIndexService.open();
+        });
+    }
 
-                vaultSession.lock();
-                vaultSession.openWithoutPassword();
-                log.info("[RESET-PWD] session state after: unlocked={}, withKey={}, noPwd={}",
-                        vaultSession.isUnlocked(), vaultSession.isProtectionEnabled(), vaultSession.isOpendWithNoPassword());
+    @FunctionalInterface
+    private interface BulkOperation {
+        void run(CryptoProgressListener listener) throws Exception;
+    }
 
-                recentTabService.refreshFingerPrint();
-            }
-            catch (Exception e) {
-                log.info("[RESET-PWD] unexpected error: {}", e.toString());
+    /**
+     * Массовая операция идёт в фоне под модальным окном прогресса; onDone выполняется в потоке JavaFX,
+     * только если операция завершилась без исключения
+     */
+    private void runInBackground(String tag, String title, BulkOperation operation, Runnable onDone) {
+        CryptoProgressDialog progress = new CryptoProgressDialog(findOwnerStage(), title);
+        CryptoProgressListener logger = progressLogger(tag);
+        CryptoProgressListener listener = (processed, total) -> {
+            logger.onProgress(processed, total);
+            progress.onProgress(processed, total);
+        };
+        progress.show();
+
+        cryptoExecutor.execute(() -> {
+            boolean succeeded = false;
+            try {
+                operation.run(listener);
+                succeeded = true;
+            } catch (DerivationException e) {
+                log.info("{} derivation failed: {}", tag, e.toString());
+            } catch (Exception e) {
+                log.info("{} unexpected error: {}", tag, e.toString());
             }
+
+            boolean done = succeeded;
+            Platform.runLater(() -> {
+                progress.close();
+                if (!done) return;
+                try {
+                    onDone.run();
+                } catch (Exception e) {
+                    log.info("{} unexpected error: {}", tag, e.toString());
+                }
+            });
         });
     }
 
+    private CryptoProgressListener progressLogger(String tag) {
+        return (processed, total) -> {
+            if (processed == total || processed % PROGRESS_LOG_STEP == 0) {
+                log.info("{} progress: {}/{}", tag, processed, total);
+            }
+        };
+    }
+
     private Stage findOwnerStage() {
         Scene scene = settingsPanel.getScene();
         if(scene != null) {
@@ -22,10 +22,17 @@ import org.example.tonpad.core.editor.enums.EditorMode;
 import org.example.tonpad.core.exceptions.DecryptionException;
 import org.example.tonpad.core.exceptions.IllegalInputException;
 import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.example.tonpad.core.exceptions.handler.GlobalExceptionHandler;
 import org.example.tonpad.core.extentions.TriConsumer;
 import org.example.tonpad.core.files.Buffer;
+import org.example.tonpad.core.files.DirectoryEntry;
+import org.example.tonpad.core.files.DirectoryPrefetcher;
 import org.example.tonpad.core.files.FileSystemService;
-import org.example.tonpad.core.files.FileTree;
+import org.example.tonpad.core.files.FileTransfer;
+import org.example.tonpad.core.files.FileTreeEvent;
+import org.example.tonpad.core.files.VaultWatchService;
+import org.example.tonpad.core.service.LinkGraphService;
+import org.example.tonpad.core.service.SearchIndexService;
 import org.example.tonpad.core.service.SearchService;
 import org.example.tonpad.core.service.crypto.Encryptor;
 import org.example.tonpad.core.service.crypto.EncryptorFactory;
@@ -35,16 +42,22 @@ import org.example.tonpad.ui.controllers.AbstractController;
 import org.example.tonpad.ui.controllers.dialog.QuickStartDialogController;
 import org.example.tonpad.ui.controllers.action.SelectFileActionController;
 import org.example.tonpad.ui.extentions.FileTreeItem;
+import org.example.tonpad.ui.extentions.TransferProgressDialog;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
+import java.util.concurrent.CancellationException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -118,7 +131,6 @@ public class FileTreeController extends AbstractController {
     @Setter
     private Consumer<Path> noteCloseHandler;
 
-    @Setter
     private Map<String, List<SearchService.Hit>> hitsMap = Collections.emptyMap();
 
     private final Map<String, Boolean> expandedState = new HashMap<>();
@@ -127,6 +139,16 @@ public class FileTreeController extends AbstractController {
 
     private final EncryptorFactory encryptorFactory;
 
+    private final SearchIndexService searchIndexService;
+
+    private final LinkGraphService linkGraphService;
+
+    private final VaultWatchService vaultWatchService;
+
+    private final DirectoryPrefetcher directoryPrefetcher;
+
+    private final GlobalExceptionHandler globalExceptionHandler;
+
     ContextMenu actionMenu;
 
     public void init(AnchorPane parent) {
@@ -138,6 +160,8 @@ public class FileTreeController extends AbstractController {
 
         setupEventHandlers();
         setupFileTree();
+
+        vaultWatchService.addListener(this::onFileTreeEvents);
     }
 
     private void setupEventHandlers() {
@@ -221,7 +245,7 @@ public class FileTreeController extends AbstractController {
 
     private void selectItem(Path path, boolean rename) {
         Path relativePath = vaultPathsContainer.getNotesPath().relativize(path);
-        TreeItem<String> item = findTreeItemByPath(rootItem, relativePath);
+        TreeItem<String> item = findTreeItemByPath(rootItem, relativePath, true);
 
         if (item != null) {
             if (rename) {
@@ -234,74 +258,200 @@ public class FileTreeController extends AbstractController {
         }
     }
 
-    private TreeItem<String> findTreeItemByPath(TreeItem<String> root, Path path) {
+    // load = false - не читать с диска каталоги, которые ещё не раскрывались
+    private TreeItem<String> findTreeItemByPath(TreeItem<String> root, Path path, boolean load) {
         if (path.getNameCount() == 0) return root;
 
         String firstSegment = path.getName(0).toString();
-        for (TreeItem<String> child : root.getChildren()) {
+        for (TreeItem<String> child : load ? root.getChildren() : loadedChildren(root)) {
             if (child.getValue().equals(firstSegment)) {
                 if (path.getNameCount() == 1) {
                     return child;
                 } else {
-                    return findTreeItemByPath(child, path.subpath(1, path.getNameCount()));
+                    return findTreeItemByPath(child, path.subpath(1, path.getNameCount()), load);
                 }
             }
         }
         return null;
     }
 
+    private static List<TreeItem<String>> loadedChildren(TreeItem<String> item) {
+        return item instanceof FileTreeItem fileItem ? fileItem.getLoadedChildren() : item.getChildren();
+    }
+
+    private static boolean isChildrenLoaded(TreeItem<String> item) {
+        return !(item instanceof FileTreeItem fileItem) || fileItem.isChildrenLoaded();
+    }
+
+    // подсветка влияет только на ячейки - структуру дерева не пересобираем
+    public void setHitsMap(Map<String, List<SearchService.Hit>> hitsMap) {
+        this.hitsMap = hitsMap;
+        fileTreeView.refresh();
+    }
+
     public void refreshTree() {
         saveAllExpandedStates();
-        SortOptions opt = new SortOptions(sortKey, cbFoldersFirst.isSelected(), cbRelevantOnly.isSelected());
-        FileTree fileTree = fileSystemService.getFileTreeSorted(vaultPathsContainer.getNotesPath(), opt);
-        TreeItem<String> newRoot = convertFileTreeToTreeItem(fileTree);
+        directoryPrefetcher.clear();
+        TreeItem<String> newRoot = createTreeItem(vaultPathsContainer.getNotesPath(), true);
 
         fileTreeView.setRoot(newRoot);
         fileTreeView.setShowRoot(false);
 
         rootItem = newRoot;
 
-        restoreAllExpandedStates();
+        restoreExpandedState(rootItem, getRelativePath(rootItem));
     }
 
-    private void saveAllExpandedStates() {
-        expandedState.clear();
-        if (rootItem != null) {
-            saveExpandedStateRecursive(rootItem);
+    private SortOptions sortOptions() {
+        return new SortOptions(sortKey, cbFoldersFirst.isSelected(), cbRelevantOnly.isSelected());
+    }
+
+    private void onFileTreeEvents(List<FileTreeEvent> events) {
+        if (Platform.isFxApplicationThread()) {
+            applyFileTreeEvents(events);
+        } else {
+            Platform.runLater(() -> applyFileTreeEvents(events));
         }
     }
 
-    private void saveExpandedStateRecursive(TreeItem<String> item) {
-        if (item != null) {
-            String path = getRelativePath(item);
-            expandedState.put(path, item.isExpanded());
+    // события могут прийти повторно или устареть, поэтому каждое применяется только если дерево ещё не совпадает с диском
+    private void applyFileTreeEvents(List<FileTreeEvent> events) {
+        if (rootItem == null) return;
 
-            for (TreeItem<String> child : item.getChildren()) {
-                saveExpandedStateRecursive(child);
+        Path notesPath = vaultPathsContainer.getNotesPath();
+        for (FileTreeEvent event : events) {
+            if (!event.path().startsWith(notesPath) || event.path().equals(notesPath)) continue;
+
+            directoryPrefetcher.invalidate(event.path().getParent());
+            if (event.oldPath() != null) directoryPrefetcher.invalidate(event.oldPath().getParent());
+
+            switch (event.kind()) {
+                case CREATED -> onPathCreated(event.path(), event.directory());
+                case DELETED -> onPathDeleted(event.path());
+                case MOVED -> onPathMoved(event.oldPath(), event.path(), event.directory());
+                case MODIFIED -> { }
             }
         }
     }
 
-    private void restoreAllExpandedStates() {
+    private void onPathCreated(Path path, boolean isDirectory) {
+        if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS) || findItem(path) != null) return;
+
+        TreeItem<String> parent = findItem(path.getParent());
+        // нераскрытый каталог прочитает новый элемент сам при раскрытии
+        if (parent == null || parent.isLeaf() || !isChildrenLoaded(parent) || !isShownInTree(path, isDirectory)) return;
+
+        insertSorted(parent, createTreeItem(path, isDirectory), path.getParent());
+    }
+
+    private void onPathDeleted(Path path) {
+        if (Files.exists(path, LinkOption.NOFOLLOW_LINKS)) return;
+
+        TreeItem<String> item = findItem(path);
+        if (item == null || item.getParent() == null) return;
+
+        if (selectedItem == item) selectedItem = null;
+        item.getParent().getChildren().remove(item);
+    }
+
+    private void onPathMoved(Path oldPath, Path path, boolean isDirectory) {
+        TreeItem<String> item = findItem(oldPath);
+        TreeItem<String> parent = findItem(path.getParent());
+        if (item == null || parent == null || parent.isLeaf() || !isChildrenLoaded(parent) || findItem(path) != null
+                || Files.exists(oldPath, LinkOption.NOFOLLOW_LINKS) || !isShownInTree(path, isDirectory)) {
+            onPathDeleted(oldPath);
+            onPathCreated(path, isDirectory);
+            return;
+        }
+
+        // узел переносится целиком, чтобы сохранить раскрытые поддиректории и выделение
+        boolean wasSelected = fileTreeView.getSelectionModel().getSelectedItem() == item;
+        item.getParent().getChildren().remove(item);
+        item.setValue(path.getFileName().toString());
+        insertSorted(parent, item, path.getParent());
+        if (wasSelected) fileTreeView.getSelectionModel().select(item);
+    }
+
+    private TreeItem<String> findItem(Path path) {
+        Path notesPath = vaultPathsContainer.getNotesPath();
+        if (path == null || rootItem == null || !path.startsWith(notesPath)) return null;
+        if (path.equals(notesPath)) return rootItem;
+        return findTreeItemByPath(rootItem, notesPath.relativize(path), false);
+    }
+
+    private boolean isShownInTree(Path path, boolean isDirectory) {
+        if (isDirectory || !cbRelevantOnly.isSelected()) return true;
+        return path.getFileName().toString().toLowerCase().endsWith(".md");
+    }
+
+    private void insertSorted(TreeItem<String> parent, TreeItem<String> item, Path dir) {
+        Comparator<TreeItem<String>> cmp = treeItemComparator(dir);
+        List<TreeItem<String>> children = parent.getChildren();
+
+        int lo = 0;
+        int hi = children.size();
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cmp.compare(children.get(mid), item) <= 0) lo = mid + 1;
+            else hi = mid;
+        }
+        children.add(lo, item);
+    }
+
+    private Comparator<TreeItem<String>> treeItemComparator(Path dir) {
+        Comparator<TreeItem<String>> byName = Comparator.comparing(
+                (TreeItem<String> ti) -> ti.getValue(), String.CASE_INSENSITIVE_ORDER);
+        Comparator<TreeItem<String>> byCreated = Comparator.comparingLong(
+                (TreeItem<String> ti) -> createdMillis(dir.resolve(ti.getValue())));
+
+        Comparator<TreeItem<String>> base = switch (sortKey) {
+            case NAME_ASC -> byName;
+            case NAME_DESC -> byName.reversed();
+            case CREATED_NEWEST -> byCreated.reversed().thenComparing(byName);
+            case CREATED_OLDEST -> byCreated.thenComparing(byName);
+        };
+
+        if (cbFoldersFirst.isSelected()) {
+            base = Comparator.comparing((TreeItem<String> ti) -> ti.isLeaf()).thenComparing(base);
+        }
+        return base;
+    }
+
+    private static long createdMillis(Path path) {
+        try {
+            BasicFileAttributes attr = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            return attr.creationTime() != null ? attr.creationTime().toMillis() : attr.lastModifiedTime().toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    // состояние нераскрывавшихся каталогов не трогаем: оно сохранено при прошлых обновлениях
+    private void saveAllExpandedStates() {
         if (rootItem != null) {
-            restoreExpandedStateRecursive(rootItem);
+            saveExpandedStateRecursive(rootItem);
         }
     }
 
-    private void restoreExpandedStateRecursive(TreeItem<String> item) {
+    private void saveExpandedStateRecursive(TreeItem<String> item) {
         if (item != null) {
             String path = getRelativePath(item);
-            Boolean wasExpanded = expandedState.get(path);
-            if (wasExpanded != null) {
-                item.setExpanded(wasExpanded);
-            }
+            expandedState.put(path, item.isExpanded());
 
-            for (TreeItem<String> child : item.getChildren()) {
-                restoreExpandedStateRecursive(child);
+            for (TreeItem<String> child : loadedChildren(item)) {
+                saveExpandedStateRecursive(child);
             }
         }
     }
 
+    // дети восстанавливаются при загрузке каталога в loadChildren
+    private void restoreExpandedState(TreeItem<String> item, String path) {
+        Boolean wasExpanded = expandedState.get(path);
+        if (wasExpanded != null) {
+            item.setExpanded(wasExpanded);
+        }
+    }
+
     private String getRelativePath(TreeItem<String> item) {
         var parts = new ArrayList<String>();
         for (TreeItem<String> cur = item; cur != null; cur = cur.getParent()) {
@@ -360,16 +510,14 @@ public class FileTreeController extends AbstractController {
     private void collapseAllRecursive(TreeItem<String> item) {
         if (item != null) {
             item.setExpanded(false);
-            for (TreeItem<String> child : item.getChildren()) {
+            for (TreeItem<String> child : loadedChildren(item)) {
                 collapseAllRecursive(child);
             }
         }
     }
 
     private void setupFileTree() {
-        FileTree fileTree = fileSystemService.getFileTree(vaultPathsContainer.getNotesPath());
-
-        rootItem = convertFileTreeToTreeItem(fileTree);
+        rootItem = createTreeItem(vaultPathsContainer.getNotesPath(), true);
 
         fileTreeView.setRoot(rootItem);
         fileTreeView.setShowRoot(false);
@@ -558,14 +706,14 @@ public class FileTreeController extends AbstractController {
 
     private void onAddNote() {
         Path newFilePath = addNote();
-        refreshTree();
+        vaultWatchService.rescan(List.of(newFilePath.getParent()));
         selectItem(newFilePath, true);
         noteOpenHandler.accept(newFilePath, false, EditorMode.NOTE);
     }
 
     private void onAddDirectory() {
         Path newDirPath = addDir();
-        refreshTree();
+        vaultWatchService.rescan(List.of(newDirPath.getParent()));
         selectItem(newDirPath, true);
     }
 
@@ -594,8 +742,25 @@ public class FileTreeController extends AbstractController {
             targetPath = vaultPathsContainer.getNotesPath();
         }
 
-        fileSystemService.pasteFile(targetPath);
-        refreshTree();
+        List<Path> changedDirs = new ArrayList<>();
+        changedDirs.add(targetPath);
+        if (buffer.isCutMode()) {
+            buffer.getCopyBuffer().forEach(p -> changedDirs.add(p.getParent()));
+        }
+
+        var owner = fileTreeVBox.getScene() != null ? fileTreeVBox.getScene().getWindow() : null;
+        var progress = new TransferProgressDialog(owner, buffer.isCutMode() ? "Moving files" : "Copying files");
+        FileTransfer transfer = fileSystemService.pasteFile(targetPath, progress);
+        progress.attach(transfer);
+
+        // после отмены или ошибки часть элементов уже могла оказаться на месте
+        transfer.result().whenComplete((paths, error) -> Platform.runLater(() -> {
+            searchIndexService.sync();
+            vaultWatchService.rescan(changedDirs);
+            if (error != null && !(error instanceof CancellationException)) {
+                globalExceptionHandler.uncaughtException(Thread.currentThread(), error);
+            }
+        }));
     }
 
     private void onCopyVaultPath() {
@@ -817,7 +982,9 @@ public class FileTreeController extends AbstractController {
         Encryptor encoder = encryptorFactory.encryptorForKey();
         if (encoder.isActionWithNoPasswordAllowed(oldAbs)) {
             fileSystemService.rename(oldAbs.toString(), newAbs.toString());
-            refreshTree();
+            searchIndexService.rename(oldAbs, newAbs);
+            linkGraphService.rename(oldAbs, newAbs);
+            vaultWatchService.rescan(List.of(parent));
             selectItem(newAbs, false);
             noteRenameHandler.accept(oldAbs, newAbs);
         }
@@ -856,25 +1023,37 @@ public class FileTreeController extends AbstractController {
         this.selectedItem = selectedItem;
     }
 
-    private TreeItem<String> convertFileTreeToTreeItem(FileTree fileTree) {
-        Path path = fileTree.getPath();
+    private TreeItem<String> createTreeItem(Path path, boolean isDirectory) {
         String fileName = path.getFileName() != null ? path.getFileName().toString() : path.toString();
+        return new FileTreeItem(fileName, isDirectory, this::loadChildren);
+    }
 
-        boolean isDirectory = fileTree.getChildren() != null;
-
-        FileTreeItem treeItem = new FileTreeItem(fileName, isDirectory);
-
-        treeItem.setValue(fileName);
+    // каталог читается при первом раскрытии; его подкаталоги в это время читаются в фоне
+    private List<TreeItem<String>> loadChildren(TreeItem<String> item) {
+        Path directory = getFullPath(item);
+        SortOptions options = sortOptions();
+
+        List<DirectoryEntry> entries;
+        try {
+            entries = directoryPrefetcher.list(directory, options);
+        } catch (RuntimeException e) {
+            log.warn("Directory listing error: {}", directory, e);
+            return List.of();
+        }
 
-        if (isDirectory && !fileTree.getChildren().isEmpty()) {
-            for (FileTree child : fileTree.getChildren()) {
-                TreeItem<String> childItem = convertFileTreeToTreeItem(child);
-                fileTreeView.setEditable(true);
-                treeItem.getChildren().add(childItem);
+        String parentPath = getRelativePath(item);
+        List<TreeItem<String>> children = new ArrayList<>(entries.size());
+        List<Path> subdirectories = new ArrayList<>();
+        for (DirectoryEntry entry : entries) {
+            TreeItem<String> child = createTreeItem(entry.path(), entry.directory());
+            if (entry.directory()) {
+                restoreExpandedState(child, parentPath.isEmpty() ? child.getValue() : parentPath + "/" + child.getValue());
+                subdirectories.add(entry.path());
             }
+            children.add(child);
         }
-
-        return treeItem;
+        directoryPrefetcher.prefetch(subdirectories, options);
+        return children;
     }
 
     private Path addNote() {
@@ -979,7 +1158,9 @@ public class FileTreeController extends AbstractController {
         Path fullPath = getFullPath(node);
 
         fileSystemService.delete(fullPath);
-        refreshTree();
+        searchIndexService.remove(fullPath);
+        linkGraphService.remove(fullPath);
+        vaultWatchService.rescan(List.of(fullPath.getParent()));
         noteCloseHandler.accept(fullPath);
     }
 
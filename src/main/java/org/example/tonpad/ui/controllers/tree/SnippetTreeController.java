@@ -16,22 +16,27 @@ import lombok.extern.slf4j.Slf4j;
 import org.example.tonpad.core.editor.enums.EditorMode;
 import org.example.tonpad.core.exceptions.IllegalInputException;
 import org.example.tonpad.core.exceptions.TonpadBaseException;
+import org.example.tonpad.core.exceptions.handler.GlobalExceptionHandler;
 import org.example.tonpad.core.extentions.TriConsumer;
 import org.example.tonpad.core.files.Buffer;
+import org.example.tonpad.core.files.DirectoryEntry;
+import org.example.tonpad.core.files.DirectoryPrefetcher;
 import org.example.tonpad.core.files.FileSystemService;
-import org.example.tonpad.core.files.FileTree;
+import org.example.tonpad.core.files.FileTransfer;
 import org.example.tonpad.core.sort.SortKey;
 import org.example.tonpad.core.sort.SortOptions;
 import org.example.tonpad.ui.controllers.AbstractController;
 import org.example.tonpad.ui.controllers.action.SelectSnippetActionController;
 import org.example.tonpad.ui.controllers.dialog.QuickStartDialogController;
 import org.example.tonpad.ui.extentions.SnippetTreeItem;
+import org.example.tonpad.ui.extentions.TransferProgressDialog;
 import org.example.tonpad.ui.extentions.VaultPathsContainer;
 import org.springframework.stereotype.Component;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
@@ -112,6 +117,10 @@ public class SnippetTreeController extends AbstractController {
 
     private final SelectSnippetActionController selectSnippetActionController;
 
+    private final DirectoryPrefetcher directoryPrefetcher;
+
+    private final GlobalExceptionHandler globalExceptionHandler;
+
     ContextMenu actionMenu;
 
     public void init(AnchorPane parent) {
@@ -237,20 +246,27 @@ public class SnippetTreeController extends AbstractController {
 
     public void refreshTree() {
         saveAllExpandedStates();
-        SortOptions opt = new SortOptions(sortKey, cbFoldersFirst.isSelected(), cbRelevantOnly.isSelected());
-        FileTree fileTree = fileSystemService.getFileTreeSorted(vaultPathsContainer.getSnippetsPath(), opt);
-        TreeItem<String> newRoot = convertFileTreeToTreeItem(fileTree);
+        directoryPrefetcher.clear();
+        TreeItem<String> newRoot = createTreeItem(vaultPathsContainer.getSnippetsPath(), true);
 
         snippetTreeView.setRoot(newRoot);
         snippetTreeView.setShowRoot(false);
 
         rootItem = newRoot;
 
-        restoreAllExpandedStates();
+        restoreExpandedState(rootItem, getRelativePath(rootItem));
+    }
+
+    private SortOptions sortOptions() {
+        return new SortOptions(sortKey, cbFoldersFirst.isSelected(), cbRelevantOnly.isSelected());
     }
 
+    private static List<TreeItem<String>> loadedChildren(TreeItem<String> item) {
+        return item instanceof SnippetTreeItem snippetItem ? snippetItem.getLoadedChildren() : item.getChildren();
+    }
+
+    // состояние нераскрывавшихся каталогов не трогаем: оно сохранено при прошлых обновлениях
     private void saveAllExpandedStates() {
-        expandedState.clear();
         if (rootItem != null) {
             saveExpandedStateRecursive(rootItem);
         }
@@ -261,29 +277,17 @@ public class SnippetTreeController extends AbstractController {
             String path = getRelativePath(item);
             expandedState.put(path, item.isExpanded());
 
-            for (TreeItem<String> child : item.getChildren()) {
+            for (TreeItem<String> child : loadedChildren(item)) {
                 saveExpandedStateRecursive(child);
             }
         }
     }
 
-    private void restoreAllExpandedStates() {
-        if (rootItem != null) {
-            restoreExpandedStateRecursive(rootItem);
-        }
-    }
-
-    private void restoreExpandedStateRecursive(TreeItem<String> item) {
-        if (item != null) {
-            String path = getRelativePath(item);
-            Boolean wasExpanded = expandedState.get(path);
-            if (wasExpanded != null) {
-                item.setExpanded(wasExpanded);
-            }
-
-            for (TreeItem<String> child : item.getChildren()) {
-                restoreExpandedStateRecursive(child);
-            }
+    // дети восстанавливаются при загрузке каталога в loadChildren
+    private void restoreExpandedState(TreeItem<String> item, String path) {
+        Boolean wasExpanded = expandedState.get(path);
+        if (wasExpanded != null) {
+            item.setExpanded(wasExpanded);
         }
     }
 
@@ -349,16 +353,14 @@ public class SnippetTreeController extends AbstractController {
     private void collapseAllRecursive(TreeItem<String> item) {
         if (item != null) {
             item.setExpanded(false);
-            for (TreeItem<String> child : item.getChildren()) {
+            for (TreeItem<String> child : loadedChildren(item)) {
                 collapseAllRecursive(child);
             }
         }
     }
 
     private void setupFileTree() {
-        FileTree fileTree = fileSystemService.getFileTree(vaultPathsContainer.getSnippetsPath());
-
-        rootItem = convertFileTreeToTreeItem(fileTree);
+        rootItem = createTreeItem(vaultPathsContainer.getSnippetsPath(), true);
 
         snippetTreeView.setRoot(rootItem);
         snippetTreeView.setShowRoot(false);
@@ -598,8 +600,18 @@ public class SnippetTreeController extends AbstractController {
             targetPath = vaultPathsContainer.getSnippetsPath();
         }
 
-        fileSystemService.pasteFile(targetPath);
-        refreshTree();
+        var owner = fileTreeVBox.getScene() != null ? fileTreeVBox.getScene().getWindow() : null;
+        var progress = new TransferProgressDialog(owner, buffer.isCutMode() ? "Moving files" : "Copying files");
+        FileTransfer transfer = fileSystemService.pasteFile(targetPath, progress);
+        progress.attach(transfer);
+
+        // после отмены или ошибки часть элементов уже могла оказаться на месте
+        transfer.result().whenComplete((paths, error) -> Platform.runLater(() -> {
+            refreshTree();
+            if (error != null && !(error instanceof CancellationException)) {
+                globalExceptionHandler.uncaughtException(Thread.currentThread(), error);
+            }
+        }));
     }
 
     private void onCopyVaultPath() {
@@ -843,10 +855,8 @@ public class SnippetTreeController extends AbstractController {
         this.selectedItem = selectedItem;
     }
 
-    private TreeItem<String> convertFileTreeToTreeItem(FileTree fileTree) {
-        Path path = fileTree.getPath();
+    private TreeItem<String> createTreeItem(Path path, boolean isDirectory) {
         String fileName = path.getFileName() != null ? path.getFileName().toString() : path.toString();
-        boolean isDirectory = fileTree.getChildren() != null;
 
         if (!isDirectory && !fileSystemService.isMarkdownFile(path))
             return null;
@@ -860,19 +870,36 @@ public class SnippetTreeController extends AbstractController {
             }
         }
 
-        SnippetTreeItem treeItem = new SnippetTreeItem(displayName, fileName, isDirectory);
+        return new SnippetTreeItem(displayName, fileName, isDirectory, this::loadChildren);
+    }
 
-        if (isDirectory && !fileTree.getChildren().isEmpty()) {
-            for (FileTree child : fileTree.getChildren()) {
-                TreeItem<String> childItem = convertFileTreeToTreeItem(child);
-                if (childItem != null) {
-                    snippetTreeView.setEditable(true);
-                    treeItem.getChildren().add(childItem);
-                }
-            }
+    // каталог читается при первом раскрытии; его подкаталоги в это время читаются в фоне
+    private List<TreeItem<String>> loadChildren(TreeItem<String> item) {
+        Path directory = getFullPath(item);
+        SortOptions options = sortOptions();
+
+        List<DirectoryEntry> entries;
+        try {
+            entries = directoryPrefetcher.list(directory, options);
+        } catch (RuntimeException e) {
+            log.warn("Directory listing error: {}", directory, e);
+            return List.of();
         }
 
-        return treeItem;
+        String parentPath = getRelativePath(item);
+        List<TreeItem<String>> children = new ArrayList<>(entries.size());
+        List<Path> subdirectories = new ArrayList<>();
+        for (DirectoryEntry entry : entries) {
+            TreeItem<String> child = createTreeItem(entry.path(), entry.directory());
+            if (child == null) continue;
+            if (entry.directory()) {
+                restoreExpandedState(child, parentPath.isEmpty() ? child.getValue() : parentPath + "/" + child.getValue());
+                subdirectories.add(entry.path());
+            }
+            children.add(child);
+        }
+        directoryPrefetcher.prefetch(subdirectories, options);
+        return children;
     }
 
     private Path addSnippet() {
@@ -0,0 +1,77 @@
+package org.example.tonpad.ui.extentions;
+
+import javafx.application.Platform;
+import javafx.event.Event;
+import javafx.geometry.Insets;
+import javafx.scene.Scene;
+import javafx.scene.control.Label;
+import javafx.scene.control.ProgressBar;
+import javafx.scene.layout.VBox;
+import javafx.stage.Modality;
+import javafx.stage.Stage;
+import javafx.stage.StageStyle;
+import javafx.stage.Window;
+import org.example.tonpad.core.files.CryptoProgressListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Модальное окно прогресса массового шифрования
+ *
+ * <p>Пока файлы перешифровываются, редактировать заметки нельзя, поэтому окно блокирует владельца и
+ * не закрывается пользователем. Обновления из рабочих потоков склеиваются в одно на кадр.</p>
+ */
+public class CryptoProgressDialog implements CryptoProgressListener {
+
+    private final Stage stage = new Stage(StageStyle.UTILITY);
+
+    private final ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+
+    private final Label counter = new Label();
+
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+    private volatile long processed;
+
+    private volatile long total;
+
+    public CryptoProgressDialog(Window owner, String title) {
+        progressBar.setPrefWidth(320);
+
+        VBox content = new VBox(8, new Label(title), progressBar, counter);
+        content.setPadding(new Insets(12));
+
+        stage.setTitle(title);
+        stage.setScene(new Scene(content));
+        stage.setResizable(false);
+        if (owner != null) stage.initOwner(owner);
+        stage.initModality(Modality.WINDOW_MODAL);
+        stage.setOnCloseRequest(Event::consume);
+    }
+
+    @Override
+    public void onProgress(long processed, long total) {
+        this.processed = processed;
+        this.total = total;
+        if (updateScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updateScheduled.set(false);
+                long done = this.processed;
+                long all = this.total;
+                progressBar.setProgress(all > 0 ? Math.min(1.0, (double) done / all) : ProgressBar.INDETERMINATE_PROGRESS);
+                counter.setText(done + " / " + all);
+            });
+        }
+    }
+
+    /**
+     * Вызываются в потоке JavaFX
+     */
+    public void show() {
+        stage.show();
+    }
+
+    public void close() {
+        stage.close();
+    }
+}
@@ -3,14 +3,28 @@ package org.example.tonpad.ui.extentions;
 import javafx.collections.ObservableList;
 import javafx.scene.control.TreeItem;
 
+import java.util.List;
+import java.util.function.Function;
+
 
 public class FileTreeItem extends TreeItem<String> {
 
     private final boolean isDirectory;
 
+    // загружает содержимое каталога при первом обращении к детям
+    private final Function<TreeItem<String>, List<TreeItem<String>>> childrenLoader;
+
+    private boolean childrenLoaded;
+
     public FileTreeItem(String name, boolean isDirectory) {
+        this(name, isDirectory, null);
+    }
+
+    public FileTreeItem(String name, boolean isDirectory, Function<TreeItem<String>, List<TreeItem<String>>> childrenLoader) {
         super(name);
         this.isDirectory = isDirectory;
+        this.childrenLoader = childrenLoader;
+        this.childrenLoaded = !isDirectory || childrenLoader == null;
     }
 
     @Override
@@ -20,6 +34,21 @@ public class FileTreeItem extends TreeItem<String> {
 
     @Override
     public ObservableList<TreeItem<String>> getChildren() {
+        if (!childrenLoaded) {
+            childrenLoaded = true;
+            super.getChildren().setAll(childrenLoader.apply(this));
+        }
         return super.getChildren();
     }
-}
\ No newline at end of file
+
+    /**
+     * Дети без загрузки каталога: пустой список, если он ещё не раскрывался
+     */
+    public List<TreeItem<String>> getLoadedChildren() {
+        return childrenLoaded ? super.getChildren() : List.of();
+    }
+
+    public boolean isChildrenLoaded() {
+        return childrenLoaded;
+    }
+}
@@ -0,0 +1,160 @@
+package org.example.tonpad.ui.extentions;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Совпадения поиска в одном файле в компактном виде
+ *
+ * <p>Обрезанные строки с совпадениями лежат подряд в одной строке {@code text}, а номера строк,
+ * их границы и позиции совпадений - в массивах int. Узлы дерева и подписи строк создаются из этих
+ * данных только когда файл раскрывают.</p>
+ */
+public final class SearchFileResult {
+
+    // поля одной строки в массиве lines
+    private static final int LINE_NUMBER = 0;
+
+    private static final int TEXT_START = 1;
+
+    private static final int TEXT_END = 2;
+
+    private static final int FIRST_MATCH = 3;
+
+    private static final int MATCHES_END = 4;
+
+    private static final int LINE_STRIDE = 5;
+
+    private static final String LABEL_SEPARATOR = ": ";
+
+    @Getter
+    private final String path;
+
+    private final String text;
+
+    private final int[] lines;
+
+    // пары start/end в text
+    private final int[] matches;
+
+    @Getter
+    private final int lineCount;
+
+    @Getter
+    private final int matchCount;
+
+    private SearchFileResult(Builder builder) {
+        this.path = builder.path;
+        this.text = builder.text.toString();
+        this.lines = Arrays.copyOf(builder.lines, builder.lineCount * LINE_STRIDE);
+        this.matches = Arrays.copyOf(builder.matches, builder.highlightCount * 2);
+        this.lineCount = builder.lineCount;
+        this.matchCount = builder.matchCount;
+    }
+
+    public boolean isEmpty() {
+        return matchCount == 0;
+    }
+
+    public String lineLabel(int line) {
+        int base = line * LINE_STRIDE;
+        return lines[base + LINE_NUMBER] + LABEL_SEPARATOR + text.substring(lines[base + TEXT_START], lines[base + TEXT_END]);
+    }
+
+    /**
+     * @return номер первого совпадения строки в тексте заметки или -1 для строк front matter
+     */
+    public int firstMatchIndex(int line) {
+        return lines[line * LINE_STRIDE + FIRST_MATCH];
+    }
+
+    /**
+     * @return пары start/end подсветки в подписи {@link #lineLabel(int)}
+     */
+    public int[] highlights(int line) {
+        int base = line * LINE_STRIDE;
+        int from = line == 0 ? 0 : lines[base - LINE_STRIDE + MATCHES_END];
+        int to = lines[base + MATCHES_END];
+        int shift = String.valueOf(lines[base + LINE_NUMBER]).length() + LABEL_SEPARATOR.length() - lines[base + TEXT_START];
+
+        int[] result = new int[(to - from) * 2];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = matches[from * 2 + i] + shift;
+        }
+        return result;
+    }
+
+    public static Builder builder(String path) {
+        return new Builder(path);
+    }
+
+    /**
+     * Собирает результат построчно: {@link #line} открывает строку, {@link #match} добавляет в неё совпадение.
+     * Позиции передаются в координатах исходного текста.
+     */
+    public static final class Builder {
+
+        private final String path;
+
+        private final StringBuilder text = new StringBuilder();
+
+        private int[] lines = new int[LINE_STRIDE * 4];
+
+        private int[] matches = new int[8];
+
+        private int lineCount;
+
+        private int highlightCount;
+
+        private int matchCount;
+
+        // исходная позиция начала обрезанной строки
+        private int sourceStart;
+
+        private int sourceEnd;
+
+        private Builder(String path) {
+            this.path = path;
+        }
+
+        public Builder line(int lineNumber, CharSequence source, int start, int end, int firstMatchIndex) {
+            while (start < end && source.charAt(start) <= ' ') start++;
+            while (end > start && source.charAt(end - 1) <= ' ') end--;
+            sourceStart = start;
+            sourceEnd = end;
+
+            if ((lineCount + 1) * LINE_STRIDE > lines.length) lines = Arrays.copyOf(lines, lines.length * 2);
+            int base = lineCount * LINE_STRIDE;
+            lines[base + LINE_NUMBER] = lineNumber;
+            lines[base + TEXT_START] = text.length();
+            text.append(source, start, end);
+            lines[base + TEXT_END] = text.length();
+            lines[base + FIRST_MATCH] = firstMatchIndex;
+            lines[base + MATCHES_END] = highlightCount;
+            lineCount++;
+            return this;
+        }
+
+        public Builder match(int start, int end) {
+            matchCount++;
+
+            // совпадение в обрезанных пробелах считается, но не подсвечивается
+            start = Math.max(start, sourceStart);
+            end = Math.min(end, sourceEnd);
+            if (start >= end) return this;
+
+            if ((highlightCount + 1) * 2 > matches.length) matches = Arrays.copyOf(matches, matches.length * 2);
+            int base = lines[(lineCount - 1) * LINE_STRIDE + TEXT_START] - sourceStart;
+            matches[highlightCount * 2] = start + base;
+            matches[highlightCount * 2 + 1] = end + base;
+            highlightCount++;
+            lines[(lineCount - 1) * LINE_STRIDE + MATCHES_END] = highlightCount;
+            return this;
+        }
+
+        public SearchFileResult build() {
+            return new SearchFileResult(this);
+        }
+    }
+}
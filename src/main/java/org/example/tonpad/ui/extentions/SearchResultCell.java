@@ -5,16 +5,17 @@ import javafx.scene.text.Text;
 import javafx.scene.text.TextFlow;
 import javafx.scene.control.TreeCell;
 import javafx.scene.layout.HBox;
+import org.example.tonpad.core.service.SearchEngine;
+import org.example.tonpad.core.service.SearchService;
 
-import java.util.ArrayList;
 import java.util.List;
 
 public class SearchResultCell extends TreeCell<String> {
 
-    private final String currentQuery;
+    private final SearchEngine.CompiledQuery currentQuery;
     private final ImageView iconView = new ImageView();
 
-    public SearchResultCell(String currentQuery) {
+    public SearchResultCell(SearchEngine.CompiledQuery currentQuery) {
         this.currentQuery = currentQuery;
         iconView.setFitWidth(16);
         iconView.setFitHeight(16);
@@ -32,14 +33,14 @@ public class SearchResultCell extends TreeCell<String> {
 
         iconView.getStyleClass().remove("note-colored-icon");
 
-        List<TextRange> matches = findAllMatchesIncludingOverlapping(item, currentQuery);
+        int[] matches = highlights(item);
 
         boolean showIcon = !getTreeItem().isLeaf();
         if (showIcon) {
             iconView.getStyleClass().add("note-colored-icon");
         }
 
-        if (matches.isEmpty()) {
+        if (matches.length == 0) {
             if (showIcon) {
                 HBox container = new HBox(5);
                 container.getChildren().addAll(iconView, new Text(item));
@@ -61,36 +62,38 @@ public class SearchResultCell extends TreeCell<String> {
         }
     }
 
-    private List<TextRange> findAllMatchesIncludingOverlapping(String text, String query) {
-        List<TextRange> matches = new ArrayList<>();
-        if (query == null || query.isEmpty()) return matches;
-
-        String lowerText = text.toLowerCase();
-        String lowerQuery = query.toLowerCase();
+    // у строк совпадения уже найдены при поиске, заново ищем только в именах файлов
+    private int[] highlights(String item) {
+        if (getTreeItem() instanceof SearchTreeItem searchItem && searchItem.getHighlights() != null) {
+            return searchItem.getHighlights();
+        }
 
-        int index = 0;
-        while ((index = lowerText.indexOf(lowerQuery, index)) != -1) {
-            matches.add(new TextRange(index, index + query.length()));
-            index += 1; // Ключевое изменение: сдвигаем на 1 символ для пересекающихся
+        List<SearchService.Hit> hits = currentQuery.findAll(item);
+        int[] ranges = new int[hits.size() * 2];
+        for (int i = 0; i < hits.size(); i++) {
+            ranges[i * 2] = hits.get(i).start();
+            ranges[i * 2 + 1] = hits.get(i).end();
         }
-        return matches;
+        return ranges;
     }
 
-    private TextFlow buildHighlightedName(String text, List<TextRange> matches) {
+    private TextFlow buildHighlightedName(String text, int[] matches) {
         TextFlow textFlow = new TextFlow();
         int lastIndex = 0;
 
-        for (TextRange range : matches) {
-            if (range.start > lastIndex) {
-                Text before = new Text(text.substring(lastIndex, range.start));
+        for (int i = 0; i < matches.length; i += 2) {
+            int start = matches[i];
+            int end = matches[i + 1];
+            if (start > lastIndex) {
+                Text before = new Text(text.substring(lastIndex, start));
                 textFlow.getChildren().add(before);
             }
 
-            Text highlight = new Text(text.substring(range.start, range.end));
+            Text highlight = new Text(text.substring(start, end));
             highlight.getStyleClass().add("file-tree-hit");
             textFlow.getChildren().add(highlight);
 
-            lastIndex = range.end;
+            lastIndex = end;
         }
 
         if (lastIndex < text.length()) {
@@ -100,7 +103,4 @@ public class SearchResultCell extends TreeCell<String> {
 
         return textFlow;
     }
-
-    private record TextRange(int start, int end) {
-    }
 }
\ No newline at end of file
@@ -5,6 +5,9 @@ import javafx.scene.control.TreeItem;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class SearchTreeItem extends TreeItem<String> {
 
     private final boolean isFile;
@@ -17,11 +20,24 @@ public class SearchTreeItem extends TreeItem<String> {
     @Getter
     private String query;
 
+    // пары start/end подсветки в тексте строки, null - подсветки по запросу нет
+    @Getter
+    private int[] highlights;
+
+    // совпадения файла, по которым строки создаются при первом обращении к детям
+    private SearchFileResult result;
+
     public SearchTreeItem(String name, boolean isFile) {
         super(name);
         this.isFile = isFile;
     }
 
+    public SearchTreeItem(SearchFileResult result, String query) {
+        this(result.getPath(), true);
+        this.result = result;
+        this.query = query;
+    }
+
     @Override
     public boolean isLeaf() {
         return !isFile;
@@ -29,6 +45,23 @@ public class SearchTreeItem extends TreeItem<String> {
 
     @Override
     public ObservableList<TreeItem<String>> getChildren() {
+        if (result != null) {
+            SearchFileResult lines = result;
+            result = null;
+            super.getChildren().setAll(createLineItems(lines));
+        }
         return super.getChildren();
     }
-}
\ No newline at end of file
+
+    private List<TreeItem<String>> createLineItems(SearchFileResult lines) {
+        List<TreeItem<String>> items = new ArrayList<>(lines.getLineCount());
+        for (int i = 0; i < lines.getLineCount(); i++) {
+            SearchTreeItem item = new SearchTreeItem(lines.lineLabel(i), false);
+            item.setFirstMatchIndex(lines.firstMatchIndex(i));
+            item.setQuery(query);
+            item.highlights = lines.highlights(i);
+            items.add(item);
+        }
+        return items;
+    }
+}
@@ -4,6 +4,9 @@ import javafx.collections.ObservableList;
 import javafx.scene.control.TreeItem;
 import lombok.Getter;
 
+import java.util.List;
+import java.util.function.Function;
+
 public class SnippetTreeItem extends TreeItem<String> {
 
     private final boolean isDirectory;
@@ -14,11 +17,23 @@ public class SnippetTreeItem extends TreeItem<String> {
     @Getter
     private final String displayName;
 
+    // загружает содержимое каталога при первом обращении к детям
+    private final Function<TreeItem<String>, List<TreeItem<String>>> childrenLoader;
+
+    private boolean childrenLoaded;
+
     public SnippetTreeItem(String displayName, String fullName, boolean isDirectory) {
+        this(displayName, fullName, isDirectory, null);
+    }
+
+    public SnippetTreeItem(String displayName, String fullName, boolean isDirectory,
+                           Function<TreeItem<String>, List<TreeItem<String>>> childrenLoader) {
         super(displayName);
         this.displayName = displayName;
         this.fullName = fullName;
         this.isDirectory = isDirectory;
+        this.childrenLoader = childrenLoader;
+        this.childrenLoaded = !isDirectory || childrenLoader == null;
     }
 
     @Override
@@ -28,6 +43,17 @@ public class SnippetTreeItem extends TreeItem<String> {
 
     @Override
     public ObservableList<TreeItem<String>> getChildren() {
+        if (!childrenLoaded) {
+            childrenLoaded = true;
+            super.getChildren().setAll(childrenLoader.apply(this));
+        }
         return super.getChildren();
     }
-}
\ No newline at end of file
+
+    /**
+     * Дети без загрузки каталога: пустой список, если он ещё не раскрывался
+     */
+    public List<TreeItem<String>> getLoadedChildren() {
+        return childrenLoaded ? super.getChildren() : List.of();
+    }
+}
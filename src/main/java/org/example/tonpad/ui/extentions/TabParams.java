@@ -1,8 +1,10 @@
 package org.example.tonpad.ui.extentions;
 
 import org.example.tonpad.core.editor.Editor;
+import org.example.tonpad.core.files.NoteDocument;
+import org.example.tonpad.core.service.SearchService;
 
 import java.nio.file.Path;
 
-public record TabParams(Editor editor, Path path) {
-}
\ No newline at end of file
+public record TabParams(Editor editor, Path path, NoteDocument document, SearchService.Session searchSession) {
+}
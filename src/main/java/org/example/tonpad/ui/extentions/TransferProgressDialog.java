@@ -0,0 +1,79 @@
+package org.example.tonpad.ui.extentions;
+
+import javafx.animation.PauseTransition;
+import javafx.application.Platform;
+import javafx.scene.control.Alert;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.ProgressBar;
+import javafx.stage.Modality;
+import javafx.stage.Window;
+import javafx.util.Duration;
+import org.example.tonpad.core.files.FileTransfer;
+import org.example.tonpad.core.files.TransferProgressListener;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Немодальное окно прогресса вставки с кнопкой отмены
+ *
+ * <p>Показывается, только если копирование идёт дольше {@link #SHOW_DELAY}, и закрывается само по его завершении.
+ * Обновления из потоков копирования склеиваются в одно на кадр.</p>
+ */
+public class TransferProgressDialog implements TransferProgressListener {
+
+    private static final Duration SHOW_DELAY = Duration.millis(400);
+
+    private final Window owner;
+
+    private final String title;
+
+    private final ProgressBar progressBar = new ProgressBar(ProgressBar.INDETERMINATE_PROGRESS);
+
+    private final AtomicBoolean updateScheduled = new AtomicBoolean();
+
+    private volatile long processed;
+
+    private volatile long total;
+
+    public TransferProgressDialog(Window owner, String title) {
+        this.owner = owner;
+        this.title = title;
+        progressBar.setPrefWidth(320);
+    }
+
+    @Override
+    public void onProgress(long processed, long total) {
+        this.processed = processed;
+        this.total = total;
+        if (updateScheduled.compareAndSet(false, true)) {
+            Platform.runLater(() -> {
+                updateScheduled.set(false);
+                long all = this.total;
+                progressBar.setProgress(all > 0 ? Math.min(1.0, (double) this.processed / all) : ProgressBar.INDETERMINATE_PROGRESS);
+            });
+        }
+    }
+
+    /**
+     * Вызывается в потоке JavaFX сразу после запуска копирования
+     */
+    public void attach(FileTransfer transfer) {
+        PauseTransition delay = new PauseTransition(SHOW_DELAY);
+        delay.setOnFinished(e -> {
+            if (transfer.isDone()) return;
+
+            var alert = new Alert(Alert.AlertType.NONE, null, ButtonType.CANCEL);
+            alert.setTitle(title);
+            alert.setHeaderText(title);
+            alert.getDialogPane().setContent(progressBar);
+            if (owner != null) alert.initOwner(owner);
+            alert.initModality(Modality.NONE);
+            alert.setOnHidden(ev -> {
+                if (!transfer.isDone()) transfer.cancel();
+            });
+            transfer.result().whenComplete((paths, error) -> Platform.runLater(alert::close));
+            alert.show();
+        });
+        delay.play();
+    }
+}
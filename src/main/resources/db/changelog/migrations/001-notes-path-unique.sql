@@ -0,0 +1,32 @@
+-- путь заметки уникален: дубликаты схлопываются к самой ранней записи с тем же путём,
+-- а ссылки и шаблоны дубликатов переносятся на неё
+create temp table note_duplicates as
+select n.id as duplicate_id, k.keep_id as keep_id
+from notes n
+join (select path, min(id) as keep_id from notes group by path having count(*) > 1) k on n.path = k.path
+where n.id <> k.keep_id;
+
+update or ignore notes_associations
+set src_id = (select keep_id from note_duplicates where duplicate_id = src_id)
+where src_id in (select duplicate_id from note_duplicates);
+
+update or ignore notes_associations
+set dst_id = (select keep_id from note_duplicates where duplicate_id = dst_id)
+where dst_id in (select duplicate_id from note_duplicates);
+
+-- остались только строки, которые уже есть у сохранённой записи
+delete from notes_associations
+where src_id in (select duplicate_id from note_duplicates)
+   or dst_id in (select duplicate_id from note_duplicates);
+
+update or ignore notes_to_templates
+set note_id = (select keep_id from note_duplicates where duplicate_id = note_id)
+where note_id in (select duplicate_id from note_duplicates);
+
+delete from notes_to_templates where note_id in (select duplicate_id from note_duplicates);
+
+delete from notes where id in (select duplicate_id from note_duplicates);
+
+drop table note_duplicates;
+
+create unique index if not exists notes_path_unique_index on notes (path);
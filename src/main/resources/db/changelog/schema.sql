@@ -27,6 +27,9 @@ create table if not exists notes_associations (
     foreign key(dst_id) references notes(id)
 );
 
+-- обратные ссылки: поиск по dst_id без обращения к таблице
+create index if not exists notes_associations_dst_id_src_id_index on notes_associations (dst_id, src_id);
+
 create table if not exists notes_to_templates (
     id integer primary key autoincrement,
     note_id int not null,
@@ -0,0 +1,138 @@
+package org.example.tonpad.core.files;
+
+import org.example.tonpad.core.service.crypto.Impl.EncryptorFactoryImpl;
+import org.example.tonpad.core.session.VaultSession;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class NoteJournalServiceImplTest {
+
+    private static final String CONTENT = "world";
+
+    @TempDir
+    Path vault;
+
+    private final VaultSession vaultSession = mock(VaultSession.class);
+
+    private NoteJournalServiceImpl journalService;
+
+    private Path note;
+
+    @BeforeEach
+    void setUp() {
+        VaultPathsContainer paths = new VaultPathsContainer();
+        paths.setVaultPath(vault);
+        note = paths.getNotesPath().resolve("note.md");
+
+        when(vaultSession.getKeyIfPresent()).thenReturn(Optional.empty());
+        journalService = new NoteJournalServiceImpl(paths, vaultSession, new EncryptorFactoryImpl(vaultSession));
+    }
+
+    @Test
+    void replaysEditsOnTopOfFileContent() {
+        writeEdits(false);
+
+        assertThat(journalService.recover(note, CONTENT, false)).isEqualTo("Hello world!");
+    }
+
+    @Test
+    void dropsJournalOfChangedFile() throws IOException {
+        writeEdits(false);
+
+        assertThat(journalService.recover(note, "world, edited elsewhere", false)).isNull();
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void startsFromBaseTextWhenGiven() {
+        NoteJournalService.Journal journal = journalService.open(note, false);
+        journal.start(CONTENT.length(), CONTENT.hashCode(), 0, "base");
+        journal.append(1, 4, 4, "!");
+        journal.close(false);
+        journalService.shutdown();
+
+        assertThat(journalService.recover(note, CONTENT, false)).isEqualTo("base!");
+    }
+
+    @Test
+    void keepsOnlyEditsNotIncludedInSave() {
+        String saved = "hello world!";
+        NoteJournalService.Journal journal = journalService.open(note, false);
+        journal.start(CONTENT.length(), CONTENT.hashCode(), 0, null);
+        journal.append(1, 0, 0, "hello ");
+        journal.append(2, 11, 11, "!");
+        journal.append(3, 0, 1, "H");
+        journal.saved(saved.length(), saved.hashCode(), 2);
+        journal.close(false);
+        journalService.shutdown();
+
+        assertThat(journalService.recover(note, saved, false)).isEqualTo("Hello world!");
+    }
+
+    @Test
+    void stopsAtTruncatedRecord() throws IOException {
+        writeEdits(false);
+        Path file = journalFiles().get(0);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+        // последняя правка оборвана и не применяется
+        assertThat(journalService.recover(note, CONTENT, false)).isEqualTo("hello world!");
+    }
+
+    @Test
+    void deletesJournalWithoutChanges() throws IOException {
+        NoteJournalService.Journal journal = journalService.open(note, false);
+        journal.start(CONTENT.length(), CONTENT.hashCode(), 0, null);
+        journal.close(false);
+        journalService.shutdown();
+
+        assertThat(journalService.recover(note, CONTENT, false)).isNull();
+        assertThat(journalFiles()).isEmpty();
+    }
+
+    @Test
+    void encryptsRecordsOfEncryptedNote() throws IOException {
+        when(vaultSession.getKeyIfPresent()).thenReturn(Optional.of(new SecretKeySpec(new byte[32], "AES")));
+        writeEdits(true);
+
+        String stored = new String(Files.readAllBytes(journalFiles().get(0)), StandardCharsets.ISO_8859_1);
+        assertThat(stored).doesNotContain("hello");
+        assertThat(journalService.recover(note, CONTENT, true)).isEqualTo("Hello world!");
+    }
+
+    private void writeEdits(boolean encrypt) {
+        NoteJournalService.Journal journal = journalService.open(note, encrypt);
+        journal.start(CONTENT.length(), CONTENT.hashCode(), 0, null);
+        journal.append(1, 0, 0, "hello ");
+        journal.append(2, 11, 11, "!");
+        journal.append(3, 0, 1, "H");
+        journal.close(false);
+        // дожидаемся записи журнала в фоновом потоке
+        journalService.shutdown();
+    }
+
+    private List<Path> journalFiles() throws IOException {
+        Path dir = vault.resolve(".journal");
+        if (!Files.isDirectory(dir)) return List.of();
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.filter(file -> file.toString().endsWith(".journal")).toList();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example.tonpad.core.files;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PieceTableTest {
+
+    @Test
+    void insertsReplacesAndDeletes() {
+        PieceTable text = new PieceTable("hello world");
+
+        text.replace(0, 0, ">> ");
+        text.replace(3, 8, "HELLO");
+        text.replace(8, 14, "");
+        text.replace(8, 8, "!");
+
+        assertThat(text.toString()).isEqualTo(">> HELLO!");
+        assertThat(text.length()).isEqualTo(9);
+    }
+
+    @Test
+    void typingAtTheEndOfInsertedTextKeepsOrder() {
+        PieceTable text = new PieceTable("ac");
+
+        text.replace(1, 1, "b");
+        text.replace(2, 2, "b");
+        text.replace(3, 3, "b");
+
+        assertThat(text.toString()).isEqualTo("abbbc");
+    }
+
+    @Test
+    void charAtAndSubSequenceSpanPieces() {
+        PieceTable text = new PieceTable("0123456789");
+        text.replace(3, 7, "abc");
+
+        assertThat(text.toString()).isEqualTo("012abc789");
+        assertThat(text.charAt(3)).isEqualTo('a');
+        assertThat(text.charAt(6)).isEqualTo('7');
+        assertThat(text.subSequence(2, 7).toString()).isEqualTo("2abc7");
+        assertThat(text.subSequence(4, 4).toString()).isEmpty();
+    }
+
+    @Test
+    void resetDropsAllPieces() {
+        PieceTable text = new PieceTable("old");
+        text.replace(0, 3, "changed");
+
+        text.reset("");
+        text.replace(0, 0, "new");
+
+        assertThat(text.toString()).isEqualTo("new");
+    }
+
+    @Test
+    void rejectsRangeOutsideText() {
+        PieceTable text = new PieceTable("abc");
+
+        assertThatThrownBy(() -> text.replace(2, 4, "x")).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> text.replace(2, 1, "x")).isInstanceOf(IndexOutOfBoundsException.class);
+        assertThatThrownBy(() -> text.charAt(3)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void matchesStringBuilderOnRandomEdits() {
+        Random random = new Random(42);
+        StringBuilder expected = new StringBuilder("The quick brown fox jumps over the lazy dog");
+        PieceTable text = new PieceTable(expected.toString());
+
+        for (int i = 0; i < 2000; i++) {
+            int start = random.nextInt(expected.length() + 1);
+            int end = start + random.nextInt(Math.min(5, expected.length() - start) + 1);
+            String inserted = "xyz".substring(0, random.nextInt(4));
+
+            expected.replace(start, end, inserted);
+            text.replace(start, end, inserted);
+        }
+
+        assertThat(text.toString()).isEqualTo(expected.toString());
+        assertThat(text.length()).isEqualTo(expected.length());
+    }
+}
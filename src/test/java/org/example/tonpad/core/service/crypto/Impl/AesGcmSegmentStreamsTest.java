@@ -0,0 +1,191 @@
+package org.example.tonpad.core.service.crypto.Impl;
+
+import org.example.tonpad.core.exceptions.DecryptionException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AesGcmSegmentStreamsTest {
+
+    private static final int SEGMENT = AesGcmSegmentStreams.DEFAULT_SEGMENT_SIZE;
+
+    private static final int TAG = 16;
+
+    private static final byte[] AAD = "notes/a.md".getBytes(StandardCharsets.UTF_8);
+
+    private final AesGcmEncryptor encryptor = new AesGcmEncryptor(key(1));
+
+    @Test
+    void writesHeaderWithMagicVersionAndSegmentSize() {
+        byte[] sealed = encryptor.encrypt(plain(10), AAD);
+
+        ByteBuffer header = ByteBuffer.wrap(sealed, 0, AesGcmSegmentStreams.HEADER_LEN);
+        byte[] magic = new byte[4];
+        header.get(magic);
+        assertThat(magic).isEqualTo(AesGcmSegmentStreams.MAGIC);
+        assertThat(header.get()).isEqualTo(AesGcmSegmentStreams.VERSION);
+        assertThat(header.getInt()).isEqualTo(SEGMENT);
+        assertThat(AesGcmEncryptor.looksEncrypted(sealed)).isTrue();
+    }
+
+    @Test
+    void sealedSizeCountsOneTagPerSegment() {
+        int header = AesGcmSegmentStreams.HEADER_LEN;
+
+        assertThat(AesGcmSegmentStreams.sealedSize(0)).isEqualTo(header + TAG);
+        assertThat(AesGcmSegmentStreams.sealedSize(SEGMENT)).isEqualTo(header + SEGMENT + TAG);
+        assertThat(AesGcmSegmentStreams.sealedSize(SEGMENT + 1)).isEqualTo(header + SEGMENT + 1 + 2 * TAG);
+    }
+
+    @Test
+    void roundTripsAcrossSegmentBoundaries() {
+        for (int length : new int[]{0, 1, SEGMENT - 1, SEGMENT, SEGMENT + 1, 2 * SEGMENT, 2 * SEGMENT + 7}) {
+            byte[] plain = plain(length);
+            byte[] sealed = encryptor.encrypt(plain, AAD);
+
+            assertThat(sealed).hasSize(AesGcmSegmentStreams.sealedSize(length));
+            assertThat(AesGcmSegmentStreams.openedSize(sealed)).isEqualTo(length);
+            assertThat(encryptor.decrypt(sealed, AAD)).isEqualTo(plain);
+        }
+    }
+
+    @Test
+    void sameTextGetsDifferentNoncePrefix() {
+        byte[] plain = plain(100);
+
+        assertThat(encryptor.encrypt(plain, AAD)).isNotEqualTo(encryptor.encrypt(plain, AAD));
+    }
+
+    @Test
+    void rejectsOtherAadOrKey() {
+        byte[] sealed = encryptor.encrypt(plain(100), AAD);
+
+        assertThatThrownBy(() -> encryptor.decrypt(sealed, "notes/b.md".getBytes(StandardCharsets.UTF_8)))
+                .isInstanceOf(DecryptionException.class);
+        assertThatThrownBy(() -> encryptor.decrypt(sealed, null)).isInstanceOf(DecryptionException.class);
+        assertThatThrownBy(() -> new AesGcmEncryptor(key(2)).decrypt(sealed, AAD))
+                .isInstanceOf(DecryptionException.class);
+    }
+
+    @Test
+    void detectsDroppedLastSegment() {
+        byte[] sealed = encryptor.encrypt(plain(2 * SEGMENT + 1), AAD);
+        byte[] truncated = Arrays.copyOf(sealed, sealed.length - (1 + TAG));
+
+        // оставшийся полный сегмент не помечен как последний
+        assertThatThrownBy(() -> encryptor.decrypt(truncated, AAD)).isInstanceOf(DecryptionException.class);
+    }
+
+    @Test
+    void detectsReorderedSegments() {
+        byte[] sealed = encryptor.encrypt(plain(3 * SEGMENT), AAD);
+        int header = AesGcmSegmentStreams.HEADER_LEN;
+        int stride = SEGMENT + TAG;
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, header, swapped, header + stride, stride);
+        System.arraycopy(sealed, header + stride, swapped, header, stride);
+
+        assertThatThrownBy(() -> encryptor.decrypt(swapped, AAD)).isInstanceOf(DecryptionException.class);
+    }
+
+    @Test
+    void headerIsAuthenticated() {
+        byte[] sealed = encryptor.encrypt(plain(100), AAD);
+        sealed[AesGcmSegmentStreams.HEADER_LEN - 1] ^= 1;
+
+        assertThatThrownBy(() -> encryptor.decrypt(sealed, AAD)).isInstanceOf(DecryptionException.class);
+    }
+
+    @Test
+    void rejectsInvalidSegmentSize() {
+        byte[] sealed = encryptor.encrypt(plain(100), AAD);
+        ByteBuffer.wrap(sealed).putInt(AesGcmSegmentStreams.MAGIC.length + 1, 0);
+
+        assertThatThrownBy(() -> encryptor.decrypt(sealed, AAD)).isInstanceOf(DecryptionException.class);
+    }
+
+    @Test
+    void streamsMatchArrayFormat() throws IOException {
+        byte[] plain = plain(2 * SEGMENT);
+
+        ByteArrayOutputStream sealed = new ByteArrayOutputStream();
+        try (OutputStream out = encryptor.encryptingStream(sealed, AAD)) {
+            // запись кусками, не совпадающими с сегментами
+            for (int off = 0; off < plain.length; off += 1000) {
+                out.write(plain, off, Math.min(1000, plain.length - off));
+            }
+        }
+        assertThat(sealed.size()).isEqualTo(AesGcmSegmentStreams.sealedSize(plain.length));
+        assertThat(encryptor.decrypt(sealed.toByteArray(), AAD)).isEqualTo(plain);
+
+        try (InputStream in = encryptor.decryptingStream(new ByteArrayInputStream(encryptor.encrypt(plain, AAD)), AAD)) {
+            assertThat(in.readAllBytes()).isEqualTo(plain);
+        }
+    }
+
+    @Test
+    void decryptingStreamDetectsTruncation() throws IOException {
+        byte[] sealed = encryptor.encrypt(plain(SEGMENT + 10), AAD);
+        byte[] truncated = Arrays.copyOf(sealed, sealed.length - 5);
+
+        try (InputStream in = encryptor.decryptingStream(new ByteArrayInputStream(truncated), AAD)) {
+            assertThatThrownBy(in::readAllBytes).isInstanceOf(DecryptionException.class);
+        }
+    }
+
+    @Test
+    void byteBufferApiWorksWithDirectBuffers() {
+        byte[] plain = plain(SEGMENT + 3);
+        ByteBuffer source = ByteBuffer.allocateDirect(plain.length).put(plain).flip();
+        ByteBuffer sealed = ByteBuffer.allocateDirect(encryptor.encryptedSize(plain.length));
+
+        int written = encryptor.encrypt(source, sealed, AAD);
+        assertThat(written).isEqualTo(sealed.capacity());
+        assertThat(source.hasRemaining()).isFalse();
+
+        sealed.flip();
+        ByteBuffer opened = ByteBuffer.allocateDirect(plain.length);
+        assertThat(encryptor.decrypt(sealed, opened, AAD)).isEqualTo(plain.length);
+
+        byte[] result = new byte[plain.length];
+        opened.flip().get(result);
+        assertThat(result).isEqualTo(plain);
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    void stillReadsLegacyTextFormatAndPlainText() throws IOException {
+        String legacy = encryptor.encrypt("old note", null);
+        byte[] text = "just text".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(new String(encryptor.decrypt(legacy.getBytes(StandardCharsets.UTF_8), null), StandardCharsets.UTF_8))
+                .isEqualTo("old note");
+        assertThat(encryptor.decrypt(text, null)).isEqualTo(text);
+        try (InputStream in = encryptor.decryptingStream(new ByteArrayInputStream(text), null)) {
+            assertThat(in.readAllBytes()).isEqualTo(text);
+        }
+    }
+
+    private static byte[] plain(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static byte[] key(int seed) {
+        byte[] key = new byte[32];
+        new Random(seed).nextBytes(key);
+        return key;
+    }
+}
@@ -0,0 +1,169 @@
+package org.example.tonpad.core.service.db.impl;
+
+import org.example.tonpad.core.repository.NotePathCache;
+import org.example.tonpad.core.service.db.ConnectionProviderService;
+import org.example.tonpad.core.service.db.MetadataWriteQueue.Key;
+import org.example.tonpad.ui.extentions.VaultPathsContainer;
+import org.jooq.DSLContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class MetadataWriteQueueImplTest {
+
+    private static final Path VAULT = Path.of("vault");
+
+    private final FakeTransactions transactions = new FakeTransactions();
+
+    private final VaultPathsContainer vaultPaths = new VaultPathsContainer();
+
+    private final NotePathCache notePathCache = mock(NotePathCache.class);
+
+    private MetadataWriteQueueImpl queue;
+
+    @BeforeEach
+    void setUp() {
+        vaultPaths.setVaultPath(VAULT);
+        queue = new MetadataWriteQueueImpl(transactions, vaultPaths, notePathCache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.shutdown();
+    }
+
+    @Test
+    void coalescesWritesWithSameKeyIntoOneTransaction() {
+        queue.submit(new Key("notes", 1), transactions.write("note 1, first"));
+        queue.submit(new Key("notes", 2), transactions.write("note 2"));
+        queue.submit(new Key("notes", 1), transactions.write("note 1, second"));
+        queue.flush();
+
+        // повторно поставленное изменение записывается последним
+        assertThat(transactions.committed).containsExactly(
+                new Commit(VAULT, List.of("note 2", "note 1, second")));
+        verifyNoInteractions(notePathCache);
+    }
+
+    @Test
+    void keysDifferingByEntityDoNotCoalesce() {
+        queue.submit(new Key("notes", 1), transactions.write("note"));
+        queue.submit(new Key("links", 1), transactions.write("link"));
+        queue.flush();
+
+        assertThat(transactions.committed).containsExactly(new Commit(VAULT, List.of("note", "link")));
+    }
+
+    @Test
+    void retriesFailedBatchOneWriteAtATime() {
+        AtomicInteger commits = new AtomicInteger();
+        queue.addCommitListener(commits::incrementAndGet);
+
+        queue.submit(new Key("notes", 1), transactions.write("first"));
+        queue.submit(new Key("notes", 2), () -> {
+            throw new IllegalStateException("constraint violation");
+        });
+        queue.submit(new Key("notes", 3), transactions.write("third"));
+        queue.flush();
+
+        // пачка откатилась, записано всё, кроме сбойного изменения
+        assertThat(transactions.committed).containsExactly(
+                new Commit(VAULT, List.of("first")),
+                new Commit(VAULT, List.of("third")));
+        assertThat(commits).hasValue(2);
+        verify(notePathCache, times(2)).clear();
+    }
+
+    @Test
+    void writesGoToVaultOpenWhenSubmitted() {
+        Path other = Path.of("other");
+
+        queue.submit(new Key("notes", 1), transactions.write("old vault"));
+        vaultPaths.setVaultPath(other);
+        queue.submit(new Key("notes", 1), transactions.write("new vault"));
+        queue.flush();
+
+        assertThat(transactions.committed).containsExactly(
+                new Commit(VAULT, List.of("old vault")),
+                new Commit(other, List.of("new vault")));
+    }
+
+    @Test
+    void drainsWithoutFlushAfterDelay() throws InterruptedException {
+        CountDownLatch committed = new CountDownLatch(1);
+        queue.addCommitListener(committed::countDown);
+
+        queue.submit(new Key("notes", 1), transactions.write("later"));
+
+        assertThat(committed.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(transactions.committed).containsExactly(new Commit(VAULT, List.of("later")));
+    }
+
+    @Test
+    void flushWithNothingPendingReturnsImmediately() {
+        queue.flush();
+
+        assertThat(transactions.committed).isEmpty();
+    }
+
+    private record Commit(Path vault, List<String> writes) {
+    }
+
+    /**
+     * Транзакции в памяти: записи фиксируются, только если действие завершилось без исключения
+     */
+    private static final class FakeTransactions implements ConnectionProviderService {
+
+        private final List<Commit> committed = new ArrayList<>();
+
+        private List<String> current;
+
+        private Runnable write(String value) {
+            return () -> current.add(value);
+        }
+
+        @Override
+        public synchronized void transaction(Path vaultPath, Runnable action) {
+            current = new ArrayList<>();
+            try {
+                action.run();
+                committed.add(new Commit(vaultPath, List.copyOf(current)));
+            } finally {
+                current = null;
+            }
+        }
+
+        @Override
+        public void transaction(Runnable action) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DSLContext getDSLContext(Path vaultPath) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DSLContext getDSLContext() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public DSLContext getReadDSLContext() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.example.tonpad.core.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AhoCorasickTest {
+
+    @Test
+    void reportsOverlappingTermsInOrderOfTheirEnds() {
+        AhoCorasick automaton = new AhoCorasick(List.of("he", "she", "his", "hers"), true);
+
+        assertThat(scan(automaton, "ushers")).containsExactly(
+                List.of(1, 4), // she
+                List.of(2, 4), // he
+                List.of(2, 6)  // hers
+        );
+    }
+
+    @Test
+    void foldsCaseButKeepsPositionsOfSourceText() {
+        AhoCorasick automaton = new AhoCorasick(List.of("заметка", "NOTE"), false);
+
+        assertThat(scan(automaton, "Note: ЗАМЕТКА")).containsExactly(List.of(0, 4), List.of(6, 13));
+    }
+
+    @Test
+    void caseSensitiveAutomatonSkipsOtherCase() {
+        AhoCorasick automaton = new AhoCorasick(List.of("Note"), true);
+
+        assertThat(scan(automaton, "note Note NOTE")).containsExactly(List.of(5, 9));
+    }
+
+    @Test
+    void followsFailureLinksAcrossNonAsciiCharacters() {
+        AhoCorasick automaton = new AhoCorasick(List.of("ааб", "аб"), false);
+
+        assertThat(scan(automaton, "аааб")).containsExactly(List.of(1, 4), List.of(2, 4));
+    }
+
+    @Test
+    void scansOnlyRequestedRange() {
+        AhoCorasick automaton = new AhoCorasick(List.of("ab"), true);
+
+        assertThat(scan(automaton, "ab ab ab", 2, 6)).containsExactly(List.of(3, 5));
+    }
+
+    @Test
+    void stopsWhenConsumerReturnsFalse() {
+        AhoCorasick automaton = new AhoCorasick(List.of("a"), true);
+        List<Integer> starts = new ArrayList<>();
+
+        automaton.scan("aaaa", 0, 4, (start, end) -> {
+            starts.add(start);
+            return starts.size() < 2;
+        });
+
+        assertThat(starts).containsExactly(0, 1);
+    }
+
+    @Test
+    void ignoresEmptyTerms() {
+        AhoCorasick automaton = new AhoCorasick(List.of("", "x"), true);
+
+        assertThat(automaton.maxTermLength()).isEqualTo(1);
+        assertThat(scan(automaton, "xx")).containsExactly(List.of(0, 1), List.of(1, 2));
+    }
+
+    private static List<List<Integer>> scan(AhoCorasick automaton, String text) {
+        return scan(automaton, text, 0, text.length());
+    }
+
+    private static List<List<Integer>> scan(AhoCorasick automaton, String text, int from, int to) {
+        List<List<Integer>> hits = new ArrayList<>();
+        automaton.scan(text, from, to, (start, end) -> hits.add(List.of(start, end)));
+        return hits;
+    }
+}
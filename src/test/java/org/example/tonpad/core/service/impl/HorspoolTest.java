@@ -0,0 +1,59 @@
+package org.example.tonpad.core.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HorspoolTest {
+
+    @Test
+    void findsPatternFromGivenOffset() {
+        Horspool horspool = new Horspool("needle", true);
+        String text = "needle in a haystack with a needle";
+
+        assertThat(horspool.indexOf(text, 0, text.length())).isEqualTo(0);
+        assertThat(horspool.indexOf(text, 1, text.length())).isEqualTo(28);
+        assertThat(horspool.indexOf(text, 1, text.length() - 1)).isEqualTo(-1);
+    }
+
+    @Test
+    void foldsCaseOfTextAndPattern() {
+        Horspool horspool = new Horspool("ПрИвЕт", false);
+        String text = "ну, привет";
+
+        assertThat(horspool.indexOf(text, 0, text.length())).isEqualTo(4);
+    }
+
+    @Test
+    void caseSensitiveSearchDoesNotFold() {
+        Horspool horspool = new Horspool("Привет", true);
+        String text = "привет Привет";
+
+        assertThat(horspool.indexOf(text, 0, text.length())).isEqualTo(7);
+    }
+
+    @Test
+    void sharedLowByteDoesNotSkipMatches() {
+        // 'A' (0x41) и 'Ł' (0x141) попадают в одну ячейку таблицы сдвигов
+        Horspool horspool = new Horspool("ŁxA", true);
+        String text = "AAŁxA";
+
+        assertThat(horspool.indexOf(text, 0, text.length())).isEqualTo(2);
+    }
+
+    @Test
+    void searchesFoldedArrayDirectly() {
+        Horspool horspool = new Horspool("abc", true);
+        char[] text = "xxabcxx".toCharArray();
+
+        assertThat(horspool.indexOf(text, 0, text.length)).isEqualTo(2);
+        assertThat(horspool.indexOf(text, 3, text.length)).isEqualTo(-1);
+    }
+
+    @Test
+    void emptyPatternMatchesNothing() {
+        Horspool horspool = new Horspool("", false);
+
+        assertThat(horspool.indexOf("text", 0, 4)).isEqualTo(-1);
+    }
+}
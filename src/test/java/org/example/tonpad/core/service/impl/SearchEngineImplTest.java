@@ -0,0 +1,122 @@
+package org.example.tonpad.core.service.impl;
+
+import org.example.tonpad.core.service.SearchEngine;
+import org.example.tonpad.core.service.SearchService.Hit;
+import org.junit.jupiter.api.Test;
+
+import java.nio.CharBuffer;
+import java.util.List;
+import java.util.regex.PatternSyntaxException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchEngineImplTest {
+
+    private static final SearchEngine.Options CASE_SENSITIVE = new SearchEngine.Options(true, false, false);
+
+    private static final SearchEngine.Options WHOLE_WORD = new SearchEngine.Options(false, true, false);
+
+    private static final SearchEngine.Options REGEX = new SearchEngine.Options(false, false, true);
+
+    private final SearchEngine engine = new SearchEngineImpl();
+
+    @Test
+    void emptyQueryFindsNothing() {
+        SearchEngine.CompiledQuery query = engine.compile(List.of("", ""), SearchEngine.Options.DEFAULT);
+
+        assertThat(query.isEmpty()).isTrue();
+        assertThat(query.findAll("anything")).isEmpty();
+    }
+
+    @Test
+    void singleTermIgnoresCaseByDefault() {
+        SearchEngine.CompiledQuery query = engine.compile("note");
+
+        assertThat(query.findAll("Note, NOTE and note")).containsExactly(
+                new Hit(0, 4), new Hit(6, 10), new Hit(15, 19));
+    }
+
+    @Test
+    void singleTermMatchesDoNotOverlap() {
+        assertThat(engine.compile("aa").findAll("aaaaa")).containsExactly(new Hit(0, 2), new Hit(2, 4));
+    }
+
+    @Test
+    void caseSensitiveSearchesCharBufferArray() {
+        CharBuffer buffer = CharBuffer.wrap("--Note note".toCharArray()).position(2).slice();
+        SearchEngine.CompiledQuery query = engine.compile("Note", CASE_SENSITIVE);
+
+        assertThat(query.findAll(buffer)).containsExactly(new Hit(0, 4));
+    }
+
+    @Test
+    void wholeWordSkipsMatchesInsideWords() {
+        SearchEngine.CompiledQuery query = engine.compile("cat", WHOLE_WORD);
+
+        assertThat(query.findAll("cat concat cat_ cats (cat)")).containsExactly(new Hit(0, 3), new Hit(22, 25));
+    }
+
+    @Test
+    void severalTermsPreferLeftmostThenLongest() {
+        SearchEngine.CompiledQuery query = engine.compile(List.of("abc", "ab", "bcd"), SearchEngine.Options.DEFAULT);
+
+        assertThat(query.findAll("abcd ab bcd")).containsExactly(new Hit(0, 3), new Hit(5, 7), new Hit(8, 11));
+    }
+
+    @Test
+    void severalTermsKeepSelectionAcrossBatches() {
+        // больше кандидатов, чем помещается в одну пачку выбора
+        String text = "ab".repeat(1000);
+        SearchEngine.CompiledQuery query = engine.compile(List.of("ab", "ba"), SearchEngine.Options.DEFAULT);
+
+        List<Hit> hits = query.findAll(text);
+
+        assertThat(hits).hasSize(1000);
+        for (int i = 0; i < hits.size(); i++) {
+            assertThat(hits.get(i)).isEqualTo(new Hit(2 * i, 2 * i + 2));
+        }
+    }
+
+    @Test
+    void severalTermsRespectWholeWord() {
+        SearchEngine.CompiledQuery query = engine.compile(List.of("to", "do"), WHOLE_WORD);
+
+        assertThat(query.findAll("todo: to do")).containsExactly(new Hit(6, 8), new Hit(9, 11));
+    }
+
+    @Test
+    void regexFindsCaseInsensitiveMatchesAndSkipsEmptyOnes() {
+        SearchEngine.CompiledQuery query = engine.compile("x*", REGEX);
+
+        assertThat(query.findAll("aXxa")).containsExactly(new Hit(1, 3));
+    }
+
+    @Test
+    void regexWholeWordUsesUnicodeWordCharacters() {
+        SearchEngine.CompiledQuery query = engine.compile("д[а-я]м", new SearchEngine.Options(false, true, true));
+
+        assertThat(query.findAll("дом домик ДЫМ")).containsExactly(new Hit(0, 3), new Hit(10, 13));
+    }
+
+    @Test
+    void regexSeesContextOutsideOfRange() {
+        SearchEngine.CompiledQuery query = engine.compile("^b", REGEX);
+
+        assertThat(query.findAll("ab\nb", 1, 4)).containsExactly(new Hit(3, 4));
+    }
+
+    @Test
+    void invalidRegexFailsToCompile() {
+        assertThatThrownBy(() -> engine.compile("(", REGEX)).isInstanceOf(PatternSyntaxException.class);
+    }
+
+    @Test
+    void countAndMatchesUseSameHits() {
+        SearchEngine.CompiledQuery query = engine.compile("a");
+
+        assertThat(query.count("banana")).isEqualTo(3);
+        assertThat(query.matches("banana")).isTrue();
+        assertThat(query.matches("kiwi")).isFalse();
+    }
+}
@@ -0,0 +1,102 @@
+package org.example.tonpad.core.service.impl;
+
+import org.example.tonpad.TonpadConfig;
+import org.example.tonpad.core.files.FileSystemService;
+import org.example.tonpad.core.files.directory.DirectoryService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.StreamUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class VaultServiceImplTest {
+
+    private static final String SCHEMA_PATH = "db/changelog/schema.sql";
+
+    @TempDir
+    Path vault;
+
+    private VaultServiceImpl vaultService;
+
+    @BeforeEach
+    void setUp() {
+        TonpadConfig config = new TonpadConfig(null, null, null, SCHEMA_PATH, "db/validate_db_schema.sql",
+                null, null, null);
+        vaultService = new VaultServiceImpl(mock(DirectoryService.class), config, mock(FileSystemService.class));
+    }
+
+    @Test
+    void pathUniqueMigrationMergesDuplicateNotes() throws Exception {
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            // хранилище, созданное до миграции: путь не уникален
+            execute(stmt, StreamUtils.copyToString(
+                    new ClassPathResource(SCHEMA_PATH).getInputStream(), StandardCharsets.UTF_8));
+            stmt.execute("insert into notes (id, path) values (1, 'a.md'), (2, 'b.md'), (3, 'a.md'), (4, 'a.md')");
+            stmt.execute("insert into notes_associations (src_id, dst_id) values (1, 2), (3, 2), (2, 4)");
+            stmt.execute("insert into templates (id, name) values (1, 'template')");
+            stmt.execute("insert into notes_to_templates (note_id, template_id) values (3, 1)");
+        }
+
+        vaultService.checkVaultInitialization(vault);
+
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            assertThat(rows(stmt, "select id || ':' || path from notes order by id")).containsExactly("1:a.md", "2:b.md");
+            assertThat(rows(stmt, "select src_id || '->' || dst_id from notes_associations order by src_id"))
+                    .containsExactly("1->2", "2->1");
+            assertThat(rows(stmt, "select note_id || ':' || template_id from notes_to_templates"))
+                    .containsExactly("1:1");
+            assertThat(rows(stmt, "PRAGMA user_version")).containsExactly("1");
+            assertThatThrownBy(() -> stmt.execute("insert into notes (path) values ('b.md')"))
+                    .isInstanceOf(SQLException.class);
+        }
+    }
+
+    @Test
+    void migrationsRunOnce() throws Exception {
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            execute(stmt, StreamUtils.copyToString(
+                    new ClassPathResource(SCHEMA_PATH).getInputStream(), StandardCharsets.UTF_8));
+        }
+
+        vaultService.checkVaultInitialization(vault);
+        vaultService.checkVaultInitialization(vault);
+
+        try (Connection conn = connect(); Statement stmt = conn.createStatement()) {
+            assertThat(rows(stmt, "PRAGMA user_version")).containsExactly("1");
+            assertThat(rows(stmt, "select name from sqlite_master where name = 'notes_path_unique_index'"))
+                    .containsExactly("notes_path_unique_index");
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection("jdbc:sqlite:" + vault.resolve("database.db"));
+    }
+
+    private static void execute(Statement stmt, String script) throws SQLException {
+        for (String command : script.split(";")) {
+            if (!command.isBlank()) stmt.execute(command);
+        }
+    }
+
+    private static List<String> rows(Statement stmt, String query) throws SQLException {
+        List<String> rows = new ArrayList<>();
+        try (ResultSet result = stmt.executeQuery(query)) {
+            while (result.next()) rows.add(result.getString(1));
+        }
+        return rows;
+    }
+}